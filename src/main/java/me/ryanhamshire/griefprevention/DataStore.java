@@ -41,7 +41,9 @@
 import me.ryanhamshire.griefprevention.configuration.type.ConfigBase;
 import me.ryanhamshire.griefprevention.configuration.type.GlobalConfig;
 import me.ryanhamshire.griefprevention.event.GPDeleteClaimEvent;
+import me.ryanhamshire.griefprevention.permission.GPFlagDecisionTable;
 import me.ryanhamshire.griefprevention.permission.GPOptions;
+import me.ryanhamshire.griefprevention.permission.GPPermissionCache;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandSource;
@@ -430,6 +432,7 @@ public ClaimResult deleteAllAdminClaims(CommandSource src, World world) {
             gpClaim.removeSurfaceFluids(null);
 
             GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().clearPermissions(ImmutableSet.of(claim.getContext()));
+            GPFlagDecisionTable.invalidate(GriefPreventionPlugin.GLOBAL_SUBJECT, ImmutableSet.of(claim.getContext()));
             claimWorldManager.deleteClaimInternal(claim, true);
 
             // if in a creative mode world, delete the claim
@@ -449,10 +452,11 @@ public ClaimResult deleteClaim(Claim claim, boolean deleteChildren) {
     // deletes all claims owned by a player
     public void deleteClaimsForPlayer(UUID playerID) {
         if (DataStore.USE_GLOBAL_PLAYER_STORAGE && playerID != null) {
-            List<Claim> claimsToDelete = new ArrayList<>(DataStore.GLOBAL_PLAYER_DATA.get(playerID).getInternalClaims());
+            List<Claim> claimsToDelete = getOwnedClaimsToDelete(GPClaimManager.getGlobalOwnerClaims(playerID), playerID);
             for (Claim claim : claimsToDelete) {
                 ((GPClaim) claim).removeSurfaceFluids(null);
                 GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().clearPermissions(ImmutableSet.of(claim.getContext()));
+                GPFlagDecisionTable.invalidate(GriefPreventionPlugin.GLOBAL_SUBJECT, ImmutableSet.of(claim.getContext()));
                 GPClaimManager claimWorldManager = this.claimWorldManagers.get(claim.getWorld().getProperties().getUniqueId());
                 claimWorldManager.deleteClaimInternal(claim, true);
 
@@ -465,24 +469,21 @@ public void deleteClaimsForPlayer(UUID playerID) {
         }
 
         for (GPClaimManager claimWorldManager : this.claimWorldManagers.values()) {
-            Set<Claim> claims = claimWorldManager.getInternalPlayerClaims(playerID);
-            if (playerID == null) {
-                claims = claimWorldManager.getInternalWorldClaims();
-            }
-            if (claims == null) {
-                continue;
-            }
-
             List<Claim> claimsToDelete = new ArrayList<Claim>();
-            for (Claim claim : claims) {
-                if (!claim.isAdminClaim()) {
-                    claimsToDelete.add(claim);
+            if (playerID == null) {
+                for (Claim claim : claimWorldManager.getInternalWorldClaims()) {
+                    if (!claim.isAdminClaim()) {
+                        claimsToDelete.add(claim);
+                    }
                 }
+            } else {
+                claimsToDelete = getOwnedClaimsToDelete(claimWorldManager.getOwnerClaims(playerID), playerID);
             }
 
             for (Claim claim : claimsToDelete) {
                 ((GPClaim) claim).removeSurfaceFluids(null);
                 GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().clearPermissions(ImmutableSet.of(claim.getContext()));
+                GPFlagDecisionTable.invalidate(GriefPreventionPlugin.GLOBAL_SUBJECT, ImmutableSet.of(claim.getContext()));
                 claimWorldManager.deleteClaimInternal(claim, true);
 
                 // if in a creative mode world, delete the claim
@@ -493,6 +494,21 @@ public void deleteClaimsForPlayer(UUID playerID) {
         }
     }
 
+    // children of claims being deleted are removed along with their parent
+    private static List<Claim> getOwnedClaimsToDelete(Set<GPClaim> ownedClaims, UUID playerID) {
+        List<Claim> claimsToDelete = new ArrayList<>();
+        for (GPClaim claim : ownedClaims) {
+            if (claim.isAdminClaim()) {
+                continue;
+            }
+            if (claim.parent != null && !claim.parent.isAdminClaim() && claim.parent.getOwnerUniqueId().equals(playerID)) {
+                continue;
+            }
+            claimsToDelete.add(claim);
+        }
+        return claimsToDelete;
+    }
+
     // used in updating the data schema from 0 to 1.
     // converts player names in a list to uuids
     protected List<String> convertNameListToUUIDList(List<String> names) {
@@ -608,24 +624,28 @@ public void setupDefaultPermissions(World world) {
         final GriefPreventionConfig<?> activeConfig = GriefPreventionPlugin.getActiveConfig(world.getProperties());
         final Map<String, Boolean> adminDefaults = activeConfig.getConfig().flags.getAdminDefaults();
         CLAIM_FLAG_DEFAULTS.put(ClaimType.ADMIN, adminDefaults);
+        GPFlagDecisionTable.setConfigDefaults(world, ClaimType.ADMIN, adminDefaults);
         this.setFlagDefaultPermissions(contexts, adminDefaults);
         contexts = new HashSet<>();
         contexts.add(ClaimContexts.BASIC_DEFAULT_CONTEXT);
         contexts.add(world.getContext());
         final Map<String, Boolean> basicDefaults = activeConfig.getConfig().flags.getBasicDefaults();
         CLAIM_FLAG_DEFAULTS.put(ClaimType.BASIC, basicDefaults);
+        GPFlagDecisionTable.setConfigDefaults(world, ClaimType.BASIC, basicDefaults);
         this.setFlagDefaultPermissions(contexts, basicDefaults);
         contexts = new HashSet<>();
         contexts.add(ClaimContexts.TOWN_DEFAULT_CONTEXT);
         contexts.add(world.getContext());
         final Map<String, Boolean> townDefaults = activeConfig.getConfig().flags.getTownDefaults();
         CLAIM_FLAG_DEFAULTS.put(ClaimType.TOWN, townDefaults);
+        GPFlagDecisionTable.setConfigDefaults(world, ClaimType.TOWN, townDefaults);
         this.setFlagDefaultPermissions(contexts, townDefaults);
         contexts = new HashSet<>();
         contexts.add(ClaimContexts.WILDERNESS_DEFAULT_CONTEXT);
         contexts.add(world.getContext());
         final Map<String, Boolean> wildernessDefaults = activeConfig.getConfig().flags.getWildernessDefaults();
         CLAIM_FLAG_DEFAULTS.put(ClaimType.WILDERNESS, wildernessDefaults);
+        GPFlagDecisionTable.setConfigDefaults(world, ClaimType.WILDERNESS, wildernessDefaults);
         this.setFlagDefaultPermissions(contexts, wildernessDefaults);
         this.setOptionDefaultPermissions();
     }
@@ -654,6 +674,8 @@ private void setFlagDefaultPermissions(Set<Context> contexts, Map<String, Boolea
                     }
                 }
             }
+            GPFlagDecisionTable.invalidate(GriefPreventionPlugin.GLOBAL_SUBJECT, contexts);
+            GPPermissionCache.invalidate();
         });
     }
 
@@ -25,513 +25,837 @@
  */
 package me.ryanhamshire.griefprevention;
 
+import me.ryanhamshire.griefprevention.api.claim.Claim;
+import me.ryanhamshire.griefprevention.api.claim.ClaimBlockSystem;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
+import me.ryanhamshire.griefprevention.claim.GPClaimManager;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageData;
+import me.ryanhamshire.griefprevention.configuration.DataStorageBackend;
+import me.ryanhamshire.griefprevention.configuration.TownStorageData;
+import me.ryanhamshire.griefprevention.configuration.category.DatabaseCategory;
+import me.ryanhamshire.griefprevention.logging.CustomLogEntryTypes;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.Order;
+import org.spongepowered.api.event.filter.IsCancelled;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
+import org.spongepowered.api.service.sql.SqlService;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.util.Tristate;
 import org.spongepowered.api.world.World;
 import org.spongepowered.api.world.storage.WorldProperties;
 
-import java.sql.*;
-import java.util.Properties;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-
-//manages data stored in the file system
-public class DatabaseDataStore extends DataStore {
-
-    private Connection databaseConnection = null;
-
-    private final String databaseUrl;
-    private final String userName;
-    private final String password;
-
-    DatabaseDataStore(String url, String userName, String password) throws Exception {
-        this.databaseUrl = url;
-        this.userName = userName;
-        this.password = password;
-
-        this.initialize();
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+
+// Stores claim and player data in a SQL database that any number of servers may share.
+// Claim and player data keep their HOCON layout and are stored as one document per row,
+// with the fields needed for lookups copied into columns. Writes are queued and sent in
+// batches on the plugin executor.
+// Every row has a version, and a write only replaces the version this server last saw. Each
+// write is also recorded in a change log that the other servers poll to reload the rows they
+// hold. If another server changed a row first, its data wins and is loaded in place of the
+// local change.
+public class DatabaseDataStore extends FlatFileDataStore implements DataStorageBackend {
+
+    private static final String GLOBAL_SCOPE = "global";
+    private static final String META_SCHEMA = "schema-version";
+    private static final String META_MIGRATION = "migration-version";
+    // written next to data files once they have been imported into the database
+    private static final String IMPORT_MARKER = "_databaseImported";
+    // delay before retrying a batch that failed to write
+    private static final long RETRY_DELAY_SECONDS = 5;
+    // Change ids are taken when a transaction writes, not when it commits, so each poll reads
+    // this many changes again in case an earlier id became visible after a later one
+    private static final int CHANGE_OVERLAP = 100;
+    private static final long CHANGE_RETENTION_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long CHANGE_PRUNE_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+    // reads of a player's data at login before holding off batch writes for one
+    private static final int AUTH_READ_ATTEMPTS = 3;
+
+    private final DatabaseStorage storage;
+    // identifies the changes this server wrote in the change log
+    private final String serverId = UUID.randomUUID().toString();
+    // Claim id or player key -> version of the row this server last read or wrote
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    // Claim id -> latest pending write, a null node deletes the claim
+    private final Map<String, DatabaseStorage.ClaimWrite> pendingClaims = new LinkedHashMap<>();
+    // Claim ids in the batch being written, guarded by pendingClaims
+    private final Set<String> writingClaims = new HashSet<>();
+    // Player key -> latest pending write
+    private final Map<String, DatabaseStorage.PlayerWrite> pendingPlayers = new LinkedHashMap<>();
+    // Player key -> write in the batch being written, guarded by pendingPlayers
+    private final Map<String, DatabaseStorage.PlayerWrite> writingPlayers = new HashMap<>();
+    // Batches committed so far, changed while holding pendingPlayers
+    private volatile long committedBatches;
+    // Player id -> data in every scope, read off the main thread when the player logs in
+    private final Map<String, Map<String, CommentedConfigurationNode>> prefetchedPlayers = new ConcurrentHashMap<>();
+    // World key -> worlds whose claims are loaded from the database
+    private final Map<String, WorldProperties> loadedWorlds = new ConcurrentHashMap<>();
+    // World keys and player scopes whose data could not be loaded, nothing is written for them
+    private final Set<String> refusedKeys = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Object drainLock = new Object();
+    private final AtomicBoolean polling = new AtomicBoolean();
+    // Only used by the poll task
+    private final Set<Long> seenChanges = new HashSet<>();
+    private long lastChangeId;
+    private long lastPrune;
+
+    DatabaseDataStore(DataSource dataSource, DatabaseStorage.Dialect dialect) throws SQLException {
+        this.storage = new DatabaseStorage(dataSource, dialect);
+        final int migrations = this.storage.migrate();
+        if (migrations > 0) {
+            GriefPreventionPlugin.instance.getLogger().info("Applied " + migrations + " database schema migration(s).");
+        }
+        // everything written before this is read when worlds and players load
+        this.lastChangeId = this.storage.readLatestChange();
+        ClaimStorageData.setBackend(this);
     }
 
-    @SuppressWarnings({"unused", "null"})
-    @Override
-    void initialize() throws Exception {
-        /*try {
-            // load the java driver for mySQL
-            Class.forName("com.mysql.jdbc.Driver");
-        } catch (Exception e) {
-            GriefPreventionPlugin.addLogEntry("ERROR: Unable to load Java's mySQL database driver.  Check to make sure you've installed it properly.");
+    static DatabaseDataStore create(DatabaseCategory config) throws Exception {
+        final DatabaseStorage.Dialect dialect = DatabaseStorage.Dialect.fromUrl(config.dbURL);
+        final SqlService sqlService = Sponge.getServiceManager().provide(SqlService.class)
+                .orElseThrow(() -> new IllegalStateException("No SQL service is available."));
+        // the pool is created and owned by the SQL service
+        final DataSource dataSource = sqlService.getDataSource(GriefPreventionPlugin.instance, getConnectionUrl(config));
+        final DatabaseDataStore dataStore;
+        try {
+            dataStore = new DatabaseDataStore(dataSource, dialect);
+        } catch (SQLException e) {
+            GriefPreventionPlugin.addLogEntry("ERROR: Unable to connect to database.  Check your config file settings.");
             throw e;
         }
+        Sponge.getEventManager().registerListeners(GriefPreventionPlugin.instance, dataStore);
+        if (config.syncInterval > 0) {
+            Sponge.getScheduler().createTaskBuilder().async().interval(config.syncInterval, TimeUnit.SECONDS).execute(dataStore::poll)
+                    .submit(GriefPreventionPlugin.instance);
+        }
+        return dataStore;
+    }
 
-        try {
-            this.refreshDataConnection();
-        } catch (Exception e2) {
-            GriefPreventionPlugin.addLogEntry("ERROR: Unable to connect to database.  Check your config file settings.");
-            throw e2;
+    private static String getConnectionUrl(DatabaseCategory config) throws UnsupportedEncodingException {
+        final String url = config.dbURL;
+        if (config.dbUsername.isEmpty() || url.contains("@")) {
+            return url;
         }
+        // the SQL service reads credentials from the url authority
+        final int index = url.indexOf("://");
+        if (index == -1) {
+            return url;
+        }
+        String credentials = URLEncoder.encode(config.dbUsername, "UTF-8");
+        if (!config.dbPassword.isEmpty()) {
+            credentials += ":" + URLEncoder.encode(config.dbPassword, "UTF-8");
+        }
+        return url.substring(0, index + 3) + credentials + "@" + url.substring(index + 3);
+    }
 
+    private int readVersion(String key) {
         try {
-            // ensure the data tables exist
-            Statement statement = databaseConnection.createStatement();
-
-            statement.execute("CREATE TABLE IF NOT EXISTS griefprevention_nextclaimid (nextid INT(15));");
-
-            statement.execute(
-                    "CREATE TABLE IF NOT EXISTS griefprevention_claimdata (id INT(15), owner VARCHAR(50), lessercorner VARCHAR(100), greatercorner "
-                            + "VARCHAR(100), builders VARCHAR(1000), containers VARCHAR(1000), accessors VARCHAR(1000), managers VARCHAR(1000), "
-                            + "parentid INT(15));");
-
-            statement.execute(
-                    "CREATE TABLE IF NOT EXISTS griefprevention_playerdata (name VARCHAR(50), lastlogin DATETIME, accruedblocks INT(15), "
-                            + "bonusblocks INT(15));");
-
-            statement.execute("CREATE TABLE IF NOT EXISTS griefprevention_schemaversion (version INT(15));");
-
-            // if the next claim id table is empty, this is a brand new database
-            // which will write using the latest schema
-            // otherwise, schema version is determined by schemaversion table
-            // (or =0 if table is empty, see getSchemaVersion())
-            ResultSet results = statement.executeQuery("SELECT * FROM griefprevention_nextclaimid;");
-            if (!results.next()) {
-                this.setSchemaVersion(latestSchemaVersion);
+            final Integer version = this.storage.readMetadata(key);
+            if (version == null) {
+                this.writeVersion(key, 0);
+                return 0;
             }
-        } catch (Exception e3) {
-            GriefPreventionPlugin.addLogEntry("ERROR: Unable to create the necessary database table.  Details:");
-            GriefPreventionPlugin.addLogEntry(e3.getMessage());
-            e3.printStackTrace();
-            throw e3;
+            return version;
+        } catch (SQLException e) {
+            GriefPreventionPlugin.addLogEntry("Unable to read " + key + " from database.  Details: " + e.getMessage(), CustomLogEntryTypes.Exception);
+            return 0;
         }
+    }
 
-        // load group data into memory
-        Statement statement = databaseConnection.createStatement();
-        // load next claim number into memory
-        ResultSet results = statement.executeQuery("SELECT * FROM griefprevention_nextclaimid;");
-
-        // if there's nothing yet, add it
-        if (!results.next()) {
-            statement.execute("INSERT INTO griefprevention_nextclaimid VALUES(0);");
+    private void writeVersion(String key, int value) {
+        try {
+            this.storage.writeMetadata(key, value);
+        } catch (SQLException e) {
+            GriefPreventionPlugin.addLogEntry("Unable to write " + key + " to database.  Details: " + e.getMessage(), CustomLogEntryTypes.Exception);
         }
+    }
 
-        if (this.getSchemaVersion() == 0) {
-            try {
-                this.refreshDataConnection();
+    @Override
+    int getSchemaVersionFromStorage() {
+        return this.readVersion(META_SCHEMA);
+    }
 
-                // pull ALL player data from the database
-                statement = this.databaseConnection.createStatement();
-                results = statement.executeQuery("SELECT * FROM griefprevention_playerdata;");
+    @Override
+    void updateSchemaVersionInStorage(int versionToSet) {
+        this.writeVersion(META_SCHEMA, versionToSet);
+    }
 
-                // make a list of changes to be made
-                HashMap<String, UUID> changes = new HashMap<String, UUID>();
+    @Override
+    int getMigrationVersionFromStorage() {
+        return this.readVersion(META_MIGRATION);
+    }
 
-                ArrayList<String> namesToConvert = new ArrayList<String>();
-                while (results.next()) {
-                    // get the id
-                    String playerName = results.getString("name");
+    @Override
+    void updateMigrationVersionInStorage(int versionToSet) {
+        this.writeVersion(META_MIGRATION, versionToSet);
+    }
 
-                    // add to list of names to convert to UUID
-                    namesToConvert.add(playerName);
-                }
+    @Override
+    public void loadWorldData(World world) {
+        final WorldProperties worldProperties = world.getProperties();
+        // claims reloaded from other servers also count, so start from zero for this world
+        this.claimLoadCount = 0;
+        GPClaimManager claimWorldManager = this.claimWorldManagers.get(worldProperties.getUniqueId());
+        if (claimWorldManager == null) {
+            this.registerWorld(worldProperties);
+            claimWorldManager = this.claimWorldManagers.get(worldProperties.getUniqueId());
+        }
 
-                // reset results cursor
-                results.beforeFirst();
-
-                // for each result
-                while (results.next()) {
-                    // get the id
-                    String playerName = results.getString("name");
-
-                    // try to convert player name to UUID
-                    try {
-                        Optional<User> user = Sponge.getGame().getServiceManager().provide(UserStorageService.class).get().get(playerName);
-
-                        // if successful, update the playerdata row by replacing
-                        // the player's name with the player's UUID
-                        if (user.isPresent()) {
-                            changes.put(playerName, user.get().getUniqueId());
-                        }
-                    }
-                    // otherwise leave it as-is. no harm done - it won't be
-                    // requested by name, and this update only happens once.
-                    catch (Exception ex) {
-                    }
-                }
+        final Path worldDataPath = DataStore.worldConfigMap.get(worldProperties.getUniqueId()).getPath().getParent();
+        final String worldKey = this.getWorldKey(worldDataPath);
+        final Map<UUID, LoadedClaimFile> storedClaims = new LinkedHashMap<>();
+        try {
+            this.importDataFiles(worldProperties, worldDataPath, worldKey);
+            this.loadStoredClaims(worldProperties, worldDataPath.resolve("ClaimData"), worldKey, storedClaims);
+            this.loadedWorlds.put(worldKey, worldProperties);
+        } catch (Exception e) {
+            this.refuseWorld(worldProperties, worldKey, e);
+            storedClaims.clear();
+        }
 
-                // refresh data connection in case data migration took a long time
-                this.refreshDataConnection();
-
-                for (String name : changes.keySet()) {
-                    try {
-                        statement = this.databaseConnection.createStatement();
-                        statement.execute(
-                                "UPDATE griefprevention_playerdata SET name = '" + changes.get(name).toString() + "' WHERE name = '" + name + "';");
-                    } catch (SQLException e) {
-                        GriefPreventionPlugin.addLogEntry("Unable to convert player data for " + name + ".  Skipping.");
-                        GriefPreventionPlugin.addLogEntry(e.getMessage());
-                    }
-                }
-            } catch (SQLException e) {
-                GriefPreventionPlugin.addLogEntry("Unable to convert player data.  Details:");
-                GriefPreventionPlugin.addLogEntry(e.getMessage());
+        // Load wilderness claim first
+        final LoadedClaimFile wilderness = storedClaims.remove(worldProperties.getUniqueId());
+        if (wilderness != null) {
+            try {
+                this.loadClaim(wilderness.file, wilderness.claimStorage, worldProperties, wilderness.claimId);
+            } catch (Exception e) {
                 e.printStackTrace();
             }
         }
+        if (claimWorldManager.getWildernessClaim() == null) {
+            claimWorldManager.createWildernessClaim(worldProperties);
+        }
 
-        // load claims data into memory
-        results = statement.executeQuery("SELECT * FROM griefprevention_claimdata;");
+        final long start = System.currentTimeMillis();
+        final Set<UUID> visited = new HashSet<>();
+        for (LoadedClaimFile loadedClaim : storedClaims.values()) {
+            this.linkClaimFile(loadedClaim, storedClaims, visited, worldProperties);
+        }
+        GriefPreventionPlugin.instance.getLogger().info("[" + worldProperties.getWorldName() + "] " + this.claimLoadCount + " total claims loaded from database in "
+                + (System.currentTimeMillis() - start) + " ms.");
 
-        ArrayList<GPClaim> claimsToRemove = new ArrayList<GPClaim>();
-        ArrayList<GPClaim> subdivisionsToLoad = new ArrayList<GPClaim>();
-        List<World> validWorlds = (List<World>) Sponge.getGame().getServer().getWorlds();
+        try {
+            this.loadStoredPlayerData(worldProperties);
+        } catch (SQLException e) {
+            GriefPreventionPlugin.instance.getLogger().error("[" + worldProperties.getWorldName() + "] Failed to load player data from database.", e);
+        }
 
-        while (results.next()) {
-            try {
-                // problematic claims will be removed from secondary storage,
-                // and never added to in-memory data store
-                boolean removeClaim = false;
-
-                long parentId = results.getLong("parentid");
-                long claimID = results.getLong("id");
-
-                Location<World> lesserBoundaryCorner = null;
-                Location<World> greaterBoundaryCorner = null;
-                String lesserCornerString = "(location not available)";
-                try {
-                    lesserCornerString = results.getString("lessercorner");
-                    Vector3i lesserPos = BlockUtils.positionFromString(lesserCornerString);
-                    // lesserBoundaryCorner = positionFromString(lesserCornerString);
-
-                    String greaterCornerString = results.getString("greatercorner");
-                    //greaterBoundaryCorner = positionFromString(greaterCornerString);
-                } catch (Exception e) {
-                    if (e.getMessage().contains("World not found")) {
-                        removeClaim = true;
-                        GriefPreventionPlugin.addLogEntry("Removing a claim in a world which does not exist: " + lesserCornerString);
-                        continue;
-                    } else {
-                        throw e;
-                    }
-                }
+        // handle default flag permissions
+        this.setupDefaultPermissions(world);
+    }
 
-                String ownerName = results.getString("owner");
-                Optional<User> owner = Optional.empty();
-                if (ownerName.isEmpty() || ownerName.startsWith("--")) {
-                    owner = Optional.empty(); // administrative land claim or subdivision
-                } else if (this.getSchemaVersion() < 1) {
-                    try {
-                        owner = Sponge.getGame().getServiceManager().provide(UserStorageService.class).get().get(ownerName);
-                    } catch (Exception ex) {
-                        GriefPreventionPlugin.addLogEntry("This owner name did not convert to a UUID: " + ownerName + ".");
-                        GriefPreventionPlugin.addLogEntry("  Converted land claim to administrative @ " + lesserBoundaryCorner.toString());
-                    }
-                }
+    // The world runs without claims, and nothing is written for it so the stored claims are kept for the next start
+    private void refuseWorld(WorldProperties worldProperties, String worldKey, Exception e) {
+        this.refusedKeys.add(worldKey);
+        GriefPreventionPlugin.instance.getLogger().error("[" + worldProperties.getWorldName() + "] Failed to load claim data from database. "
+                + "Claims in this world are not protected and changes to its claim and player data are not saved until the server restarts.", e);
+    }
 
-                String managersString = results.getString("managers");
-                List<String> managerNames = Arrays.asList(managersString.split(";"));
-                managerNames = this.convertNameListToUUIDList(managerNames);
-
-                GPClaim claim = new GPClaim(lesserBoundaryCorner, greaterBoundaryCorner, ClaimType.BASIC);
-                claim.ownerID = owner.get().getUniqueId();
-
-                if (removeClaim) {
-                    claimsToRemove.add(claim);
-                } else if (parentId == -1) {
-                    // top level claim
-                    this.addClaim(claim, false);
-                } else {
-                    // subdivision
-                    subdivisionsToLoad.add(claim);
-                }
-            } catch (SQLException e) {
-                GriefPreventionPlugin.addLogEntry("Unable to load a claim.  Details: " + e.getMessage() + " ... " + results.toString());
-                e.printStackTrace();
+    // Copies the data files of a world into the database the first time it loads with a database configured.
+    // Files are left in place, and nothing is imported over data the database already has.
+    private void importDataFiles(WorldProperties worldProperties, Path worldDataPath, String worldKey) throws IOException, SQLException {
+        if (DataStore.USE_GLOBAL_PLAYER_STORAGE && !this.refusedKeys.contains(GLOBAL_SCOPE)) {
+            try {
+                this.importPlayerFiles(DataStore.globalPlayerDataPath, DataStore.dataLayerFolderPath.resolve(IMPORT_MARKER), GLOBAL_SCOPE);
+            } catch (IOException | SQLException e) {
+                // writing player data now would stop the files from being imported on the next start
+                this.refusedKeys.add(GLOBAL_SCOPE);
+                GriefPreventionPlugin.instance.getLogger().error("Failed to import global player data files into database. "
+                        + "Changes to player data are not saved until the server restarts.", e);
             }
         }
 
-        // add subdivisions to their parent claims
-        for (Claim childClaim : subdivisionsToLoad) {
-            // find top level claim parent
-            Claim topLevelClaim = this.getClaimAt(childClaim.getLesserBoundaryCorner(), true, null);
-
-            if (topLevelClaim == null) {
-                claimsToRemove.add(childClaim);
-                GriefPreventionPlugin.addLogEntry("Removing orphaned claim subdivision: " + childClaim.getLesserBoundaryCorner().toString());
-                continue;
+        final Path marker = worldDataPath.resolve(IMPORT_MARKER);
+        if (Files.exists(marker)) {
+            return;
+        }
+        final List<DatabaseStorage.ClaimWrite> claimWrites = new ArrayList<>();
+        final List<DatabaseStorage.PlayerWrite> playerWrites = new ArrayList<>();
+        if (!this.storage.hasClaims(worldKey)) {
+            for (Map.Entry<String, CommentedConfigurationNode> entry : readDataFiles(worldDataPath.resolve("ClaimData"), true).entrySet()) {
+                claimWrites.add(new DatabaseStorage.ClaimWrite(entry.getKey(), worldKey, entry.getValue()));
+            }
+        }
+        if (!DataStore.USE_GLOBAL_PLAYER_STORAGE && !this.storage.hasPlayerData(worldKey)) {
+            for (Map.Entry<String, CommentedConfigurationNode> entry : readDataFiles(worldDataPath.resolve("PlayerData"), false).entrySet()) {
+                playerWrites.add(new DatabaseStorage.PlayerWrite(worldKey, entry.getKey(), entry.getValue()));
             }
+        }
+        // one transaction, so a failed import leaves the database as it was and is retried on the next start
+        this.storage.writeBatch(claimWrites, playerWrites, this.versions, this.serverId);
+        Files.createFile(marker);
+        if (!claimWrites.isEmpty() || !playerWrites.isEmpty()) {
+            GriefPreventionPlugin.instance.getLogger().info("[" + worldProperties.getWorldName() + "] Imported " + claimWrites.size() + " claim file(s) and "
+                    + playerWrites.size() + " player data file(s) into database.");
+        }
+    }
 
-            // add this claim to the list of children of the current top level
-            // claim
-            childClaim.parent = topLevelClaim;
-            topLevelClaim.children.add(childClaim);
+    private void importPlayerFiles(Path playerDataPath, Path marker, String scope) throws IOException, SQLException {
+        if (Files.exists(marker)) {
+            return;
+        }
+        final List<DatabaseStorage.PlayerWrite> playerWrites = new ArrayList<>();
+        if (!this.storage.hasPlayerData(scope)) {
+            for (Map.Entry<String, CommentedConfigurationNode> entry : readDataFiles(playerDataPath, false).entrySet()) {
+                playerWrites.add(new DatabaseStorage.PlayerWrite(scope, entry.getKey(), entry.getValue()));
+            }
+        }
+        this.storage.writeBatch(Collections.emptyList(), playerWrites, this.versions, this.serverId);
+        Files.createFile(marker);
+        if (!playerWrites.isEmpty()) {
+            GriefPreventionPlugin.instance.getLogger().info("Imported " + playerWrites.size() + " global player data file(s) into database.");
         }
+    }
 
-        for (int i = 0; i < claimsToRemove.size(); i++) {
-            this.deleteClaimFromSecondaryStorage(claimsToRemove.get(i));
+    // Reads every data file below a folder, keyed by the id in its file name
+    private static Map<String, CommentedConfigurationNode> readDataFiles(Path folder, boolean claimFiles) throws IOException {
+        final Map<String, CommentedConfigurationNode> nodes = new LinkedHashMap<>();
+        if (Files.notExists(folder)) {
+            return nodes;
+        }
+        final List<Path> files;
+        try (Stream<Path> paths = Files.walk(folder)) {
+            files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
         }
+        for (Path file : files) {
+            final String id = file.getFileName().toString();
+            try {
+                UUID.fromString(id);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            try {
+                final CommentedConfigurationNode root = HoconConfigurationLoader.builder().setPath(file).build().load();
+                final CommentedConfigurationNode type = root.getNode(GriefPreventionPlugin.MOD_ID, ClaimStorageData.MAIN_CLAIM_TYPE);
+                if (claimFiles && type.isVirtual() && !file.getParent().equals(folder)) {
+                    // claims are stored in a folder named after their type
+                    type.setValue(file.getParent().getFileName().toString().toUpperCase());
+                }
+                nodes.put(id, root);
+            } catch (IOException e) {
+                // unreadable files are skipped, the same as when loading them from disk
+                GriefPreventionPlugin.instance.getLogger().error(file.toAbsolutePath() + " failed to import.", e);
+            }
+        }
+        return nodes;
+    }
 
-        if (this.getSchemaVersion() <= 2) {
-            this.refreshDataConnection();
-            statement = this.databaseConnection.createStatement();
-            statement.execute("DELETE FROM griefprevention_claimdata WHERE id='-1';");
-        }*/
+    private void loadStoredClaims(WorldProperties worldProperties, Path claimDataPath, String worldKey, Map<UUID, LoadedClaimFile> storedClaims)
+            throws Exception {
+        final List<DatabaseStorage.StoredClaim> rows = this.storage.loadClaims(worldKey);
+        if (rows.isEmpty()) {
+            return;
+        }
 
-        super.initialize();
+        // parse claim data in parallel, the same as claim files
+        final ExecutorService loadExecutor = Executors.newFixedThreadPool(getClaimLoadThreads(rows.size()));
+        try {
+            final List<Future<LoadedClaimFile>> futures = new ArrayList<>(rows.size());
+            for (DatabaseStorage.StoredClaim row : rows) {
+                this.versions.put(row.claimId, row.version);
+                futures.add(loadExecutor.submit(() -> this.parseStoredClaim(worldProperties, claimDataPath, row)));
+            }
+            for (Future<LoadedClaimFile> future : futures) {
+                final LoadedClaimFile loadedClaim = future.get();
+                if (loadedClaim != null) {
+                    storedClaims.put(loadedClaim.claimId, loadedClaim);
+                }
+            }
+        } finally {
+            loadExecutor.shutdown();
+        }
     }
 
-    // see datastore.cs. this will ALWAYS be a top level claim
-    @Override
-    public void writeClaimToStorage(GPClaim claim) {
+    @Nullable
+    private LoadedClaimFile parseStoredClaim(WorldProperties worldProperties, Path claimDataPath, DatabaseStorage.StoredClaim row) {
         try {
-            this.refreshDataConnection();
-
-            // wipe out any existing data about this claim
-            this.deleteClaimFromSecondaryStorage(claim);
-
-            // write claim data to the database
-            this.writeClaimData(claim);
-        } catch (SQLException e) {
-            //GriefPrevention.AddLogEntry("Unable to save data for claim at " + this.locationToString(claim.lesserBoundaryCorner) + ".  Details:");
-            GriefPreventionPlugin.addLogEntry(e.getMessage());
+            final UUID claimId = UUID.fromString(row.claimId);
+            final String folder = row.type.toLowerCase();
+            // claims keep a path below the world folder so type changes and lookups by id behave as before
+            final File claimFile = claimDataPath.resolve(folder).resolve(row.claimId).toFile();
+            final CommentedConfigurationNode root = DatabaseStorage.parseNode(row.data);
+            final ClaimStorageData claimStorage = folder.equals("town")
+                    ? new TownStorageData(claimFile.toPath(), worldProperties.getUniqueId(), root)
+                    : new ClaimStorageData(claimFile.toPath(), worldProperties.getUniqueId(), root);
+            return new LoadedClaimFile(claimFile, claimId, claimStorage);
+        } catch (Exception e) {
+            GriefPreventionPlugin.instance.getLogger().error("Could not read claim " + row.claimId + " from database.", e);
+            return null;
         }
     }
 
-    // actually writes claim data to the database
-    private void writeClaimData(GPClaim claim) throws SQLException {
-        /*String lesserCornerString = this.locationToString(claim.getLesserBoundaryCorner());
-        String greaterCornerString = this.locationToString(claim.getGreaterBoundaryCorner());
-        String owner = "";
-        if (claim.ownerID != null)
-            owner = claim.ownerID.toString();
-
-        ArrayList<String> builders = new ArrayList<String>();
-        ArrayList<String> containers = new ArrayList<String>();
-        ArrayList<String> accessors = new ArrayList<String>();
-        ArrayList<String> managers = new ArrayList<String>();
-
-        claim.getPermissions(builders, containers, accessors, managers);
-
-        String buildersString = "";
-        for (int i = 0; i < builders.size(); i++) {
-            buildersString += builders.get(i) + ";";
+    private void loadStoredPlayerData(WorldProperties worldProperties) throws SQLException {
+        final boolean resetMigration = GriefPreventionPlugin.getGlobalConfig().getConfig().playerdata.resetMigrations;
+        final boolean resetClaimData = GriefPreventionPlugin.getGlobalConfig().getConfig().playerdata.resetAccruedClaimBlocks;
+        final int migration2dRate = GriefPreventionPlugin.getGlobalConfig().getConfig().playerdata.migrateAreaRate;
+        final int migration3dRate = GriefPreventionPlugin.getGlobalConfig().getConfig().playerdata.migrateVolumeRate;
+        // player data is otherwise loaded on demand
+        if (!resetMigration && !resetClaimData && !(migration2dRate > -1 && GriefPreventionPlugin.CLAIM_BLOCK_SYSTEM == ClaimBlockSystem.AREA)
+                && !(migration3dRate > -1 && GriefPreventionPlugin.CLAIM_BLOCK_SYSTEM == ClaimBlockSystem.VOLUME)) {
+            return;
         }
 
-        String containersString = "";
-        for (int i = 0; i < containers.size(); i++) {
-            containersString += containers.get(i) + ";";
+        final String scope = DataStore.USE_GLOBAL_PLAYER_STORAGE ? GLOBAL_SCOPE
+                : this.getWorldKey(DataStore.worldConfigMap.get(worldProperties.getUniqueId()).getPath().getParent());
+        for (String playerId : this.storage.loadPlayerIds(scope)) {
+            try {
+                this.getOrCreatePlayerData(worldProperties, UUID.fromString(playerId));
+            } catch (IllegalArgumentException e) {
+                // skip rows that were not written by GriefPrevention
+            }
         }
+    }
 
-        String accessorsString = "";
-        for (int i = 0; i < accessors.size(); i++) {
-            accessorsString += accessors.get(i) + ";";
+    // Reads player data during authentication, which runs off the main thread, so login does not wait on the database
+    @Listener(order = Order.LAST)
+    public void onPlayerAuth(ClientConnectionEvent.Auth event) {
+        final String playerId = event.getProfile().getUniqueId().toString();
+        try {
+            boolean prefetched = false;
+            for (int i = 0; i < AUTH_READ_ATTEMPTS && !prefetched; i++) {
+                prefetched = this.prefetchPlayerData(playerId);
+            }
+            if (!prefetched) {
+                // batches keep committing during the read, hold them off for one more
+                synchronized (this.drainLock) {
+                    this.prefetchPlayerData(playerId);
+                }
+            }
+        } catch (SQLException | IOException e) {
+            GriefPreventionPlugin.instance.getLogger().error("Unable to read player data " + playerId + " from database.", e);
+            event.setMessage(Text.of("Unable to load your claim data. Please try again later."));
+            event.setCancelled(true);
         }
+    }
 
-        String managersString = "";
-        for (int i = 0; i < managers.size(); i++) {
-            managersString += managers.get(i) + ";";
+    // Returns false if a batch committed during the read, which may or may not have seen it
+    private boolean prefetchPlayerData(String playerId) throws SQLException, IOException {
+        final long batches = this.committedBatches;
+        final Map<String, DatabaseStorage.StoredPlayer> stored = this.storage.readPlayerData(playerId);
+        final Map<String, CommentedConfigurationNode> playerData = new ConcurrentHashMap<>();
+        for (DatabaseStorage.StoredPlayer row : stored.values()) {
+            playerData.put(row.scope, DatabaseStorage.parseNode(row.data));
         }
-
-        long parentId;
-        if (claim.parent == null) {
-            parentId = -1;
-        } else {
-            parentId = claim.parent.id;
+        synchronized (this.pendingPlayers) {
+            if (batches != this.committedBatches) {
+                return false;
+            }
+            for (DatabaseStorage.StoredPlayer row : stored.values()) {
+                if (!this.pendingPlayers.containsKey(row.getKey()) && !this.writingPlayers.containsKey(row.getKey())) {
+                    this.versions.put(row.getKey(), row.version);
+                }
+            }
+            // writes that have not reached the database yet are the latest data
+            for (DatabaseStorage.PlayerWrite write : this.writingPlayers.values()) {
+                if (write.playerId.equals(playerId)) {
+                    playerData.put(write.scope, write.node);
+                }
+            }
+            for (DatabaseStorage.PlayerWrite write : this.pendingPlayers.values()) {
+                if (write.playerId.equals(playerId)) {
+                    playerData.put(write.scope, write.node);
+                }
+            }
+            this.prefetchedPlayers.put(playerId, playerData);
         }
+        return true;
+    }
 
-        try {
-            this.refreshDataConnection();
-
-            Statement statement = databaseConnection.createStatement();
-            statement.execute(
-                    "INSERT INTO griefprevention_claimdata (id, owner, lessercorner, greatercorner, builders, containers, accessors, managers,
-                    parentid) VALUES("
-                            +
-                            claim.id + ", '" +
-                            owner + "', '" +
-                            lesserCornerString + "', '" +
-                            greaterCornerString + "', '" +
-                            buildersString + "', '" +
-                            containersString + "', '" +
-                            accessorsString + "', '" +
-                            managersString + "', " +
-                            parentId +
-                            ");");
-        } catch (SQLException e) {
-            GriefPrevention.AddLogEntry("Unable to save data for claim at " + this.locationToString(claim.lesserBoundaryCorner) + ".  Details:");
-            GriefPrevention.AddLogEntry(e.getMessage());
-        }*/
+    @Listener(order = Order.POST)
+    @IsCancelled(Tristate.TRUE)
+    public void onPlayerLoginCancelled(ClientConnectionEvent.Login event) {
+        this.prefetchedPlayers.remove(event.getProfile().getUniqueId().toString());
+    }
+
+    @Listener(order = Order.POST)
+    public void onPlayerDisconnect(ClientConnectionEvent.Disconnect event) {
+        this.prefetchedPlayers.remove(event.getTargetEntity().getUniqueId().toString());
     }
 
-    // deletes a claim from the database
     @Override
     public void deleteClaimFromSecondaryStorage(GPClaim claim) {
-        try {
-            this.refreshDataConnection();
-
-            Statement statement = this.databaseConnection.createStatement();
-            statement.execute("DELETE FROM griefprevention_claimdata WHERE id='" + claim.id + "';");
-        } catch (SQLException e) {
-            GriefPreventionPlugin.addLogEntry("Unable to delete data for claim " + claim.id + ".  Details:");
-            GriefPreventionPlugin.addLogEntry(e.getMessage());
-            e.printStackTrace();
+        final ClaimStorageData claimStorage = claim.getClaimStorage();
+        claimStorage.close();
+        if (this.refusedKeys.contains(this.getWorldKey(claimStorage.filePath))) {
+            return;
+        }
+        synchronized (this.pendingClaims) {
+            this.pendingClaims.put(claimStorage.getClaimId(), new DatabaseStorage.ClaimWrite(claimStorage.getClaimId(), null, null));
         }
+        this.scheduleDrain();
     }
 
-    /*@Override
-    PlayerData getPlayerDataFromStorage(UUID playerID) {
-        PlayerData playerData = new PlayerData();
-        playerData.playerID = playerID;
-
-        try {
-            this.refreshDataConnection();
-
-            Statement statement = this.databaseConnection.createStatement();
-            ResultSet results = statement.executeQuery("SELECT * FROM griefprevention_playerdata WHERE name='" + playerID.toString() + "';");
+    @Override
+    public void writeClaimData(ClaimStorageData claimStorage, CommentedConfigurationNode node) {
+        final String worldKey = this.getWorldKey(claimStorage.filePath);
+        if (this.refusedKeys.contains(worldKey)) {
+            return;
+        }
+        synchronized (this.pendingClaims) {
+            this.pendingClaims.put(claimStorage.getClaimId(), new DatabaseStorage.ClaimWrite(claimStorage.getClaimId(), worldKey, node));
+        }
+        this.scheduleDrain();
+    }
 
-            // if data for this player exists, use it
-            if (results.next()) {
-                playerData.setLastLogin(results.getTimestamp("lastlogin"));
-                playerData.setAccruedClaimBlocks(results.getInt("accruedblocks"));
-                playerData.setBonusClaimBlocks(results.getInt("bonusblocks"));
+    @Nullable
+    @Override
+    public CommentedConfigurationNode readPlayerData(Path path) throws IOException {
+        final String scope = this.getPlayerScope(path);
+        final String playerId = path.getFileName().toString();
+        final String key = DatabaseStorage.getPlayerKey(scope, playerId);
+        synchronized (this.pendingPlayers) {
+            // a write that has not reached the database yet is the latest data
+            DatabaseStorage.PlayerWrite pending = this.pendingPlayers.get(key);
+            if (pending == null) {
+                pending = this.writingPlayers.get(key);
             }
+            if (pending != null) {
+                return pending.node.copy();
+            }
+        }
+        final Map<String, CommentedConfigurationNode> prefetched = this.prefetchedPlayers.get(playerId);
+        if (prefetched != null) {
+            final CommentedConfigurationNode node = prefetched.get(scope);
+            return node == null ? null : node.copy();
+        }
+        // players that are not online, such as those named in commands
+        final DatabaseStorage.StoredPlayer row;
+        try {
+            row = this.storage.readPlayerData(scope, playerId);
         } catch (SQLException e) {
-            StringWriter errors = new StringWriter();
-            e.printStackTrace(new PrintWriter(errors));
-            GriefPrevention.AddLogEntry(playerID + " " + errors.toString(), CustomLogEntryTypes.Exception);
+            throw new IOException("Unable to read player data " + playerId + " from database.", e);
         }
+        if (row == null) {
+            return null;
+        }
+        synchronized (this.pendingPlayers) {
+            if (!this.pendingPlayers.containsKey(key) && !this.writingPlayers.containsKey(key)) {
+                this.versions.put(key, row.version);
+            }
+        }
+        return DatabaseStorage.parseNode(row.data);
+    }
 
-        return playerData;
-    }*/
-
-    // saves changes to player data. MUST be called after you're done making
-    // changes, otherwise a reload will lose them
     @Override
-    public void overrideSavePlayerData(UUID playerID, GPPlayerData playerData) {
-        // never save data for the "administrative" account. an empty string for
-        // player name indicates administrative account
-        if (playerID == null) {
+    public void writePlayerData(Path path, CommentedConfigurationNode node) {
+        final String scope = this.getPlayerScope(path);
+        final String playerId = path.getFileName().toString();
+        if (this.refusedKeys.contains(scope)) {
             return;
         }
-
-        //this.savePlayerData(playerID.toString(), playerData);
+        synchronized (this.pendingPlayers) {
+            this.pendingPlayers.put(DatabaseStorage.getPlayerKey(scope, playerId), new DatabaseStorage.PlayerWrite(scope, playerId, node));
+            final Map<String, CommentedConfigurationNode> prefetched = this.prefetchedPlayers.get(playerId);
+            if (prefetched != null) {
+                prefetched.put(scope, node);
+            }
+        }
+        this.scheduleDrain();
     }
 
-   /* private void savePlayerData(String playerID, PlayerData playerData) {
-        try {
-            this.refreshDataConnection();
-
-            SimpleDateFormat sqlFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            String dateString = sqlFormat.format(playerData.getLastLogin());
+    // Writes everything pending on the calling thread, used on shutdown
+    public void flush() {
+        this.drain();
+    }
 
-            Statement statement = databaseConnection.createStatement();
-            statement.execute("DELETE FROM griefprevention_playerdata WHERE name='" + playerID.toString() + "';");
-            statement = databaseConnection.createStatement();
-            statement.execute("INSERT INTO griefprevention_playerdata (name, lastlogin, accruedblocks, bonusblocks) VALUES ('" + playerID.toString()
-                    + "', '" + dateString + "', " + playerData.getAccruedClaimBlocks() + ", " + playerData.getBonusClaimBlocks() + ");");
-        } catch (SQLException e) {
-            StringWriter errors = new StringWriter();
-            e.printStackTrace(new PrintWriter(errors));
-            GriefPrevention.AddLogEntry(playerID + " " + errors.toString(), CustomLogEntryTypes.Exception);
+    private void scheduleDrain() {
+        if (this.drainScheduled.compareAndSet(false, true)) {
+            try {
+                GriefPreventionPlugin.instance.executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // the executor is shut down once the server stops, the final flush writes this
+                this.drainScheduled.set(false);
+            }
         }
-    }*/
+    }
+
+    private void drain() {
+        this.drainScheduled.set(false);
+        final Set<String> conflicts;
+        final Set<String> claimConflicts = new LinkedHashSet<>();
+        final Set<String> playerConflicts = new LinkedHashSet<>();
+        synchronized (this.drainLock) {
+            final List<DatabaseStorage.ClaimWrite> claimWrites;
+            final List<DatabaseStorage.PlayerWrite> playerWrites;
+            synchronized (this.pendingClaims) {
+                claimWrites = new ArrayList<>(this.pendingClaims.values());
+                this.writingClaims.addAll(this.pendingClaims.keySet());
+                this.pendingClaims.clear();
+            }
+            synchronized (this.pendingPlayers) {
+                playerWrites = new ArrayList<>(this.pendingPlayers.values());
+                this.writingPlayers.putAll(this.pendingPlayers);
+                this.pendingPlayers.clear();
+            }
+            if (claimWrites.isEmpty() && playerWrites.isEmpty()) {
+                return;
+            }
 
-    void close() {
-        if (this.databaseConnection != null) {
             try {
-                if (!this.databaseConnection.isClosed()) {
-                    this.databaseConnection.close();
+                conflicts = this.storage.writeBatch(claimWrites, playerWrites, this.versions, this.serverId);
+            } catch (SQLException | IOException e) {
+                GriefPreventionPlugin.instance.getLogger().error("Failed to write " + claimWrites.size() + " claim(s) and " + playerWrites.size()
+                        + " player(s) to database. Retrying in " + RETRY_DELAY_SECONDS + " seconds.", e);
+                this.requeue(claimWrites, playerWrites);
+                return;
+            }
+            synchronized (this.pendingClaims) {
+                this.writingClaims.clear();
+            }
+            synchronized (this.pendingPlayers) {
+                this.writingPlayers.clear();
+                this.committedBatches++;
+            }
+            for (DatabaseStorage.ClaimWrite write : claimWrites) {
+                if (conflicts.contains(write.getKey())) {
+                    claimConflicts.add(write.getKey());
+                }
+            }
+            for (DatabaseStorage.PlayerWrite write : playerWrites) {
+                if (conflicts.contains(write.getKey())) {
+                    playerConflicts.add(write.getKey());
                 }
-            } catch (SQLException e) {
             }
         }
 
-        this.databaseConnection = null;
+        if (!conflicts.isEmpty()) {
+            GriefPreventionPlugin.instance.getLogger().warn("Another server changed " + claimConflicts.size() + " claim(s) and " + playerConflicts.size()
+                    + " player(s) first, loading their data from database in place of local changes: " + conflicts);
+            this.reloadRows(claimConflicts, playerConflicts, true);
+        }
     }
 
-    private void refreshDataConnection() throws SQLException {
-        if (this.databaseConnection == null || !this.databaseConnection.isValid(3)) {
-            // set username/pass properties
-            Properties connectionProps = new Properties();
-            connectionProps.put("user", this.userName);
-            connectionProps.put("password", this.password);
-            connectionProps.put("autoReconnect", "true");
-            connectionProps.put("maxReconnects", String.valueOf(Integer.MAX_VALUE));
-
-            // establish connection
-            this.databaseConnection = DriverManager.getConnection(this.databaseUrl, connectionProps);
+    // Puts failed writes back unless a newer write for the same data was queued meanwhile
+    private void requeue(List<DatabaseStorage.ClaimWrite> claimWrites, List<DatabaseStorage.PlayerWrite> playerWrites) {
+        synchronized (this.pendingClaims) {
+            this.writingClaims.clear();
+            for (DatabaseStorage.ClaimWrite write : claimWrites) {
+                this.pendingClaims.putIfAbsent(write.getKey(), write);
+            }
         }
+        synchronized (this.pendingPlayers) {
+            this.writingPlayers.clear();
+            for (DatabaseStorage.PlayerWrite write : playerWrites) {
+                this.pendingPlayers.putIfAbsent(write.getKey(), write);
+            }
+        }
+        Sponge.getScheduler().createTaskBuilder().async().delay(RETRY_DELAY_SECONDS, TimeUnit.SECONDS).execute(this::scheduleDrain)
+                .submit(GriefPreventionPlugin.instance);
     }
 
-    @Override
-    protected int getSchemaVersionFromStorage() {
+    // Reads the change log and reloads the rows other servers wrote
+    private void poll() {
+        if (!this.polling.compareAndSet(false, true)) {
+            return;
+        }
         try {
-            this.refreshDataConnection();
-
-            Statement statement = this.databaseConnection.createStatement();
-            ResultSet results = statement.executeQuery("SELECT * FROM griefprevention_schemaversion;");
-
-            // if there's nothing yet, assume 0 and add it
-            if (!results.next()) {
-                this.setSchemaVersion(0);
-                return 0;
+            final Set<String> claimIds = new LinkedHashSet<>();
+            final Set<String> playerKeys = new LinkedHashSet<>();
+            for (DatabaseStorage.Change change : this.storage.readChanges(Math.max(0, this.lastChangeId - CHANGE_OVERLAP))) {
+                if (!this.seenChanges.add(change.changeId)) {
+                    continue;
+                }
+                this.lastChangeId = Math.max(this.lastChangeId, change.changeId);
+                // skip changes written by this server, or already read when a world or player loaded
+                if (change.serverId.equals(this.serverId) || this.versions.getOrDefault(change.rowKey, 0L) >= change.version) {
+                    continue;
+                }
+                if (change.kind.equals(DatabaseStorage.CLAIM_CHANGE)) {
+                    claimIds.add(change.rowKey);
+                } else if (change.kind.equals(DatabaseStorage.PLAYER_CHANGE)) {
+                    playerKeys.add(change.rowKey);
+                }
             }
-
-            // otherwise return the value that's in the table
-            else {
-                return results.getInt("version");
+            final long overlapStart = this.lastChangeId - CHANGE_OVERLAP;
+            this.seenChanges.removeIf(changeId -> changeId <= overlapStart);
+            this.reloadRows(claimIds, playerKeys, false);
+
+            final long now = System.currentTimeMillis();
+            if (now - this.lastPrune > CHANGE_PRUNE_INTERVAL_MS) {
+                this.lastPrune = now;
+                this.storage.pruneChanges(now - CHANGE_RETENTION_MS);
             }
-
         } catch (SQLException e) {
-            GriefPreventionPlugin.addLogEntry("Unable to retrieve schema version from database.  Details:");
-            GriefPreventionPlugin.addLogEntry(e.getMessage());
-            e.printStackTrace();
-            return 0;
+            GriefPreventionPlugin.instance.getLogger().warn("Unable to read changes from database.", e);
+        } finally {
+            this.polling.set(false);
         }
     }
 
-    @Override
-    protected void updateSchemaVersionInStorage(int versionToSet) {
+    // Reads rows off the main thread and applies them on it. Conflicting rows replace pending local changes.
+    private void reloadRows(Set<String> claimIds, Set<String> playerKeys, boolean conflict) {
+        if (claimIds.isEmpty() && playerKeys.isEmpty()) {
+            return;
+        }
+        // a null row is a deleted claim
+        final Map<String, DatabaseStorage.StoredClaim> claims = new LinkedHashMap<>();
+        final List<DatabaseStorage.StoredPlayer> players = new ArrayList<>();
         try {
-            this.refreshDataConnection();
-
-            Statement statement = databaseConnection.createStatement();
-            statement.execute("DELETE FROM griefprevention_schemaversion;");
-            statement.execute("INSERT INTO griefprevention_schemaversion VALUES (" + versionToSet + ");");
+            for (String claimId : claimIds) {
+                claims.put(claimId, this.storage.loadClaim(claimId));
+            }
+            for (String playerKey : playerKeys) {
+                final int index = playerKey.lastIndexOf('/');
+                final DatabaseStorage.StoredPlayer row = this.storage.readPlayerData(playerKey.substring(0, index), playerKey.substring(index + 1));
+                if (row != null) {
+                    players.add(row);
+                }
+            }
         } catch (SQLException e) {
-            GriefPreventionPlugin.addLogEntry("Unable to set next schema version to " + versionToSet + ".  Details:");
-            GriefPreventionPlugin.addLogEntry(e.getMessage());
+            GriefPreventionPlugin.instance.getLogger().error("Unable to reload " + claimIds.size() + " claim(s) and " + playerKeys.size()
+                    + " player(s) changed by another server.", e);
+            return;
         }
-    }
 
-    @Override
-    int getMigrationVersionFromStorage() {
-        return -1;
+        Sponge.getScheduler().createTaskBuilder().execute(() -> {
+            // parents are loaded before their children, which may come later in the change log
+            final List<Map.Entry<String, DatabaseStorage.StoredClaim>> remaining = new ArrayList<>(claims.entrySet());
+            int size;
+            do {
+                size = remaining.size();
+                remaining.removeIf(entry -> this.applyStoredClaim(entry.getKey(), entry.getValue(), conflict));
+            } while (!remaining.isEmpty() && remaining.size() < size);
+            for (Map.Entry<String, DatabaseStorage.StoredClaim> entry : remaining) {
+                GriefPreventionPlugin.instance.getLogger().error("Could not load claim " + entry.getKey() + " changed by another server, its parent is missing.");
+            }
+            for (DatabaseStorage.StoredPlayer row : players) {
+                this.applyStoredPlayer(row, conflict);
+            }
+        }).submit(GriefPreventionPlugin.instance);
     }
 
-    @Override
-    void updateMigrationVersionInStorage(int versionToSet) {
-    }
+    // Returns false if the claim has to wait for its parent
+    private boolean applyStoredClaim(String claimId, @Nullable DatabaseStorage.StoredClaim row, boolean conflict) {
+        synchronized (this.pendingClaims) {
+            // a local write is on its way, it either conflicts and gets here again or already lost
+            if (this.writingClaims.contains(claimId) || (!conflict && this.pendingClaims.containsKey(claimId))) {
+                return true;
+            }
+            this.pendingClaims.remove(claimId);
+        }
 
-    @Override
-    GPPlayerData getPlayerDataFromStorage(UUID playerID) {
-        return null;
-    }
+        final UUID uniqueId = UUID.fromString(claimId);
+        GPClaimManager claimManager = null;
+        GPClaim existing = null;
+        for (GPClaimManager worldManager : this.claimWorldManagers.values()) {
+            existing = (GPClaim) worldManager.getClaimByUUID(uniqueId).orElse(null);
+            if (existing != null) {
+                claimManager = worldManager;
+                break;
+            }
+        }
+        final WorldProperties worldProperties = row == null ? null : this.loadedWorlds.get(row.worldKey);
+        if (worldProperties == null) {
+            if (existing != null && !existing.isWilderness()) {
+                claimManager.unloadClaim(existing);
+            }
+            this.versions.remove(claimId);
+            return true;
+        }
 
-    @Override
-    public GPPlayerData getOrCreatePlayerData(WorldProperties worldProperties, UUID playerUniqueId) {
-        return null;
+        final Path claimDataPath = DataStore.worldConfigMap.get(worldProperties.getUniqueId()).getPath().getParent().resolve("ClaimData");
+        final LoadedClaimFile loadedClaim = this.parseStoredClaim(worldProperties, claimDataPath, row);
+        if (loadedClaim == null) {
+            return true;
+        }
+        final UUID parent = loadedClaim.claimStorage.getConfig().getParent().orElse(null);
+        if (parent != null && !this.getClaimWorldManager(worldProperties).getClaimByUUID(parent).isPresent()) {
+            return false;
+        }
+        if (existing != null) {
+            claimManager.unloadClaim(existing);
+        }
+        this.versions.put(claimId, row.version);
+        try {
+            final GPClaim claim = this.loadClaim(loadedClaim.file, loadedClaim.claimStorage, worldProperties, loadedClaim.claimId);
+            if (existing != null) {
+                for (Claim child : existing.children) {
+                    ((GPClaim) child).parent = claim;
+                    claim.children.add(child);
+                }
+            }
+        } catch (Exception e) {
+            GriefPreventionPlugin.instance.getLogger().error("Could not load claim " + claimId + " changed by another server.", e);
+        }
+        return true;
     }
 
-    @Override
-    public void registerWorld(WorldProperties worldProperties) {
-    }
+    private void applyStoredPlayer(DatabaseStorage.StoredPlayer row, boolean conflict) {
+        final CommentedConfigurationNode node;
+        try {
+            node = DatabaseStorage.parseNode(row.data);
+        } catch (IOException e) {
+            GriefPreventionPlugin.instance.getLogger().error("Could not read player data " + row.getKey() + " changed by another server.", e);
+            return;
+        }
+        synchronized (this.pendingPlayers) {
+            if (this.writingPlayers.containsKey(row.getKey()) || (!conflict && this.pendingPlayers.containsKey(row.getKey()))) {
+                return;
+            }
+            this.pendingPlayers.remove(row.getKey());
+            this.versions.put(row.getKey(), row.version);
+            final Map<String, CommentedConfigurationNode> prefetched = this.prefetchedPlayers.get(row.playerId);
+            if (prefetched != null) {
+                prefetched.put(row.scope, node);
+            }
+        }
 
-    @Override
-    public void loadWorldData(World world) {
+        final UUID playerUniqueId = UUID.fromString(row.playerId);
+        final Set<GPPlayerData> reloaded = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<String, WorldProperties> entry : this.loadedWorlds.entrySet()) {
+            if (!row.scope.equals(GLOBAL_SCOPE) && !row.scope.equals(entry.getKey())) {
+                continue;
+            }
+            final GPPlayerData playerData = this.getClaimWorldManager(entry.getValue()).getPlayerDataMap().get(playerUniqueId);
+            if (playerData != null && reloaded.add(playerData)) {
+                playerData.getStorageData().load(node.copy());
+            }
+        }
     }
 
-    @Override
-    public void unloadWorldData(WorldProperties worldProperties) {
+    // Worlds are keyed by their config folder so data stays with a world of the same name if the server moves
+    private String getWorldKey(Path path) {
+        final Path relative = this.rootConfigPath.relativize(path);
+        return relative.getName(0) + "/" + relative.getName(1) + "/" + relative.getName(2);
     }
 
-    @Override
-    void loadClaimTemplates() {
+    private String getPlayerScope(Path path) {
+        if (path.getParent().equals(DataStore.globalPlayerDataPath)) {
+            return GLOBAL_SCOPE;
+        }
+        return this.getWorldKey(path);
     }
-
 }
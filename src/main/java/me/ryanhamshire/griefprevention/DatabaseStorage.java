@@ -0,0 +1,766 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageData;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.ConfigurationOptions;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+
+// SQL access for DatabaseDataStore. Holds no server state so it can be used against any data source.
+final class DatabaseStorage {
+
+    static final String META_DB_SCHEMA = "db-schema-version";
+    private static final String[] TRUST_KEYS = {
+            ClaimStorageData.MAIN_ACCESSORS, ClaimStorageData.MAIN_BUILDERS, ClaimStorageData.MAIN_CONTAINERS, ClaimStorageData.MAIN_MANAGERS,
+            ClaimStorageData.MAIN_ACCESSOR_GROUPS, ClaimStorageData.MAIN_BUILDER_GROUPS, ClaimStorageData.MAIN_CONTAINER_GROUPS,
+            ClaimStorageData.MAIN_MANAGER_GROUPS};
+
+    static final String CLAIM_CHANGE = "claim";
+    static final String PLAYER_CHANGE = "player";
+
+    private final DataSource dataSource;
+    private final Dialect dialect;
+    private final String metadataUpsertSql;
+
+    DatabaseStorage(DataSource dataSource, Dialect dialect) {
+        this.dataSource = dataSource;
+        this.dialect = dialect;
+        this.metadataUpsertSql = dialect.upsert("gp_metadata", new String[] {"meta_key"}, new String[] {"meta_key", "meta_value"});
+    }
+
+    // Brings the schema up to date, returns the number of migrations applied
+    int migrate() throws SQLException {
+        try (Connection connection = this.dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS gp_metadata (meta_key VARCHAR(64) NOT NULL PRIMARY KEY, meta_value VARCHAR(255) NOT NULL)");
+            }
+
+            final List<MigrationStep[]> migrations = this.dialect.getMigrations();
+            final Integer storedVersion = readMetadata(connection, META_DB_SCHEMA);
+            final int version = storedVersion == null ? 0 : storedVersion;
+            if (version > migrations.size()) {
+                throw new SQLException("Database schema version " + version + " is newer than this version of GriefPrevention supports ("
+                        + migrations.size() + ").");
+            }
+
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (int i = version; i < migrations.size(); i++) {
+                    try (Statement statement = connection.createStatement()) {
+                        for (MigrationStep step : migrations.get(i)) {
+                            // MySQL commits each schema change on its own, so a failed migration may be partly applied
+                            if (!step.isApplied(connection)) {
+                                statement.execute(step.sql);
+                            }
+                        }
+                    }
+                    this.writeMetadata(connection, META_DB_SCHEMA, i + 1);
+                    connection.commit();
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return migrations.size() - version;
+        }
+    }
+
+    @Nullable
+    Integer readMetadata(String key) throws SQLException {
+        try (Connection connection = this.dataSource.getConnection()) {
+            return readMetadata(connection, key);
+        }
+    }
+
+    void writeMetadata(String key, int value) throws SQLException {
+        try (Connection connection = this.dataSource.getConnection()) {
+            this.writeMetadata(connection, key, value);
+        }
+    }
+
+    @Nullable
+    private static Integer readMetadata(Connection connection, String key) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT meta_value FROM gp_metadata WHERE meta_key = ?")) {
+            statement.setString(1, key);
+            try (ResultSet results = statement.executeQuery()) {
+                if (results.next()) {
+                    return Integer.parseInt(results.getString(1));
+                }
+            }
+        }
+        return null;
+    }
+
+    private void writeMetadata(Connection connection, String key, int value) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(this.metadataUpsertSql)) {
+            statement.setString(1, key);
+            statement.setString(2, String.valueOf(value));
+            statement.executeUpdate();
+        }
+    }
+
+    boolean hasClaims(String worldKey) throws SQLException {
+        return this.hasRows("SELECT claim_id FROM gp_claims WHERE world_key = ?", worldKey);
+    }
+
+    boolean hasPlayerData(String scope) throws SQLException {
+        return this.hasRows("SELECT player_id FROM gp_player_data WHERE scope = ?", scope);
+    }
+
+    private boolean hasRows(String sql, String key) throws SQLException {
+        try (Connection connection = this.dataSource.getConnection()) {
+            return this.hasRow(connection, sql, key);
+        }
+    }
+
+    List<StoredClaim> loadClaims(String worldKey) throws SQLException {
+        final List<StoredClaim> claims = new ArrayList<>();
+        try (Connection connection = this.dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT claim_id, world_key, claim_type, data, version FROM gp_claims WHERE world_key = ?")) {
+            statement.setString(1, worldKey);
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    claims.add(readClaim(results));
+                }
+            }
+        }
+        return claims;
+    }
+
+    // Returns null if the claim was deleted
+    @Nullable
+    StoredClaim loadClaim(String claimId) throws SQLException {
+        try (Connection connection = this.dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT claim_id, world_key, claim_type, data, version FROM gp_claims WHERE claim_id = ?")) {
+            statement.setString(1, claimId);
+            try (ResultSet results = statement.executeQuery()) {
+                return results.next() ? readClaim(results) : null;
+            }
+        }
+    }
+
+    private static StoredClaim readClaim(ResultSet results) throws SQLException {
+        return new StoredClaim(results.getString(1), results.getString(2), results.getString(3), results.getString(4), results.getLong(5));
+    }
+
+    // Returns the trustees stored for a claim as "trust-type:trustee" entries
+    Set<String> loadClaimTrusts(String claimId) throws SQLException {
+        final Set<String> trusts = new HashSet<>();
+        try (Connection connection = this.dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("SELECT trust_type, trustee FROM gp_claim_trust WHERE claim_id = ?")) {
+            statement.setString(1, claimId);
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    trusts.add(results.getString(1) + ":" + results.getString(2));
+                }
+            }
+        }
+        return trusts;
+    }
+
+    List<String> loadPlayerIds(String scope) throws SQLException {
+        final List<String> players = new ArrayList<>();
+        try (Connection connection = this.dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("SELECT player_id FROM gp_player_data WHERE scope = ?")) {
+            statement.setString(1, scope);
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    players.add(results.getString(1));
+                }
+            }
+        }
+        return players;
+    }
+
+    @Nullable
+    StoredPlayer readPlayerData(String scope, String playerId) throws SQLException {
+        try (Connection connection = this.dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("SELECT data, version FROM gp_player_data WHERE scope = ? AND player_id = ?")) {
+            statement.setString(1, scope);
+            statement.setString(2, playerId);
+            try (ResultSet results = statement.executeQuery()) {
+                if (results.next()) {
+                    return new StoredPlayer(scope, playerId, results.getString(1), results.getLong(2));
+                }
+            }
+        }
+        return null;
+    }
+
+    // Returns the player's data in every scope, keyed by scope
+    Map<String, StoredPlayer> readPlayerData(String playerId) throws SQLException {
+        final Map<String, StoredPlayer> data = new HashMap<>();
+        try (Connection connection = this.dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("SELECT scope, data, version FROM gp_player_data WHERE player_id = ?")) {
+            statement.setString(1, playerId);
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    final String scope = results.getString(1);
+                    data.put(scope, new StoredPlayer(scope, playerId, results.getString(2), results.getLong(3)));
+                }
+            }
+        }
+        return data;
+    }
+
+    long readLatestChange() throws SQLException {
+        try (Connection connection = this.dataSource.getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet results = statement.executeQuery("SELECT MAX(change_id) FROM gp_changes")) {
+            return results.next() ? results.getLong(1) : 0;
+        }
+    }
+
+    // Returns the changes written after the given change, oldest first
+    List<Change> readChanges(long afterChangeId) throws SQLException {
+        final List<Change> changes = new ArrayList<>();
+        try (Connection connection = this.dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT change_id, server_id, kind, row_key, version FROM gp_changes WHERE change_id > ? ORDER BY change_id")) {
+            statement.setLong(1, afterChangeId);
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    changes.add(new Change(results.getLong(1), results.getString(2), results.getString(3), results.getString(4), results.getLong(5)));
+                }
+            }
+        }
+        return changes;
+    }
+
+    int pruneChanges(long before) throws SQLException {
+        try (Connection connection = this.dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("DELETE FROM gp_changes WHERE changed < ?")) {
+            statement.setLong(1, before);
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Writes all claim and player changes in one transaction.
+     *
+     * <p>A row is only written if its version still matches the version in
+     * {@code versions}, which holds the version this server last read or wrote of
+     * each row keyed by {@link ClaimWrite#getKey()} and {@link PlayerWrite#getKey()}.
+     * Rows without an entry must not exist yet. Versions of written rows are
+     * updated once the transaction commits.</p>
+     *
+     * @param claimWrites The claims to write or delete
+     * @param playerWrites The player data to write
+     * @param versions The row versions known to the caller
+     * @param serverId The id other servers use to recognize changes made by this one
+     * @return The keys of the rows another server changed first, none of them were written
+     */
+    Set<String> writeBatch(Collection<ClaimWrite> claimWrites, Collection<PlayerWrite> playerWrites, Map<String, Long> versions, String serverId)
+            throws SQLException, IOException {
+        final Set<String> conflicts = new HashSet<>();
+        final Map<String, Long> written = new HashMap<>();
+        try (Connection connection = this.dataSource.getConnection()) {
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement claimUpdate = connection.prepareStatement("UPDATE gp_claims SET world_key = ?, claim_type = ?, owner_id = ?, "
+                        + "parent_id = ?, data = ?, updated = ?, version = ? WHERE claim_id = ? AND version = ?");
+                    PreparedStatement claimInsert = connection.prepareStatement("INSERT INTO gp_claims (world_key, claim_type, owner_id, parent_id, "
+                            + "data, updated, version, claim_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+                    PreparedStatement claimDelete = connection.prepareStatement("DELETE FROM gp_claims WHERE claim_id = ? AND version = ?");
+                    PreparedStatement trustDelete = connection.prepareStatement("DELETE FROM gp_claim_trust WHERE claim_id = ?");
+                    PreparedStatement trustInsert = connection.prepareStatement("INSERT INTO gp_claim_trust (claim_id, trust_type, trustee) VALUES (?, ?, ?)");
+                    PreparedStatement playerUpdate = connection.prepareStatement("UPDATE gp_player_data SET accrued_blocks = ?, bonus_blocks = ?, "
+                            + "data = ?, updated = ?, version = ? WHERE scope = ? AND player_id = ? AND version = ?");
+                    PreparedStatement playerInsert = connection.prepareStatement("INSERT INTO gp_player_data (accrued_blocks, bonus_blocks, data, updated, "
+                            + "version, scope, player_id) VALUES (?, ?, ?, ?, ?, ?, ?)");
+                    PreparedStatement changeInsert = connection.prepareStatement("INSERT INTO gp_changes (server_id, kind, row_key, version, changed) "
+                            + "VALUES (?, ?, ?, ?, ?)")) {
+                final long now = System.currentTimeMillis();
+                final List<ClaimWrite> claimUpdates = new ArrayList<>();
+                final List<ClaimWrite> claimDeletes = new ArrayList<>();
+                for (ClaimWrite write : claimWrites) {
+                    final long version = versions.getOrDefault(write.getKey(), 0L);
+                    if (write.node == null) {
+                        claimDelete.setString(1, write.claimId);
+                        claimDelete.setLong(2, version);
+                        claimDelete.addBatch();
+                        claimDeletes.add(write);
+                        continue;
+                    }
+                    setClaimColumns(claimUpdate, write, now, version + 1);
+                    claimUpdate.setLong(9, version);
+                    claimUpdate.addBatch();
+                    claimUpdates.add(write);
+                }
+                final List<PlayerWrite> playerUpdates = new ArrayList<>(playerWrites);
+                for (PlayerWrite write : playerUpdates) {
+                    final long version = versions.getOrDefault(write.getKey(), 0L);
+                    setPlayerColumns(playerUpdate, write, now, version + 1);
+                    playerUpdate.setLong(8, version);
+                    playerUpdate.addBatch();
+                }
+
+                final int[] claimUpdateCounts = claimUpdate.executeBatch();
+                final int[] claimDeleteCounts = claimDelete.executeBatch();
+                final int[] playerUpdateCounts = playerUpdate.executeBatch();
+
+                final List<ClaimWrite> writtenClaims = new ArrayList<>();
+                for (int i = 0; i < claimUpdates.size(); i++) {
+                    final ClaimWrite write = claimUpdates.get(i);
+                    final long version = versions.getOrDefault(write.getKey(), 0L);
+                    if (claimUpdateCounts[i] == 0) {
+                        // either a new claim, or the row changed since this server last saw it
+                        if (version != 0 || this.hasRow(connection, "SELECT claim_id FROM gp_claims WHERE claim_id = ?", write.claimId)) {
+                            conflicts.add(write.getKey());
+                            continue;
+                        }
+                        setClaimColumns(claimInsert, write, now, 1);
+                        claimInsert.addBatch();
+                    }
+                    writtenClaims.add(write);
+                    written.put(write.getKey(), version + 1);
+                }
+                for (int i = 0; i < claimDeletes.size(); i++) {
+                    final ClaimWrite write = claimDeletes.get(i);
+                    final long version = versions.getOrDefault(write.getKey(), 0L);
+                    if (claimDeleteCounts[i] == 0) {
+                        if (this.hasRow(connection, "SELECT claim_id FROM gp_claims WHERE claim_id = ?", write.claimId)) {
+                            conflicts.add(write.getKey());
+                        }
+                        // otherwise the claim was never written, or another server deleted it as well
+                        continue;
+                    }
+                    writtenClaims.add(write);
+                    written.put(write.getKey(), version + 1);
+                }
+                for (int i = 0; i < playerUpdates.size(); i++) {
+                    final PlayerWrite write = playerUpdates.get(i);
+                    final long version = versions.getOrDefault(write.getKey(), 0L);
+                    if (playerUpdateCounts[i] == 0) {
+                        if (version != 0 || this.hasRow(connection, "SELECT player_id FROM gp_player_data WHERE scope = ? AND player_id = ?",
+                                write.scope, write.playerId)) {
+                            conflicts.add(write.getKey());
+                            continue;
+                        }
+                        setPlayerColumns(playerInsert, write, now, 1);
+                        playerInsert.addBatch();
+                    }
+                    written.put(write.getKey(), version + 1);
+                    changeInsert.setString(1, serverId);
+                    changeInsert.setString(2, PLAYER_CHANGE);
+                    changeInsert.setString(3, write.getKey());
+                    changeInsert.setLong(4, version + 1);
+                    changeInsert.setLong(5, now);
+                    changeInsert.addBatch();
+                }
+
+                for (ClaimWrite write : writtenClaims) {
+                    // trust rows are always replaced as a whole
+                    trustDelete.setString(1, write.claimId);
+                    trustDelete.addBatch();
+                    changeInsert.setString(1, serverId);
+                    changeInsert.setString(2, CLAIM_CHANGE);
+                    changeInsert.setString(3, write.getKey());
+                    changeInsert.setLong(4, written.get(write.getKey()));
+                    changeInsert.setLong(5, now);
+                    changeInsert.addBatch();
+                    if (write.node == null) {
+                        continue;
+                    }
+                    final ConfigurationNode data = write.node.getNode(GriefPreventionPlugin.MOD_ID);
+                    for (String trustKey : TRUST_KEYS) {
+                        final Set<String> trustees = new HashSet<>();
+                        for (ConfigurationNode trustee : data.getNode(trustKey).getChildrenList()) {
+                            final String value = trustee.getString();
+                            if (value != null && trustees.add(value)) {
+                                trustInsert.setString(1, write.claimId);
+                                trustInsert.setString(2, trustKey);
+                                trustInsert.setString(3, value);
+                                trustInsert.addBatch();
+                            }
+                        }
+                    }
+                }
+
+                claimInsert.executeBatch();
+                playerInsert.executeBatch();
+                trustDelete.executeBatch();
+                trustInsert.executeBatch();
+                changeInsert.executeBatch();
+                connection.commit();
+            } catch (SQLException | IOException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+
+        for (ClaimWrite write : claimWrites) {
+            if (write.node == null && written.containsKey(write.getKey())) {
+                versions.remove(write.getKey());
+                written.remove(write.getKey());
+            }
+        }
+        versions.putAll(written);
+        return conflicts;
+    }
+
+    private static void setClaimColumns(PreparedStatement statement, ClaimWrite write, long now, long version) throws SQLException, IOException {
+        final ConfigurationNode data = write.node.getNode(GriefPreventionPlugin.MOD_ID);
+        statement.setString(1, write.worldKey);
+        statement.setString(2, data.getNode(ClaimStorageData.MAIN_CLAIM_TYPE).getString("BASIC"));
+        statement.setString(3, data.getNode(ClaimStorageData.MAIN_OWNER_UUID).getString());
+        statement.setString(4, data.getNode("parent").getString());
+        statement.setString(5, renderNode(write.node));
+        statement.setLong(6, now);
+        statement.setLong(7, version);
+        statement.setString(8, write.claimId);
+    }
+
+    private static void setPlayerColumns(PreparedStatement statement, PlayerWrite write, long now, long version) throws SQLException, IOException {
+        final ConfigurationNode data = write.node.getNode(GriefPreventionPlugin.MOD_ID);
+        statement.setInt(1, data.getNode("accrued-claim-blocks").getInt());
+        statement.setInt(2, data.getNode("bonus-claim-blocks").getInt());
+        statement.setString(3, renderNode(write.node));
+        statement.setLong(4, now);
+        statement.setLong(5, version);
+        statement.setString(6, write.scope);
+        statement.setString(7, write.playerId);
+    }
+
+    private boolean hasRow(Connection connection, String sql, String... keys) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setMaxRows(1);
+            for (int i = 0; i < keys.length; i++) {
+                statement.setString(i + 1, keys[i]);
+            }
+            try (ResultSet results = statement.executeQuery()) {
+                return results.next();
+            }
+        }
+    }
+
+    static String renderNode(CommentedConfigurationNode node) throws IOException {
+        final StringWriter writer = new StringWriter();
+        HoconConfigurationLoader.builder().setSink(() -> new BufferedWriter(writer)).build().save(node);
+        return writer.toString();
+    }
+
+    static CommentedConfigurationNode parseNode(String data) throws IOException {
+        return HoconConfigurationLoader.builder().setSource(() -> new BufferedReader(new StringReader(data))).build()
+                .load(ConfigurationOptions.defaults());
+    }
+
+    static String getPlayerKey(String scope, String playerId) {
+        return scope + "/" + playerId;
+    }
+
+    static final class StoredClaim {
+
+        final String claimId;
+        final String worldKey;
+        final String type;
+        final String data;
+        final long version;
+
+        StoredClaim(String claimId, String worldKey, String type, String data, long version) {
+            this.claimId = claimId;
+            this.worldKey = worldKey;
+            this.type = type;
+            this.data = data;
+            this.version = version;
+        }
+    }
+
+    static final class StoredPlayer {
+
+        final String scope;
+        final String playerId;
+        final String data;
+        final long version;
+
+        StoredPlayer(String scope, String playerId, String data, long version) {
+            this.scope = scope;
+            this.playerId = playerId;
+            this.data = data;
+            this.version = version;
+        }
+
+        String getKey() {
+            return getPlayerKey(this.scope, this.playerId);
+        }
+    }
+
+    // A row written by a server, rows are reread rather than sent along
+    static final class Change {
+
+        final long changeId;
+        final String serverId;
+        final String kind;
+        // claim id or player key
+        final String rowKey;
+        final long version;
+
+        Change(long changeId, String serverId, String kind, String rowKey, long version) {
+            this.changeId = changeId;
+            this.serverId = serverId;
+            this.kind = kind;
+            this.rowKey = rowKey;
+            this.version = version;
+        }
+    }
+
+    static final class ClaimWrite {
+
+        final String claimId;
+        @Nullable final String worldKey;
+        // null deletes the claim
+        @Nullable final CommentedConfigurationNode node;
+
+        ClaimWrite(String claimId, @Nullable String worldKey, @Nullable CommentedConfigurationNode node) {
+            this.claimId = claimId;
+            this.worldKey = worldKey;
+            this.node = node;
+        }
+
+        String getKey() {
+            return this.claimId;
+        }
+    }
+
+    static final class PlayerWrite {
+
+        final String scope;
+        final String playerId;
+        final CommentedConfigurationNode node;
+
+        PlayerWrite(String scope, String playerId, CommentedConfigurationNode node) {
+            this.scope = scope;
+            this.playerId = playerId;
+            this.node = node;
+        }
+
+        String getKey() {
+            return getPlayerKey(this.scope, this.playerId);
+        }
+    }
+
+    // One schema change, skipped if the database already has what it creates
+    static final class MigrationStep {
+
+        final String table;
+        @Nullable final String column;
+        @Nullable final String index;
+        final String sql;
+
+        private MigrationStep(String table, @Nullable String column, @Nullable String index, String sql) {
+            this.table = table;
+            this.column = column;
+            this.index = index;
+            this.sql = sql;
+        }
+
+        static MigrationStep createTable(String table, String sql) {
+            return new MigrationStep(table, null, null, sql);
+        }
+
+        static MigrationStep addColumn(String table, String column, String sql) {
+            return new MigrationStep(table, column, null, sql);
+        }
+
+        static MigrationStep createIndex(String table, String index, String sql) {
+            return new MigrationStep(table, null, index, sql);
+        }
+
+        boolean isApplied(Connection connection) throws SQLException {
+            final DatabaseMetaData metaData = connection.getMetaData();
+            final String catalog = connection.getCatalog();
+            // databases differ in the case they store unquoted names in
+            for (String table : new String[] {this.table, this.table.toUpperCase()}) {
+                if (this.column != null) {
+                    for (String column : new String[] {this.column, this.column.toUpperCase()}) {
+                        try (ResultSet results = metaData.getColumns(catalog, null, table, column)) {
+                            if (results.next()) {
+                                return true;
+                            }
+                        }
+                    }
+                } else if (this.index != null) {
+                    try (ResultSet results = metaData.getIndexInfo(catalog, null, table, false, false)) {
+                        while (results.next()) {
+                            if (this.index.equalsIgnoreCase(results.getString("INDEX_NAME"))) {
+                                return true;
+                            }
+                        }
+                    }
+                } else {
+                    try (ResultSet results = metaData.getTables(catalog, null, table, null)) {
+                        if (results.next()) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    enum Dialect {
+        MYSQL("MEDIUMTEXT"),
+        POSTGRESQL("TEXT"),
+        SQLITE("TEXT"),
+        H2("CLOB");
+
+        private final String textType;
+
+        Dialect(String textType) {
+            this.textType = textType;
+        }
+
+        static Dialect fromUrl(String url) {
+            final String lowerUrl = url.toLowerCase();
+            if (lowerUrl.startsWith("jdbc:mysql:") || lowerUrl.startsWith("jdbc:mariadb:")) {
+                return MYSQL;
+            }
+            if (lowerUrl.startsWith("jdbc:postgresql:")) {
+                return POSTGRESQL;
+            }
+            if (lowerUrl.startsWith("jdbc:sqlite:")) {
+                return SQLITE;
+            }
+            if (lowerUrl.startsWith("jdbc:h2:")) {
+                return H2;
+            }
+            throw new IllegalArgumentException("Unsupported database url '" + url + "'. Supported databases are MySQL, MariaDB, PostgreSQL, SQLite and H2.");
+        }
+
+        String upsert(String table, String[] keys, String[] columns) {
+            final StringBuilder builder = new StringBuilder();
+            final String columnList = String.join(", ", columns);
+            final StringBuilder values = new StringBuilder();
+            for (int i = 0; i < columns.length; i++) {
+                values.append(i == 0 ? "?" : ", ?");
+            }
+            if (this == H2) {
+                return builder.append("MERGE INTO ").append(table).append(" (").append(columnList).append(") KEY (").append(String.join(", ", keys))
+                        .append(") VALUES (").append(values).append(")").toString();
+            }
+
+            builder.append("INSERT INTO ").append(table).append(" (").append(columnList).append(") VALUES (").append(values).append(")");
+            if (this == MYSQL) {
+                builder.append(" ON DUPLICATE KEY UPDATE ");
+            } else {
+                builder.append(" ON CONFLICT (").append(String.join(", ", keys)).append(") DO UPDATE SET ");
+            }
+            boolean first = true;
+            for (String column : columns) {
+                if (isKey(keys, column)) {
+                    continue;
+                }
+                if (!first) {
+                    builder.append(", ");
+                }
+                first = false;
+                builder.append(column).append(" = ").append(this == MYSQL ? "VALUES(" + column + ")" : "excluded." + column);
+            }
+            return builder.toString();
+        }
+
+        private static boolean isKey(String[] keys, String column) {
+            for (String key : keys) {
+                if (key.equals(column)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private String autoIncrementKey() {
+            switch (this) {
+                case MYSQL :
+                    return "BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY";
+                case POSTGRESQL :
+                    return "BIGSERIAL PRIMARY KEY";
+                case SQLITE :
+                    return "INTEGER PRIMARY KEY AUTOINCREMENT";
+                default :
+                    return "BIGINT AUTO_INCREMENT PRIMARY KEY";
+            }
+        }
+
+        // Each entry upgrades the schema by one version and is never changed once released
+        List<MigrationStep[]> getMigrations() {
+            final List<MigrationStep[]> migrations = new ArrayList<>();
+            migrations.add(new MigrationStep[] {
+                    MigrationStep.createTable("gp_claims", "CREATE TABLE gp_claims (claim_id CHAR(36) NOT NULL PRIMARY KEY, "
+                            + "world_key VARCHAR(191) NOT NULL, claim_type VARCHAR(16) NOT NULL, owner_id CHAR(36), parent_id CHAR(36), "
+                            + "data " + this.textType + " NOT NULL, updated BIGINT NOT NULL)"),
+                    MigrationStep.createIndex("gp_claims", "gp_claims_world", "CREATE INDEX gp_claims_world ON gp_claims (world_key)"),
+                    MigrationStep.createIndex("gp_claims", "gp_claims_owner", "CREATE INDEX gp_claims_owner ON gp_claims (owner_id)"),
+                    MigrationStep.createTable("gp_claim_trust", "CREATE TABLE gp_claim_trust (claim_id CHAR(36) NOT NULL, "
+                            + "trust_type VARCHAR(32) NOT NULL, trustee VARCHAR(64) NOT NULL, PRIMARY KEY (claim_id, trust_type, trustee))"),
+                    MigrationStep.createIndex("gp_claim_trust", "gp_claim_trust_trustee", "CREATE INDEX gp_claim_trust_trustee ON gp_claim_trust (trustee)"),
+                    MigrationStep.createTable("gp_player_data", "CREATE TABLE gp_player_data (scope VARCHAR(191) NOT NULL, player_id CHAR(36) NOT NULL, "
+                            + "accrued_blocks INT NOT NULL, bonus_blocks INT NOT NULL, data " + this.textType + " NOT NULL, updated BIGINT NOT NULL, "
+                            + "PRIMARY KEY (scope, player_id))")
+            });
+            // row versions and a change log for servers sharing the database
+            migrations.add(new MigrationStep[] {
+                    MigrationStep.addColumn("gp_claims", "version", "ALTER TABLE gp_claims ADD COLUMN version BIGINT DEFAULT 0 NOT NULL"),
+                    MigrationStep.addColumn("gp_player_data", "version", "ALTER TABLE gp_player_data ADD COLUMN version BIGINT DEFAULT 0 NOT NULL"),
+                    MigrationStep.createTable("gp_changes", "CREATE TABLE gp_changes (change_id " + this.autoIncrementKey() + ", "
+                            + "server_id CHAR(36) NOT NULL, kind VARCHAR(16) NOT NULL, row_key VARCHAR(255) NOT NULL, version BIGINT NOT NULL, "
+                            + "changed BIGINT NOT NULL)"),
+                    MigrationStep.createIndex("gp_changes", "gp_changes_changed", "CREATE INDEX gp_changes_changed ON gp_changes (changed)")
+            });
+            return migrations;
+        }
+    }
+}
@@ -32,6 +32,7 @@
 import me.ryanhamshire.griefprevention.api.claim.ClaimType;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.claim.GPClaimManager;
+import me.ryanhamshire.griefprevention.configuration.ClaimDataConfig;
 import me.ryanhamshire.griefprevention.configuration.ClaimStorageData;
 import me.ryanhamshire.griefprevention.configuration.ClaimTemplateStorage;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
@@ -51,8 +52,18 @@
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
 
 //manages data stored in the file system
 public class FlatFileDataStore extends DataStore {
@@ -67,8 +78,8 @@ public class FlatFileDataStore extends DataStore {
     private final static Path schemaVersionFilePath = dataLayerFolderPath.resolve("_schemaVersion");
     private final static Path worldsConfigFolderPath = dataLayerFolderPath.resolve("worlds");
     public static Path rootWorldSavePath;
-    private final Path rootConfigPath = GriefPreventionPlugin.instance.getConfigPath().resolve("worlds");
-    private int claimLoadCount = 0;
+    protected final Path rootConfigPath = GriefPreventionPlugin.instance.getConfigPath().resolve("worlds");
+    protected int claimLoadCount = 0;
 
     public FlatFileDataStore() {
     }
@@ -156,6 +167,7 @@ public void registerWorld(WorldProperties worldProperties) {
     @Override
     public void loadWorldData(World world) {
         final WorldProperties worldProperties = world.getProperties();
+        this.claimLoadCount = 0;
         final DimensionType dimType = worldProperties.getDimensionType();
         final String[] parts = ((DimensionTypeBridge) dimType).bridge$getSanitizedId().split(":");
         final String modId = parts[0].toLowerCase();
@@ -221,7 +233,6 @@ public void loadWorldData(World world) {
 
         // handle default flag permissions
         this.setupDefaultPermissions(world);
-        this.claimLoadCount = 0;
     }
 
     public void unloadWorldData(WorldProperties worldProperties) {
@@ -243,46 +254,146 @@ public void unloadWorldData(WorldProperties worldProperties) {
     }
 
     void loadClaimData(File[] files, WorldProperties worldProperties) throws Exception {
+        final List<File> claimFiles = new ArrayList<>();
+        this.collectClaimFiles(files, claimFiles);
+        if (claimFiles.isEmpty()) {
+            return;
+        }
+
+        final GPClaimManager claimManager = this.getClaimWorldManager(worldProperties);
+        final UUID wildernessId = claimManager.getWildernessClaim() != null ? claimManager.getWildernessClaim().getUniqueId() : null;
+
+        // Phase 1: parse claim files in parallel
+        final int threads = getClaimLoadThreads(claimFiles.size());
+        long start = System.currentTimeMillis();
+        final Map<UUID, LoadedClaimFile> loadedFiles = new LinkedHashMap<>();
+        final ExecutorService loadExecutor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<LoadedClaimFile>> futures = new ArrayList<>(claimFiles.size());
+            for (File file : claimFiles) {
+                futures.add(loadExecutor.submit(() -> this.parseClaimFile(file, worldProperties, wildernessId)));
+            }
+            for (Future<LoadedClaimFile> future : futures) {
+                final LoadedClaimFile loadedFile = future.get();
+                if (loadedFile != null) {
+                    loadedFiles.put(loadedFile.claimId, loadedFile);
+                }
+            }
+        } finally {
+            loadExecutor.shutdown();
+        }
+        GriefPreventionPlugin.instance.getLogger().info("[" + worldProperties.getWorldName() + "] Parsed " + loadedFiles.size() + " claim files in "
+                + (System.currentTimeMillis() - start) + " ms using " + threads + " thread(s).");
+
+        // Phase 2: link and register claims, parents before children
+        start = System.currentTimeMillis();
+        final int loadedBefore = this.claimLoadCount;
+        final Set<UUID> visited = new HashSet<>();
+        for (LoadedClaimFile loadedFile : loadedFiles.values()) {
+            this.linkClaimFile(loadedFile, loadedFiles, visited, worldProperties);
+        }
+        GriefPreventionPlugin.instance.getLogger().info("[" + worldProperties.getWorldName() + "] Linked " + (this.claimLoadCount - loadedBefore) + " claims in "
+                + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    private void collectClaimFiles(File[] files, List<File> claimFiles) {
+        if (files == null) {
+            return;
+        }
         for (int i = 0; i < files.length; i++) {
             File file = files[i];
             if (file.isFile()) {
-                this.loadClaimFile(file, worldProperties);
+                claimFiles.add(file);
             }
         }
         for (int i = 0; i < files.length; i++) {
             File file = files[i];
             if (file.isDirectory()) {
-                this.loadClaimData(file.listFiles(), worldProperties);
+                this.collectClaimFiles(file.listFiles(), claimFiles);
             }
         }
     }
 
-    void loadClaimFile(File file, WorldProperties worldProperties) {
-        if (file.isFile()) // avoids folders
-        {
-            // the filename is the claim ID. try to parse it
-            UUID claimId;
+    static int getClaimLoadThreads(int fileCount) {
+        int threads = GriefPreventionPlugin.getGlobalConfig().getConfig().thread.claimLoadThreads;
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        return Math.max(1, Math.min(threads, fileCount));
+    }
 
-            try {
-                final String fileName = file.getName();
-                // UUID's should always be 36 in length
-                if (fileName.length() != 36) {
-                    return;
-                }
+    @Nullable
+    private LoadedClaimFile parseClaimFile(File file, WorldProperties worldProperties, @Nullable UUID wildernessId) {
+        // the filename is the claim ID. try to parse it
+        UUID claimId;
 
-                claimId = UUID.fromString(fileName);
-            } catch (Exception e) {
-                GriefPreventionPlugin.instance.getLogger().error("Could not read claim file " + file.getAbsolutePath());
-                return;
+        try {
+            final String fileName = file.getName();
+            // UUID's should always be 36 in length
+            if (fileName.length() != 36) {
+                return null;
             }
 
-            try {
-                this.loadClaim(file, worldProperties, claimId);
-            } catch (Exception e) {
-                GriefPreventionPlugin.instance.getLogger().error(file.getAbsolutePath() + " failed to load.");
-                e.printStackTrace();
+            claimId = UUID.fromString(fileName);
+        } catch (Exception e) {
+            GriefPreventionPlugin.instance.getLogger().error("Could not read claim file " + file.getAbsolutePath());
+            return null;
+        }
+
+        if (claimId.equals(wildernessId)) {
+            return null;
+        }
+
+        try {
+            return new LoadedClaimFile(file, claimId, this.createClaimStorage(file, worldProperties));
+        } catch (Exception e) {
+            GriefPreventionPlugin.instance.getLogger().error(file.getAbsolutePath() + " failed to load.");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    void linkClaimFile(LoadedClaimFile loadedFile, Map<UUID, LoadedClaimFile> loadedFiles, Set<UUID> visited,
+            WorldProperties worldProperties) {
+        if (!visited.add(loadedFile.claimId)) {
+            return;
+        }
+
+        final ClaimDataConfig claimData = loadedFile.claimStorage.getConfig();
+        final UUID parent = claimData != null ? claimData.getParent().orElse(null) : null;
+        if (parent != null) {
+            final LoadedClaimFile parentFile = loadedFiles.get(parent);
+            if (parentFile != null) {
+                this.linkClaimFile(parentFile, loadedFiles, visited, worldProperties);
             }
         }
+
+        try {
+            this.loadClaim(loadedFile.file, loadedFile.claimStorage, worldProperties, loadedFile.claimId);
+        } catch (Exception e) {
+            GriefPreventionPlugin.instance.getLogger().error(loadedFile.file.getAbsolutePath() + " failed to load.");
+            e.printStackTrace();
+        }
+    }
+
+    private ClaimStorageData createClaimStorage(File claimFile, WorldProperties worldProperties) {
+        if (claimFile.toPath().getParent().endsWith("town")) {
+            return new TownStorageData(claimFile.toPath(), worldProperties.getUniqueId());
+        }
+        return new ClaimStorageData(claimFile.toPath(), worldProperties.getUniqueId());
+    }
+
+    static class LoadedClaimFile {
+
+        final File file;
+        final UUID claimId;
+        final ClaimStorageData claimStorage;
+
+        LoadedClaimFile(File file, UUID claimId, ClaimStorageData claimStorage) {
+            this.file = file;
+            this.claimId = claimId;
+            this.claimStorage = claimStorage;
+        }
     }
 
     void loadPlayerData(WorldProperties worldProperties, File[] files) throws Exception {
@@ -333,21 +444,19 @@ void loadPlayerData(WorldProperties worldProperties, File[] files) throws Except
 
     public GPClaim loadClaim(File claimFile, WorldProperties worldProperties, UUID claimId)
             throws Exception {
-        GPClaim claim;
-
         final GPClaimManager claimManager = this.getClaimWorldManager(worldProperties);
         if (claimManager.getWildernessClaim() != null && claimManager.getWildernessClaim().getUniqueId().equals(claimId)) {
             return null;
         }
-        boolean isTown = claimFile.toPath().getParent().endsWith("town");
-        boolean writeToStorage = false;
-        ClaimStorageData claimStorage = null;
-        if (isTown) {
-            claimStorage = new TownStorageData(claimFile.toPath(), worldProperties.getUniqueId());
-        } else {
-            claimStorage = new ClaimStorageData(claimFile.toPath(), worldProperties.getUniqueId());
-        }
+        return this.loadClaim(claimFile, this.createClaimStorage(claimFile, worldProperties), worldProperties, claimId);
+    }
+
+    GPClaim loadClaim(File claimFile, ClaimStorageData claimStorage, WorldProperties worldProperties, UUID claimId)
+            throws Exception {
+        GPClaim claim;
 
+        final GPClaimManager claimManager = this.getClaimWorldManager(worldProperties);
+        boolean writeToStorage = false;
         final ClaimType type = claimStorage.getConfig().getType();
         final UUID parent = claimStorage.getConfig().getParent().orElse(null);
         final String fileName = claimFile.getName();
@@ -436,6 +545,7 @@ public void writeClaimToStorage(GPClaim claim) {
     @Override
     public void deleteClaimFromSecondaryStorage(GPClaim claim) {
         try {
+            claim.getClaimStorage().close();
             Files.delete(claim.getClaimStorage().filePath);
             if (claim.getClaimStorage().folderPath.toFile().listFiles().length == 0) {
                 Files.delete(claim.getClaimStorage().folderPath);
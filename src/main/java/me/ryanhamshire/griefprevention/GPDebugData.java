@@ -26,27 +26,35 @@
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.util.HttpClient;
 import okhttp3.*;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.plugin.PluginContainer;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.action.TextActions;
 import org.spongepowered.api.text.format.TextColors;
 import org.spongepowered.api.util.Tristate;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
 
 import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.UUID;
 import java.util.zip.GZIPOutputStream;
 
+import javax.annotation.Nullable;
+
 public class GPDebugData {
     private static final String BYTEBIN_ENDPOINT = "https://bytebin.lucko.me/post";
     private static final String DEBUG_VIEWER_URL = "https://griefprevention.github.io/debug/?";
@@ -62,6 +70,10 @@ public class GPDebugData {
     private final long startTime = System.currentTimeMillis();
     private boolean verbose;
     private User target;
+    private GPDebugRecorder recorder;
+    private UUID claimFilter;
+    private String sourceFilter;
+    private String targetFilter;
 
     public GPDebugData(CommandSource source, User target, boolean verbose) {
         this.source = source;
@@ -121,6 +133,10 @@ private static String postContent(String content) throws IOException {
     }
 
     public void addRecord(String flag, String trust, String source, String target, String location, String user, Tristate result) {
+        if (this.recorder != null) {
+            this.recorder.write("| " + flag + " | " + trust + " | " + source + " | " + target + " | " + location + " | " + user + " | " + result + " | ");
+            return;
+        }
         if (this.records.size() < MAX_LINES) {
             this.records.add("| " + flag + " | " + trust + " | " + source + " | " + target + " | " + location + " | " + user + " | " + result + " | ");
         } else {
@@ -149,11 +165,124 @@ public boolean isRecording() {
         return !this.verbose;
     }
 
+    public boolean isRecordingToFile() {
+        return this.recorder != null;
+    }
+
+    public void startFileRecording() {
+        if (this.recorder != null) {
+            return;
+        }
+        final List<String> fileHeader = new ArrayList<>(this.header);
+        fileHeader.add("");
+        fileHeader.add("### Output");
+        fileHeader.add("| Flag | Trust | Source | Target | Location | User | Result |");
+        fileHeader.add("|------|-------|--------|--------|----------|------|--------|");
+        final String name = this.source instanceof Player ? this.source.getName() : "console";
+        this.recorder = new GPDebugRecorder(GriefPreventionPlugin.instance.getConfigPath().resolve("debug"), name, fileHeader);
+        // anything recorded in memory so far goes to the file first
+        for (String record : this.records) {
+            this.recorder.write(record);
+        }
+        this.records.clear();
+    }
+
+    public void stopFileRecording() {
+        this.stopFileRecording(false);
+    }
+
+    /**
+     * Stops writing records to file.
+     *
+     * @param wait Whether to finish the file before returning
+     */
+    public void stopFileRecording(boolean wait) {
+        if (this.recorder == null) {
+            return;
+        }
+        this.recorder.close(wait);
+        final Path file = this.recorder.getCurrentFile();
+        this.source.sendMessage(Text.of(TextColors.GREEN, "Debug records written to ", TextColors.WHITE,
+                file == null ? GriefPreventionPlugin.instance.getConfigPath().resolve("debug") : file.getParent()));
+        this.recorder = null;
+    }
+
+    public void setClaimFilter(@Nullable UUID claimId) {
+        this.claimFilter = claimId;
+    }
+
+    public void setSourceFilter(@Nullable String sourceId) {
+        this.sourceFilter = sourceId;
+    }
+
+    public void setTargetFilter(@Nullable String targetId) {
+        this.targetFilter = targetId;
+    }
+
+    public void clearFilters() {
+        this.claimFilter = null;
+        this.sourceFilter = null;
+        this.targetFilter = null;
+    }
+
+    public Text getFilterText() {
+        if (this.claimFilter == null && this.sourceFilter == null && this.targetFilter == null) {
+            return Text.of(TextColors.GRAY, "NONE");
+        }
+        return Text.of(
+                TextColors.GRAY, "claim=", TextColors.WHITE, this.claimFilter == null ? "*" : this.claimFilter, " ",
+                TextColors.GRAY, "source=", TextColors.WHITE, this.sourceFilter == null ? "*" : this.sourceFilter, " ",
+                TextColors.GRAY, "target=", TextColors.WHITE, this.targetFilter == null ? "*" : this.targetFilter);
+    }
+
+    /**
+     * Checks the filters before any record text is built.
+     *
+     * @param claim The claim checked, or null to look it up from the location
+     * @param location The event location
+     * @param sourceId The source id
+     * @param targetId The target id
+     * @return Whether the event should be recorded
+     */
+    public boolean accepts(@Nullable GPClaim claim, @Nullable Location<World> location, @Nullable String sourceId, @Nullable String targetId) {
+        if (this.sourceFilter != null && !matchesId(this.sourceFilter, sourceId)) {
+            return false;
+        }
+        if (this.targetFilter != null && !matchesId(this.targetFilter, targetId)) {
+            return false;
+        }
+        if (this.claimFilter != null) {
+            if (claim == null) {
+                if (location == null) {
+                    return false;
+                }
+                claim = GriefPreventionPlugin.instance.dataStore.getClaimAt(location);
+            }
+            return this.claimFilter.equals(claim.getUniqueId());
+        }
+        return true;
+    }
+
+    // A filter without a ':' matches every id from that mod
+    private static boolean matchesId(String filter, @Nullable String id) {
+        if (id == null) {
+            return false;
+        }
+        if (filter.indexOf(':') == -1) {
+            return id.startsWith(filter) && (id.length() == filter.length() || id.charAt(filter.length()) == ':');
+        }
+        return id.equals(filter) || (id.startsWith(filter) && id.charAt(filter.length()) == '.');
+    }
+
     public void setVerbose(boolean verbose) {
         this.verbose = verbose;
     }
 
     public void pasteRecords() {
+        if (this.recorder != null) {
+            this.stopFileRecording();
+            return;
+        }
         if (this.records.isEmpty()) {
             this.source.sendMessage(Text.of(TextColors.RED, "No debug records to paste!"));
             return;
@@ -0,0 +1,176 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams debug records to rotating gzip files as they arrive.
+ *
+ * <p>Records are queued by the caller and compressed on the plugin executor.
+ * Every file starts with the debug header so each part can be viewed on its own.</p>
+ */
+public class GPDebugRecorder {
+
+    private static final int RECORDS_PER_FILE = 100000;
+
+    private final Path folder;
+    private final String baseName;
+    private final List<String> header;
+    private final Queue<String> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private volatile boolean closed;
+    private Writer writer;
+    private Path currentFile;
+    private int part;
+    private int fileRecords;
+    private long totalRecords;
+
+    public GPDebugRecorder(Path folder, String name, List<String> header) {
+        this.folder = folder;
+        this.baseName = name + "_" + new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date());
+        this.header = header;
+    }
+
+    public void write(String record) {
+        if (this.closed) {
+            return;
+        }
+        this.queue.add(record);
+        if (this.drainScheduled.compareAndSet(false, true)) {
+            GriefPreventionPlugin.instance.executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Stops recording and finishes the current file.
+     *
+     * @param wait Whether to finish the file on the calling thread, which is
+     *     needed when the server is stopping as queued tasks may never run
+     */
+    public void close(boolean wait) {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+        }
+        if (wait) {
+            this.finish();
+            return;
+        }
+        GriefPreventionPlugin.instance.executor.execute(this::finish);
+    }
+
+    private synchronized void finish() {
+        drainQueue();
+        closeWriter();
+    }
+
+    public long getRecordCount() {
+        return this.totalRecords;
+    }
+
+    public Path getCurrentFile() {
+        return this.currentFile;
+    }
+
+    private void drain() {
+        this.drainScheduled.set(false);
+        synchronized (this) {
+            // finish() writes what is left once closed, a drain running after it must not open another part
+            if (this.closed) {
+                return;
+            }
+            drainQueue();
+            if (this.writer != null) {
+                try {
+                    this.writer.flush();
+                } catch (IOException e) {
+                    GriefPreventionPlugin.instance.getLogger().error("Failed to write debug records to " + this.currentFile, e);
+                }
+            }
+        }
+    }
+
+    private void drainQueue() {
+        String record;
+        while ((record = this.queue.poll()) != null) {
+            try {
+                if (this.writer == null || this.fileRecords >= RECORDS_PER_FILE) {
+                    openNextFile();
+                }
+                this.writer.write(record);
+                this.writer.write('\n');
+                this.fileRecords++;
+                this.totalRecords++;
+            } catch (IOException e) {
+                GriefPreventionPlugin.instance.getLogger().error("Failed to write debug records to " + this.currentFile, e);
+                this.queue.clear();
+                closeWriter();
+                return;
+            }
+        }
+    }
+
+    private void openNextFile() throws IOException {
+        closeWriter();
+        Files.createDirectories(this.folder);
+        this.part++;
+        this.currentFile = this.folder.resolve(this.baseName + "_" + this.part + ".md.gz");
+        this.writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(this.currentFile), 64 * 1024),
+                StandardCharsets.UTF_8));
+        for (String line : this.header) {
+            this.writer.write(line);
+            this.writer.write('\n');
+        }
+        this.fileRecords = 0;
+    }
+
+    private void closeWriter() {
+        if (this.writer == null) {
+            return;
+        }
+        try {
+            this.writer.close();
+        } catch (IOException e) {
+            GriefPreventionPlugin.instance.getLogger().error("Failed to close debug record file " + this.currentFile, e);
+        }
+        this.writer = null;
+    }
+}
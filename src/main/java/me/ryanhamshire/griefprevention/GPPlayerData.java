@@ -28,6 +28,7 @@
 import me.ryanhamshire.griefprevention.api.claim.Claim;
 import me.ryanhamshire.griefprevention.api.claim.ClaimType;
 import me.ryanhamshire.griefprevention.api.data.PlayerData;
+import me.ryanhamshire.griefprevention.claim.ClaimMovementCache;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.command.CommandHelper;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
@@ -35,12 +36,12 @@
 import me.ryanhamshire.griefprevention.permission.GPOptionHandler;
 import me.ryanhamshire.griefprevention.permission.GPOptions;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
+import me.ryanhamshire.griefprevention.util.BlockStateVolume;
 import me.ryanhamshire.griefprevention.util.PermissionUtils;
 import me.ryanhamshire.griefprevention.util.PlayerUtils;
+import me.ryanhamshire.griefprevention.visual.VisualBlocks;
 import net.minecraft.world.chunk.Chunk;
 import org.spongepowered.api.Sponge;
-import org.spongepowered.api.block.BlockSnapshot;
-import org.spongepowered.api.data.Transaction;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.scheduler.Task;
@@ -77,7 +78,7 @@ public class GPPlayerData implements PlayerData {
     public Location<World> lastValidInspectLocation;
     // used for nature restores
     public Chunk fillerChunk;
-    public BlockSnapshot[][][] fillerBlocks;
+    public BlockStateVolume fillerBlocks;
     // the claim this player is currently resizing
     public GPClaim claimResizing;
     // the claim this player is currently subdividing
@@ -99,7 +100,7 @@ public class GPPlayerData implements PlayerData {
     // whether the player recently received a warning
     public boolean spamWarned = false;
     // visualization
-    public List<Transaction<BlockSnapshot>> visualBlocks;
+    public VisualBlocks visualBlocks;
     public UUID visualClaimId;
     public Task visualRevertTask;
     // anti-camping pvp protection
@@ -112,6 +113,8 @@ public class GPPlayerData implements PlayerData {
     public boolean executingClaimDebug = false;
     // the last claim this player was in, that we know of
     public WeakReference<GPClaim> lastClaim = new WeakReference<>(null);
+    // resolves claims during movement without hitting the claim index
+    public final ClaimMovementCache movementCache = new ClaimMovementCache();
     // pvp
     public long lastPvpTimestamp = 0;
     public String lastPvpPlayer = "";
@@ -311,14 +314,11 @@ public void revertActiveVisual(Player player) {
             }
         }
         this.visualClaimId = null;
-        if (this.visualBlocks == null || !player.getWorld().equals(this.visualBlocks.get(0).getFinal().getLocation().get().getExtent())) {
+        if (this.visualBlocks == null || !this.visualBlocks.isInWorld(player.getWorld())) {
             return;
         }
 
-        for (int i = 0; i < this.visualBlocks.size(); i++) {
-            BlockSnapshot snapshot = this.visualBlocks.get(i).getOriginal();
-            player.sendBlockChange(snapshot.getPosition(), snapshot.getState());
-        }
+        this.visualBlocks.revert(player);
     }
 
     // whether or not this player is "in" pvp combat
@@ -25,6 +25,7 @@
  */
 package me.ryanhamshire.griefprevention;
 
+import com.flowpowered.math.vector.Vector3i;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
@@ -37,16 +38,21 @@
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.claim.GPClaimManager;
 import me.ryanhamshire.griefprevention.command.*;
+import me.ryanhamshire.griefprevention.configuration.ClaimSaveQueue;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.configuration.category.BlacklistCategory;
+import me.ryanhamshire.griefprevention.configuration.category.DatabaseCategory;
 import me.ryanhamshire.griefprevention.configuration.type.ConfigBase;
 import me.ryanhamshire.griefprevention.configuration.type.GlobalConfig;
 import me.ryanhamshire.griefprevention.listener.*;
 import me.ryanhamshire.griefprevention.logging.CustomLogEntryTypes;
 import me.ryanhamshire.griefprevention.logging.CustomLogger;
 import me.ryanhamshire.griefprevention.migrator.GPPermissionMigrator;
+import me.ryanhamshire.griefprevention.permission.GPBlacklistMatcher;
 import me.ryanhamshire.griefprevention.permission.GPBlacklists;
+import me.ryanhamshire.griefprevention.permission.GPFlagDecisionTable;
 import me.ryanhamshire.griefprevention.permission.GPOptions;
+import me.ryanhamshire.griefprevention.permission.GPPermissionCache;
 import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
 import me.ryanhamshire.griefprevention.provider.GPApiProvider;
@@ -54,7 +60,7 @@
 import me.ryanhamshire.griefprevention.provider.NucleusApiProvider;
 import me.ryanhamshire.griefprevention.provider.WorldEditApiProvider;
 import me.ryanhamshire.griefprevention.task.*;
-import me.ryanhamshire.griefprevention.util.BlockUtils;
+import me.ryanhamshire.griefprevention.util.BlockStateVolume;
 import me.ryanhamshire.griefprevention.util.PlayerUtils;
 import net.minecraft.entity.EnumCreatureType;
 import net.minecraft.entity.player.EntityPlayerMP;
@@ -67,7 +73,6 @@
 import org.spongepowered.api.Platform.Component;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.asset.Asset;
-import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandMapping;
@@ -91,6 +96,9 @@
 import org.spongepowered.api.event.game.state.GameAboutToStartServerEvent;
 import org.spongepowered.api.event.game.state.GamePreInitializationEvent;
 import org.spongepowered.api.event.game.state.GameStartedServerEvent;
+import org.spongepowered.api.event.game.state.GameStoppedServerEvent;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
+import org.spongepowered.api.event.permission.SubjectDataUpdateEvent;
 import org.spongepowered.api.event.service.ChangeServiceProviderEvent;
 import org.spongepowered.api.item.ItemType;
 import org.spongepowered.api.item.ItemTypes;
@@ -118,12 +126,14 @@
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.annotation.Nullable;
+
 import static org.spongepowered.api.command.args.GenericArguments.*;
 
 @Plugin(id = "griefprevention", name = "GriefPrevention", version = "4.3.0", description = "This plugin is designed to prevent all forms of grief.")
@@ -176,7 +186,7 @@ public class GriefPreventionPlugin {
     public PermissionService permissionService;
     public PermissionDescription.Builder permissionDescriptionBuilder;
     public Optional<EconomyService> economyService;
-    public Executor executor;
+    public ExecutorService executor;
     public boolean permPluginInstalled = false;
     public ItemType modificationTool = ItemTypes.GOLDEN_SHOVEL;
     public ItemType investigationTool = ItemTypes.STICK;
@@ -207,8 +217,12 @@ public static void addLogEntry(String entry, CustomLogEntryTypes customLogType,
     }
 
     public static void addEventLogEntry(Event event, Location<World> location, String sourceId, String targetId, Subject permissionSubject, String permission, String trust, Tristate result) {
-        final String eventName = event.getClass().getSimpleName().replace('$', '.').replace(".Impl", "");
-        final String eventLocation = location == null ? "none" : location.getBlockPosition().toString();
+        addEventLogEntry(event, null, location, sourceId, targetId, permissionSubject, permission, trust, result);
+    }
+
+    public static void addEventLogEntry(Event event, @Nullable GPClaim claim, Location<World> location, String sourceId, String targetId, Subject permissionSubject, String permission, String trust, Tristate result) {
+        String eventName = null;
+        String eventLocation = null;
         for (GPDebugData debugEntry : GriefPreventionPlugin.instance.getDebugUserMap().values()) {
             final CommandSource debugSource = debugEntry.getSource();
             final User debugUser = debugEntry.getTarget();
@@ -221,6 +235,14 @@ public static void addEventLogEntry(Event event, Location<World> location, Strin
                     continue;
                 }
             }
+            // Filtered events are skipped before any record text is built
+            if (!debugEntry.accepts(claim, location, sourceId, targetId)) {
+                continue;
+            }
+            if (eventName == null) {
+                eventName = event.getClass().getSimpleName().replace('$', '.').replace(".Impl", "");
+                eventLocation = location == null ? "none" : location.getBlockPosition().toString();
+            }
 
             String messageUser = permissionSubject.getIdentifier();
             if (permissionSubject instanceof User) {
@@ -406,15 +428,13 @@ public static User getOrCreateUser(UUID uuid) {
     }
 
     public static boolean isSourceIdBlacklisted(String flag, Object source, WorldProperties worldProperties) {
-        final List<String> flagList = GPBlacklists.blacklistMap.get(flag);
-        final boolean checkFlag = flagList != null && !flagList.isEmpty();
-        if (!checkFlag && !GPBlacklists.GLOBAL_SOURCE) {
+        final GPBlacklistMatcher flagMatcher = GPBlacklists.getFlagMatcher(flag);
+        if (flagMatcher == null && !GPBlacklists.GLOBAL_SOURCE) {
             return false;
         }
 
         final GriefPreventionConfig<?> activeConfig = GriefPreventionPlugin.getActiveConfig(worldProperties);
         final String id = GPPermissionHandler.getPermissionIdentifier(source);
-        final String idNoMeta = GPPermissionHandler.getIdentifierWithoutMeta(id);
 
         // Check global
         if (GPBlacklists.GLOBAL_SOURCE) {
@@ -423,40 +443,22 @@ public static boolean isSourceIdBlacklisted(String flag, Object source, WorldPro
             if (globalSourceBlacklist == null) {
                 return false;
             }
-            for (String str : globalSourceBlacklist) {
-                if (FilenameUtils.wildcardMatch(id, str)) {
-                    return true;
-                }
-                if (FilenameUtils.wildcardMatch(idNoMeta, str)) {
-                    return true;
-                }
+            if (GPBlacklists.getGlobalSourceMatcher(worldProperties.getUniqueId(), globalSourceBlacklist).isBlacklisted(id)) {
+                return true;
             }
         }
         // Check flag
-        if (checkFlag) {
-            for (String str : flagList) {
-                if (FilenameUtils.wildcardMatch(id, str)) {
-                    return true;
-                }
-                if (FilenameUtils.wildcardMatch(idNoMeta, str)) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        return flagMatcher != null && flagMatcher.isBlacklisted(id);
     }
 
     public static boolean isTargetIdBlacklisted(String flag, Object target, WorldProperties worldProperties) {
-        final List<String> flagList = GPBlacklists.blacklistMap.get(flag);
-        final boolean checkFlag = flagList != null && !flagList.isEmpty();
-        if (!checkFlag && !GPBlacklists.GLOBAL_TARGET) {
+        final GPBlacklistMatcher flagMatcher = GPBlacklists.getFlagMatcher(flag);
+        if (flagMatcher == null && !GPBlacklists.GLOBAL_TARGET) {
             return false;
         }
 
         final GriefPreventionConfig<?> activeConfig = GriefPreventionPlugin.getActiveConfig(worldProperties);
         final String id = GPPermissionHandler.getPermissionIdentifier(target);
-        final String idNoMeta = GPPermissionHandler.getIdentifierWithoutMeta(id);
 
         // Check global
         if (GPBlacklists.GLOBAL_TARGET) {
@@ -465,28 +467,12 @@ public static boolean isTargetIdBlacklisted(String flag, Object target, WorldPro
             if (globalTargetBlacklist == null) {
                 return false;
             }
-            for (String str : globalTargetBlacklist) {
-                if (FilenameUtils.wildcardMatch(id, str)) {
-                    return true;
-                }
-                if (FilenameUtils.wildcardMatch(idNoMeta, str)) {
-                    return true;
-                }
+            if (GPBlacklists.getGlobalTargetMatcher(worldProperties.getUniqueId(), globalTargetBlacklist).isBlacklisted(id)) {
+                return true;
             }
         }
         // Check flag
-        if (checkFlag) {
-            for (String str : flagList) {
-                if (FilenameUtils.wildcardMatch(id, str)) {
-                    return true;
-                }
-                if (FilenameUtils.wildcardMatch(idNoMeta, str)) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        return flagMatcher != null && flagMatcher.isBlacklisted(id);
     }
 
     public static boolean containsProfanity(String message) {
@@ -517,6 +503,44 @@ public void onChangeServiceProvider(ChangeServiceProviderEvent event) {
         }
     }
 
+    @Listener
+    public void onSubjectDataUpdate(SubjectDataUpdateEvent event) {
+        if (event.getUpdatedData().getSubject() == GLOBAL_SUBJECT) {
+            GPFlagDecisionTable.refresh();
+        }
+        GPPermissionCache.invalidate();
+    }
+
+    @Listener(order = Order.LAST)
+    public void onServerStopping(GameStoppingServerEvent event) {
+        ClaimSaveQueue.flushAll();
+        for (GPDebugData debugData : this.debugUserMap.values()) {
+            // the executor may not run queued tasks once the server stops
+            debugData.stopFileRecording(true);
+        }
+    }
+
+    // Worlds are saved after the stopping event so flush anything queued by those saves
+    @Listener(order = Order.LAST)
+    public void onServerStopped(GameStoppedServerEvent event) {
+        ClaimSaveQueue.flushAll();
+        // wait for writes already handed to the executor
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                this.logger.warn("Timed out waiting for claim data writes to finish.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.dataStore instanceof DatabaseDataStore) {
+            ((DatabaseDataStore) this.dataStore).flush();
+        }
+        if (this.customLogger != null) {
+            this.customLogger.close();
+        }
+    }
+
     private boolean validateSpongeVersion() {
         if (Sponge.getPlatform().getContainer(Component.IMPLEMENTATION).getName().equals("SpongeForge")) {
             if (Sponge.getPlatform().getContainer(Component.IMPLEMENTATION).getVersion().isPresent()) {
@@ -882,7 +906,12 @@ public void onServerAboutToStart(GameAboutToStartServerEvent event) {
 
         if (this.dataStore == null) {
             try {
-                this.dataStore = new FlatFileDataStore();
+                final DatabaseCategory databaseConfig = GriefPreventionPlugin.getGlobalConfig().getConfig().database;
+                if (databaseConfig.dbURL.isEmpty()) {
+                    this.dataStore = new FlatFileDataStore();
+                } else {
+                    this.dataStore = DatabaseDataStore.create(databaseConfig);
+                }
                 // Migrator currently only handles pixelmon
                 // Remove pixelmon check after GP 5.0.0 update
                 if (Sponge.getPluginManager().getPlugin("pixelmon").isPresent()) {
@@ -925,7 +954,7 @@ public void onServerAboutToStart(GameAboutToStartServerEvent event) {
         int cleanupTaskInterval = GriefPreventionPlugin.getGlobalConfig().getConfig().claim.expirationCleanupInterval;
         if (cleanupTaskInterval > 0) {
             CleanupUnusedClaimsTask cleanupTask = new CleanupUnusedClaimsTask();
-            Sponge.getScheduler().createTaskBuilder().delay(cleanupTaskInterval, TimeUnit.MINUTES).execute(cleanupTask)
+            Sponge.getScheduler().createTaskBuilder().delay(cleanupTaskInterval, TimeUnit.MINUTES).intervalTicks(1).execute(cleanupTask)
                     .submit(GriefPreventionPlugin.instance);
         }
 
@@ -1033,6 +1062,13 @@ public void registerBaseCommands() {
         debugChoicesBuilder.put("log", "log");
         debugChoicesBuilder.put("record", "record");
         debugChoicesBuilder.put("paste", "paste");
+        debugChoicesBuilder.put("file", "file");
+
+        ImmutableMap.Builder<String, String> debugFilterChoicesBuilder = ImmutableMap.builder();
+        debugFilterChoicesBuilder.put("claim", "claim");
+        debugFilterChoicesBuilder.put("source", "source");
+        debugFilterChoicesBuilder.put("target", "target");
+        debugFilterChoicesBuilder.put("clear", "clear");
 
         ImmutableMap.Builder<String, String> contextChoicesBuilder = ImmutableMap.builder();
         contextChoicesBuilder.put("default", "default");
@@ -1040,6 +1076,7 @@ public void registerBaseCommands() {
         final ImmutableMap<String, String> flagChoices = flagChoicesBuilder.build();
         final ImmutableMap<String, String> optionChoices = optionChoicesBuilder.build();
         final ImmutableMap<String, String> debugChoices = debugChoicesBuilder.build();
+        final ImmutableMap<String, String> debugFilterChoices = debugFilterChoicesBuilder.build();
         final ImmutableMap<String, String> contextChoices = contextChoicesBuilder.build();
 
         Sponge.getCommandManager().register(this, CommandSpec.builder()
@@ -1276,6 +1313,12 @@ public void registerBaseCommands() {
                 .permission(GPPermissions.COMMAND_DEBUG)
                 .arguments(GenericArguments.seq(choices(Text.of("target"), debugChoices),
                         optional(user(Text.of("user")))))
+                .child(CommandSpec.builder()
+                        .description(Text.of("Limits debug records to a claim, source or target"))
+                        .permission(GPPermissions.COMMAND_DEBUG)
+                        .arguments(choices(Text.of("filter-type"), debugFilterChoices), optional(string(Text.of("filter-value"))))
+                        .executor(new CommandDebugFilter())
+                        .build(), "filter")
                 .executor(new CommandDebug())
                 .build(), "gpdebug");
 
@@ -1924,6 +1967,8 @@ public void loadConfig() {
                 this.dataStore.setupDefaultPermissions(world);
             }
             GPBlacklists.populateBlacklistStatus();
+            GPFlagDecisionTable.invalidateAll();
+            GPPermissionCache.invalidate();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -2046,41 +2091,35 @@ public void restoreClaim(GPClaim claim, long delayInTicks) {
     }
 
     public void restoreChunk(Chunk chunk, int miny, boolean aggressiveMode, long delayInTicks, Player player) {
-        // build a snapshot of this chunk, including 1 block boundary outside of
-        // the chunk all the way around
-        int maxHeight = chunk.getWorld().getDimension().getBuildHeight() - 1;
-        BlockSnapshot[][][] snapshots = new BlockSnapshot[18][maxHeight][18];
-        BlockSnapshot startBlock = chunk.createSnapshot(0, 0, 0);
-        Location<World> startLocation =
-                new Location<World>(chunk.getWorld(), startBlock.getPosition().getX() - 1, 0, startBlock.getPosition().getZ() - 1);
-        for (int x = 0; x < snapshots.length; x++) {
-            for (int z = 0; z < snapshots[0][0].length; z++) {
-                for (int y = 0; y < snapshots[0].length; y++) {
-                    snapshots[x][y][z] = chunk.getWorld()
-                            .createSnapshot(startLocation.getBlockX() + x, startLocation.getBlockY() + y, startLocation.getBlockZ() + z);
-                }
-            }
+        if (delayInTicks > 0) {
+            final World world = chunk.getWorld();
+            final Vector3i chunkPos = chunk.getPosition();
+            Sponge.getScheduler().createTaskBuilder()
+                    .delayTicks(delayInTicks)
+                    .execute(() -> {
+                        if (world.isLoaded()) {
+                            world.loadChunk(chunkPos, true).ifPresent(loadedChunk -> this.restoreChunk(loadedChunk, miny, aggressiveMode, 0, player));
+                        }
+                    })
+                    .submit(this);
+            return;
         }
 
+        // capture this chunk, including 1 block boundary outside of
+        // the chunk all the way around
+        final World world = chunk.getWorld();
+        final Vector3i blockMin = chunk.getBlockMin();
+        final BlockStateVolume volume = BlockStateVolume.capture(world, blockMin.getX() - 1, blockMin.getZ() - 1, 18,
+                world.getDimension().getBuildHeight(), 18);
+
         // create task to process those data in another thread
-        Location<World> lesserBoundaryCorner = chunk.createSnapshot(0, 0, 0).getLocation().get();
-        Location<World> greaterBoundaryCorner = chunk.createSnapshot(15, 0, 15).getLocation().get();
-        // create task when done processing, this task will create a main thread task to actually update the world with processing results
-        /*RestoreNatureProcessingTask task = new RestoreNatureProcessingTask(snapshots, miny, chunk.getWorld().getDimension().getType(),
-                lesserBoundaryCorner.getBiome(), lesserBoundaryCorner, greaterBoundaryCorner, this.getSeaLevel(chunk.getWorld()),
-                aggressiveMode, claimModeIsActive(lesserBoundaryCorner.getExtent().getProperties(), ClaimsMode.Creative),
-                playerReceivingVisualization);*/
-        // show visualization to player who started the restoration
-        if (player != null) {
-            GPPlayerData playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(player.getWorld(), player.getUniqueId());
-            GPClaim claim = new GPClaim(lesserBoundaryCorner, greaterBoundaryCorner, ClaimType.BASIC, false);
-            // TODO
-            claim.getVisualizer().resetVisuals();
-            claim.getVisualizer().createClaimBlockVisuals(player.getLocation().getBlockY(), player.getLocation(), playerData);
-            claim.getVisualizer().apply(player);
-        }
-
-        BlockUtils.regenerateChunk((net.minecraft.world.chunk.Chunk) chunk);
+        Location<World> lesserBoundaryCorner = new Location<>(world, blockMin.getX(), 0, blockMin.getZ());
+        Location<World> greaterBoundaryCorner = new Location<>(world, blockMin.getX() + 15, 0, blockMin.getZ() + 15);
+        // when done processing, this task will queue the changes to be applied to the world on the main thread
+        RestoreNatureProcessingTask task = new RestoreNatureProcessingTask(volume, miny, world.getDimension().getType(),
+                lesserBoundaryCorner.getBiome(), lesserBoundaryCorner, greaterBoundaryCorner, this.getSeaLevel(world),
+                aggressiveMode, claimModeIsActive(world.getProperties(), ClaimsMode.Creative), player);
+        this.executor.execute(task);
     }
 
     public int getSeaLevel(World world) {
@@ -0,0 +1,114 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import me.ryanhamshire.griefprevention.GPPlayerData;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.api.claim.Claim;
+import me.ryanhamshire.griefprevention.util.BlockUtils;
+import net.minecraft.util.math.ChunkPos;
+import org.spongepowered.api.util.Direction;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// Legacy lookup backed by the chunk -> top level claims map maintained by GPClaimManager
+public class ChunkClaimIndex implements ClaimIndex {
+
+    private final GPClaimManager claimManager;
+
+    public ChunkClaimIndex(GPClaimManager claimManager) {
+        this.claimManager = claimManager;
+    }
+
+    @Override
+    public void updateClaim(GPClaim claim) {
+        // chunk hashes are maintained by GPClaimManager
+    }
+
+    @Override
+    public void removeClaim(GPClaim claim) {
+        // chunk hashes are maintained by GPClaimManager
+    }
+
+    @Override
+    public GPClaim getClaimAt(Location<World> location, GPPlayerData playerData, boolean useBorderBlockRadius) {
+        Set<Claim> claimsInChunk = this.claimManager.getInternalChunksToClaimsMap().get(ChunkPos.asLong(location.getBlockX() >> 4, location.getBlockZ() >> 4));
+        if (useBorderBlockRadius && (playerData != null && !playerData.ignoreBorderCheck)) {
+            final int borderBlockRadius = GriefPreventionPlugin.getActiveConfig(location.getExtent().getUniqueId()).getConfig().claim.borderBlockRadius;
+            // if borderBlockRadius > 0, check surrounding chunks
+            if (borderBlockRadius > 0) {
+                // copy to avoid mutating the chunk map entry
+                claimsInChunk = claimsInChunk == null ? new HashSet<>() : new HashSet<>(claimsInChunk);
+                for (Direction direction : BlockUtils.ORDINAL_SET) {
+                    Location<World> currentLocation = location;
+                    for (int i = 0; i < borderBlockRadius; i++) { // Handle depth
+                        currentLocation = currentLocation.getBlockRelative(direction);
+                        Set<Claim> relativeClaims = this.claimManager.getInternalChunksToClaimsMap().get(ChunkPos.asLong(currentLocation.getBlockX() >> 4, currentLocation.getBlockZ() >> 4));
+                        if (relativeClaims != null) {
+                            claimsInChunk.addAll(relativeClaims);
+                        }
+                    }
+                }
+            }
+        }
+        if (claimsInChunk == null || claimsInChunk.isEmpty()) {
+            return null;
+        }
+
+        for (Claim claim : claimsInChunk) {
+            GPClaim foundClaim = findClaim((GPClaim) claim, location, playerData, useBorderBlockRadius);
+            if (foundClaim != null) {
+                return foundClaim;
+            }
+        }
+
+        return null;
+    }
+
+    private GPClaim findClaim(GPClaim claim, Location<World> location, GPPlayerData playerData, boolean useBorderBlockRadius) {
+        if (claim.contains(location, playerData, useBorderBlockRadius)) {
+            // when we find a top level claim, if the location is in one of its children,
+            // return the child claim, not the top level claim
+            for (Claim childClaim : claim.children) {
+                GPClaim child = (GPClaim) childClaim;
+                if (!child.children.isEmpty()) {
+                    GPClaim innerChild = findClaim(child, location, playerData, useBorderBlockRadius);
+                    if (innerChild != null) {
+                        return innerChild;
+                    }
+                }
+                // check if child has children (Town -> Basic -> Subdivision)
+                if (child.contains(location, playerData, useBorderBlockRadius)) {
+                    return child;
+                }
+            }
+            return claim;
+        }
+        return null;
+    }
+}
@@ -22,40 +22,25 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  */
-package me.ryanhamshire.griefprevention.util;
+package me.ryanhamshire.griefprevention.claim;
 
-import org.spongepowered.api.util.Tristate;
-import org.spongepowered.common.SpongeImpl;
+import me.ryanhamshire.griefprevention.GPPlayerData;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
 
-public class BlockPosCache {
+import javax.annotation.Nullable;
 
-    private int lastTickCounter;
-    private short lastBlockPos;
-    private Tristate lastResult = Tristate.UNDEFINED;
+// Spatial lookup structure used by GPClaimManager to resolve the claim at a location
+public interface ClaimIndex {
 
-    public BlockPosCache(short pos) {
-        this.lastBlockPos = pos;
-        this.lastTickCounter = SpongeImpl.getServer().getTickCounter();
-    }
+    // Inserts claim or refreshes its bounds if already indexed
+    void updateClaim(GPClaim claim);
 
-    public void setLastResult(Tristate result) {
-        this.lastResult = result;
-    }
+    void removeClaim(GPClaim claim);
 
-    public Tristate getCacheResult(short pos) {
-        int currentTick = SpongeImpl.getServer().getTickCounter();
-        if (this.lastBlockPos != pos) {
-            this.lastBlockPos = pos;
-            this.lastTickCounter = currentTick;
-            return Tristate.UNDEFINED;
-        }
+    // Returns the deepest claim containing location or null if location is in wilderness
+    @Nullable
+    GPClaim getClaimAt(Location<World> location, @Nullable GPPlayerData playerData, boolean useBorderBlockRadius);
 
-        if ((currentTick - this.lastTickCounter) <= 2) {
-            this.lastTickCounter = currentTick;
-            return this.lastResult;
-        }
-
-        this.lastTickCounter = currentTick;
-        return Tristate.UNDEFINED;
-    }
+    void clear();
 }
@@ -0,0 +1,210 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.api.claim.Claim;
+import net.minecraft.util.math.ChunkPos;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+import org.spongepowered.api.world.storage.WorldProperties;
+
+import java.util.Set;
+import java.util.UUID;
+
+// Per player cache used by movement checks. Stores the last resolved claim along with a box
+// around the player that no other claim intersects, so any position inside the box resolves
+// to the same claim without touching the claim index. The box is bounded by the claim (and its
+// parents) and is cut back from every nearby claim boundary. Any claim topology change
+// invalidates all caches through GPClaimManager's topology version.
+public class ClaimMovementCache {
+
+    // chunks scanned in each horizontal direction when building the box
+    private static final int CHUNK_RADIUS = 1;
+
+    private GPClaim claim;
+    private UUID worldUniqueId;
+    private long topologyVersion = -1;
+    private int minX;
+    private int minY;
+    private int minZ;
+    private int maxX;
+    private int maxY;
+    private int maxZ;
+
+    public GPClaim getClaimAt(Location<World> location) {
+        final int x = location.getBlockX();
+        final int y = location.getBlockY();
+        final int z = location.getBlockZ();
+        final long version = GPClaimManager.getTopologyVersion();
+        if (this.claim != null && this.topologyVersion == version && location.getExtent().getUniqueId().equals(this.worldUniqueId)
+                && x >= this.minX && x <= this.maxX && y >= this.minY && y <= this.maxY && z >= this.minZ && z <= this.maxZ) {
+            return this.claim;
+        }
+
+        final WorldProperties worldProperties = location.getExtent().getProperties();
+        final GPClaimManager claimManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(worldProperties);
+        final GPClaim claim = (GPClaim) claimManager.getClaimAt(location);
+        if (!this.update(claimManager, claim, x, y, z)) {
+            this.claim = null;
+            return claim;
+        }
+
+        this.claim = claim;
+        this.worldUniqueId = worldProperties.getUniqueId();
+        this.topologyVersion = version;
+        return claim;
+    }
+
+    public void invalidate() {
+        this.claim = null;
+    }
+
+    // Returns false if the position overlaps a claim that does not resolve here, which can only
+    // happen with overlapping claims. Those positions are simply not cached.
+    private boolean update(GPClaimManager claimManager, GPClaim claim, int x, int y, int z) {
+        final int chunkX = x >> 4;
+        final int chunkZ = z >> 4;
+        this.minX = (chunkX - CHUNK_RADIUS) << 4;
+        this.minZ = (chunkZ - CHUNK_RADIUS) << 4;
+        this.maxX = ((chunkX + CHUNK_RADIUS + 1) << 4) - 1;
+        this.maxZ = ((chunkZ + CHUNK_RADIUS + 1) << 4) - 1;
+        this.minY = Integer.MIN_VALUE;
+        this.maxY = Integer.MAX_VALUE;
+
+        if (!claim.isWilderness()) {
+            GPClaim parent = claim;
+            while (parent != null) {
+                this.minX = Math.max(this.minX, parent.lesserBoundaryCorner.getBlockX());
+                this.minY = Math.max(this.minY, parent.lesserBoundaryCorner.getBlockY());
+                this.minZ = Math.max(this.minZ, parent.lesserBoundaryCorner.getBlockZ());
+                this.maxX = Math.min(this.maxX, parent.greaterBoundaryCorner.getBlockX());
+                this.maxY = Math.min(this.maxY, parent.greaterBoundaryCorner.getBlockY());
+                this.maxZ = Math.min(this.maxZ, parent.greaterBoundaryCorner.getBlockZ());
+                parent = parent.parent;
+            }
+        }
+
+        for (int cx = chunkX - CHUNK_RADIUS; cx <= chunkX + CHUNK_RADIUS; cx++) {
+            for (int cz = chunkZ - CHUNK_RADIUS; cz <= chunkZ + CHUNK_RADIUS; cz++) {
+                final Set<Claim> claimsInChunk = claimManager.getInternalChunksToClaimsMap().get(ChunkPos.asLong(cx, cz));
+                if (claimsInChunk == null) {
+                    continue;
+                }
+                for (Claim chunkClaim : claimsInChunk) {
+                    if (!this.exclude((GPClaim) chunkClaim, claim, x, y, z)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return x >= this.minX && x <= this.maxX && y >= this.minY && y <= this.maxY && z >= this.minZ && z <= this.maxZ;
+    }
+
+    // Cuts the box back so it no longer intersects the other claim or any of its children
+    private boolean exclude(GPClaim other, GPClaim claim, int x, int y, int z) {
+        if (other != claim && !isParentOf(other, claim) && this.intersects(other)) {
+            final int lesserX = other.lesserBoundaryCorner.getBlockX();
+            final int lesserY = other.lesserBoundaryCorner.getBlockY();
+            final int lesserZ = other.lesserBoundaryCorner.getBlockZ();
+            final int greaterX = other.greaterBoundaryCorner.getBlockX();
+            final int greaterY = other.greaterBoundaryCorner.getBlockY();
+            final int greaterZ = other.greaterBoundaryCorner.getBlockZ();
+            final long sizeX = (long) this.maxX - this.minX + 1;
+            final long sizeY = (long) this.maxY - this.minY + 1;
+            final long sizeZ = (long) this.maxZ - this.minZ + 1;
+            // pick the cut that keeps the largest area, vertical cuts only as a last resort
+            long best = -1;
+            int axis = -1;
+            if (x < lesserX && (lesserX - this.minX) * sizeZ > best) {
+                best = (lesserX - this.minX) * sizeZ;
+                axis = 0;
+            }
+            if (x > greaterX && (this.maxX - greaterX) * sizeZ > best) {
+                best = (this.maxX - greaterX) * sizeZ;
+                axis = 1;
+            }
+            if (z < lesserZ && (lesserZ - this.minZ) * sizeX > best) {
+                best = (lesserZ - this.minZ) * sizeX;
+                axis = 2;
+            }
+            if (z > greaterZ && (this.maxZ - greaterZ) * sizeX > best) {
+                axis = 3;
+            }
+            if (axis == -1) {
+                if (y < lesserY) {
+                    axis = 4;
+                } else if (y > greaterY) {
+                    axis = 5;
+                } else {
+                    return false;
+                }
+            }
+            switch (axis) {
+                case 0 :
+                    this.maxX = lesserX - 1;
+                    break;
+                case 1 :
+                    this.minX = greaterX + 1;
+                    break;
+                case 2 :
+                    this.maxZ = lesserZ - 1;
+                    break;
+                case 3 :
+                    this.minZ = greaterZ + 1;
+                    break;
+                case 4 :
+                    this.maxY = lesserY - 1;
+                    break;
+                default :
+                    this.minY = greaterY + 1;
+            }
+        }
+
+        for (Claim child : other.children) {
+            if (!this.exclude((GPClaim) child, claim, x, y, z)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean intersects(GPClaim other) {
+        return other.lesserBoundaryCorner.getBlockX() <= this.maxX && other.greaterBoundaryCorner.getBlockX() >= this.minX
+                && other.lesserBoundaryCorner.getBlockY() <= this.maxY && other.greaterBoundaryCorner.getBlockY() >= this.minY
+                && other.lesserBoundaryCorner.getBlockZ() <= this.maxZ && other.greaterBoundaryCorner.getBlockZ() >= this.minZ;
+    }
+
+    private static boolean isParentOf(GPClaim other, GPClaim claim) {
+        GPClaim parent = claim.parent;
+        while (parent != null) {
+            if (parent == other) {
+                return true;
+            }
+            parent = parent.parent;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.api.claim.TrustType;
+import me.ryanhamshire.griefprevention.configuration.IClaimData;
+
+import java.util.List;
+import java.util.UUID;
+
+// Compiled view of a claim's user trust lists. Each user maps to the highest trust level
+// granted, where a higher TrustType ordinal implies every lower one except NONE.
+// The inherited view also includes every inheriting, non-expired parent.
+public final class ClaimTrustIndex {
+
+    private final long generation;
+    private final Object2IntMap<UUID> trusts;
+    private final int publicTrust;
+    private final Object2IntMap<UUID> inheritedTrusts;
+    private final int inheritedPublicTrust;
+
+    public ClaimTrustIndex(long generation, IClaimData claimData, ClaimTrustIndex parent) {
+        this.generation = generation;
+        this.trusts = new Object2IntOpenHashMap<>();
+        addTrusts(this.trusts, claimData.getAccessors(), TrustType.ACCESSOR);
+        addTrusts(this.trusts, claimData.getContainers(), TrustType.CONTAINER);
+        addTrusts(this.trusts, claimData.getBuilders(), TrustType.BUILDER);
+        addTrusts(this.trusts, claimData.getManagers(), TrustType.MANAGER);
+        this.publicTrust = this.trusts.removeInt(GriefPreventionPlugin.PUBLIC_UUID);
+        if (parent == null || (parent.inheritedTrusts.isEmpty() && parent.inheritedPublicTrust == 0)) {
+            this.inheritedTrusts = this.trusts;
+            this.inheritedPublicTrust = this.publicTrust;
+        } else {
+            this.inheritedTrusts = new Object2IntOpenHashMap<>(parent.inheritedTrusts);
+            for (Object2IntMap.Entry<UUID> mapEntry : this.trusts.object2IntEntrySet()) {
+                mergeTrust(this.inheritedTrusts, mapEntry.getKey(), mapEntry.getIntValue());
+            }
+            this.inheritedPublicTrust = Math.max(this.publicTrust, parent.inheritedPublicTrust);
+        }
+    }
+
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    public boolean isPublicTrusted(TrustType type) {
+        return type != TrustType.NONE && this.publicTrust >= type.ordinal();
+    }
+
+    // Checks this claim's lists only
+    public boolean isTrusted(UUID uuid, TrustType type) {
+        if (type == TrustType.NONE) {
+            return false;
+        }
+        return this.publicTrust >= type.ordinal() || this.trusts.getInt(uuid) >= type.ordinal();
+    }
+
+    // Checks this claim's lists along with all inherited parent lists
+    public boolean isInheritedTrusted(UUID uuid, TrustType type) {
+        if (type == TrustType.NONE) {
+            return false;
+        }
+        return this.inheritedPublicTrust >= type.ordinal() || this.inheritedTrusts.getInt(uuid) >= type.ordinal();
+    }
+
+    private static void addTrusts(Object2IntMap<UUID> trusts, List<UUID> uuids, TrustType type) {
+        for (UUID uuid : uuids) {
+            mergeTrust(trusts, uuid, type.ordinal());
+        }
+    }
+
+    private static void mergeTrust(Object2IntMap<UUID> trusts, UUID uuid, int level) {
+        if (trusts.getInt(uuid) < level) {
+            trusts.put(uuid, level);
+        }
+    }
+}
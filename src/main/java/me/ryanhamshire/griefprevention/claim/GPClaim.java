@@ -38,15 +38,20 @@
 import me.ryanhamshire.griefprevention.command.CommandHelper;
 import me.ryanhamshire.griefprevention.configuration.*;
 import me.ryanhamshire.griefprevention.event.*;
+import me.ryanhamshire.griefprevention.permission.GPFlagDecisionTable;
 import me.ryanhamshire.griefprevention.permission.GPOptionHandler;
 import me.ryanhamshire.griefprevention.permission.GPOptions;
+import me.ryanhamshire.griefprevention.permission.GPPermissionCache;
 import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
 import me.ryanhamshire.griefprevention.util.BlockUtils;
 import me.ryanhamshire.griefprevention.util.PermissionUtils;
 import me.ryanhamshire.griefprevention.visual.Visualization;
 import me.ryanhamshire.griefprevention.visual.VisualizationType;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.util.ClassInheritanceMultiMap;
 import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockState;
@@ -66,6 +71,7 @@
 import org.spongepowered.api.util.Tristate;
 import org.spongepowered.api.world.*;
 import org.spongepowered.common.SpongeImpl;
+import org.spongepowered.common.bridge.world.chunk.ChunkProviderBridge;
 
 import javax.annotation.Nullable;
 import java.io.File;
@@ -75,6 +81,7 @@
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -107,6 +114,9 @@ public class GPClaim implements Claim {
     private UUID ownerUniqueId;
     private ClaimStorageData claimStorage;
     private IClaimData claimData;
+    private volatile ClaimTrustIndex trustIndex;
+    // Owner this claim is currently indexed under by its claim manager
+    UUID ownerIndexKey;
     private GPPlayerData ownerPlayerData;
     private Account economyAccount;
 
@@ -212,7 +222,7 @@ public void initializeClaimData(GPClaim parent) {
             claimDataFolderPath = DataStore.worldConfigMap.get(this.world.getUniqueId()).getPath().getParent().resolve("ClaimData").resolve(this.type.name().toLowerCase());
         }
         try {
-            if (Files.notExists(claimDataFolderPath)) {
+            if (ClaimStorageData.getBackend() == null && Files.notExists(claimDataFolderPath)) {
                 Files.createDirectories(claimDataFolderPath);
             }
         } catch (IOException e) {
@@ -237,6 +247,14 @@ public ClaimType getType() {
     public void setType(ClaimType type) {
         this.type = type;
         this.claimData.setType(type);
+        GPPermissionCache.invalidate();
+        this.updateOwnerIndex();
+    }
+
+    private void updateOwnerIndex() {
+        if (this.ownerIndexKey != null) {
+            GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.world.getProperties()).updateOwnerIndex(this);
+        }
     }
 
     public Visualization getVisualizer() {
@@ -271,6 +289,8 @@ public UUID getOwnerUniqueId() {
 
     public void setOwnerUniqueId(UUID uniqueId) {
         this.ownerUniqueId = uniqueId;
+        GPPermissionCache.invalidate();
+        this.updateOwnerIndex();
     }
 
     public boolean isAdminClaim() {
@@ -823,11 +843,18 @@ public void save() {
                 childClaim.save();
             }
         }
-        if (this.getInternalClaimData().requiresSave()) {
-            this.updateClaimStorageData();
-            this.getClaimStorage().save();
-            this.getInternalClaimData().setRequiresSave(false);
+        this.saveData();
+    }
+
+    // Queues a write of this claim only, returns false if nothing changed
+    public boolean saveData() {
+        if (!this.getInternalClaimData().requiresSave()) {
+            return false;
         }
+        this.updateClaimStorageData();
+        this.getClaimStorage().save();
+        this.getInternalClaimData().setRequiresSave(false);
+        return true;
     }
 
     public boolean protectPlayersInClaim() {
@@ -927,6 +954,7 @@ public ClaimResult transferOwner(UUID newOwnerID) {
         }
 
         this.ownerPlayerData = newOwnerData;
+        this.updateOwnerIndex();
         this.getClaimStorage().save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
@@ -1287,25 +1315,9 @@ public ClaimResult resizeInternal(int smallX, int smallY, int smallZ, int bigX,
 
         // resize validated, remove invalid chunkHashes
         if (this.parent == null) {
-            for (Long chunkHash : currentChunkHashes) {
-                Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk != null && claimsInChunk.size() > 0) {
-                    claimsInChunk.remove(this);
-                }
-            }
-
-            final Set<Long> newChunkHashes = this.getChunkHashes(true);
-            // add new chunk hashes
-            for (Long chunkHash : newChunkHashes) {
-                Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk == null) {
-                    claimsInChunk = new HashSet<>();
-                    claimWorldManager.getInternalChunksToClaimsMap().put(chunkHash, claimsInChunk);
-                }
-
-                claimsInChunk.add(this);
-            }
+            claimWorldManager.updateChunkHashes(this, currentChunkHashes);
         }
+        claimWorldManager.updateClaimIndex(this);
 
         this.claimData.setLesserBoundaryCorner(BlockUtils.positionToString(this.lesserBoundaryCorner));
         this.claimData.setGreaterBoundaryCorner(BlockUtils.positionToString(this.greaterBoundaryCorner));
@@ -1436,25 +1448,9 @@ public ClaimResult resizeCuboid(int smallX, int smallY, int smallZ, int bigX, in
         // resize validated, remove invalid chunkHashes
         final GPClaimManager claimWorldManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.world.getProperties());
         if (this.parent == null) {
-            for (Long chunkHash : currentChunkHashes) {
-                Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk != null && claimsInChunk.size() > 0) {
-                    claimsInChunk.remove(this);
-                }
-            }
-
-            final Set<Long> newChunkHashes = this.getChunkHashes(true);
-            // add new chunk hashes
-            for (Long chunkHash : newChunkHashes) {
-                Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk == null) {
-                    claimsInChunk = new HashSet<>();
-                    claimWorldManager.getInternalChunksToClaimsMap().put(chunkHash, claimsInChunk);
-                }
-
-                claimsInChunk.add(this);
-            }
+            claimWorldManager.updateChunkHashes(this, currentChunkHashes);
         }
+        claimWorldManager.updateClaimIndex(this);
 
         this.claimData.setLesserBoundaryCorner(BlockUtils.positionToString(this.lesserBoundaryCorner));
         this.claimData.setGreaterBoundaryCorner(BlockUtils.positionToString(this.greaterBoundaryCorner));
@@ -1683,28 +1679,82 @@ public World getWorld() {
 
     @Override
     public List<Entity> getEntities() {
-        Collection<Entity> worldEntityList = Sponge.getServer().getWorld(this.world.getUniqueId()).get().getEntities();
-        List<Entity> entityList = new ArrayList<>();
-        for (Entity entity : worldEntityList) {
-            if (!((net.minecraft.entity.Entity) entity).isDead && this.contains(entity.getLocation())) {
-                entityList.add(entity);
-            }
-        }
+        return this.getEntities(null);
+    }
 
-        return entityList;
+    // Returns all living entities within this claim that match the filter
+    public List<Entity> getEntities(@Nullable Predicate<? super Entity> filter) {
+        return this.queryEntities(net.minecraft.entity.Entity.class, Entity.class, filter);
     }
 
     @Override
     public List<Player> getPlayers() {
-        Collection<Player> worldPlayerList = Sponge.getServer().getWorld(this.world.getUniqueId()).get().getPlayers();
-        List<Player> playerList = new ArrayList<>();
-        for (Player player : worldPlayerList) {
-            if (!((net.minecraft.entity.Entity) player).isDead && this.contains(player.getLocation())) {
-                playerList.add(player);
+        return this.queryEntities(EntityPlayerMP.class, Player.class, null);
+    }
+
+    // Walks the entity lists of the loaded chunks covered by this claim, limited to the sections within
+    // the claim's height. Falls back to the world list when that is smaller than the number of chunks.
+    private <T> List<T> queryEntities(Class<? extends net.minecraft.entity.Entity> mcType, Class<T> type, @Nullable Predicate<? super T> filter) {
+        final net.minecraft.world.World world = (net.minecraft.world.World) Sponge.getServer().getWorld(this.world.getUniqueId()).orElse(null);
+        final List<T> entityList = new ArrayList<>();
+        if (world == null) {
+            return entityList;
+        }
+
+        final int minChunkX = this.lesserBoundaryCorner.getBlockX() >> 4;
+        final int minChunkZ = this.lesserBoundaryCorner.getBlockZ() >> 4;
+        final int maxChunkX = this.greaterBoundaryCorner.getBlockX() >> 4;
+        final int maxChunkZ = this.greaterBoundaryCorner.getBlockZ() >> 4;
+        final long chunkCount = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+        final List<? extends net.minecraft.entity.Entity> worldList = mcType == EntityPlayerMP.class ? world.playerEntities : world.loadedEntityList;
+        if (chunkCount >= worldList.size()) {
+            for (net.minecraft.entity.Entity mcEntity : worldList) {
+                this.collectEntity(mcEntity, type, filter, entityList);
+            }
+            return entityList;
+        }
+
+        final ChunkProviderBridge chunkProvider = (ChunkProviderBridge) world.getChunkProvider();
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                final net.minecraft.world.chunk.Chunk chunk = chunkProvider.bridge$getLoadedChunkWithoutMarkingActive(chunkX, chunkZ);
+                if (chunk == null) {
+                    continue;
+                }
+                final ClassInheritanceMultiMap<net.minecraft.entity.Entity>[] sections = chunk.getEntityLists();
+                final int minSection = MathHelper.clamp(this.lesserBoundaryCorner.getBlockY() >> 4, 0, sections.length - 1);
+                final int maxSection = MathHelper.clamp(this.greaterBoundaryCorner.getBlockY() >> 4, 0, sections.length - 1);
+                for (int i = minSection; i <= maxSection; i++) {
+                    for (net.minecraft.entity.Entity mcEntity : sections[i].getByClass(mcType)) {
+                        this.collectEntity(mcEntity, type, filter, entityList);
+                    }
+                }
             }
         }
 
-        return playerList;
+        return entityList;
+    }
+
+    private <T> void collectEntity(net.minecraft.entity.Entity mcEntity, Class<T> type, @Nullable Predicate<? super T> filter, List<T> entityList) {
+        if (mcEntity.isDead || !type.isInstance(mcEntity)) {
+            return;
+        }
+        final int x = MathHelper.floor(mcEntity.posX);
+        final int y = MathHelper.floor(mcEntity.posY);
+        final int z = MathHelper.floor(mcEntity.posZ);
+        if (x < this.lesserBoundaryCorner.getBlockX() || x > this.greaterBoundaryCorner.getBlockX()
+                || y < this.lesserBoundaryCorner.getBlockY() || y > this.greaterBoundaryCorner.getBlockY()
+                || z < this.lesserBoundaryCorner.getBlockZ() || z > this.greaterBoundaryCorner.getBlockZ()) {
+            return;
+        }
+        final T entity = type.cast(mcEntity);
+        // children are only considered within their parent's boundaries
+        if (this.parent != null && !this.contains(((Entity) entity).getLocation())) {
+            return;
+        }
+        if (filter == null || filter.test(entity)) {
+            entityList.add(entity);
+        }
     }
 
     @Override
@@ -1847,10 +1897,7 @@ public ClaimResult changeType(ClaimType type, Optional<UUID> ownerUniqueId, Comm
         final String fileName = this.getClaimStorage().filePath.getFileName().toString();
         final Path newPath = this.getClaimStorage().folderPath.getParent().resolve(type.name().toLowerCase()).resolve(fileName);
         try {
-            if (Files.notExists(newPath.getParent())) {
-                Files.createDirectories(newPath.getParent());
-            }
-            Files.move(this.getClaimStorage().filePath, newPath);
+            this.getClaimStorage().moveTo(newPath);
             if (type == ClaimType.TOWN) {
                 this.setClaimStorage(new TownStorageData(newPath, this.getWorldUniqueId(), newOwnerUUID, this.cuboid));
             } else {
@@ -2013,20 +2060,32 @@ public boolean isUserTrusted(User user, TrustType type, Set<Context> contexts) {
         }
 
         final GPPlayerData playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(world, user.getUniqueId());
-        if (!playerData.canIgnoreClaim(this) && this.getInternalClaimData() != null && this.getInternalClaimData().isExpired()) {
+        return this.isUserTrusted(user, type, contexts, playerData, this.getTrustIndex());
+    }
+
+    // Checks trust without looking up player data. The trust index must be this claim's
+    // inherited index, asynchronous checks pass one built on the main thread.
+    public boolean isUserTrusted(User user, TrustType type, @Nullable Set<Context> contexts, @Nullable GPPlayerData playerData,
+            ClaimTrustIndex trustIndex) {
+        if (user == null) {
             return false;
         }
-        if (!playerData.executingClaimDebug && !playerData.debugClaimPermissions) {
+
+        final boolean ignoreClaim = playerData != null && playerData.canIgnoreClaim(this);
+        if (!ignoreClaim && this.getInternalClaimData() != null && this.getInternalClaimData().isExpired()) {
+            return false;
+        }
+        if (playerData == null || (!playerData.executingClaimDebug && !playerData.debugClaimPermissions)) {
             if (user.getUniqueId().equals(this.getOwnerUniqueId())) {
                 return true;
             }
-            if (this.isAdminClaim() && playerData.canManageAdminClaims) {
+            if (this.isAdminClaim() && playerData != null && playerData.canManageAdminClaims) {
                 return true;
             }
-            if (this.isWilderness() && playerData.canManageWilderness) {
+            if (this.isWilderness() && playerData != null && playerData.canManageWilderness) {
                 return true;
             }
-            if (playerData.canIgnoreClaim(this)) {
+            if (ignoreClaim) {
                 return true;
             }
         }
@@ -2034,46 +2093,11 @@ public boolean isUserTrusted(User user, TrustType type, Set<Context> contexts) {
         if (type == null) {
             return true;
         }
-        if (this.isPublicTrusted(type)) {
+        // Covers public trust and the inherited parent chain
+        if (trustIndex.isInheritedTrusted(user.getUniqueId(), type)) {
             return true;
         }
 
-        if (type == TrustType.ACCESSOR) {
-            if (this.claimData.getAccessors().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getBuilders().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getContainers().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getManagers().contains(user.getUniqueId())) {
-                return true;
-            }
-        } else if (type == TrustType.BUILDER) {
-            if (this.claimData.getBuilders().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getManagers().contains(user.getUniqueId())) {
-                return true;
-            }
-        } else if (type == TrustType.CONTAINER) {
-            if (this.claimData.getContainers().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getBuilders().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getManagers().contains(user.getUniqueId())) {
-                return true;
-            }
-        } else if (type == TrustType.MANAGER) {
-            if (this.claimData.getManagers().contains(user.getUniqueId())) {
-                return true;
-            }
-        }
-
         if (contexts == null) {
             contexts = new HashSet<>();
             contexts.add(this.getContext());
@@ -2084,44 +2108,28 @@ public boolean isUserTrusted(User user, TrustType type, Set<Context> contexts) {
             return true;
         }
 
-        // Only check parent if this claim inherits
+        // Only check parent if this claim inherits, its lists are already part of the inherited index
         if (this.parent != null && this.getData().doesInheritParent()) {
-            return this.parent.isUserTrusted(user, type, contexts);
+            return this.parent.isUserTrusted(user, type, contexts, playerData, trustIndex);
         }
 
         return false;
     }
 
-    private boolean isPublicTrusted(TrustType type) {
-        if (type == TrustType.ACCESSOR) {
-            if (this.claimData.getAccessors().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
+    public ClaimTrustIndex getTrustIndex() {
+        final long generation = GPPermissionCache.getGeneration();
+        ClaimTrustIndex index = this.trustIndex;
+        if (index == null || index.getGeneration() != generation) {
+            ClaimTrustIndex parentIndex = null;
+            // An expired parent denies trust, so its lists must not be inherited
+            if (this.parent != null && this.getData().doesInheritParent() && this.parent.getInternalClaimData() != null
+                    && !this.parent.getInternalClaimData().isExpired()) {
+                parentIndex = this.parent.getTrustIndex();
             }
-            if (this.claimData.getBuilders().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            if (this.claimData.getContainers().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            return this.claimData.getManagers().contains(GriefPreventionPlugin.PUBLIC_UUID);
-        } else if (type == TrustType.BUILDER) {
-            if (this.claimData.getBuilders().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            return this.claimData.getManagers().contains(GriefPreventionPlugin.PUBLIC_UUID);
-        } else if (type == TrustType.CONTAINER) {
-            if (this.claimData.getContainers().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            if (this.claimData.getBuilders().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            return this.claimData.getManagers().contains(GriefPreventionPlugin.PUBLIC_UUID);
-        } else if (type == TrustType.MANAGER) {
-            return this.claimData.getManagers().contains(GriefPreventionPlugin.PUBLIC_UUID);
+            index = new ClaimTrustIndex(generation, this.claimData, parentIndex);
+            this.trustIndex = index;
         }
-
-        return false;
+        return index;
     }
 
     @Override
@@ -2141,6 +2149,12 @@ public boolean isGroupTrusted(String group, TrustType type) {
         return subj.hasPermission(contexts, GPPermissions.getTrustPermission(type));
     }
 
+    // Trust changes affect resolved permissions and the trust index
+    private void onTrustChanged() {
+        this.claimData.setRequiresSave(true);
+        GPPermissionCache.invalidate();
+    }
+
     @Override
     public ClaimResult addUserTrust(UUID uuid, TrustType type) {
         GPUserTrustClaimEvent.Add event = new GPUserTrustClaimEvent.Add(this, ImmutableList.of(uuid), type);
@@ -2154,7 +2168,7 @@ public ClaimResult addUserTrust(UUID uuid, TrustType type) {
             userList.add(uuid);
         }
 
-        this.claimData.setRequiresSave(true);
+        this.onTrustChanged();
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
@@ -2174,7 +2188,7 @@ public ClaimResult addUserTrusts(List<UUID> uuids, TrustType type) {
             }
         }
 
-        this.claimData.setRequiresSave(true);
+        this.onTrustChanged();
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
@@ -2189,13 +2203,13 @@ public ClaimResult removeUserTrust(UUID uuid, TrustType type) {
 
         if (type == TrustType.NONE) {
             final ClaimResult result = this.removeAllTrustsFromUser(uuid);
-            this.claimData.setRequiresSave(true);
+            this.onTrustChanged();
             this.claimData.save();
             return result;
         }
 
         this.getUserTrustList(type).remove(uuid);
-        this.claimData.setRequiresSave(true);
+        this.onTrustChanged();
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
@@ -2213,7 +2227,7 @@ public ClaimResult removeUserTrusts(List<UUID> uuids, TrustType type) {
                 this.removeAllTrustsFromUser(uuid);
             }
 
-            this.claimData.setRequiresSave(true);
+            this.onTrustChanged();
             this.claimData.save();
             return new GPClaimResult(this, ClaimResultType.SUCCESS);
         }
@@ -2223,7 +2237,7 @@ public ClaimResult removeUserTrusts(List<UUID> uuids, TrustType type) {
             userList.remove(uuid);
         }
 
-        this.claimData.setRequiresSave(true);
+        this.onTrustChanged();
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
@@ -2241,7 +2255,7 @@ public ClaimResult addGroupTrust(String group, TrustType type) {
             groupList.add(group);
         }
 
-        this.claimData.setRequiresSave(true);
+        this.onTrustChanged();
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
@@ -2261,7 +2275,7 @@ public ClaimResult addGroupTrusts(List<String> groups, TrustType type) {
             }
         }
 
-        this.claimData.setRequiresSave(true);
+        this.onTrustChanged();
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
@@ -2276,13 +2290,13 @@ public ClaimResult removeGroupTrust(String group, TrustType type) {
 
         if (type == TrustType.NONE) {
             final ClaimResult result = this.removeAllTrustsFromGroup(group);
-            this.claimData.setRequiresSave(true);
+            this.onTrustChanged();
             this.claimData.save();
             return result;
         }
 
         this.getGroupTrustList(type).remove(group);
-        this.claimData.setRequiresSave(true);
+        this.onTrustChanged();
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
@@ -2300,7 +2314,7 @@ public ClaimResult removeGroupTrusts(List<String> groups, TrustType type) {
                 this.removeAllTrustsFromGroup(group);
             }
 
-            this.claimData.setRequiresSave(true);
+            this.onTrustChanged();
             this.claimData.save();
             return new GPClaimResult(this, ClaimResultType.SUCCESS);
         }
@@ -2310,7 +2324,7 @@ public ClaimResult removeGroupTrusts(List<String> groups, TrustType type) {
             groupList.remove(group);
         }
 
-        this.claimData.setRequiresSave(true);
+        this.onTrustChanged();
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
@@ -2339,7 +2353,7 @@ public ClaimResult removeAllTrusts() {
             this.getGroupTrustList(type).clear();
         }
 
-        this.claimData.setRequiresSave(true);
+        this.onTrustChanged();
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
@@ -2357,7 +2371,7 @@ public ClaimResult removeAllUserTrusts() {
             this.getUserTrustList(type).clear();
         }
 
-        this.claimData.setRequiresSave(true);
+        this.onTrustChanged();
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
@@ -2375,7 +2389,7 @@ public ClaimResult removeAllGroupTrusts() {
             this.getGroupTrustList(type).clear();
         }
 
-        this.claimData.setRequiresSave(true);
+        this.onTrustChanged();
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
@@ -2536,13 +2550,7 @@ private void moveChildToParent(GPClaim parentClaim, GPClaim childClaim) {
         String fileName = childClaim.getClaimStorage().filePath.getFileName().toString();
         Path newPath = parentClaim.getClaimStorage().folderPath.resolve(childClaim.getType().name().toLowerCase()).resolve(fileName);
         try {
-            if (Files.notExists(newPath.getParent())) {
-                Files.createDirectories(newPath.getParent());
-            }
-            Files.move(childClaim.getClaimStorage().filePath, newPath);
-            if (childClaim.getClaimStorage().folderPath.toFile().listFiles().length == 0) {
-                Files.delete(childClaim.getClaimStorage().folderPath);
-            }
+            childClaim.getClaimStorage().moveTo(newPath);
             childClaim.setClaimStorage(new ClaimStorageData(newPath, this.getWorldUniqueId(), (ClaimDataConfig) childClaim.getInternalClaimData()));
         } catch (IOException e) {
             e.printStackTrace();
@@ -2576,12 +2584,15 @@ public CompletableFuture<FlagResult> clearPermissions(Subject subject) {
             contexts.add(context);
             contexts.add(this.world.getContext());
             subject.getSubjectData().clearPermissions(contexts);
+            GPFlagDecisionTable.invalidate(subject, contexts);
         }
 
         contexts = new HashSet<>();
         contexts.add(this.getContext());
         contexts.add(this.world.getContext());
         subject.getSubjectData().clearPermissions(contexts);
+        GPFlagDecisionTable.invalidate(subject, contexts);
+        GPPermissionCache.invalidate();
         result.complete(new GPFlagResult(FlagResultType.SUCCESS));
         return result;
     }
@@ -2605,6 +2616,8 @@ public CompletableFuture<FlagResult> clearPermissions(Subject subject, Context c
 
         contexts.add(this.world.getContext());
         subject.getSubjectData().clearPermissions(contexts);
+        GPFlagDecisionTable.invalidate(subject, contexts);
+        GPPermissionCache.invalidate();
         result.complete(new GPFlagResult(FlagResultType.SUCCESS));
         return result;
     }
@@ -29,6 +29,7 @@
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import me.ryanhamshire.griefprevention.DataStore;
 import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
@@ -38,7 +39,9 @@
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.configuration.PlayerStorageData;
 import me.ryanhamshire.griefprevention.event.GPDeleteClaimEvent;
-import me.ryanhamshire.griefprevention.util.BlockUtils;
+import me.ryanhamshire.griefprevention.logging.CustomLogEntryTypes;
+import me.ryanhamshire.griefprevention.permission.GPFlagDecisionTable;
+import me.ryanhamshire.griefprevention.permission.GPPermissionCache;
 import net.minecraft.util.math.ChunkPos;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.entity.living.player.Player;
@@ -47,20 +50,22 @@
 import org.spongepowered.api.service.economy.account.Account;
 import org.spongepowered.api.service.economy.account.UniqueAccount;
 import org.spongepowered.api.text.Text;
-import org.spongepowered.api.util.Direction;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 import org.spongepowered.api.world.storage.WorldProperties;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class GPClaimManager implements ClaimManager {
 
     private static final DataStore DATASTORE = GriefPreventionPlugin.instance.dataStore;
+    // Bumped whenever a claim is added, removed or resized in any world
+    private static final AtomicLong TOPOLOGY_VERSION = new AtomicLong();
     private WorldProperties worldProperties;
     private final GriefPreventionConfig<?> activeConfig;
 
@@ -70,18 +75,41 @@ public class GPClaimManager implements ClaimManager {
     private final Set<Claim> worldClaims = new HashSet<>();
     // Claim UUID -> Claim
     private final Map<UUID, Claim> claimUniqueIdMap = Maps.newHashMap();
+    // Owner UUID -> claims owned in this world
+    private final Map<UUID, Set<GPClaim>> ownerClaimsMap = Maps.newHashMap();
+    // Owner UUID -> claims owned in all loaded worlds
+    private static final Map<UUID, Set<GPClaim>> GLOBAL_OWNER_CLAIMS_MAP = Maps.newHashMap();
     // String -> Claim
     private final Map<Long, Set<Claim>> chunksToClaimsMap = new Long2ObjectOpenHashMap<>(4096);
+    // Chunks containing at least one top level claim
+    private final LongOpenHashSet claimChunks = new LongOpenHashSet(4096);
+    // Events skipped by the claim-free chunk check since the last world save
+    private long claimFreeSkips;
     private GPClaim theWildernessClaim;
+    // Used to resolve claim at location
+    private final ClaimIndex claimIndex;
+    // World UUID -> ids of claims changed since the last world save
+    private static final Map<UUID, Set<String>> DIRTY_CLAIMS = new ConcurrentHashMap<>();
+    // Player data changed since the last world save
+    private static final Set<PlayerStorageData> DIRTY_PLAYER_DATA = ConcurrentHashMap.newKeySet();
 
     public GPClaimManager() {
         this.worldProperties = null;
         this.activeConfig = GriefPreventionPlugin.getGlobalConfig();
+        this.claimIndex = this.createClaimIndex();
     }
 
     public GPClaimManager(WorldProperties worldProperties) {
         this.worldProperties = worldProperties;
         this.activeConfig = GriefPreventionPlugin.getActiveConfig(this.worldProperties);
+        this.claimIndex = this.createClaimIndex();
+    }
+
+    private ClaimIndex createClaimIndex() {
+        if (this.activeConfig.getConfig().claim.claimLookupIndex == ClaimIndexType.CHUNK) {
+            return new ChunkClaimIndex(this);
+        }
+        return new RTreeClaimIndex();
     }
 
     public GPPlayerData getOrCreatePlayerData(UUID playerUniqueId) {
@@ -110,41 +138,13 @@ private GPPlayerData createPlayerData(UUID playerUniqueId) {
 
     private Set<Claim> createPlayerClaimList(UUID playerUniqueId) {
         Set<Claim> claimList = new HashSet<>();
-        if (DataStore.USE_GLOBAL_PLAYER_STORAGE) {
-            for (World world : Sponge.getServer().getWorlds()) {
-                GPClaimManager claimmanager = DATASTORE.getClaimWorldManager(world.getProperties());
-                for (Claim claim : claimmanager.worldClaims) {
-                    GPClaim gpClaim = (GPClaim) claim;
-                    if (gpClaim.isAdminClaim()) {
-                        continue;
-                    }
-                    if (gpClaim.parent != null) {
-                        if (gpClaim.parent.getOwnerUniqueId().equals(playerUniqueId)) {
-                            claimList.add(claim);
-                        }
-                    } else {
-                        if (gpClaim.getOwnerUniqueId().equals(playerUniqueId)) {
-                            claimList.add(claim);
-                        }
-                    }
-                }
-            }
-        } else {
-            for (Claim claim : this.worldClaims) {
-                GPClaim gpClaim = (GPClaim) claim;
-                if (gpClaim.isAdminClaim()) {
-                    continue;
-                }
-                if (gpClaim.parent != null) {
-                    if (gpClaim.parent.getOwnerUniqueId().equals(playerUniqueId)) {
-                        claimList.add(claim);
-                    }
-                } else {
-                    if (gpClaim.getOwnerUniqueId().equals(playerUniqueId)) {
-                        claimList.add(claim);
-                    }
-                }
+        final Set<GPClaim> ownedClaims = DataStore.USE_GLOBAL_PLAYER_STORAGE ? getGlobalOwnerClaims(playerUniqueId) : this.getOwnerClaims(playerUniqueId);
+        for (GPClaim claim : ownedClaims) {
+            // only top level claims, children are added as they are loaded
+            if (claim.isAdminClaim() || claim.parent != null) {
+                continue;
             }
+            claimList.add(claim);
         }
 
         return claimList;
@@ -192,12 +192,17 @@ public void addClaim(Claim claimToAdd, boolean writeToStorage) {
 
         // We need to keep track of all claims so they can be referenced by children during server startup
         this.claimUniqueIdMap.put(claim.id, claim);
+        TOPOLOGY_VERSION.incrementAndGet();
 
         if (claim.isWilderness()) {
             this.theWildernessClaim = claim;
             return;
         }
 
+        this.claimIndex.updateClaim(claim);
+        this.updateOwnerIndex(claim);
+        // claim hierarchy affects inherited permissions
+        GPPermissionCache.invalidate();
         if (claim.parent != null) {
             claim.parent.children.add(claim);
             this.worldClaims.remove(claim);
@@ -225,7 +230,13 @@ public void addClaim(Claim claimToAdd, boolean writeToStorage) {
     }
 
     public void updateChunkHashes(GPClaim claim) {
-        this.deleteChunkHashes(claim);
+        this.updateChunkHashes(claim, claim.getChunkHashes(false));
+    }
+
+    // Moves the claim from the given chunks to the chunks it currently covers
+    public void updateChunkHashes(GPClaim claim, @Nullable Set<Long> previousChunkHashes) {
+        TOPOLOGY_VERSION.incrementAndGet();
+        this.deleteChunkHashes(claim, previousChunkHashes);
         Set<Long> chunkHashes = claim.getChunkHashes(true);
         for (Long chunkHash : chunkHashes) {
             Set<Claim> claimsInChunk = this.getInternalChunksToClaimsMap().get(chunkHash);
@@ -235,11 +246,13 @@ public void updateChunkHashes(GPClaim claim) {
             }
 
             claimsInChunk.add(claim);
+            this.claimChunks.add(chunkHash.longValue());
         }
     }
 
     // Used when parent claims becomes children
     public void removeClaimData(Claim claim) {
+        TOPOLOGY_VERSION.incrementAndGet();
         this.worldClaims.remove(claim);
         this.deleteChunkHashes((GPClaim) claim);
     }
@@ -292,6 +305,11 @@ public void deleteClaimInternal(Claim claim, boolean deleteChildren) {
         }
         this.worldClaims.remove(claim);
         this.claimUniqueIdMap.remove(claim.getUniqueId());
+        this.claimIndex.removeClaim(gpClaim);
+        this.removeOwnerIndex(gpClaim);
+        TOPOLOGY_VERSION.incrementAndGet();
+        GPFlagDecisionTable.removeClaim(gpClaim);
+        GPPermissionCache.invalidate();
         this.deleteChunkHashes((GPClaim) claim);
         if (gpClaim.parent != null) {
             gpClaim.parent.children.remove(claim);
@@ -300,6 +318,23 @@ public void deleteClaimInternal(Claim claim, boolean deleteChildren) {
         DATASTORE.deleteClaimFromSecondaryStorage((GPClaim) claim);
     }
 
+    // Drops a claim from memory without touching storage, used when another server sharing the database changed it
+    public void unloadClaim(GPClaim claim) {
+        resetPlayerClaimVisuals(claim);
+        claim.getClaimStorage().close();
+        this.worldClaims.remove(claim);
+        this.claimUniqueIdMap.remove(claim.getUniqueId());
+        this.claimIndex.removeClaim(claim);
+        this.removeOwnerIndex(claim);
+        TOPOLOGY_VERSION.incrementAndGet();
+        GPFlagDecisionTable.removeClaim(claim);
+        GPPermissionCache.invalidate();
+        this.deleteChunkHashes(claim);
+        if (claim.parent != null) {
+            claim.parent.children.remove(claim);
+        }
+    }
+
     // Migrates children to new parent
     private void migrateChildToNewParent(GPClaim parentClaim, GPClaim childClaim) {
         childClaim.parent = parentClaim;
@@ -318,13 +353,7 @@ private void migrateChildToNewParent(GPClaim parentClaim, GPClaim childClaim) {
         }
 
         try {
-            if (Files.notExists(newPath.getParent())) {
-                Files.createDirectories(newPath.getParent());
-            }
-            Files.move(childClaim.getClaimStorage().filePath, newPath);
-            if (childClaim.getClaimStorage().folderPath.toFile().listFiles().length == 0) {
-                Files.delete(childClaim.getClaimStorage().folderPath);
-            }
+            childClaim.getClaimStorage().moveTo(newPath);
             childClaim.setClaimStorage(new ClaimStorageData(newPath, this.getWorldProperties().getUniqueId(), (ClaimDataConfig) childClaim.getInternalClaimData()));
         } catch (IOException e) {
             e.printStackTrace();
@@ -367,7 +396,10 @@ private void resetPlayerClaimVisuals(Claim claim) {
     }
 
     private void deleteChunkHashes(GPClaim claim) {
-        Set<Long> chunkHashes = claim.getChunkHashes(false);
+        this.deleteChunkHashes(claim, claim.getChunkHashes(false));
+    }
+
+    private void deleteChunkHashes(GPClaim claim, @Nullable Set<Long> chunkHashes) {
         if (chunkHashes == null) {
             return;
         }
@@ -376,15 +408,92 @@ private void deleteChunkHashes(GPClaim claim) {
             Set<Claim> claimsInChunk = this.getInternalChunksToClaimsMap().get(chunkHash);
             if (claimsInChunk != null) {
                 claimsInChunk.remove(claim);
+                if (claimsInChunk.isEmpty()) {
+                    this.getInternalChunksToClaimsMap().remove(chunkHash);
+                    this.claimChunks.remove(chunkHash.longValue());
+                }
             }
         }
     }
 
+    // Returns true if no claim covers the chunk, used by event handlers to skip claim lookups
+    public boolean isChunkClaimFree(int chunkX, int chunkZ) {
+        return !this.claimChunks.contains(ChunkPos.asLong(chunkX, chunkZ));
+    }
+
+    public boolean isClaimFree(Location<World> location) {
+        return this.isChunkClaimFree(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
+    // Called on the main thread by handlers that return early for claim-free chunks
+    public void countClaimFreeSkip() {
+        this.claimFreeSkips++;
+    }
+
     @Nullable
     public Optional<Claim> getClaimByUUID(UUID claimUniqueId) {
         return Optional.ofNullable(this.claimUniqueIdMap.get(claimUniqueId));
     }
 
+    // Returns the claims, including children, owned by the player in this world
+    public Set<GPClaim> getOwnerClaims(UUID playerUniqueId) {
+        final Set<GPClaim> claims = this.ownerClaimsMap.get(playerUniqueId);
+        if (claims == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(claims);
+    }
+
+    // Returns the claims, including children, owned by the player in all loaded worlds
+    public static Set<GPClaim> getGlobalOwnerClaims(UUID playerUniqueId) {
+        final Set<GPClaim> claims = GLOBAL_OWNER_CLAIMS_MAP.get(playerUniqueId);
+        if (claims == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(claims);
+    }
+
+    // Re-indexes the claim, and any indexed children, under its current owner
+    public void updateOwnerIndex(GPClaim claim) {
+        if (claim.isWilderness()) {
+            return;
+        }
+
+        final UUID ownerUniqueId = claim.getOwnerUniqueId();
+        if (!ownerUniqueId.equals(claim.ownerIndexKey)) {
+            this.removeOwnerIndex(claim);
+            claim.ownerIndexKey = ownerUniqueId;
+            this.ownerClaimsMap.computeIfAbsent(ownerUniqueId, k -> new HashSet<>()).add(claim);
+            GLOBAL_OWNER_CLAIMS_MAP.computeIfAbsent(ownerUniqueId, k -> new HashSet<>()).add(claim);
+        }
+
+        // children without an explicit owner inherit it from their parent
+        for (Claim child : claim.children) {
+            final GPClaim childClaim = (GPClaim) child;
+            if (childClaim.ownerIndexKey != null) {
+                this.updateOwnerIndex(childClaim);
+            }
+        }
+    }
+
+    private void removeOwnerIndex(GPClaim claim) {
+        final UUID ownerUniqueId = claim.ownerIndexKey;
+        if (ownerUniqueId == null) {
+            return;
+        }
+
+        claim.ownerIndexKey = null;
+        removeOwnerClaim(this.ownerClaimsMap, ownerUniqueId, claim);
+        removeOwnerClaim(GLOBAL_OWNER_CLAIMS_MAP, ownerUniqueId, claim);
+    }
+
+    private static void removeOwnerClaim(Map<UUID, Set<GPClaim>> ownerMap, UUID ownerUniqueId, GPClaim claim) {
+        final Set<GPClaim> claims = ownerMap.get(ownerUniqueId);
+        if (claims != null && claims.remove(claim) && claims.isEmpty()) {
+            ownerMap.remove(ownerUniqueId);
+        }
+    }
+
     public Set<Claim> getInternalPlayerClaims(UUID playerUniqueId) {
         final GPPlayerData playerData = this.getPlayerDataMap().get(playerUniqueId);
         if (playerData == null) {
@@ -450,23 +559,91 @@ public Map<Long, Set<Claim>> getInternalChunksToClaimsMap() {
         return this.chunksToClaimsMap;
     }
 
+    public ClaimIndex getClaimIndex() {
+        return this.claimIndex;
+    }
+
+    // Used after a claim's boundaries have changed
+    public void updateClaimIndex(GPClaim claim) {
+        this.claimIndex.updateClaim(claim);
+        TOPOLOGY_VERSION.incrementAndGet();
+    }
+
+    public static long getTopologyVersion() {
+        return TOPOLOGY_VERSION.get();
+    }
+
+    public static void markClaimDirty(UUID worldUniqueId, String claimId) {
+        DIRTY_CLAIMS.computeIfAbsent(worldUniqueId, k -> ConcurrentHashMap.newKeySet()).add(claimId);
+    }
+
+    public static void markPlayerDataDirty(PlayerStorageData playerStorage) {
+        DIRTY_PLAYER_DATA.add(playerStorage);
+    }
+
+    // Queues writes for this world's claims changed since the last save.
+    // Data is serialized here and written on the plugin executor.
     public void save() {
-        for (Claim claim : this.worldClaims) {
-            GPClaim gpClaim = (GPClaim) claim;
-            gpClaim.save();
+        int claimCount = 0;
+        final Set<String> dirtyClaims = DIRTY_CLAIMS.get(this.worldProperties.getUniqueId());
+        if (dirtyClaims != null) {
+            for (String claimId : new ArrayList<>(dirtyClaims)) {
+                final GPClaim claim = (GPClaim) this.claimUniqueIdMap.get(UUID.fromString(claimId));
+                if (claim == null) {
+                    dirtyClaims.remove(claimId);
+                    continue;
+                }
+                if (claim.saveData()) {
+                    claimCount++;
+                }
+                // updating the claim storage data flags the claim again
+                if (!claim.getInternalClaimData().requiresSave()) {
+                    dirtyClaims.remove(claimId);
+                }
+            }
         }
-        this.theWildernessClaim.save();
 
-        for (GPPlayerData playerData : this.getPlayerDataMap().values()) {
-            playerData.getStorageData().save();
+        GriefPreventionPlugin.addLogEntry("[" + this.worldProperties.getWorldName() + "] World save queued " + claimCount
+                + " changed claim(s) for writing.", CustomLogEntryTypes.Debug, false);
+        if (this.claimFreeSkips > 0) {
+            GriefPreventionPlugin.instance.getLogger().info("[" + this.worldProperties.getWorldName() + "] Skipped claim checks for "
+                    + this.claimFreeSkips + " event(s) in claim-free chunks since the last world save.");
+            this.claimFreeSkips = 0;
+        }
+    }
+
+    // Player data is not tied to a world, so it is drained once for all worlds
+    // rather than by each world's save.
+    public static void savePlayerData() {
+        int playerCount = 0;
+        for (PlayerStorageData playerStorage : new ArrayList<>(DIRTY_PLAYER_DATA)) {
+            DIRTY_PLAYER_DATA.remove(playerStorage);
+            if (playerStorage.saveAsync()) {
+                playerCount++;
+            }
+        }
+        if (playerCount > 0) {
+            GriefPreventionPlugin.addLogEntry("Queued " + playerCount + " changed player data file(s) for writing.",
+                    CustomLogEntryTypes.Debug, false);
         }
     }
 
     public void unload() {
+        DIRTY_CLAIMS.remove(this.worldProperties.getUniqueId());
         this.playerDataList.clear();
         this.worldClaims.clear();
         this.claimUniqueIdMap.clear();
+        for (Set<GPClaim> ownedClaims : this.ownerClaimsMap.values()) {
+            for (GPClaim claim : ownedClaims) {
+                removeOwnerClaim(GLOBAL_OWNER_CLAIMS_MAP, claim.ownerIndexKey, claim);
+                claim.ownerIndexKey = null;
+            }
+        }
+        this.ownerClaimsMap.clear();
         this.chunksToClaimsMap.clear();
+        this.claimChunks.clear();
+        this.claimIndex.clear();
+        TOPOLOGY_VERSION.incrementAndGet();
         if (this.theWildernessClaim != null) {
             this.theWildernessClaim.unload();
             this.theWildernessClaim = null;
@@ -501,67 +678,16 @@ public Claim getClaimAt(Location<World> location, GPClaim cachedClaim, GPPlayerD
             return cachedClaim;
         }
 
-        Set<Claim> claimsInChunk = this.getInternalChunksToClaimsMap().get(ChunkPos.asLong(location.getBlockX() >> 4, location.getBlockZ() >> 4));
-        if (useBorderBlockRadius && (playerData != null && !playerData.ignoreBorderCheck)) {
-            final int borderBlockRadius = GriefPreventionPlugin.getActiveConfig(location.getExtent().getUniqueId()).getConfig().claim.borderBlockRadius;
-            // if borderBlockRadius > 0, check surrounding chunks
-            if (borderBlockRadius > 0) {
-                for (Direction direction : BlockUtils.ORDINAL_SET) {
-                    Location<World> currentLocation = location;
-                    for (int i = 0; i < borderBlockRadius; i++) { // Handle depth
-                        currentLocation = currentLocation.getBlockRelative(direction);
-                        Set<Claim> relativeClaims = this.getInternalChunksToClaimsMap().get(ChunkPos.asLong(currentLocation.getBlockX() >> 4, currentLocation.getBlockZ() >> 4));
-                        if (relativeClaims != null) {
-                            if (claimsInChunk == null) {
-                                claimsInChunk = new HashSet<>();
-                            }
-                            claimsInChunk.addAll(relativeClaims);
-                        }
-                    }
-                }
-            }
-        }
-        if (claimsInChunk == null) {
-            //GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
-            return this.getWildernessClaim();
-        }
-
-        // TODO change to check deepest level and work its way up to root
-        for (Claim claim : claimsInChunk) {
-            GPClaim foundClaim = findClaim((GPClaim) claim, location, playerData, useBorderBlockRadius);
-            if (foundClaim != null) {
-                return foundClaim;
-            }
+        final GPClaim claim = this.claimIndex.getClaimAt(location, playerData, useBorderBlockRadius);
+        //GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
+        if (claim != null) {
+            return claim;
         }
 
-        //GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
         // if no claim found, return the world claim
         return this.getWildernessClaim();
     }
 
-    private GPClaim findClaim(GPClaim claim, Location<World> location, GPPlayerData playerData, boolean useBorderBlockRadius) {
-        if (claim.contains(location, playerData, useBorderBlockRadius)) {
-            // when we find a top level claim, if the location is in one of its children,
-            // return the child claim, not the top level claim
-            for (Claim childClaim : claim.children) {
-                GPClaim child = (GPClaim) childClaim;
-                if (!child.children.isEmpty()) {
-                    GPClaim innerChild = findClaim(child, location, playerData, useBorderBlockRadius);
-                    if (innerChild != null) {
-                        return innerChild;
-                    }
-                }
-                // check if child has children (Town -> Basic -> Subdivision)
-                if (child.contains(location, playerData, useBorderBlockRadius)) {
-                    //GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
-                    return child;
-                }
-            }
-            return claim;
-        }
-        return null;
-    }
-
     @Override
     public List<Claim> getClaimsByName(String name) {
         List<Claim> claimList = new ArrayList<>();
@@ -0,0 +1,408 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import me.ryanhamshire.griefprevention.GPPlayerData;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// 2D (x/z) R-tree containing every claim in a world, including children.
+// Lookups return the deepest claim containing a location in O(log n) instead of
+// scanning all top level claims in a chunk and walking their children.
+public class RTreeClaimIndex implements ClaimIndex {
+
+    private static final int MAX_ENTRIES = 8;
+    private static final int MIN_ENTRIES = 3;
+
+    // Claim UUID -> leaf entry, used for O(1) lookup on removal
+    private final Map<UUID, Entry> entries = new HashMap<>();
+    private Node root = new Node(true);
+
+    @Override
+    public void updateClaim(GPClaim claim) {
+        if (claim.isWilderness()) {
+            return;
+        }
+
+        final Entry entry = this.entries.get(claim.getUniqueId());
+        if (entry != null) {
+            if (entry.claim == claim && entry.matches(claim)) {
+                return;
+            }
+            this.delete(entry);
+        }
+
+        final Entry newEntry = new Entry(claim);
+        this.entries.put(claim.getUniqueId(), newEntry);
+        this.insert(newEntry);
+    }
+
+    @Override
+    public void removeClaim(GPClaim claim) {
+        final Entry entry = this.entries.remove(claim.getUniqueId());
+        if (entry != null) {
+            this.delete(entry);
+        }
+    }
+
+    @Override
+    public GPClaim getClaimAt(Location<World> location, GPPlayerData playerData, boolean useBorderBlockRadius) {
+        if (this.root.children.isEmpty()) {
+            return null;
+        }
+
+        int radius = 0;
+        if (useBorderBlockRadius && (playerData != null && !playerData.ignoreBorderCheck)) {
+            radius = Math.max(0, GriefPreventionPlugin.getActiveConfig(location.getExtent().getUniqueId()).getConfig().claim.borderBlockRadius);
+        }
+
+        final int x = location.getBlockX();
+        final int z = location.getBlockZ();
+        return this.search(this.root, x - radius, z - radius, x + radius, z + radius, location, playerData, useBorderBlockRadius, null);
+    }
+
+    @Override
+    public void clear() {
+        this.entries.clear();
+        this.root = new Node(true);
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    private GPClaim search(Node node, int minX, int minZ, int maxX, int maxZ, Location<World> location, GPPlayerData playerData,
+            boolean useBorderBlockRadius, GPClaim best) {
+        for (Box box : node.children) {
+            if (!box.intersects(minX, minZ, maxX, maxZ)) {
+                continue;
+            }
+            if (node.leaf) {
+                final GPClaim claim = ((Entry) box).claim;
+                if (best != null && getDepth(claim) <= getDepth(best)) {
+                    continue;
+                }
+                if (isInHierarchy(claim, location, playerData, useBorderBlockRadius)) {
+                    best = claim;
+                }
+            } else {
+                best = this.search((Node) box, minX, minZ, maxX, maxZ, location, playerData, useBorderBlockRadius, best);
+            }
+        }
+        return best;
+    }
+
+    // A claim only matches when the location is also within each of its parents
+    private static boolean isInHierarchy(GPClaim claim, Location<World> location, GPPlayerData playerData, boolean useBorderBlockRadius) {
+        if (!claim.contains(location, playerData, useBorderBlockRadius)) {
+            return false;
+        }
+        GPClaim parent = claim.parent;
+        while (parent != null) {
+            if (!parent.contains(location, true, playerData, useBorderBlockRadius)) {
+                return false;
+            }
+            parent = parent.parent;
+        }
+        return true;
+    }
+
+    private static int getDepth(GPClaim claim) {
+        int depth = 0;
+        GPClaim parent = claim.parent;
+        while (parent != null) {
+            depth++;
+            parent = parent.parent;
+        }
+        return depth;
+    }
+
+    private void insert(Entry entry) {
+        Node node = this.root;
+        while (!node.leaf) {
+            node = chooseSubtree(node, entry);
+        }
+        node.add(entry);
+        if (node.children.size() > MAX_ENTRIES) {
+            this.split(node);
+        } else {
+            refreshUpward(node);
+        }
+    }
+
+    private static Node chooseSubtree(Node node, Box box) {
+        Node best = null;
+        long bestEnlargement = Long.MAX_VALUE;
+        long bestArea = Long.MAX_VALUE;
+        for (Box child : node.children) {
+            final long area = child.area();
+            final long enlargement = child.unionArea(box) - area;
+            if (enlargement < bestEnlargement || (enlargement == bestEnlargement && area < bestArea)) {
+                best = (Node) child;
+                bestEnlargement = enlargement;
+                bestArea = area;
+            }
+        }
+        return best;
+    }
+
+    // Quadratic split
+    private void split(Node node) {
+        final List<Box> remaining = new ArrayList<>(node.children);
+        node.children.clear();
+        final Node sibling = new Node(node.leaf);
+
+        // pick the two seeds that would waste the most area if grouped together
+        int seedA = 0;
+        int seedB = 1;
+        long worstWaste = Long.MIN_VALUE;
+        for (int i = 0; i < remaining.size(); i++) {
+            for (int j = i + 1; j < remaining.size(); j++) {
+                final Box a = remaining.get(i);
+                final Box b = remaining.get(j);
+                final long waste = a.unionArea(b) - a.area() - b.area();
+                if (waste > worstWaste) {
+                    worstWaste = waste;
+                    seedA = i;
+                    seedB = j;
+                }
+            }
+        }
+        // remove higher index first
+        final Box b = remaining.remove(seedB);
+        final Box a = remaining.remove(seedA);
+        node.add(a);
+        node.recalculate();
+        sibling.add(b);
+        sibling.recalculate();
+
+        while (!remaining.isEmpty()) {
+            if (node.children.size() + remaining.size() <= MIN_ENTRIES) {
+                for (Box box : remaining) {
+                    node.add(box);
+                }
+                break;
+            }
+            if (sibling.children.size() + remaining.size() <= MIN_ENTRIES) {
+                for (Box box : remaining) {
+                    sibling.add(box);
+                }
+                break;
+            }
+
+            // pick the entry with the strongest preference for one group
+            int nextIndex = 0;
+            long maxDifference = -1;
+            long nextEnlargementNode = 0;
+            long nextEnlargementSibling = 0;
+            for (int i = 0; i < remaining.size(); i++) {
+                final Box box = remaining.get(i);
+                final long enlargementNode = node.unionArea(box) - node.area();
+                final long enlargementSibling = sibling.unionArea(box) - sibling.area();
+                final long difference = Math.abs(enlargementNode - enlargementSibling);
+                if (difference > maxDifference) {
+                    maxDifference = difference;
+                    nextIndex = i;
+                    nextEnlargementNode = enlargementNode;
+                    nextEnlargementSibling = enlargementSibling;
+                }
+            }
+
+            final Box next = remaining.remove(nextIndex);
+            final Node target;
+            if (nextEnlargementNode != nextEnlargementSibling) {
+                target = nextEnlargementNode < nextEnlargementSibling ? node : sibling;
+            } else if (node.area() != sibling.area()) {
+                target = node.area() < sibling.area() ? node : sibling;
+            } else {
+                target = node.children.size() <= sibling.children.size() ? node : sibling;
+            }
+            target.add(next);
+            target.expand(next);
+        }
+
+        node.recalculate();
+        sibling.recalculate();
+
+        if (node == this.root) {
+            final Node newRoot = new Node(false);
+            newRoot.add(node);
+            newRoot.add(sibling);
+            newRoot.recalculate();
+            this.root = newRoot;
+            return;
+        }
+
+        final Node parent = node.parent;
+        parent.add(sibling);
+        if (parent.children.size() > MAX_ENTRIES) {
+            this.split(parent);
+        } else {
+            refreshUpward(parent);
+        }
+    }
+
+    private void delete(Entry entry) {
+        final Node leaf = entry.parent;
+        if (leaf == null) {
+            return;
+        }
+        leaf.children.remove(entry);
+        entry.parent = null;
+
+        // condense tree, collecting entries from underfull nodes for reinsertion
+        final List<Entry> orphans = new ArrayList<>();
+        Node node = leaf;
+        while (node != this.root) {
+            final Node parent = node.parent;
+            if (node.children.size() < MIN_ENTRIES) {
+                parent.children.remove(node);
+                node.parent = null;
+                collectEntries(node, orphans);
+            } else {
+                node.recalculate();
+            }
+            node = parent;
+        }
+        this.root.recalculate();
+
+        // shorten tree
+        while (!this.root.leaf && this.root.children.size() == 1) {
+            this.root = (Node) this.root.children.get(0);
+            this.root.parent = null;
+        }
+        if (!this.root.leaf && this.root.children.isEmpty()) {
+            this.root = new Node(true);
+        }
+
+        for (Entry orphan : orphans) {
+            this.insert(orphan);
+        }
+    }
+
+    private static void collectEntries(Node node, List<Entry> result) {
+        for (Box box : node.children) {
+            if (node.leaf) {
+                result.add((Entry) box);
+            } else {
+                collectEntries((Node) box, result);
+            }
+        }
+    }
+
+    private static void refreshUpward(Node node) {
+        while (node != null) {
+            node.recalculate();
+            node = node.parent;
+        }
+    }
+
+    private static abstract class Box {
+
+        int minX;
+        int minZ;
+        int maxX;
+        int maxZ;
+        Node parent;
+
+        boolean intersects(int minX, int minZ, int maxX, int maxZ) {
+            return this.minX <= maxX && this.maxX >= minX && this.minZ <= maxZ && this.maxZ >= minZ;
+        }
+
+        long area() {
+            return (long) (this.maxX - this.minX + 1) * (long) (this.maxZ - this.minZ + 1);
+        }
+
+        long unionArea(Box other) {
+            final long width = (long) Math.max(this.maxX, other.maxX) - Math.min(this.minX, other.minX) + 1;
+            final long length = (long) Math.max(this.maxZ, other.maxZ) - Math.min(this.minZ, other.minZ) + 1;
+            return width * length;
+        }
+    }
+
+    private static final class Entry extends Box {
+
+        final GPClaim claim;
+
+        Entry(GPClaim claim) {
+            this.claim = claim;
+            this.minX = claim.lesserBoundaryCorner.getBlockX();
+            this.minZ = claim.lesserBoundaryCorner.getBlockZ();
+            this.maxX = claim.greaterBoundaryCorner.getBlockX();
+            this.maxZ = claim.greaterBoundaryCorner.getBlockZ();
+        }
+
+        boolean matches(GPClaim claim) {
+            return this.minX == claim.lesserBoundaryCorner.getBlockX()
+                    && this.minZ == claim.lesserBoundaryCorner.getBlockZ()
+                    && this.maxX == claim.greaterBoundaryCorner.getBlockX()
+                    && this.maxZ == claim.greaterBoundaryCorner.getBlockZ();
+        }
+    }
+
+    private static final class Node extends Box {
+
+        final boolean leaf;
+        final List<Box> children = new ArrayList<>(MAX_ENTRIES + 1);
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        void add(Box box) {
+            this.children.add(box);
+            box.parent = this;
+        }
+
+        void expand(Box box) {
+            this.minX = Math.min(this.minX, box.minX);
+            this.minZ = Math.min(this.minZ, box.minZ);
+            this.maxX = Math.max(this.maxX, box.maxX);
+            this.maxZ = Math.max(this.maxZ, box.maxZ);
+        }
+
+        void recalculate() {
+            if (this.children.isEmpty()) {
+                this.minX = this.minZ = this.maxX = this.maxZ = 0;
+                return;
+            }
+            final Box first = this.children.get(0);
+            this.minX = first.minX;
+            this.minZ = first.minZ;
+            this.maxX = first.maxX;
+            this.maxZ = first.maxZ;
+            for (int i = 1; i < this.children.size(); i++) {
+                this.expand(this.children.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.command;
+
+import me.ryanhamshire.griefprevention.api.claim.Claim;
+import me.ryanhamshire.griefprevention.claim.GPClaim;
+import me.ryanhamshire.griefprevention.util.PaginationUtils;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.action.TextActions;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.text.format.TextStyles;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Holds the claims matched by a claim list command and builds the
+// clickable entries only for the page being displayed.
+public class ClaimListSource {
+
+    public static final int CLAIMS_PER_PAGE = 16;
+    private static final Text PADDING = Text.of(TextStyles.STRIKETHROUGH, "--------------------");
+
+    private static final Comparator<GPClaim> CLAIM_ORDER = Comparator
+            .comparing((GPClaim claim) -> claim.getWorld().getName())
+            .thenComparingInt(claim -> claim.lesserBoundaryCorner.getBlockX())
+            .thenComparingInt(claim -> claim.lesserBoundaryCorner.getBlockZ());
+
+    private final List<GPClaim> claims;
+    private final String worldName;
+    private final User user;
+    private final CommandSource src;
+    private final Consumer<CommandSource> returnCommand;
+    private final boolean canListOthers;
+
+    public ClaimListSource(Collection<Claim> claimList, String worldName, User user, CommandSource src, Consumer<CommandSource> returnCommand, boolean canListOthers) {
+        this.worldName = worldName;
+        this.user = user;
+        this.src = src;
+        this.returnCommand = returnCommand;
+        this.canListOthers = canListOthers;
+        final User sourceUser = src instanceof User ? (User) src : null;
+        this.claims = new ArrayList<>(claimList.size());
+        for (Claim claim : claimList) {
+            final GPClaim gpClaim = (GPClaim) claim;
+            if (CommandHelper.canListClaim(gpClaim, sourceUser, canListOthers, false, false)) {
+                this.claims.add(gpClaim);
+            }
+        }
+        this.claims.sort(CLAIM_ORDER);
+    }
+
+    public int size() {
+        return this.claims.size();
+    }
+
+    public int getPageCount() {
+        return Math.max(1, (this.claims.size() + CLAIMS_PER_PAGE - 1) / CLAIMS_PER_PAGE);
+    }
+
+    public List<Text> getPage(int page) {
+        final List<Text> textList = new ArrayList<>(CLAIMS_PER_PAGE);
+        if (this.claims.isEmpty()) {
+            textList.add(Text.of(TextColors.RED, "No claims found in world."));
+            return textList;
+        }
+
+        final int start = (page - 1) * CLAIMS_PER_PAGE;
+        final int end = Math.min(start + CLAIMS_PER_PAGE, this.claims.size());
+        for (int i = start; i < end; i++) {
+            textList.add(CommandHelper.generateClaimText(this.claims.get(i), this.worldName, this.user, this.src, this.returnCommand, this.canListOthers, false));
+        }
+        return textList;
+    }
+
+    public void sendPage(Text title, int page) {
+        page = Math.max(1, Math.min(page, getPageCount()));
+        if (this.src instanceof Player) {
+            PaginationUtils.setActivePage(((Player) this.src).getUniqueId(), page);
+        }
+
+        // the pagination service always draws its own page navigation, which only knows about
+        // the entries it was given, so the page is framed here with our own navigation instead
+        final List<Text> textList = new ArrayList<>(CLAIMS_PER_PAGE + 2);
+        textList.add(Text.of(PADDING, " ", title, " ", PADDING));
+        textList.addAll(getPage(page));
+        for (int i = textList.size(); i < CLAIMS_PER_PAGE + 1; i++) {
+            textList.add(Text.of(" "));
+        }
+        textList.add(createNavigation(title, page));
+        this.src.sendMessages(textList);
+    }
+
+    private Text createNavigation(Text title, int page) {
+        final int pageCount = getPageCount();
+        final Text previous = page > 1
+                ? Text.builder().append(Text.of(TextColors.AQUA, "<<"))
+                        .onClick(TextActions.executeCallback(createPageConsumer(title, page - 1)))
+                        .onHover(TextActions.showText(Text.of("Previous page"))).build()
+                : Text.of(TextColors.GRAY, "<<");
+        final Text next = page < pageCount
+                ? Text.builder().append(Text.of(TextColors.AQUA, ">>"))
+                        .onClick(TextActions.executeCallback(createPageConsumer(title, page + 1)))
+                        .onHover(TextActions.showText(Text.of("Next page"))).build()
+                : Text.of(TextColors.GRAY, ">>");
+        return Text.of(previous, " ", TextColors.WHITE, "Page ", TextColors.GOLD, page, TextColors.WHITE, " of ", TextColors.GOLD, pageCount,
+                TextColors.WHITE, " (", TextColors.GRAY, this.claims.size(), " claims", TextColors.WHITE, ") ", next);
+    }
+
+    private Consumer<CommandSource> createPageConsumer(Text title, int page) {
+        return consumer -> {
+            sendPage(title, page);
+        };
+    }
+}
@@ -47,6 +47,8 @@
 import org.spongepowered.common.SpongeImplHooks;
 import org.spongepowered.common.entity.SpongeEntityType;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
 public class CommandClaimClear implements CommandExecutor {
@@ -118,47 +120,39 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             }
         }
 
-        for (Entity entity : world.getEntities()) {
-            net.minecraft.entity.Entity mcEntity = (net.minecraft.entity.Entity) entity;
+        final GPClaim claim = claimUniqueId == null ? null : (GPClaim) GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(worldProperties)
+                .getClaimByUUID(claimUniqueId).orElse(null);
+        final List<Entity> entities = claim == null ? Collections.emptyList() : claim.getEntities(entity -> {
             if (entity instanceof Villager) {
-                continue;
+                return false;
             }
-            if (entity instanceof IEntityOwnable) {
-                IEntityOwnable ownable = (IEntityOwnable) entity;
-                if (ownable.getOwnerId() != null) {
-                    continue;
-                }
+            if (entity instanceof IEntityOwnable && ((IEntityOwnable) entity).getOwnerId() != null) {
+                return false;
             }
-
+            return true;
+        });
+        for (Entity entity : entities) {
+            net.minecraft.entity.Entity mcEntity = (net.minecraft.entity.Entity) entity;
             if (isPixelmonAnimal) {
-                if (parts[1].equalsIgnoreCase(mcEntity.getName().toLowerCase())) {
-                    GPClaim claim = GriefPreventionPlugin.instance.dataStore.getClaimAt(entity.getLocation());
-                    if (claim != null && claim.getUniqueId().equals(claimUniqueId)) {
-                        mcEntity.setDead();
-                        count++;
-                    }
+                if (!parts[1].equalsIgnoreCase(mcEntity.getName().toLowerCase())) {
+                    continue;
                 }
             } else if (creatureType != null && SpongeImplHooks.isCreatureOfType(mcEntity, creatureType)) {
-                GPClaim claim = GriefPreventionPlugin.instance.dataStore.getClaimAt(entity.getLocation());
-                if (claim != null && claim.getUniqueId().equals(claimUniqueId)) {
-                    // check modId
-                    String mod = ((SpongeEntityType) entity.getType()).getModId();
-                    if (modId.equalsIgnoreCase(mod)) {
-                        mcEntity.setDead();
-                        count++;
-                    }
-                }
-            } else {
-                if (entityType == null || !entityType.equals(entity.getType())) {
+                // check modId
+                String mod = ((SpongeEntityType) entity.getType()).getModId();
+                if (!modId.equalsIgnoreCase(mod)) {
                     continue;
                 }
+            } else if (entityType == null || !entityType.equals(entity.getType())) {
+                continue;
+            }
 
-                GPClaim claim = GriefPreventionPlugin.instance.dataStore.getClaimAt(entity.getLocation());
-                if (claim != null && claim.getUniqueId().equals(claimUniqueId)) {
-                    mcEntity.setDead();
-                    count++;
-                }
+            // entities within child claims are left alone
+            if (GriefPreventionPlugin.instance.dataStore.getClaimAt(entity.getLocation(), claim) != claim) {
+                continue;
             }
+            mcEntity.setDead();
+            count++;
         }
 
         if (count == 0) {
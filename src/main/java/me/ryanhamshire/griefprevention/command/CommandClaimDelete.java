@@ -32,6 +32,7 @@
 import me.ryanhamshire.griefprevention.claim.ClaimsMode;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.logging.CustomLogEntryTypes;
+import me.ryanhamshire.griefprevention.permission.GPFlagDecisionTable;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandException;
@@ -102,6 +103,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             claim.removeSurfaceFluids(null);
             // clear permissions
             GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().clearPermissions(ImmutableSet.of(claim.getContext()));
+            GPFlagDecisionTable.invalidate(GriefPreventionPlugin.GLOBAL_SUBJECT, ImmutableSet.of(claim.getContext()));
             // if in a creative mode world, /restorenature the claim
             if (GriefPreventionPlugin.instance
                     .claimModeIsActive(claim.getLesserBoundaryCorner().getExtent().getProperties(), ClaimsMode.Creative)) {
@@ -27,6 +27,7 @@
 import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
+import me.ryanhamshire.griefprevention.permission.GPFlagDecisionTable;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandResult;
@@ -74,16 +75,19 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
         for (Set<Context> contextSet : GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().getAllPermissions().keySet()) {
             if (contextSet.contains(claim.getContext())) {
                 GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().clearPermissions(contextSet);
+                GPFlagDecisionTable.invalidate(GriefPreventionPlugin.GLOBAL_SUBJECT, contextSet);
             }
         }
         for (Set<Context> contextSet : GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().getAllOptions().keySet()) {
             if (contextSet.contains(claim.getContext())) {
                 GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().clearPermissions(contextSet);
+                GPFlagDecisionTable.invalidate(GriefPreventionPlugin.GLOBAL_SUBJECT, contextSet);
             }
         }
         for (Set<Context> contextSet : GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().getAllParents().keySet()) {
             if (contextSet.contains(claim.getContext())) {
                 GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().clearPermissions(contextSet);
+                GPFlagDecisionTable.invalidate(GriefPreventionPlugin.GLOBAL_SUBJECT, contextSet);
             }
         }
 
@@ -43,12 +43,9 @@
 import org.spongepowered.api.command.spec.CommandExecutor;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.entity.living.player.User;
-import org.spongepowered.api.service.pagination.PaginationList;
-import org.spongepowered.api.service.pagination.PaginationService;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.action.TextActions;
 import org.spongepowered.api.text.format.TextColors;
-import org.spongepowered.api.text.format.TextStyles;
 import org.spongepowered.api.world.World;
 import org.spongepowered.api.world.storage.WorldProperties;
 
@@ -126,7 +123,6 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
     }
 
     private void showClaimList(Player src, User user, ClaimType type, WorldProperties worldProperties) {
-        List<Text> claimsTextList = new ArrayList<>();
         Set<Claim> claims = new HashSet<>();
         final GPPlayerData sourcePlayerData = GriefPreventionPlugin.instance.dataStore.getPlayerData(worldProperties, src.getUniqueId());
         for (World world : Sponge.getServer().getWorlds()) {
@@ -135,12 +131,10 @@ private void showClaimList(Player src, User user, ClaimType type, WorldPropertie
             }
 
             final GPClaimManager claimWorldManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(world.getProperties());
-            // load the target player's data
-            final GPPlayerData playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(world, user.getUniqueId());
-            Set<Claim> claimList = null;
+            Set<? extends Claim> claimList = null;
             int count = 0;
             if (this.displayOwned) {
-                claimList = playerData.getInternalClaims();
+                claimList = claimWorldManager.getOwnerClaims(user.getUniqueId());
             } else {
                 if (sourcePlayerData.optionRadiusClaimList <= 0) {
                     claimList = claimWorldManager.getInternalWorldClaims();
@@ -182,7 +176,7 @@ private void showClaimList(Player src, User user, ClaimType type, WorldPropertie
                 PaginationUtils.resetActivePage(player.getUniqueId());
             }
         }
-        claimsTextList = CommandHelper.generateClaimTextList(claimsTextList, claims, worldProperties.getWorldName(), user, src, createClaimListConsumer(src, user, type, worldProperties), this.canListOthers, false);
+        final ClaimListSource claimListSource = new ClaimListSource(claims, worldProperties.getWorldName(), user, src, createClaimListConsumer(src, user, type, worldProperties), this.canListOthers);
 
         final Text whiteOpenBracket = Text.of(TextColors.WHITE, "[");
         final Text whiteCloseBracket = Text.of(TextColors.WHITE, "]");
@@ -218,15 +212,6 @@ private void showClaimList(Player src, User user, ClaimType type, WorldPropertie
                 .onHover(TextActions.showText(townShowText)).build();
         Text claimListHead = Text.builder().append(Text.of(
                 TextColors.AQUA, " Displaying : ", ownedTypeText, "  ", allTypeText, "  ", adminTypeText, "  ", basicTypeText, "  ", subTypeText, "  ", townTypeText)).build();
-        final int fillSize = 20 - (claimsTextList.size() + 2);
-        for (int i = 0; i < fillSize; i++) {
-            claimsTextList.add(Text.of(" "));
-        }
-
-        PaginationService paginationService = Sponge.getServiceManager().provide(PaginationService.class).get();
-        PaginationList.Builder paginationBuilder = paginationService.builder()
-                .title(claimListHead).padding(Text.of(TextStyles.STRIKETHROUGH, "-")).contents(claimsTextList);
-        final PaginationList paginationList = paginationBuilder.build();
         Integer activePage = 1;
         if (src instanceof Player) {
             final Player player = src;
@@ -236,7 +221,7 @@ private void showClaimList(Player src, User user, ClaimType type, WorldPropertie
             }
             this.lastActiveClaimTypeMap.put(player.getUniqueId(), type == null ? "ALL" : type.toString());
         }
-        paginationList.sendTo(src, activePage);
+        claimListSource.sendPage(claimListHead, activePage);
     }
 
     private Consumer<CommandSource> createClaimListConsumer(Player src, User user, String type, WorldProperties worldProperties) {
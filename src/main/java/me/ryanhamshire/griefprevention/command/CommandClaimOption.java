@@ -30,6 +30,7 @@
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.permission.GPOptionHandler;
 import me.ryanhamshire.griefprevention.permission.GPOptions;
+import me.ryanhamshire.griefprevention.permission.GPPermissionCache;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandException;
@@ -141,6 +142,7 @@ public CommandResult execute(CommandSource src, CommandContext args) throws Comm
         GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().setOption(contexts, option, value.toString())
                 .thenAccept(consumer -> {
                     if (consumer.booleanValue()) {
+                        GPPermissionCache.invalidate();
                         if (context != null) {
                             GriefPreventionPlugin.sendMessage(src, Text.of("Set ", TextColors.LIGHT_PURPLE, "default", TextColors.WHITE, " option ", TextColors.AQUA, flagOption, TextColors.WHITE, " to ", TextColors.GREEN, value));
                         } else {
@@ -42,20 +42,29 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
         User user = ctx.<User>getOne("user").orElse(null);
         GPDebugData debugData = null;
         boolean paste = false;
+        final Text GP_TEXT = Text.of(TextColors.RESET, "[", TextColors.AQUA, "GP", TextColors.WHITE, "] ");
         if (target.equalsIgnoreCase("on")) {
             debugData = getOrCreateDebugUser(src, user, true);
+            debugData.stopFileRecording();
         } else if (target.equalsIgnoreCase("record")) {
             debugData = getOrCreateDebugUser(src, user, false);
+            // records made from now on are kept in memory for pasting
+            debugData.stopFileRecording();
+        } else if (target.equalsIgnoreCase("file")) {
+            debugData = getOrCreateDebugUser(src, user, false);
+            debugData.startFileRecording();
         } else if (target.equalsIgnoreCase("paste")) {
             paste = true;
         } else if (target.equalsIgnoreCase("off")) {
-            GriefPreventionPlugin.instance.getDebugUserMap().remove(src.getIdentifier());
+            final GPDebugData removed = GriefPreventionPlugin.instance.getDebugUserMap().remove(src.getIdentifier());
+            if (removed != null) {
+                removed.stopFileRecording();
+            }
             if (GriefPreventionPlugin.instance.getDebugUserMap().isEmpty()) {
                 GriefPreventionPlugin.debugActive = false;
             }
         }
 
-        final Text GP_TEXT = Text.of(TextColors.RESET, "[", TextColors.AQUA, "GP", TextColors.WHITE, "] ");
         if (debugData == null) {
             if (paste) {
                 debugData = GriefPreventionPlugin.instance.getDebugUserMap().get(src.getIdentifier());
@@ -74,8 +83,9 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             src.sendMessage(Text.of(
                     GP_TEXT, TextColors.GRAY, "Debug: ", TextColors.GREEN, "ON", TextColors.WHITE, " | ",
                     TextColors.GRAY, "Verbose: ", !debugData.isRecording() ? Text.of(TextColors.GREEN, "ON") : Text.of(TextColors.RED, "OFF"), " | ",
-                    TextColors.GRAY, "Record: ", debugData.isRecording() ? Text.of(TextColors.GREEN, "ON") : Text.of(TextColors.RED, "OFF"), " | ",
-                    TextColors.GRAY, "User: ", TextColors.GOLD, user == null ? "ALL" : user.getName()));
+                    TextColors.GRAY, "Record: ", debugData.isRecording() ? Text.of(TextColors.GREEN, debugData.isRecordingToFile() ? "FILE" : "ON") : Text.of(TextColors.RED, "OFF"), " | ",
+                    TextColors.GRAY, "User: ", TextColors.GOLD, user == null ? "ALL" : user.getName(), TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Filter: ", debugData.getFilterText()));
             GriefPreventionPlugin.instance.getDebugUserMap().put(src.getIdentifier(), debugData);
         }
 
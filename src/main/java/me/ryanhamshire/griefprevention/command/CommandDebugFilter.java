@@ -0,0 +1,76 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.command;
+
+import me.ryanhamshire.griefprevention.GPDebugData;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.util.UUID;
+
+public class CommandDebugFilter implements CommandExecutor {
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext ctx) {
+        final GPDebugData debugData = GriefPreventionPlugin.instance.getDebugUserMap().get(src.getIdentifier());
+        if (debugData == null) {
+            src.sendMessage(Text.of(TextColors.RED, "Debug must be enabled before setting a filter."));
+            return CommandResult.success();
+        }
+
+        final String type = ctx.<String>getOne("filter-type").get();
+        final String value = ctx.<String>getOne("filter-value").orElse(null);
+        if (type.equals("clear")) {
+            debugData.clearFilters();
+        } else if (value == null) {
+            src.sendMessage(Text.of(TextColors.RED, "Usage: /gpdebug filter <claim|source|target> <value|*> or /gpdebug filter clear"));
+            return CommandResult.success();
+        } else if (type.equals("claim")) {
+            if (value.equals("*")) {
+                debugData.setClaimFilter(null);
+            } else {
+                try {
+                    debugData.setClaimFilter(UUID.fromString(value));
+                } catch (IllegalArgumentException e) {
+                    src.sendMessage(Text.of(TextColors.RED, "Invalid claim id ", TextColors.WHITE, value, TextColors.RED, "."));
+                    return CommandResult.success();
+                }
+            }
+        } else if (type.equals("source")) {
+            debugData.setSourceFilter(value.equals("*") ? null : value.toLowerCase());
+        } else {
+            debugData.setTargetFilter(value.equals("*") ? null : value.toLowerCase());
+        }
+
+        final Text gpText = Text.of(TextColors.RESET, "[", TextColors.AQUA, "GP", TextColors.WHITE, "] ");
+        src.sendMessage(Text.of(gpText, TextColors.GRAY, "Debug filter: ", debugData.getFilterText()));
+        return CommandResult.success();
+    }
+}
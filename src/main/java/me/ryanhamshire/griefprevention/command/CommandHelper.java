@@ -41,8 +41,10 @@
 import me.ryanhamshire.griefprevention.economy.GPBankTransaction;
 import me.ryanhamshire.griefprevention.event.GPGroupTrustClaimEvent;
 import me.ryanhamshire.griefprevention.event.GPUserTrustClaimEvent;
+import me.ryanhamshire.griefprevention.permission.GPFlagDecisionTable;
 import me.ryanhamshire.griefprevention.permission.GPOptionHandler;
 import me.ryanhamshire.griefprevention.permission.GPOptions;
+import me.ryanhamshire.griefprevention.permission.GPPermissionCache;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
 import me.ryanhamshire.griefprevention.util.PermissionUtils;
 import me.ryanhamshire.griefprevention.util.TaskUtils;
@@ -388,6 +390,7 @@ public static FlagResult applyFlagPermission(CommandSource src, Subject subject,
             }
 
             GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().setPermission(contexts, flagPermission, value);
+            GPFlagDecisionTable.invalidate(GriefPreventionPlugin.GLOBAL_SUBJECT, contexts);
             if (!clicked) {
                 src.sendMessage(Text.of(Text.builder()
                                 .append(Text.of(TextColors.WHITE, "\n[", TextColors.AQUA, "Return to flags", TextColors.WHITE, "]\n"))
@@ -423,6 +426,7 @@ TextColors.LIGHT_PURPLE, getClickableText(src, subject, subjectName, contexts, f
             }
         }
 
+        GPPermissionCache.invalidate();
         return new GPFlagResult(FlagResultType.SUCCESS);
     }
 
@@ -457,6 +461,8 @@ public static Consumer<CommandSource> createFlagConsumer(CommandSource src, Subj
             String target = flagPermission.replace(GPPermissions.FLAG_BASE + ".", "");
             Set<Context> newContexts = new HashSet<>(contexts);
             subject.getSubjectData().setPermission(newContexts, flagPermission, newValue);
+            GPFlagDecisionTable.invalidate(subject, newContexts);
+            GPPermissionCache.invalidate();
             src.sendMessage(Text.of(
                     TextColors.GREEN, "Set ", flagTypeText, " permission ",
                     TextColors.AQUA, target,
@@ -551,95 +557,10 @@ public static List<Text> generateClaimTextList(List<Text> claimsTextList, Set<Cl
         if (claimList.size() > 0) {
             for (Claim playerClaim : claimList) {
                 GPClaim claim = (GPClaim) playerClaim;
-                if (!overlap && !listChildren && claim.isSubdivision() && !claim.getData().getEconomyData().isForSale()) {
+                if (!canListClaim(claim, sourceUser, canListOthers, listChildren, overlap)) {
                     continue;
                 }
-                // Only list claims trusted if not an overlap claim
-                if (!overlap && sourceUser != null && !claim.isUserTrusted(sourceUser, TrustType.ACCESSOR) && !canListOthers) {
-                    continue;
-                }
-
-                double teleportHeight = claim.getOwnerPlayerData() == null ? 65.0D : (claim.getOwnerPlayerData().getMinClaimLevel() > 65.0D ? claim.getOwnerPlayerData().getMinClaimLevel() : 65);
-                Location<World> a = claim.lesserBoundaryCorner;
-                Vector3d center = a.getPosition().add(claim.greaterBoundaryCorner.getPosition()).div(2);
-                if (teleportHeight == 65 && claim.getWorld().getDimension().getType() == DimensionTypes.OVERWORLD) {
-                    teleportHeight = claim.getWorld().getHighestYAt((int) center.getX(), (int) center.getZ());
-                }
-                Location<World> southWest = claim.lesserBoundaryCorner.setPosition(new Vector3d(center.getX(), teleportHeight, center.getZ()));
-
-                Text claimName = claim.getData().getName().orElse(Text.of());
-                Text teleportName = claim.getData().getName().orElse(claim.getFriendlyNameType());
-                Text ownerLine = Text.of(TextColors.YELLOW, "Owner", TextColors.WHITE, " : ", TextColors.GOLD, claim.getOwnerName().toPlain(), "\n");
-                Text claimTypeInfo = Text.of(TextColors.YELLOW, "Type", TextColors.WHITE, " : ",
-                        claim.getFriendlyNameType(), " ", TextColors.GRAY, claim.isCuboid() ? "3D " : "2D ",
-                        TextColors.WHITE, " (Area: ", TextColors.GRAY, claim.getClaimBlocks(), " blocks",
-                        TextColors.WHITE, ")\n");
-                Text clickInfo = Text.of("Click to check more info.");
-                Text basicInfo = Text.builder().append(
-                        ownerLine,
-                        claimTypeInfo,
-                        clickInfo).build();
-
-                Text claimInfoCommandClick = Text.builder().append(claim.getFriendlyNameType())
-                        .onClick(TextActions.executeCallback(CommandHelper.createCommandConsumer(src, "claiminfo", claim.id.toString(), createReturnClaimListConsumer(src, returnCommand))))
-                        .onHover(TextActions.showText(basicInfo))
-                        .build();
-
-                Text claimCoordsTPClick = Text.builder().append(Text.of(
-                        TextColors.WHITE, "[", TextColors.LIGHT_PURPLE, "TP", TextColors.WHITE, "]"))
-                        .onClick(TextActions.executeCallback(CommandHelper.createTeleportConsumer(src, southWest, claim)))
-                        .onHover(TextActions.showText(Text.of("Click here to teleport to ", teleportName, " ", southWest.getBlockPosition(), " in ", TextColors.LIGHT_PURPLE, claim.getWorld().getProperties().getWorldName(), TextColors.WHITE, ".")))
-                        .build();
-
-                Text claimSpawn = null;
-                if (claim.getData().getSpawnPos().isPresent()) {
-                    Vector3i spawnPos = claim.getData().getSpawnPos().get();
-                    Location<World> spawnLoc = new Location<>(claim.getWorld(), spawnPos);
-                    claimSpawn = Text.builder().append(Text.of(TextColors.WHITE, "[", TextColors.LIGHT_PURPLE, "TP", TextColors.WHITE, "]"))
-                            .onClick(TextActions.executeCallback(CommandHelper.createTeleportConsumer(src, spawnLoc, claim)))
-                            .onHover(TextActions.showText(Text.of("Click here to teleport to ", teleportName, "'s spawn @ ", spawnPos, " in ", TextColors.LIGHT_PURPLE, claim.getWorld().getProperties().getWorldName(), TextColors.WHITE, ".")))
-                            .build();
-                } else {
-                    claimSpawn = claimCoordsTPClick;
-                }
-
-                List<Text> childrenTextList = new ArrayList<>();
-                if (!listChildren) {
-                    childrenTextList = generateClaimTextList(new ArrayList<Text>(), claim.getInternalChildren(true), worldName, user, src, returnCommand, canListOthers, true);
-                }
-                final Player player = src instanceof Player ? (Player) src : null;
-                Text buyClaim = Text.of();
-                if (player != null && claim.getEconomyData().isForSale() && claim.getEconomyData().getSalePrice() > -1) {
-                    Text buyInfo = Text.of(TextColors.AQUA, "Price ", TextColors.WHITE, ":", TextColors.GOLD, " ", claim.getEconomyData().getSalePrice(), "\nClick here to purchase claim.");
-                    buyClaim = Text.builder()
-                            .append(claim.getEconomyData().isForSale() ? Text.of(TextColors.WHITE, "[", TextColors.GREEN, "Buy", TextColors.WHITE, "]") : Text.of())
-                            .onClick(TextActions.executeCallback(buyClaimConsumerConfirmation(src, claim)))
-                            .onHover(TextActions.showText(Text.of(player.getUniqueId().equals(claim.getOwnerUniqueId()) ? "You already own this claim." : buyInfo))).build();
-                }
-                if (!childrenTextList.isEmpty()) {
-                    Text children = Text.builder().append(Text.of(
-                            TextColors.WHITE, "[", TextColors.AQUA, "children", TextColors.WHITE, "]"))
-                            .onClick(TextActions.executeCallback(showChildrenList(childrenTextList, src, returnCommand, claim)))
-                            .onHover(TextActions.showText(Text.of("Click here to view child claim list."))).build();
-                    claimsTextList.add(Text.builder()
-                            .append(Text.of(
-                                    claimSpawn, " ",
-                                    claimInfoCommandClick, TextColors.WHITE, " : ",
-                                    TextColors.GOLD, claim.getOwnerName().toPlain(), " ",
-                                    children, " ",
-                                    claimName.isEmpty() ? "" : claimName, " ",
-                                    buyClaim))
-                            .build());
-                } else {
-                    claimsTextList.add(Text.builder()
-                            .append(Text.of(
-                                    claimSpawn, " ",
-                                    claimInfoCommandClick, TextColors.WHITE, " : ",
-                                    TextColors.GOLD, claim.getOwnerName().toPlain(), " ",
-                                    claimName.isEmpty() ? "" : claimName, " ",
-                                    buyClaim))
-                            .build());
-                }
+                claimsTextList.add(generateClaimText(claim, worldName, user, src, returnCommand, canListOthers, listChildren));
             }
             if (claimsTextList.size() == 0) {
                 claimsTextList.add(Text.of(TextColors.RED, "No claims found in world."));
@@ -648,6 +569,106 @@ public static List<Text> generateClaimTextList(List<Text> claimsTextList, Set<Cl
         return claimsTextList;
     }
 
+    public static boolean canListClaim(GPClaim claim, User sourceUser, boolean canListOthers, boolean listChildren, boolean overlap) {
+        if (!overlap && !listChildren && claim.isSubdivision() && !claim.getData().getEconomyData().isForSale()) {
+            return false;
+        }
+        // Only list claims trusted if not an overlap claim
+        if (!overlap && sourceUser != null && !claim.isUserTrusted(sourceUser, TrustType.ACCESSOR) && !canListOthers) {
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean hasListableChildren(GPClaim claim, User sourceUser, boolean canListOthers) {
+        for (Claim child : claim.getInternalChildren(true)) {
+            if (canListClaim((GPClaim) child, sourceUser, canListOthers, true, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static Text generateClaimText(GPClaim claim, String worldName, User user, CommandSource src, Consumer<CommandSource> returnCommand, boolean canListOthers, boolean listChildren) {
+        final User sourceUser = src instanceof User ? (User) src : null;
+        double teleportHeight = claim.getOwnerPlayerData() == null ? 65.0D : (claim.getOwnerPlayerData().getMinClaimLevel() > 65.0D ? claim.getOwnerPlayerData().getMinClaimLevel() : 65);
+        Location<World> a = claim.lesserBoundaryCorner;
+        Vector3d center = a.getPosition().add(claim.greaterBoundaryCorner.getPosition()).div(2);
+        if (teleportHeight == 65 && claim.getWorld().getDimension().getType() == DimensionTypes.OVERWORLD) {
+            teleportHeight = claim.getWorld().getHighestYAt((int) center.getX(), (int) center.getZ());
+        }
+        Location<World> southWest = claim.lesserBoundaryCorner.setPosition(new Vector3d(center.getX(), teleportHeight, center.getZ()));
+
+        Text claimName = claim.getData().getName().orElse(Text.of());
+        Text teleportName = claim.getData().getName().orElse(claim.getFriendlyNameType());
+        Text ownerLine = Text.of(TextColors.YELLOW, "Owner", TextColors.WHITE, " : ", TextColors.GOLD, claim.getOwnerName().toPlain(), "\n");
+        Text claimTypeInfo = Text.of(TextColors.YELLOW, "Type", TextColors.WHITE, " : ",
+                claim.getFriendlyNameType(), " ", TextColors.GRAY, claim.isCuboid() ? "3D " : "2D ",
+                TextColors.WHITE, " (Area: ", TextColors.GRAY, claim.getClaimBlocks(), " blocks",
+                TextColors.WHITE, ")\n");
+        Text clickInfo = Text.of("Click to check more info.");
+        Text basicInfo = Text.builder().append(
+                ownerLine,
+                claimTypeInfo,
+                clickInfo).build();
+
+        Text claimInfoCommandClick = Text.builder().append(claim.getFriendlyNameType())
+                .onClick(TextActions.executeCallback(CommandHelper.createCommandConsumer(src, "claiminfo", claim.id.toString(), createReturnClaimListConsumer(src, returnCommand))))
+                .onHover(TextActions.showText(basicInfo))
+                .build();
+
+        Text claimCoordsTPClick = Text.builder().append(Text.of(
+                TextColors.WHITE, "[", TextColors.LIGHT_PURPLE, "TP", TextColors.WHITE, "]"))
+                .onClick(TextActions.executeCallback(CommandHelper.createTeleportConsumer(src, southWest, claim)))
+                .onHover(TextActions.showText(Text.of("Click here to teleport to ", teleportName, " ", southWest.getBlockPosition(), " in ", TextColors.LIGHT_PURPLE, claim.getWorld().getProperties().getWorldName(), TextColors.WHITE, ".")))
+                .build();
+
+        Text claimSpawn = null;
+        if (claim.getData().getSpawnPos().isPresent()) {
+            Vector3i spawnPos = claim.getData().getSpawnPos().get();
+            Location<World> spawnLoc = new Location<>(claim.getWorld(), spawnPos);
+            claimSpawn = Text.builder().append(Text.of(TextColors.WHITE, "[", TextColors.LIGHT_PURPLE, "TP", TextColors.WHITE, "]"))
+                    .onClick(TextActions.executeCallback(CommandHelper.createTeleportConsumer(src, spawnLoc, claim)))
+                    .onHover(TextActions.showText(Text.of("Click here to teleport to ", teleportName, "'s spawn @ ", spawnPos, " in ", TextColors.LIGHT_PURPLE, claim.getWorld().getProperties().getWorldName(), TextColors.WHITE, ".")))
+                    .build();
+        } else {
+            claimSpawn = claimCoordsTPClick;
+        }
+
+        final Player player = src instanceof Player ? (Player) src : null;
+        Text buyClaim = Text.of();
+        if (player != null && claim.getEconomyData().isForSale() && claim.getEconomyData().getSalePrice() > -1) {
+            Text buyInfo = Text.of(TextColors.AQUA, "Price ", TextColors.WHITE, ":", TextColors.GOLD, " ", claim.getEconomyData().getSalePrice(), "\nClick here to purchase claim.");
+            buyClaim = Text.builder()
+                    .append(claim.getEconomyData().isForSale() ? Text.of(TextColors.WHITE, "[", TextColors.GREEN, "Buy", TextColors.WHITE, "]") : Text.of())
+                    .onClick(TextActions.executeCallback(buyClaimConsumerConfirmation(src, claim)))
+                    .onHover(TextActions.showText(Text.of(player.getUniqueId().equals(claim.getOwnerUniqueId()) ? "You already own this claim." : buyInfo))).build();
+        }
+        if (!listChildren && hasListableChildren(claim, sourceUser, canListOthers)) {
+            Text children = Text.builder().append(Text.of(
+                    TextColors.WHITE, "[", TextColors.AQUA, "children", TextColors.WHITE, "]"))
+                    .onClick(TextActions.executeCallback(showChildrenList(claim.getInternalChildren(true), worldName, user, src, returnCommand, canListOthers, claim)))
+                    .onHover(TextActions.showText(Text.of("Click here to view child claim list."))).build();
+            return Text.builder()
+                    .append(Text.of(
+                            claimSpawn, " ",
+                            claimInfoCommandClick, TextColors.WHITE, " : ",
+                            TextColors.GOLD, claim.getOwnerName().toPlain(), " ",
+                            children, " ",
+                            claimName.isEmpty() ? "" : claimName, " ",
+                            buyClaim))
+                    .build();
+        }
+        return Text.builder()
+                .append(Text.of(
+                        claimSpawn, " ",
+                        claimInfoCommandClick, TextColors.WHITE, " : ",
+                        TextColors.GOLD, claim.getOwnerName().toPlain(), " ",
+                        claimName.isEmpty() ? "" : claimName, " ",
+                        buyClaim))
+                .build();
+    }
+
     private static Consumer<CommandSource> buyClaimConsumerConfirmation(CommandSource src, Claim claim) {
         return confirm -> {
             final Player player = (Player) src;
@@ -716,8 +737,10 @@ private static Consumer<CommandSource> createBuyConsumerConfirmed(CommandSource
         };
     }
 
-    public static Consumer<CommandSource> showChildrenList(List<Text> childrenTextList, CommandSource src, Consumer<CommandSource> returnCommand, GPClaim parent) {
+    public static Consumer<CommandSource> showChildrenList(Set<Claim> children, String worldName, User user, CommandSource src, Consumer<CommandSource> returnCommand, boolean canListOthers, GPClaim parent) {
         return consumer -> {
+            // Child entries are only built once the list is actually requested
+            final List<Text> childrenTextList = generateClaimTextList(new ArrayList<Text>(), children, worldName, user, src, returnCommand, canListOthers, true);
             Text claimListReturnCommand = Text.builder().append(Text.of(
                     TextColors.WHITE, "\n[", TextColors.AQUA, "Return to claimslist", TextColors.WHITE, "]\n"))
                     .onClick(TextActions.executeCallback(returnCommand)).build();
@@ -941,6 +964,7 @@ public static void handleUserTrustCommand(Player player, TrustType trustType, Us
 
                 trustList.add(user.getUniqueId());
                 gpClaim.getInternalClaimData().setRequiresSave(true);
+                GPPermissionCache.invalidate();
                 gpClaim.getInternalClaimData().save();
             }
 
@@ -1012,6 +1036,7 @@ public static void handleGroupTrustCommand(Player player, TrustType trustType, S
             }
             subject.getSubjectData().setPermission(contexts, permission, Tristate.TRUE);
             gpClaim.getInternalClaimData().setRequiresSave(true);
+            GPPermissionCache.invalidate();
         }
         GriefPreventionPlugin.sendMessage(player, Text.of(TextColors.GREEN, "Granted ", TextColors.AQUA, group + " permission to ", trustType.name() + " in current claim."));
     }
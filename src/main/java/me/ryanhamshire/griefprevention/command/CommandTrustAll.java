@@ -33,6 +33,7 @@
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.event.GPGroupTrustClaimEvent;
 import me.ryanhamshire.griefprevention.event.GPUserTrustClaimEvent;
+import me.ryanhamshire.griefprevention.permission.GPPermissionCache;
 import me.ryanhamshire.griefprevention.util.PermissionUtils;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandException;
@@ -150,6 +151,7 @@ private void addAllUserTrust(Claim claim, User user) {
         }
 
         gpClaim.getInternalClaimData().setRequiresSave(true);
+        GPPermissionCache.invalidate();
         for (Claim child : gpClaim.children) {
             this.addAllGroupTrust(child, user);
         }
@@ -163,6 +165,7 @@ private void addAllGroupTrust(Claim claim, Subject group) {
         }
 
         gpClaim.getInternalClaimData().setRequiresSave(true);
+        GPPermissionCache.invalidate();
         for (Claim child : gpClaim.children) {
             this.addAllGroupTrust(child, group);
         }
@@ -32,6 +32,7 @@
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.event.GPGroupTrustClaimEvent;
 import me.ryanhamshire.griefprevention.event.GPUserTrustClaimEvent;
+import me.ryanhamshire.griefprevention.permission.GPPermissionCache;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
 import me.ryanhamshire.griefprevention.util.PermissionUtils;
 import org.spongepowered.api.Sponge;
@@ -131,6 +132,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
                     for (TrustType trustType : TrustType.values()) {
                         claim.getGroupTrustList(trustType).remove(group);
                         claim.getInternalClaimData().setRequiresSave(true);
+                        GPPermissionCache.invalidate();
                     }
 
                     GriefPreventionPlugin.sendMessage(player, Text.of(TextColors.RED, "Group " + group + " is not valid."));
@@ -156,6 +158,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
         }
 
         claim.getInternalClaimData().setRequiresSave(true);
+        GPPermissionCache.invalidate();
         GriefPreventionPlugin.sendMessage(player, Text.of("Revoked " + user != null ? user.getName() : group + "'s access to this claim.  To unset permissions for ALL your claims, use /untrustall."));
         return CommandResult.success();
     }
@@ -33,6 +33,7 @@
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.event.GPGroupTrustClaimEvent;
 import me.ryanhamshire.griefprevention.event.GPUserTrustClaimEvent;
+import me.ryanhamshire.griefprevention.permission.GPPermissionCache;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
 import me.ryanhamshire.griefprevention.util.PermissionUtils;
 import org.spongepowered.api.Sponge;
@@ -147,6 +148,7 @@ private void removeAllUserTrust(Claim claim, User user) {
             user.getSubjectData().setPermission(contexts, GPPermissions.getTrustPermission(type), Tristate.UNDEFINED);
             gpClaim.getUserTrustList(type).remove(user.getUniqueId());
             gpClaim.getInternalClaimData().setRequiresSave(true);
+            GPPermissionCache.invalidate();
             for (Claim child : gpClaim.children) {
                 this.removeAllUserTrust(child, user);
             }
@@ -161,6 +163,7 @@ private void removeAllGroupTrust(Claim claim, Subject group) {
             group.getSubjectData().setPermission(contexts, GPPermissions.getTrustPermission(type), Tristate.UNDEFINED);
             gpClaim.getGroupTrustList(type).remove(group);
             gpClaim.getInternalClaimData().setRequiresSave(true);
+            GPPermissionCache.invalidate();
             for (Claim child : gpClaim.children) {
                 this.removeAllGroupTrust(child, group);
             }
@@ -28,7 +28,9 @@
 import me.ryanhamshire.griefprevention.api.claim.ClaimType;
 import me.ryanhamshire.griefprevention.api.data.EconomyData;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
+import me.ryanhamshire.griefprevention.claim.GPClaimManager;
 import me.ryanhamshire.griefprevention.configuration.category.ConfigCategory;
+import me.ryanhamshire.griefprevention.permission.GPPermissionCache;
 import me.ryanhamshire.griefprevention.util.BlockUtils;
 import ninja.leaping.configurate.objectmapping.Setting;
 import ninja.leaping.configurate.objectmapping.serialize.ConfigSerializable;
@@ -210,7 +212,7 @@ public UUID getWorldUniqueId() {
 
     @Override
     public void setWorldUniqueId(UUID uuid) {
-        this.requiresSave = true;
+        this.markDirty();
         this.worldUniqueId = uuid;
     }
 
@@ -221,7 +223,7 @@ public UUID getOwnerUniqueId() {
 
     @Override
     public void setOwnerUniqueId(UUID newClaimOwner) {
-        this.requiresSave = true;
+        this.markDirty();
         this.ownerUniqueId = newClaimOwner;
     }
 
@@ -257,7 +259,7 @@ public Tristate getPvpOverride() {
 
     @Override
     public void setPvpOverride(Tristate pvp) {
-        this.requiresSave = true;
+        this.markDirty();
         this.pvpOverride = pvp;
     }
 
@@ -268,7 +270,7 @@ public boolean isResizable() {
 
     @Override
     public void setResizable(boolean resizable) {
-        this.requiresSave = true;
+        this.markDirty();
         this.isResizable = resizable;
     }
 
@@ -288,7 +290,7 @@ public ClaimType getType() {
 
     @Override
     public void setType(ClaimType type) {
-        this.requiresSave = true;
+        this.markDirty();
         this.claimType = type;
     }
 
@@ -304,7 +306,7 @@ public Instant getDateLastActive() {
 
     @Override
     public void setDateLastActive(Instant date) {
-        this.requiresSave = true;
+        this.markDirty();
         this.dateLastActive = date.toString();
     }
 
@@ -323,7 +325,7 @@ public void setName(Text name) {
         if (name == null) {
             return;
         }
-        this.requiresSave = true;
+        this.markDirty();
         this.claimName = name.toPlain();
     }
 
@@ -341,7 +343,7 @@ public void setGreeting(Text message) {
         if (message == null) {
             return;
         }
-        this.requiresSave = true;
+        this.markDirty();
         this.claimGreetingMessage = message.toPlain();
     }
 
@@ -359,7 +361,7 @@ public void setFarewell(Text message) {
         if (message == null) {
             return;
         }
-        this.requiresSave = true;
+        this.markDirty();
         this.claimFarewellMessage = message.toPlain();
     }
 
@@ -368,7 +370,7 @@ public Optional<Vector3i> getSpawnPos() {
         if (this.spawnPos == null && this.claimSpawn != null) {
             try {
                 this.spawnPos = BlockUtils.positionFromString(this.claimSpawn);
-                this.requiresSave = true;
+                this.markDirty();
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -383,7 +385,7 @@ public void setSpawnPos(Vector3i spawnPos) {
             return;
         }
 
-        this.requiresSave = true;
+        this.markDirty();
         this.spawnPos = spawnPos;
         this.claimSpawn = BlockUtils.positionToString(spawnPos);
     }
@@ -420,7 +422,7 @@ public List<UUID> getAccessors() {
 
     @Override
     public void setAccessors(List<UUID> accessors) {
-        this.requiresSave = true;
+        this.markDirty();
         this.accessors = accessors;
     }
 
@@ -430,7 +432,7 @@ public List<UUID> getBuilders() {
 
     @Override
     public void setBuilders(List<UUID> builders) {
-        this.requiresSave = true;
+        this.markDirty();
         this.builders = builders;
     }
 
@@ -440,7 +442,7 @@ public List<UUID> getContainers() {
 
     @Override
     public void setContainers(List<UUID> containers) {
-        this.requiresSave = true;
+        this.markDirty();
         this.containers = containers;
     }
 
@@ -450,7 +452,7 @@ public List<UUID> getManagers() {
 
     @Override
     public void setManagers(List<UUID> coowners) {
-        this.requiresSave = true;
+        this.markDirty();
         this.managers = coowners;
     }
 
@@ -472,31 +474,32 @@ public List<String> getManagerGroups() {
 
     @Override
     public void setDenyMessages(boolean flag) {
-        this.requiresSave = true;
+        this.markDirty();
         this.allowDenyMessages = flag;
     }
 
     @Override
     public void setExpiration(boolean flag) {
-        this.requiresSave = true;
+        this.markDirty();
         this.allowClaimExpiration = flag;
     }
 
     @Override
     public void setFlagOverrides(boolean flag) {
         this.allowFlagOverrides = flag;
+        GPPermissionCache.invalidate();
     }
 
     @Override
     public void setLesserBoundaryCorner(String location) {
-        this.requiresSave = true;
+        this.markDirty();
         this.lesserBoundaryCornerPos = location;
         this.lesserPos = null;
     }
 
     @Override
     public void setGreaterBoundaryCorner(String location) {
-        this.requiresSave = true;
+        this.markDirty();
         this.greaterBoundaryCornerPos = location;
         this.greaterPos = null;
     }
@@ -507,7 +510,19 @@ public boolean requiresSave() {
 
     @Override
     public void setRequiresSave(boolean flag) {
-        this.requiresSave = flag;
+        if (flag) {
+            this.markDirty();
+        } else {
+            this.requiresSave = false;
+        }
+    }
+
+    // Flags the claim for the next save of its world
+    void markDirty() {
+        this.requiresSave = true;
+        if (this.claimStorage != null && this.worldUniqueId != null) {
+            GPClaimManager.markClaimDirty(this.worldUniqueId, this.claimStorage.getClaimId());
+        }
     }
 
     @Override
@@ -526,12 +541,17 @@ public boolean doesInheritParent() {
 
     @Override
     public void setInheritParent(boolean flag) {
-        this.requiresSave = true;
+        this.setRequiresSave(true);
         this.inheritParent = flag;
+        // inheritance changes resolved permissions and the trust index
+        GPPermissionCache.invalidate();
     }
 
     public void setClaimStorageData(ClaimStorageData claimStorage) {
         this.claimStorage = claimStorage;
+        if (this.requiresSave) {
+            this.markDirty();
+        }
     }
 
     @Override
@@ -546,7 +566,7 @@ public boolean requiresClaimBlocks() {
 
     @Override
     public void setRequiresClaimBlocks(boolean requiresClaimBlocks) {
-        this.requiresSave = true;
+        this.markDirty();
         this.requiresClaimBlocks = requiresClaimBlocks;
     }
 
@@ -557,7 +577,7 @@ public Optional<UUID> getParent() {
 
     @Override
     public void setParent(UUID uuid) {
-        this.requiresSave = true;
+        this.setRequiresSave(true);
         this.parent = uuid;
     }
 
@@ -566,6 +586,10 @@ public boolean isExpired() {
     }
 
     public void setExpired(boolean expire) {
+        if (this.isExpired != expire) {
+            // expired claims deny trust
+            GPPermissionCache.invalidate();
+        }
         this.isExpired = expire;
     }
 
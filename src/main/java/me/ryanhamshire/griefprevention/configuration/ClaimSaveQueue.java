@@ -0,0 +1,150 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.scheduler.Task;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Write-behind queue for claim data. Repeated saves of the same claim within the configured
+// delay are coalesced into one write. Claim data is snapshotted on the main thread in small
+// batches per tick, then rendered and written to disk on the plugin executor.
+public class ClaimSaveQueue {
+
+    // max main thread time spent snapshotting claim data per tick
+    private static final long SNAPSHOT_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    // Claim id -> pending save, ordered by first save request
+    private static final Map<String, PendingSave> PENDING = new LinkedHashMap<>();
+    private static Task task;
+
+    public static synchronized void enqueue(ClaimStorageData storage) {
+        final String claimId = storage.getClaimId();
+        final PendingSave pending = PENDING.get(claimId);
+        if (pending != null) {
+            // storage may have been replaced after a claim was moved
+            pending.storage = storage;
+            return;
+        }
+
+        final long delay = TimeUnit.SECONDS.toMillis(GriefPreventionPlugin.getGlobalConfig().getConfig().thread.claimSaveDelay);
+        PENDING.put(claimId, new PendingSave(storage, System.currentTimeMillis() + delay));
+        if (task == null) {
+            task = Sponge.getScheduler().createTaskBuilder()
+                    .intervalTicks(1)
+                    .execute(ClaimSaveQueue::processPending)
+                    .submit(GriefPreventionPlugin.instance);
+        }
+    }
+
+    // Drops any pending save, used when a claim is deleted
+    public static synchronized void cancel(ClaimStorageData storage) {
+        final PendingSave pending = PENDING.get(storage.getClaimId());
+        if (pending != null && pending.storage == storage) {
+            PENDING.remove(storage.getClaimId());
+        }
+    }
+
+    // Writes all pending saves for a world on the calling thread, used on world unload
+    public static void flush(UUID worldUniqueId) {
+        final List<ClaimStorageData> storages = new ArrayList<>();
+        synchronized (ClaimSaveQueue.class) {
+            final Iterator<PendingSave> iterator = PENDING.values().iterator();
+            while (iterator.hasNext()) {
+                final ClaimStorageData storage = iterator.next().storage;
+                if (worldUniqueId.equals(storage.getConfig().getWorldUniqueId())) {
+                    storages.add(storage);
+                    iterator.remove();
+                }
+            }
+        }
+        for (ClaimStorageData storage : storages) {
+            storage.write(storage.snapshot());
+        }
+    }
+
+    // Writes everything pending on the calling thread, used on shutdown
+    public static void flushAll() {
+        final List<ClaimStorageData> storages = new ArrayList<>();
+        synchronized (ClaimSaveQueue.class) {
+            for (PendingSave pending : PENDING.values()) {
+                storages.add(pending.storage);
+            }
+            PENDING.clear();
+            if (task != null) {
+                task.cancel();
+                task = null;
+            }
+        }
+        for (ClaimStorageData storage : storages) {
+            storage.write(storage.snapshot());
+        }
+    }
+
+    private static void processPending() {
+        final long now = System.currentTimeMillis();
+        final long start = System.nanoTime();
+        while (System.nanoTime() - start < SNAPSHOT_BUDGET_NANOS) {
+            final ClaimStorageData storage = pollDue(now);
+            if (storage == null) {
+                break;
+            }
+            final ClaimStorageData.Snapshot snapshot = storage.snapshot();
+            GriefPreventionPlugin.instance.executor.execute(() -> storage.write(snapshot));
+        }
+    }
+
+    private static synchronized ClaimStorageData pollDue(long now) {
+        final Iterator<PendingSave> iterator = PENDING.values().iterator();
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        // entries are ordered by request time so nothing after the first is due earlier
+        final PendingSave pending = iterator.next();
+        if (pending.dueTime > now) {
+            return null;
+        }
+        iterator.remove();
+        return pending.storage;
+    }
+
+    private static final class PendingSave {
+
+        private ClaimStorageData storage;
+        private final long dueTime;
+
+        private PendingSave(ClaimStorageData storage, long dueTime) {
+            this.storage = storage;
+            this.dueTime = dueTime;
+        }
+    }
+}
@@ -35,11 +35,16 @@
 import org.spongepowered.api.Sponge;
 import org.spongepowered.common.SpongeImpl;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.UUID;
 
+import javax.annotation.Nullable;
+
 public class ClaimStorageData {
 
     // MAIN
@@ -75,12 +80,19 @@ public class ClaimStorageData {
     public static final String MAIN_TAX_BALANCE = "tax-balance";
     // SUB
     public static final String MAIN_INHERIT_PARENT = "inherit-parent";
+    // Set when claim data is persisted by the data store instead of claim files
+    private static volatile DataStorageBackend backend;
     public Path filePath;
     public Path folderPath;
     protected HoconConfigurationLoader loader;
     protected ObjectMapper<ClaimDataConfig>.BoundInstance configMapper;
     protected ClaimDataConfig configBase;
     private CommentedConfigurationNode root = SimpleCommentedConfigurationNode.root(ConfigurationOptions.defaults());
+    // Guards disk writes so queued snapshots are written in order
+    private final Object writeLock = new Object();
+    private long snapshotVersion;
+    private long writtenVersion;
+    private boolean closed;
 
     // Used for new claims after server startup
     @SuppressWarnings({"unchecked", "rawtypes"})
@@ -88,14 +100,7 @@ public ClaimStorageData(Path path, UUID worldUniqueId, UUID ownerUniqueId, Claim
         this.filePath = path;
         this.folderPath = path.getParent();
         try {
-            if (Files.notExists(path.getParent())) {
-                Files.createDirectories(path.getParent());
-            }
-            if (Files.notExists(path)) {
-                Files.createFile(path);
-            }
-
-            this.loader = HoconConfigurationLoader.builder().setPath(path).build();
+            this.loader = createLoader(path);
             if (type == ClaimType.TOWN) {
                 this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(TownDataConfig.class).bindToNew();
             } else {
@@ -118,14 +123,7 @@ public ClaimStorageData(Path path, UUID worldUniqueId, ClaimDataConfig claimData
         this.filePath = path;
         this.folderPath = path.getParent();
         try {
-            if (Files.notExists(path.getParent())) {
-                Files.createDirectories(path.getParent());
-            }
-            if (Files.notExists(path)) {
-                Files.createFile(path);
-            }
-
-            this.loader = HoconConfigurationLoader.builder().setPath(path).build();
+            this.loader = createLoader(path);
             this.configMapper = ObjectMapper.forClass(ClaimDataConfig.class).bind(claimData);
             this.configMapper.getInstance().setClaimStorageData(this);
             load();
@@ -136,19 +134,21 @@ public ClaimStorageData(Path path, UUID worldUniqueId, ClaimDataConfig claimData
     }
 
     // Used during server load
-    @SuppressWarnings({"unchecked", "rawtypes"})
     public ClaimStorageData(Path path, UUID worldUniqueId) {
+        this(path, worldUniqueId, (CommentedConfigurationNode) null);
+    }
+
+    // Used during server load with claim data read from a storage backend
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ClaimStorageData(Path path, UUID worldUniqueId, @Nullable CommentedConfigurationNode root) {
         this.filePath = path;
         this.folderPath = path.getParent();
         try {
-            if (Files.notExists(path.getParent())) {
-                Files.createDirectories(path.getParent());
-            }
-            if (Files.notExists(path)) {
-                Files.createFile(path);
+            if (root != null) {
+                this.root = root;
+            } else {
+                this.loader = createLoader(path);
             }
-
-            this.loader = HoconConfigurationLoader.builder().setPath(path).build();
             if (path.getParent().endsWith("town")) {
                 this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(TownDataConfig.class).bindToNew();
             } else {
@@ -162,26 +162,134 @@ public ClaimStorageData(Path path, UUID worldUniqueId) {
         }
     }
 
+    public static void setBackend(@Nullable DataStorageBackend storageBackend) {
+        backend = storageBackend;
+    }
+
+    @Nullable
+    public static DataStorageBackend getBackend() {
+        return backend;
+    }
+
+    @Nullable
+    private static HoconConfigurationLoader createLoader(Path path) throws IOException {
+        if (backend != null) {
+            return null;
+        }
+        if (Files.notExists(path.getParent())) {
+            Files.createDirectories(path.getParent());
+        }
+        if (Files.notExists(path)) {
+            Files.createFile(path);
+        }
+        return HoconConfigurationLoader.builder().setPath(path).build();
+    }
+
     public ClaimDataConfig getConfig() {
         return this.configBase;
     }
 
+    public String getClaimId() {
+        return this.filePath.getFileName().toString();
+    }
+
+    // Queues a write, see ClaimSaveQueue
     public void save() {
+        ClaimSaveQueue.enqueue(this);
+    }
+
+    // Writes immediately on the calling thread, dropping any queued write
+    public void saveNow() {
+        ClaimSaveQueue.cancel(this);
+        this.write(this.snapshot());
+    }
+
+    // Moves the claim file when a claim changes type or parent. The storage is closed
+    // afterwards and must be replaced by one for the new path.
+    public void moveTo(Path newPath) throws IOException {
+        // write any queued changes before the file is moved
+        this.saveNow();
+        if (this.loader != null) {
+            if (Files.notExists(newPath.getParent())) {
+                Files.createDirectories(newPath.getParent());
+            }
+            Files.move(this.filePath, newPath);
+        }
+        this.close();
+        final File[] remaining = this.folderPath.toFile().listFiles();
+        if (remaining != null && remaining.length == 0) {
+            Files.delete(this.folderPath);
+        }
+    }
+
+    // Stops all queued and future writes. Used once the claim file is deleted or moved
+    // so the old path is never recreated by a write that was still in progress.
+    public void close() {
+        ClaimSaveQueue.cancel(this);
+        synchronized (this.writeLock) {
+            this.closed = true;
+        }
+    }
+
+    synchronized Snapshot snapshot() {
         try {
             this.configMapper.serialize(this.root.getNode(GriefPreventionPlugin.MOD_ID));
-            this.loader.save(this.root);
             this.configBase.setRequiresSave(false);
-        } catch (IOException | ObjectMappingException e) {
+            return new Snapshot(++this.snapshotVersion, this.root.copy());
+        } catch (ObjectMappingException e) {
             SpongeImpl.getLogger().error("Failed to save configuration", e);
+            return null;
+        }
+    }
+
+    void write(Snapshot snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        synchronized (this.writeLock) {
+            if (this.closed || snapshot.version <= this.writtenVersion) {
+                return;
+            }
+            if (this.loader == null && backend != null) {
+                backend.writeClaimData(this, snapshot.node);
+                this.writtenVersion = snapshot.version;
+                return;
+            }
+            final Path tempPath = this.filePath.resolveSibling(this.filePath.getFileName() + ".tmp");
+            try {
+                HoconConfigurationLoader.builder().setPath(tempPath).build().save(snapshot.node);
+                try {
+                    Files.move(tempPath, this.filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempPath, this.filePath, StandardCopyOption.REPLACE_EXISTING);
+                }
+                this.writtenVersion = snapshot.version;
+            } catch (IOException e) {
+                SpongeImpl.getLogger().error("Failed to save configuration", e);
+            }
         }
     }
 
     public void load() {
         try {
-            this.root = this.loader.load(ConfigurationOptions.defaults());
+            if (this.loader != null) {
+                this.root = this.loader.load(ConfigurationOptions.defaults());
+            }
             this.configBase = this.configMapper.populate(this.root.getNode(GriefPreventionPlugin.MOD_ID));
+            ((EconomyDataConfig) this.configBase.getEconomyData()).claimData = this.configBase;
         } catch (Exception e) {
             SpongeImpl.getLogger().error("Failed to load configuration", e);
         }
     }
+
+    static final class Snapshot {
+
+        private final long version;
+        private final CommentedConfigurationNode node;
+
+        private Snapshot(long version, CommentedConfigurationNode node) {
+            this.version = version;
+            this.node = node;
+        }
+    }
 }
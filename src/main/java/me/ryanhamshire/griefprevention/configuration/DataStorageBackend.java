@@ -0,0 +1,68 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import javax.annotation.Nullable;
+
+/**
+ * Persists claim and player data somewhere other than the data files.
+ *
+ * <p>Storage objects keep their usual paths, which are used as keys, but no
+ * files are created or read while a backend is set.</p>
+ */
+public interface DataStorageBackend {
+
+    /**
+     * Stores a snapshot of claim data. Called off the main thread.
+     *
+     * @param storage The claim storage
+     * @param node A copy of the claim data root node
+     */
+    void writeClaimData(ClaimStorageData storage, CommentedConfigurationNode node);
+
+    /**
+     * Loads stored player data.
+     *
+     * @param path The player data path
+     * @return The root node, or null if nothing is stored
+     * @throws IOException If the stored data could not be read, callers must
+     *     not fall back to defaults as those would replace the stored data
+     */
+    @Nullable
+    CommentedConfigurationNode readPlayerData(Path path) throws IOException;
+
+    /**
+     * Stores a snapshot of player data.
+     *
+     * @param path The player data path
+     * @param node A copy of the player data root node
+     */
+    void writePlayerData(Path path, CommentedConfigurationNode node);
+}
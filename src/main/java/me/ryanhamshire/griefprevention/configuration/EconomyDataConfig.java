@@ -41,6 +41,7 @@
 public class EconomyDataConfig extends ConfigCategory implements EconomyData {
 
     public GriefPreventionConfig<?> activeConfig;
+    ClaimDataConfig claimData;
 
     @Setting(value = ClaimStorageData.MAIN_CLAIM_FOR_SALE)
     private boolean forSale = false;
@@ -61,6 +62,7 @@ public boolean isForSale() {
     @Override
     public void setForSale(boolean forSale) {
         this.forSale = forSale;
+        this.markDirty();
     }
 
     @Override
@@ -71,6 +73,7 @@ public double getSalePrice() {
     @Override
     public void setSalePrice(double price) {
         this.salePrice = price;
+        this.markDirty();
     }
 
     @Override
@@ -81,6 +84,7 @@ public double getTaxBalance() {
     @Override
     public void setTaxBalance(double balance) {
         this.taxBalance = balance;
+        this.markDirty();
     }
 
     @Override
@@ -102,6 +106,7 @@ public void setTaxPastDueDate(Instant date) {
         } else {
             this.taxPastDueDate = date.toString();
         }
+        this.markDirty();
     }
 
     @Override
@@ -115,10 +120,18 @@ public void addBankTransaction(BankTransaction transaction) {
             this.getBankTransactionLog().remove(0);
         }
         this.getBankTransactionLog().add(new Gson().toJson(transaction));
+        this.markDirty();
     }
 
     @Override
     public void clearBankTransactionLog() {
         this.bankTransactionLog.clear();
+        this.markDirty();
+    }
+
+    private void markDirty() {
+        if (this.claimData != null) {
+            this.claimData.markDirty();
+        }
     }
 }
@@ -24,6 +24,7 @@
  */
 package me.ryanhamshire.griefprevention.configuration;
 
+import me.ryanhamshire.griefprevention.claim.GPClaimManager;
 import me.ryanhamshire.griefprevention.configuration.category.ConfigCategory;
 import ninja.leaping.configurate.objectmapping.Setting;
 import ninja.leaping.configurate.objectmapping.serialize.ConfigSerializable;
@@ -32,6 +33,7 @@
 public class PlayerDataConfig extends ConfigCategory {
 
     private boolean requiresSave = true;
+    PlayerStorageData storageData;
 
     @Setting(value = "accrued-claim-blocks", comment = "How many claim blocks the player has earned in world via play time.")
     private int accruedClaimBlocks;
@@ -46,7 +48,7 @@ public int getAccruedClaimBlocks() {
     }
 
     public void setAccruedClaimBlocks(int blocks) {
-        this.requiresSave = true;
+        this.markDirty();
         this.accruedClaimBlocks = blocks;
     }
 
@@ -55,7 +57,7 @@ public int getBonusClaimBlocks() {
     }
 
     public void setBonusClaimBlocks(int blocks) {
-        this.requiresSave = true;
+        this.markDirty();
         this.bonusClaimBlocks = blocks;
     }
 
@@ -64,7 +66,19 @@ public boolean requiresSave() {
     }
 
     public void setRequiresSave(boolean flag) {
-        this.requiresSave = flag;
+        if (flag) {
+            this.markDirty();
+        } else {
+            this.requiresSave = false;
+        }
+    }
+
+    // Flags the player data for the next world save
+    private void markDirty() {
+        this.requiresSave = true;
+        if (this.storageData != null) {
+            GPClaimManager.markPlayerDataDirty(this.storageData);
+        }
     }
 
     // Remove after 4.0
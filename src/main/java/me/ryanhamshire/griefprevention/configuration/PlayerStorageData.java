@@ -34,32 +34,47 @@
 import org.spongepowered.common.SpongeImpl;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Nullable;
 
 public class PlayerStorageData {
 
+    private final Path path;
     private HoconConfigurationLoader loader;
     private CommentedConfigurationNode root = SimpleCommentedConfigurationNode.root(ConfigurationOptions.defaults());
     private ObjectMapper<PlayerDataConfig>.BoundInstance configMapper;
     private PlayerDataConfig configBase;
+    // Guards writes so a queued write never replaces newer data
+    private final Object writeLock = new Object();
+    private long snapshotVersion;
+    private long writtenVersion;
 
     @SuppressWarnings({"unchecked", "rawtypes"})
     public PlayerStorageData(Path path) {
-
+        this.path = path;
         try {
-            if (Files.notExists(path.getParent())) {
-                Files.createDirectories(path.getParent());
-            }
-            if (Files.notExists(path)) {
-                Files.createFile(path);
-            }
+            // player data lives in the storage backend when one is set
+            if (ClaimStorageData.getBackend() == null) {
+                if (Files.notExists(path.getParent())) {
+                    Files.createDirectories(path.getParent());
+                }
+                if (Files.notExists(path)) {
+                    Files.createFile(path);
+                }
 
-            this.loader = HoconConfigurationLoader.builder().setPath(path).build();
+                this.loader = HoconConfigurationLoader.builder().setPath(path).build();
+            }
             this.configMapper = ObjectMapper.forClass(PlayerDataConfig.class).bindToNew();
 
             load();
             save();
+        } catch (UncheckedIOException e) {
+            // never create default data in place of data that could not be read
+            throw e;
         } catch (Exception e) {
             SpongeImpl.getLogger().error("Failed to initialize configuration", e);
         }
@@ -70,25 +85,113 @@ public PlayerDataConfig getConfig() {
     }
 
     public void save() {
+        final long version;
+        final CommentedConfigurationNode node;
+        synchronized (this) {
+            node = this.snapshot();
+            version = this.snapshotVersion;
+        }
+        if (node != null) {
+            this.write(version, node);
+        }
+    }
+
+    // Serializes on the calling thread and writes on the plugin executor.
+    // Returns false if nothing changed since the last save.
+    public boolean saveAsync() {
+        final long version;
+        final CommentedConfigurationNode node;
+        synchronized (this) {
+            node = this.snapshot();
+            version = this.snapshotVersion;
+        }
+        if (node == null) {
+            return false;
+        }
+        try {
+            GriefPreventionPlugin.instance.executor.execute(() -> this.write(version, node));
+        } catch (RejectedExecutionException e) {
+            // the executor is shut down once the server stops
+            this.write(version, node);
+        }
+        return true;
+    }
+
+    @Nullable
+    private CommentedConfigurationNode snapshot() {
+        if (this.configBase == null || !this.configBase.requiresSave()) {
+            return null;
+        }
         try {
-            if (this.configBase != null) {
-                if (this.configBase.requiresSave()) {
-                    this.configMapper.serialize(this.root.getNode(GriefPreventionPlugin.MOD_ID));
-                    this.loader.save(this.root);
-                    this.configBase.setRequiresSave(false);
+            this.configMapper.serialize(this.root.getNode(GriefPreventionPlugin.MOD_ID));
+            this.configBase.setRequiresSave(false);
+            this.snapshotVersion++;
+            return this.root.copy();
+        } catch (ObjectMappingException e) {
+            SpongeImpl.getLogger().error("Failed to save configuration", e);
+            return null;
+        }
+    }
+
+    private void write(long version, CommentedConfigurationNode node) {
+        synchronized (this.writeLock) {
+            if (version <= this.writtenVersion) {
+                return;
+            }
+            try {
+                final DataStorageBackend backend = ClaimStorageData.getBackend();
+                if (this.loader == null && backend != null) {
+                    backend.writePlayerData(this.path, node);
+                } else {
+                    this.loader.save(node);
                 }
+                this.writtenVersion = version;
+            } catch (IOException e) {
+                SpongeImpl.getLogger().error("Failed to save configuration", e);
             }
-        } catch (IOException | ObjectMappingException e) {
-            SpongeImpl.getLogger().error("Failed to save configuration", e);
         }
     }
 
     public void load() {
+        final DataStorageBackend backend = ClaimStorageData.getBackend();
+        if (this.loader == null && backend != null) {
+            final CommentedConfigurationNode stored;
+            try {
+                stored = backend.readPlayerData(this.path);
+            } catch (IOException e) {
+                if (this.configBase == null) {
+                    throw new UncheckedIOException("Failed to read player data " + this.path.getFileName(), e);
+                }
+                // keep the data already loaded rather than anything unread
+                SpongeImpl.getLogger().error("Failed to reload player data " + this.path.getFileName() + ", keeping loaded data", e);
+                return;
+            }
+            if (stored != null) {
+                this.root = stored;
+            }
+        }
         try {
-            this.root = this.loader.load(ConfigurationOptions.defaults());
-            this.configBase = this.configMapper.populate(this.root.getNode(GriefPreventionPlugin.MOD_ID));
+            if (this.loader != null) {
+                this.root = this.loader.load(ConfigurationOptions.defaults());
+            }
+            this.populate();
         } catch (Exception e) {
             SpongeImpl.getLogger().error("Failed to load configuration", e);
         }
     }
+
+    // Replaces the loaded data with data another server wrote to the storage backend
+    public synchronized void load(CommentedConfigurationNode stored) {
+        this.root = stored;
+        try {
+            this.populate();
+        } catch (ObjectMappingException e) {
+            SpongeImpl.getLogger().error("Failed to load configuration", e);
+        }
+    }
+
+    private void populate() throws ObjectMappingException {
+        this.configBase = this.configMapper.populate(this.root.getNode(GriefPreventionPlugin.MOD_ID));
+        this.configBase.storageData = this;
+    }
 }
@@ -25,10 +25,13 @@
 package me.ryanhamshire.griefprevention.configuration;
 
 import me.ryanhamshire.griefprevention.api.claim.ClaimType;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 
 import java.nio.file.Path;
 import java.util.UUID;
 
+import javax.annotation.Nullable;
+
 public class TownStorageData extends ClaimStorageData {
 
     public TownStorageData(Path path, UUID worldUniqueId, UUID ownerUniqueId, boolean cuboid) {
@@ -39,6 +42,10 @@ public TownStorageData(Path path, UUID worldUniqueId) {
         super(path, worldUniqueId);
     }
 
+    public TownStorageData(Path path, UUID worldUniqueId, @Nullable CommentedConfigurationNode root) {
+        super(path, worldUniqueId, root);
+    }
+
     public TownDataConfig getConfig() {
         return (TownDataConfig) this.configBase;
     }
@@ -24,6 +24,7 @@
  */
 package me.ryanhamshire.griefprevention.configuration.category;
 
+import me.ryanhamshire.griefprevention.claim.ClaimIndexType;
 import ninja.leaping.configurate.objectmapping.Setting;
 import ninja.leaping.configurate.objectmapping.serialize.ConfigSerializable;
 
@@ -42,8 +43,15 @@ public class ClaimCategory extends ConfigCategory {
     public int borderBlockRadius = 0;
     @Setting(value = "claim-list-max", comment = "Controls the max displayed claims when using the '/claimlist' command. Default: 200")
     public int claimListMax = 200;
+    @Setting(value = "claim-lookup-index", comment = "The index used to find the claim at a location. (RTREE, CHUNK) Default: RTREE\n" +
+            "Note: CHUNK is the legacy lookup which scans all top level claims in a chunk. Changes require a world reload.")
+    public ClaimIndexType claimLookupIndex = ClaimIndexType.RTREE;
     @Setting(value = "expiration-cleanup-interval", comment = "The interval in minutes for cleaning up expired claims. Default: 0. Set to 0 to disable.")
     public int expirationCleanupInterval = 0;
+    @Setting(value = "expiration-claims-per-tick", comment = "The maximum number of claims checked for expiration per tick. Default: 20")
+    public int expirationClaimsPerTick = 20;
+    @Setting(value = "expiration-max-tick-time", comment = "The maximum time in milliseconds spent checking claims for expiration per tick. Default: 2")
+    public int expirationMaxTickTime = 2;
     @Setting(value = "deliver-manuals", comment = "Send players manuals on claim creation.")
     public boolean deliverManuals = false;
     @Setting(value = "auto-nature-restore", comment = "Whether survival claims will be automatically restored to nature when auto-deleted. \nNote: This only supports vanilla blocks. Use with caution if using custom biomes.")
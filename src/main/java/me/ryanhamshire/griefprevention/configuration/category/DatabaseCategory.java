@@ -30,10 +30,15 @@
 @ConfigSerializable
 public class DatabaseCategory extends ConfigCategory {
 
-    @Setting(value = "password", comment = "password")
+    @Setting(value = "password", comment = "The database password.")
     public String dbPassword = "";
-    @Setting(value = "username", comment = "username")
+    @Setting(value = "username", comment = "The database username.")
     public String dbUsername = "";
-    @Setting(value = "url", comment = "url")
+    @Setting(value = "sync-interval", comment = "The number of seconds between checks for claim and player data changed by other servers using the database."
+            + "\nSet to 0 if only one server uses the database.")
+    public int syncInterval = 5;
+    @Setting(value = "url", comment = "The JDBC url of the database. Servers using the same database share claim and player data."
+            + "\nSupported databases are MySQL, MariaDB, PostgreSQL, SQLite and H2. Ex. 'jdbc:mysql://localhost:3306/griefprevention'"
+            + "\nNote: Changes require a server restart. Existing claim and player data files are imported the first time each world loads.")
     public String dbURL = "";
 }
\ No newline at end of file
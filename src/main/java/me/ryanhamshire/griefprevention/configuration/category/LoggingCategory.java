@@ -38,4 +38,10 @@ public class LoggingCategory extends ConfigCategory {
     public boolean loggingSocialActions = false;
     @Setting(value = "suspicious-activity", comment = "Log suspicious activity.")
     public boolean loggingSuspiciousActivity = false;
+    @Setting(value = "buffer-size", comment = "The number of log entries that can be queued before they are written to disk. Rounded up to a power of two.")
+    public int bufferSize = 8192;
+    @Setting(value = "overflow-policy", comment = "What to do when the log buffer is full. "
+            + "\n'drop-oldest' discards the oldest queued entry, 'block' waits up to a second for the writer and "
+            + "'count-and-drop' discards the new entry. Dropped entries are counted in the log.")
+    public String overflowPolicy = "drop-oldest";
 }
\ No newline at end of file
@@ -32,4 +32,12 @@ public class ThreadCategory extends ConfigCategory {
 
     @Setting(value = "executor-threads", comment = "The number of threads to use for GP's executor. (Default: 1)")
     public int numExecutorThreads = 1;
+
+    @Setting(value = "claim-save-delay", comment = "The number of seconds to wait before writing changed claim data to disk. "
+            + "Saves of the same claim within this window are combined into a single write. (Default: 5)")
+    public int claimSaveDelay = 5;
+
+    @Setting(value = "claim-load-threads", comment = "The number of threads used to parse claim files while a world loads. "
+            + "Set to 0 to use the number of available processors. (Default: 0)")
+    public int claimLoadThreads = 0;
 }
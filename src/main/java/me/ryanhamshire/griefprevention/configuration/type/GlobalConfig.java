@@ -32,8 +32,8 @@ public class GlobalConfig extends ConfigBase {
     @Setting
     public BanCategory bans = new BanCategory();
 
-    //@Setting
-    //public DatabaseCategory database = new DatabaseCategory();
+    @Setting(comment = "Stores claim and player data in a SQL database instead of files. Leave url empty to use files.")
+    public DatabaseCategory database = new DatabaseCategory();
 
     @Setting
     public LoggingCategory logging = new LoggingCategory();
@@ -32,12 +32,13 @@
 import me.ryanhamshire.griefprevention.api.claim.ClaimType;
 import me.ryanhamshire.griefprevention.api.claim.TrustType;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
+import me.ryanhamshire.griefprevention.claim.GPClaimManager;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
-import me.ryanhamshire.griefprevention.util.BlockPosCache;
 import me.ryanhamshire.griefprevention.util.BlockUtils;
 import me.ryanhamshire.griefprevention.util.CauseContextHelper;
+import me.ryanhamshire.griefprevention.util.EntityBlockCache;
 import me.ryanhamshire.griefprevention.visual.Visualization;
 import me.ryanhamshire.griefprevention.visual.VisualizationType;
 import net.minecraft.block.BlockBasePressurePlate;
@@ -84,6 +85,7 @@
 import org.spongepowered.common.bridge.world.LocationBridge;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -175,28 +177,25 @@ public void onBlockPre(ChangeBlockEvent.Pre event) {
         // Handle player block breaks separately
         if (isForgePlayerBreak && !hasFakePlayer && source instanceof Player) {
             final Player player = (Player) source;
-            GPClaim targetClaim = null;
+            // only locations before the first blacklisted target are checked
+            final List<Location<World>> breakLocations = new ArrayList<>();
             for (Location<World> location : event.getLocations()) {
                 if (GriefPreventionPlugin.isTargetIdBlacklisted(ClaimFlag.BLOCK_BREAK.toString(), location.getBlock(), world.getProperties())) {
-                    GPTimings.BLOCK_PRE_EVENT.stopTimingIfSync();
-                    return;
+                    break;
                 }
-
-                targetClaim = this.dataStore.getClaimAt(location, targetClaim);
-                if (location.getBlockType() == BlockTypes.AIR) {
-                    continue;
+                if (location.getBlockType() != BlockTypes.AIR) {
+                    breakLocations.add(location);
                 }
+            }
 
-                // check overrides
-                final Tristate result = GPPermissionHandler.getClaimPermission(event, location, targetClaim, GPPermissions.BLOCK_BREAK, source, location.getBlock(), player, TrustType.BUILDER, true);
-                if (result != Tristate.TRUE) {
-                    final Text message = Text.of(TextColors.RED, "You don't have ", TextColors.GOLD, targetClaim.getOwnerName().toPlain() + "'s permission to build.");
-                    GriefPreventionPlugin.sendClaimDenyMessage(targetClaim, player, message);
-                    event.setCancelled(true);
-                    lastBlockPreCancelled = true;
-                    GPTimings.BLOCK_PRE_EVENT.stopTimingIfSync();
-                    return;
-                }
+            // check overrides
+            final int deniedIndex = GPPermissionHandler.getDeniedLocations(event, breakLocations, GPPermissions.BLOCK_BREAK, source, player, TrustType.BUILDER, true, true).nextSetBit(0);
+            if (deniedIndex != -1) {
+                final GPClaim targetClaim = this.dataStore.getClaimAt(breakLocations.get(deniedIndex));
+                final Text message = Text.of(TextColors.RED, "You don't have ", TextColors.GOLD, targetClaim.getOwnerName().toPlain() + "'s permission to build.");
+                GriefPreventionPlugin.sendClaimDenyMessage(targetClaim, player, message);
+                event.setCancelled(true);
+                lastBlockPreCancelled = true;
             }
 
             GPTimings.BLOCK_PRE_EVENT.stopTimingIfSync();
@@ -363,6 +362,11 @@ public void onBlockNotify(NotifyNeighborBlockEvent event) {
             if (GriefPreventionPlugin.isSourceIdBlacklisted("block-notify", event.getSource(), sourceLocation.getExtent().getProperties())) {
                 return;
             }
+            // Notifications that stay within wilderness are always allowed
+            if (this.isClaimFreeNotify(sourceLocation, event)) {
+                this.dataStore.getClaimWorldManager(sourceLocation.getExtent().getProperties()).countClaimFreeSkip();
+                return;
+            }
         }
 
         final User user = CauseContextHelper.getEventUser(event);
@@ -435,6 +439,19 @@ public void onBlockNotify(NotifyNeighborBlockEvent event) {
         GPTimings.BLOCK_NOTIFY_EVENT.stopTimingIfSync();
     }
 
+    private boolean isClaimFreeNotify(Location<World> sourceLocation, NotifyNeighborBlockEvent event) {
+        final GPClaimManager claimManager = this.dataStore.getClaimWorldManager(sourceLocation.getExtent().getProperties());
+        if (!claimManager.isClaimFree(sourceLocation)) {
+            return false;
+        }
+        for (Direction direction : event.getNeighbors().keySet()) {
+            if (!claimManager.isClaimFree(sourceLocation.getBlockRelative(direction))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Listener(order = Order.FIRST, beforeModifications = true)
     public void onBlockCollide(CollideBlockEvent event, @Root Entity source) {
         if (event instanceof CollideBlockEvent.Impact) {
@@ -472,20 +489,14 @@ public void onBlockCollide(CollideBlockEvent event, @Root Entity source) {
         BlockPos collidePos = ((LocationBridge) (Object) event.getTargetLocation()).bridge$getBlockPos();
         short shortPos = BlockUtils.blockPosToShort(collidePos);
         int entityId = ((net.minecraft.entity.Entity) source).getEntityId();
-        BlockPosCache entityBlockCache = BlockUtils.ENTITY_BLOCK_CACHE.get(entityId);
-        if (entityBlockCache == null) {
-            entityBlockCache = new BlockPosCache(shortPos);
-            BlockUtils.ENTITY_BLOCK_CACHE.put(entityId, entityBlockCache);
-        } else {
-            Tristate result = entityBlockCache.getCacheResult(shortPos);
-            if (result != Tristate.UNDEFINED) {
-                if (result == Tristate.FALSE) {
-                    event.setCancelled(true);
-                }
-
-                GPTimings.BLOCK_COLLIDE_EVENT.stopTimingIfSync();
-                return;
+        final Tristate cacheResult = EntityBlockCache.getCacheResult(entityId, shortPos);
+        if (cacheResult != Tristate.UNDEFINED) {
+            if (cacheResult == Tristate.FALSE) {
+                event.setCancelled(true);
             }
+
+            GPTimings.BLOCK_COLLIDE_EVENT.stopTimingIfSync();
+            return;
         }
 
         GPPlayerData playerData = null;
@@ -503,12 +514,12 @@ public void onBlockCollide(CollideBlockEvent event, @Root Entity source) {
                 if (playerData != null) {
                     playerData.setLastInteractData(targetClaim);
                 }
-                entityBlockCache.setLastResult(Tristate.TRUE);
+                EntityBlockCache.setLastResult(entityId, Tristate.TRUE);
                 GPTimings.BLOCK_COLLIDE_EVENT.stopTimingIfSync();
                 return;
             }
 
-            entityBlockCache.setLastResult(Tristate.FALSE);
+            EntityBlockCache.setLastResult(entityId, Tristate.FALSE);
             event.setCancelled(true);
             GPTimings.BLOCK_COLLIDE_EVENT.stopTimingIfSync();
             return;
@@ -519,7 +530,7 @@ public void onBlockCollide(CollideBlockEvent event, @Root Entity source) {
                 if (playerData != null) {
                     playerData.setLastInteractData(targetClaim);
                 }
-                entityBlockCache.setLastResult(Tristate.TRUE);
+                EntityBlockCache.setLastResult(entityId, Tristate.TRUE);
                 GPTimings.BLOCK_COLLIDE_EVENT.stopTimingIfSync();
                 return;
             }
@@ -535,7 +546,7 @@ public void onBlockCollide(CollideBlockEvent event, @Root Entity source) {
                                 .apply(ImmutableMap.of(
                                 "owner", targetClaim.getOwnerName())).build();*/
                         event.setCancelled(true);
-                        entityBlockCache.setLastResult(Tristate.FALSE);
+                        EntityBlockCache.setLastResult(entityId, Tristate.FALSE);
                         GPTimings.BLOCK_COLLIDE_EVENT.stopTimingIfSync();
                         return;
                     }
@@ -543,7 +554,7 @@ public void onBlockCollide(CollideBlockEvent event, @Root Entity source) {
             }
 
             event.setCancelled(true);
-            entityBlockCache.setLastResult(Tristate.FALSE);
+            EntityBlockCache.setLastResult(entityId, Tristate.FALSE);
             GPTimings.BLOCK_COLLIDE_EVENT.stopTimingIfSync();
             return;
         }
@@ -551,7 +562,7 @@ public void onBlockCollide(CollideBlockEvent event, @Root Entity source) {
         if (playerData != null) {
             playerData.setLastInteractData(targetClaim);
         }
-        entityBlockCache.setLastResult(Tristate.TRUE);
+        EntityBlockCache.setLastResult(entityId, Tristate.TRUE);
         GPTimings.BLOCK_COLLIDE_EVENT.stopTimingIfSync();
     }
 
@@ -621,31 +632,20 @@ public void onExplosionDetonate(ExplosionEvent.Detonate event) {
 
         GPTimings.EXPLOSION_EVENT.startTimingIfSync();
         final User user = CauseContextHelper.getEventUser(event);
-        GPClaim targetClaim = null;
-        final List<Location<World>> filteredLocations = new ArrayList<>();
-        for (Location<World> location : event.getAffectedLocations()) {
-            targetClaim = GriefPreventionPlugin.instance.dataStore.getClaimAt(location, targetClaim);
-            Tristate result = Tristate.UNDEFINED;
-            if (GPFlags.EXPLOSION_SURFACE && location.getPosition().getY() > ((net.minecraft.world.World) world).getSeaLevel()) {
-                result = GPPermissionHandler.getClaimPermission(event, location, targetClaim, GPPermissions.EXPLOSION_SURFACE, source, location.getBlock(), user, true);
-            } else {
-                result = GPPermissionHandler.getClaimPermission(event, location, targetClaim, GPPermissions.EXPLOSION, source, location.getBlock(), user, true);
-            }
-
-            if (result == Tristate.FALSE) {
-                // Avoid lagging server from large explosions.
-                if (event.getAffectedLocations().size() > 100) {
-                    event.setCancelled(true);
-                    break;
+        final int seaLevel = ((net.minecraft.world.World) world).getSeaLevel();
+        final List<Location<World>> affectedLocations = event.getAffectedLocations();
+        final BitSet deniedLocations = GPPermissionHandler.getDeniedLocations(event, affectedLocations, location ->
+                        GPFlags.EXPLOSION_SURFACE && location.getPosition().getY() > seaLevel ? GPPermissions.EXPLOSION_SURFACE : GPPermissions.EXPLOSION,
+                source, user, null, true, false);
+        if (!deniedLocations.isEmpty()) {
+            final List<Location<World>> allowedLocations = new ArrayList<>(affectedLocations.size() - deniedLocations.cardinality());
+            for (int i = 0; i < affectedLocations.size(); i++) {
+                if (!deniedLocations.get(i)) {
+                    allowedLocations.add(affectedLocations.get(i));
                 }
-                filteredLocations.add(location);
             }
-        }
-        // Workaround for SpongeForge bug
-        if (event.isCancelled()) {
-            event.getAffectedLocations().clear();
-        } else if (!filteredLocations.isEmpty()) {
-            event.getAffectedLocations().removeAll(filteredLocations);
+            affectedLocations.clear();
+            affectedLocations.addAll(allowedLocations);
         }
         GPTimings.EXPLOSION_EVENT.stopTimingIfSync();
     }
@@ -651,6 +651,15 @@ public void onEntityMove(MoveEntityEvent event) {
         if (!GriefPreventionPlugin.instance.claimsEnabledForWorld(world.getProperties())) {
             return;
         }
+        // Wilderness to wilderness moves never cross a border so skip them when neither end is near a claim.
+        // Players are excluded as they still need their last claim tracked.
+        if (!(entity instanceof Player) && !(((net.minecraft.entity.Entity) entity).getControllingPassenger() instanceof Player)) {
+            final GPClaimManager claimManager = this.dataStore.getClaimWorldManager(world.getProperties());
+            if (claimManager.isClaimFree(event.getFromTransform().getLocation()) && claimManager.isClaimFree(event.getToTransform().getLocation())) {
+                claimManager.countClaimFreeSkip();
+                return;
+            }
+        }
         final boolean enterBlacklisted = GriefPreventionPlugin.isSourceIdBlacklisted(ClaimFlag.ENTER_CLAIM.toString(), entity, world.getProperties());
         final boolean exitBlacklisted = GriefPreventionPlugin.isSourceIdBlacklisted(ClaimFlag.EXIT_CLAIM.toString(), entity, world.getProperties());
         if (enterBlacklisted && exitBlacklisted) {
@@ -704,11 +713,13 @@ public void onEntityMove(MoveEntityEvent event) {
         }
 
         GPClaim fromClaim = null;
-        GPClaim toClaim = this.dataStore.getClaimAt(toLocation);
+        GPClaim toClaim = null;
         if (playerData != null) {
-            fromClaim = this.dataStore.getClaimAtPlayer(playerData, fromLocation);
+            fromClaim = playerData.movementCache.getClaimAt(fromLocation);
+            toClaim = playerData.movementCache.getClaimAt(toLocation);
         } else {
             fromClaim = this.dataStore.getClaimAt(fromLocation);
+            toClaim = this.dataStore.getClaimAt(toLocation);
         }
 
         if (GPFlags.ENTER_CLAIM && !enterBlacklisted && playerData != null && playerData.lastClaim != null) {
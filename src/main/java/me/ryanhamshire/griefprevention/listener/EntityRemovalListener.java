@@ -24,7 +24,7 @@
  */
 package me.ryanhamshire.griefprevention.listener;
 
-import me.ryanhamshire.griefprevention.util.BlockUtils;
+import me.ryanhamshire.griefprevention.util.EntityBlockCache;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayer;
@@ -38,7 +38,7 @@ public class EntityRemovalListener implements IWorldEventListener {
 
     @Override
     public void onEntityRemoved(Entity entityIn) {
-        BlockUtils.ENTITY_BLOCK_CACHE.remove(entityIn.getEntityId());
+        EntityBlockCache.remove(entityIn.getEntityId());
     }
 
     @Override
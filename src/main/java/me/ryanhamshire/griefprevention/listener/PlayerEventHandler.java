@@ -802,15 +802,15 @@ public void onPlayerLogin(ClientConnectionEvent.Login event) {
         playerData.ipAddress = ipAddress;
         final GPClaimManager claimWorldManager = this.dataStore.getClaimWorldManager(worldProperties);
         final Instant dateNow = Instant.now();
-        for (Claim claim : claimWorldManager.getWorldClaims()) {
-            if (claim.getType() != ClaimType.ADMIN && claim.getOwnerUniqueId().equals(playerUniqueId)) {
+        for (GPClaim claim : claimWorldManager.getOwnerClaims(playerUniqueId)) {
+            if (claim.parent == null && claim.getType() != ClaimType.ADMIN) {
                 // update lastActive timestamp for claim
                 claim.getData().setDateLastActive(dateNow);
                 // update timestamps for subdivisions
-                for (Claim subdivision : ((GPClaim) claim).children) {
+                for (Claim subdivision : claim.children) {
                     subdivision.getData().setDateLastActive(dateNow);
                 }
-                ((GPClaim) claim).getInternalClaimData().setRequiresSave(true);
+                claim.getInternalClaimData().setRequiresSave(true);
             }
         }
         GPTimings.PLAYER_LOGIN_EVENT.stopTimingIfSync();
@@ -1803,12 +1803,6 @@ private void onPlayerHandleShovelAction(InteractEvent event, BlockSnapshot targe
         playerData = this.dataStore.getOrCreatePlayerData(player.getWorld(), player.getUniqueId());
         final ClaimType shovelClaimType = PlayerUtils.getClaimTypeFromShovel(playerData.shovelMode);
         if (playerData.shovelMode == ShovelMode.RestoreNature || playerData.shovelMode == ShovelMode.RestoreNatureAggressive) {
-            if (true) {
-                player.sendMessage(Text.of(TextColors.RED, "This mode is currently disabled until further notice."));
-                GPTimings.PLAYER_HANDLE_SHOVEL_ACTION.stopTimingIfSync();
-                return;
-            }
-
             // if the clicked block is in a claim, visualize that claim and deliver an error message
             final GPClaim claim = this.dataStore.getClaimAtPlayer(location, playerData, true);
             if (!claim.isWilderness()) {
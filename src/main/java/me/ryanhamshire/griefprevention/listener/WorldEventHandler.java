@@ -27,6 +27,7 @@
 import me.ryanhamshire.griefprevention.GPTimings;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
 import me.ryanhamshire.griefprevention.claim.GPClaimManager;
+import me.ryanhamshire.griefprevention.configuration.ClaimSaveQueue;
 import me.ryanhamshire.griefprevention.task.TaxApplyTask;
 import me.ryanhamshire.griefprevention.util.TaskUtils;
 import org.spongepowered.api.Sponge;
@@ -78,7 +79,12 @@ public void onWorldLoad(LoadWorldEvent event) {
 
     @Listener(order = Order.FIRST, beforeModifications = true)
     public void onWorldUnload(UnloadWorldEvent event) {
-        if (!SpongeImpl.getServer().isServerRunning() || !GriefPreventionPlugin.instance.claimsEnabledForWorld(event.getTargetWorld().getProperties())) {
+        if (!GriefPreventionPlugin.instance.claimsEnabledForWorld(event.getTargetWorld().getProperties())) {
+            return;
+        }
+
+        ClaimSaveQueue.flush(event.getTargetWorld().getUniqueId());
+        if (!SpongeImpl.getServer().isServerRunning()) {
             return;
         }
 
@@ -99,6 +105,7 @@ public void onWorldSave(SaveWorldEvent.Post event) {
         }
 
         claimWorldManager.save();
+        GPClaimManager.savePlayerData();
         GPTimings.WORLD_SAVE_EVENT.stopTimingIfSync();
     }
 
@@ -24,31 +24,42 @@
  */
 package me.ryanhamshire.griefprevention.logging;
 
-import com.google.common.io.Files;
 import me.ryanhamshire.griefprevention.DataStore;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.configuration.category.LoggingCategory;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.scheduler.Scheduler;
 
 import java.io.File;
-import java.nio.charset.Charset;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.text.SimpleDateFormat;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class CustomLogger {
 
     private static final Pattern inlineFormatterPattern = Pattern.compile("�.");
-    private final SimpleDateFormat timestampFormat = new SimpleDateFormat("HH:mm");
-    private final SimpleDateFormat filenameFormat = new SimpleDateFormat("yyyy_MM_dd");
+    private static final DateTimeFormatter timestampFormat = DateTimeFormatter.ofPattern("HH:mm");
+    private static final DateTimeFormatter filenameFormat = DateTimeFormatter.ofPattern("yyyy_MM_dd");
+    // flush early once a batch grows past this many characters
+    private static final int MAX_BATCH_SIZE = 64 * 1024;
     private final String logFolderPath = DataStore.dataLayerFolderPath + File.separator + "Logs";
     private final int secondsBetweenWrites = 10;
-    // stringbuilder is not thread safe, stringbuffer is
-    private final StringBuffer queuedEntries = new StringBuffer();
+    private final LogRingBuffer queuedEntries;
+    private final Thread writerThread;
+    private volatile boolean running = true;
 
     public CustomLogger() {
         // ensure log folder exists
@@ -58,12 +69,17 @@ public CustomLogger() {
         // delete any outdated log files immediately
         this.deleteExpiredLogs();
 
+        final LoggingCategory loggingConfig = GriefPreventionPlugin.getGlobalConfig().getConfig().logging;
+        this.writerThread = new Thread(new EntryWriter(), "GriefPrevention Log Writer");
+        this.writerThread.setDaemon(true);
+        this.queuedEntries = new LogRingBuffer(loggingConfig.bufferSize, LogRingBuffer.OverflowPolicy.fromConfig(loggingConfig.overflowPolicy),
+                () -> LockSupport.unpark(this.writerThread));
+
         // unless disabled, schedule recurring tasks
-        int daysToKeepLogs = GriefPreventionPlugin.getGlobalConfig().getConfig().logging.loggingDaysToKeep;
+        int daysToKeepLogs = loggingConfig.loggingDaysToKeep;
         if (daysToKeepLogs > 0) {
+            this.writerThread.start();
             Scheduler scheduler = Sponge.getGame().getScheduler();
-            scheduler.createTaskBuilder().async().execute(new EntryWriter()).delay(this.secondsBetweenWrites, TimeUnit.SECONDS).interval(this
-                    .secondsBetweenWrites, TimeUnit.SECONDS).submit(GriefPreventionPlugin.instance);
             scheduler.createTaskBuilder().async().execute(new ExpiredLogRemover()).delay(1, TimeUnit.DAYS).interval(1, TimeUnit.DAYS)
                     .submit(GriefPreventionPlugin
                             .instance);
@@ -82,11 +98,30 @@ public void addEntry(String entry, CustomLogEntryTypes entryType) {
             return;
         }
 
-        // otherwise write to the in-memory buffer, after removing formatters
-        Matcher matcher = inlineFormatterPattern.matcher(entry);
-        entry = matcher.replaceAll("");
-        String timestamp = this.timestampFormat.format(new Date());
-        this.queuedEntries.append(timestamp + " " + entry + "\n");
+        // otherwise queue for the writer thread, which handles formatting
+        this.queuedEntries.add(System.currentTimeMillis(), entry);
+    }
+
+    public long getDroppedEntries() {
+        return this.queuedEntries.getDropped();
+    }
+
+    /**
+     * Stops the writer thread after it has written all queued entries.
+     */
+    public void close() {
+        if (!this.running) {
+            return;
+        }
+        this.running = false;
+        LockSupport.unpark(this.writerThread);
+        if (this.writerThread.isAlive()) {
+            try {
+                this.writerThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     private boolean isEnabledType(CustomLogEntryTypes entryType) {
@@ -105,30 +140,6 @@ private boolean isEnabledType(CustomLogEntryTypes entryType) {
         return entryType != CustomLogEntryTypes.Debug || GriefPreventionPlugin.debugLogging;
     }
 
-    void writeEntries() {
-        try {
-            // if nothing to write, stop here
-            if (this.queuedEntries.length() == 0) {
-                return;
-            }
-
-            // determine filename based on date
-            String filename = this.filenameFormat.format(new Date()) + ".log";
-            String filepath = this.logFolderPath + File.separator + filename;
-            File logFile = new File(filepath);
-
-            // dump content
-            Files.append(this.queuedEntries.toString(), logFile, StandardCharsets.UTF_8);
-
-            // in case of a failure to write the above due to exception,
-            // the unwritten entries will remain the buffer for the next write
-            // to retry
-            this.queuedEntries.setLength(0);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
     private void deleteExpiredLogs() {
         try {
             // get list of log files
@@ -174,12 +185,85 @@ private void deleteExpiredLogs() {
         }
     }
 
-    // transfers the internal buffer to a log file
-    private class EntryWriter implements Runnable {
+    // transfers the ring buffer to log files in batches
+    private class EntryWriter implements Runnable, LogRingBuffer.EntryConsumer {
+
+        private final ZoneId zone = ZoneId.systemDefault();
+        private final StringBuilder batch = new StringBuilder(MAX_BATCH_SIZE);
+        private LocalDate batchDate;
+        private LocalDate channelDate;
+        private FileChannel channel;
 
         @Override
         public void run() {
+            while (running) {
+                writeEntries();
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(secondsBetweenWrites));
+            }
             writeEntries();
+            closeChannel();
+        }
+
+        @Override
+        public void accept(long time, String message) {
+            final ZonedDateTime dateTime = Instant.ofEpochMilli(time).atZone(this.zone);
+            final LocalDate date = dateTime.toLocalDate();
+            if (!date.equals(this.batchDate)) {
+                // entries for a new day go to a new file
+                flush();
+                this.batchDate = date;
+            }
+            final Matcher matcher = inlineFormatterPattern.matcher(message);
+            this.batch.append(timestampFormat.format(dateTime)).append(' ').append(matcher.replaceAll("")).append('\n');
+            if (this.batch.length() >= MAX_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void writeEntries() {
+            while (queuedEntries.drain(this, queuedEntries.capacity()) > 0) {
+                // keep draining while producers are adding
+            }
+            final long dropped = queuedEntries.takeDropped();
+            if (dropped > 0) {
+                accept(System.currentTimeMillis(), dropped + " log entries were dropped because the log buffer was full.");
+            }
+            flush();
+        }
+
+        private void flush() {
+            if (this.batch.length() == 0) {
+                return;
+            }
+
+            try {
+                if (this.channel == null || !this.batchDate.equals(this.channelDate)) {
+                    closeChannel();
+                    final String filepath = logFolderPath + File.separator + filenameFormat.format(this.batchDate) + ".log";
+                    this.channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    this.channelDate = this.batchDate;
+                }
+                final ByteBuffer buffer = StandardCharsets.UTF_8.encode(this.batch.toString());
+                while (buffer.hasRemaining()) {
+                    this.channel.write(buffer);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                closeChannel();
+            }
+            this.batch.setLength(0);
+        }
+
+        private void closeChannel() {
+            if (this.channel == null) {
+                return;
+            }
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            this.channel = null;
         }
     }
 
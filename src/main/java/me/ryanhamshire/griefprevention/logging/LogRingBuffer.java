@@ -0,0 +1,209 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded multi-producer ring buffer of log entries.
+ *
+ * <p>Each slot is allocated once and reused. A slot's sequence number records
+ * whether it is free for the producer claiming position {@code n} or published
+ * for the consumer reading it, so producers never take a lock.</p>
+ */
+class LogRingBuffer {
+
+    enum OverflowPolicy {
+        DROP_OLDEST,
+        BLOCK,
+        COUNT_AND_DROP;
+
+        static OverflowPolicy fromConfig(String value) {
+            if (value != null) {
+                final String name = value.trim().replace('-', '_').toUpperCase();
+                for (OverflowPolicy policy : values()) {
+                    if (policy.name().equals(name)) {
+                        return policy;
+                    }
+                }
+            }
+            return DROP_OLDEST;
+        }
+    }
+
+    interface EntryConsumer {
+
+        void accept(long time, String message);
+    }
+
+    private static final class Slot {
+
+        long time;
+        String message;
+    }
+
+    // a blocked producer gives up after this long if the writer is not draining
+    private static final long MAX_BLOCK_NANOS = 1000000000L;
+
+    private final Slot[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final OverflowPolicy policy;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Runnable wakeConsumer;
+
+    LogRingBuffer(int capacity, OverflowPolicy policy, Runnable wakeConsumer) {
+        int size = 2;
+        while (size < capacity && size < (1 << 30)) {
+            size <<= 1;
+        }
+        this.slots = new Slot[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            this.slots[i] = new Slot();
+            this.sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.policy = policy;
+        this.wakeConsumer = wakeConsumer;
+    }
+
+    int capacity() {
+        return this.slots.length;
+    }
+
+    int size() {
+        return (int) Math.max(0, this.tail.get() - this.head.get());
+    }
+
+    long getDropped() {
+        return this.dropped.get();
+    }
+
+    long takeDropped() {
+        return this.dropped.getAndSet(0);
+    }
+
+    void add(long time, String message) {
+        if (tryAdd(time, message)) {
+            if (size() >= (this.slots.length >> 1)) {
+                this.wakeConsumer.run();
+            }
+            return;
+        }
+
+        switch (this.policy) {
+            case DROP_OLDEST:
+                while (!tryAdd(time, message)) {
+                    if (poll(null)) {
+                        this.dropped.incrementAndGet();
+                    }
+                }
+                this.wakeConsumer.run();
+                return;
+            case BLOCK:
+                final long deadline = System.nanoTime() + MAX_BLOCK_NANOS;
+                do {
+                    this.wakeConsumer.run();
+                    Thread.yield();
+                    if (tryAdd(time, message)) {
+                        return;
+                    }
+                } while (System.nanoTime() < deadline);
+                this.dropped.incrementAndGet();
+                return;
+            default:
+                this.dropped.incrementAndGet();
+                this.wakeConsumer.run();
+        }
+    }
+
+    private boolean tryAdd(long time, String message) {
+        long pos = this.tail.get();
+        while (true) {
+            final int index = (int) (pos & this.mask);
+            final long diff = this.sequences.get(index) - pos;
+            if (diff == 0) {
+                if (this.tail.compareAndSet(pos, pos + 1)) {
+                    final Slot slot = this.slots[index];
+                    slot.time = time;
+                    slot.message = message;
+                    // publish to the consumer
+                    this.sequences.lazySet(index, pos + 1);
+                    return true;
+                }
+                pos = this.tail.get();
+            } else if (diff < 0) {
+                // full
+                return false;
+            } else {
+                pos = this.tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest entry, passing it to the consumer if one is given.
+     *
+     * @return false if the buffer was empty
+     */
+    boolean poll(EntryConsumer consumer) {
+        long pos = this.head.get();
+        while (true) {
+            final int index = (int) (pos & this.mask);
+            final long diff = this.sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (this.head.compareAndSet(pos, pos + 1)) {
+                    final Slot slot = this.slots[index];
+                    final long time = slot.time;
+                    final String message = slot.message;
+                    slot.message = null;
+                    // hand the slot back to producers one lap ahead
+                    this.sequences.lazySet(index, pos + this.mask + 1);
+                    if (consumer != null) {
+                        consumer.accept(time, message);
+                    }
+                    return true;
+                }
+                pos = this.head.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = this.head.get();
+            }
+        }
+    }
+
+    int drain(EntryConsumer consumer, int limit) {
+        int count = 0;
+        while (count < limit && poll(consumer)) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -25,6 +25,7 @@
 package me.ryanhamshire.griefprevention.migrator;
 
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.permission.GPFlagDecisionTable;
 import org.spongepowered.api.service.context.Context;
 import org.spongepowered.api.service.permission.Subject;
 import org.spongepowered.api.util.Tristate;
@@ -68,6 +69,7 @@ public void migrateSubject(Subject subject) {
                         GriefPreventionPlugin.instance.getLogger().info("Removed legacy pixelmon permission '" + currentPermission + "'.");
                         subject.getSubjectData().setPermission(contextSet, newPermission, Tristate.fromBoolean(entry.getValue()));
                         GriefPreventionPlugin.instance.getLogger().info("Set new permission '" + newPermission);
+                        GPFlagDecisionTable.invalidate(subject, contextSet);
                         migrated = true;
                     }
                 }
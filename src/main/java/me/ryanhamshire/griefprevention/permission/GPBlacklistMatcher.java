@@ -0,0 +1,160 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.permission;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+// A blacklist compiled for fast lookups. Patterns follow FilenameUtils.wildcardMatch rules.
+// Exact ids go into a hash set, patterns ending in a single '*' into a prefix trie and any
+// other wildcard patterns into a single regex. Results are memoized per id.
+public class GPBlacklistMatcher {
+
+    private static final int MAX_CACHED_IDS = 4096;
+
+    private final List<String> source;
+    private final Set<String> exactIds = new HashSet<>();
+    private final PrefixNode prefixRoot = new PrefixNode();
+    private boolean hasPrefixes = false;
+    @Nullable private final Pattern wildcardPattern;
+    private final LoadingCache<String, Boolean> resultCache;
+
+    public GPBlacklistMatcher(List<String> patterns) {
+        this.source = patterns;
+        final StringBuilder regex = new StringBuilder();
+        for (String pattern : patterns) {
+            if (pattern == null) {
+                continue;
+            }
+            final int starIndex = pattern.indexOf('*');
+            if (starIndex == -1 && pattern.indexOf('?') == -1) {
+                this.exactIds.add(pattern);
+            } else if (starIndex == pattern.length() - 1 && pattern.indexOf('?') == -1) {
+                this.prefixRoot.add(pattern.substring(0, starIndex));
+                this.hasPrefixes = true;
+            } else {
+                if (regex.length() > 0) {
+                    regex.append('|');
+                }
+                regex.append("(?:").append(toRegex(pattern)).append(')');
+            }
+        }
+        this.wildcardPattern = regex.length() == 0 ? null : Pattern.compile(regex.toString(), Pattern.DOTALL);
+        this.resultCache = Caffeine.newBuilder().maximumSize(MAX_CACHED_IDS).build(this::computeBlacklisted);
+    }
+
+    // Whether this matcher was compiled from the given list instance
+    public boolean isCompiledFrom(List<String> patterns) {
+        return this.source == patterns;
+    }
+
+    public boolean isEmpty() {
+        return this.exactIds.isEmpty() && !this.hasPrefixes && this.wildcardPattern == null;
+    }
+
+    // Checks the id and the id without meta
+    public boolean isBlacklisted(String id) {
+        if (this.isEmpty()) {
+            return false;
+        }
+        return this.resultCache.get(id);
+    }
+
+    private boolean computeBlacklisted(String id) {
+        if (this.matches(id)) {
+            return true;
+        }
+        final String idNoMeta = GPPermissionHandler.getIdentifierWithoutMeta(id);
+        return !idNoMeta.equals(id) && this.matches(idNoMeta);
+    }
+
+    private boolean matches(String id) {
+        if (this.exactIds.contains(id)) {
+            return true;
+        }
+        if (this.hasPrefixes && this.prefixRoot.matchesPrefixOf(id)) {
+            return true;
+        }
+        return this.wildcardPattern != null && this.wildcardPattern.matcher(id).matches();
+    }
+
+    private static String toRegex(String pattern) {
+        final StringBuilder regex = new StringBuilder();
+        final StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (c != '*' && c != '?') {
+                literal.append(c);
+                continue;
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+            }
+            regex.append(c == '*' ? ".*" : ".");
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return regex.toString();
+    }
+
+    private static class PrefixNode {
+
+        private final Map<Character, PrefixNode> children = new HashMap<>();
+        private boolean terminal = false;
+
+        void add(String prefix) {
+            PrefixNode node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new PrefixNode());
+            }
+            node.terminal = true;
+        }
+
+        boolean matchesPrefixOf(String id) {
+            PrefixNode node = this;
+            for (int i = 0; i < id.length(); i++) {
+                if (node.terminal) {
+                    return true;
+                }
+                node = node.children.get(id.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+            }
+            return node.terminal;
+        }
+    }
+}
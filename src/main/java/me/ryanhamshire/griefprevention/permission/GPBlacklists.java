@@ -31,10 +31,18 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
 
 public class GPBlacklists {
 
     public static Map<String, List<String>> blacklistMap = new HashMap<>();
+    // Compiled blacklists, rebuilt on config load and whenever the backing list is replaced
+    private static final Map<String, GPBlacklistMatcher> FLAG_MATCHERS = new ConcurrentHashMap<>();
+    private static final Map<UUID, GPBlacklistMatcher> GLOBAL_SOURCE_MATCHERS = new ConcurrentHashMap<>();
+    private static final Map<UUID, GPBlacklistMatcher> GLOBAL_TARGET_MATCHERS = new ConcurrentHashMap<>();
 
     public static boolean GLOBAL_SOURCE;
     public static boolean GLOBAL_TARGET;
@@ -153,5 +161,40 @@ public static void populateBlacklistStatus() {
         blacklistMap.put(ClaimFlag.PORTAL_USE.toString(), blacklistCategory.blacklistPortalUse);
         blacklistMap.put(ClaimFlag.PROJECTILE_IMPACT_BLOCK.toString(), blacklistCategory.blacklistProjectileImpactBlock);
         blacklistMap.put(ClaimFlag.PROJECTILE_IMPACT_ENTITY.toString(), blacklistCategory.blacklistProjectileImpactEntity);
+
+        FLAG_MATCHERS.clear();
+        GLOBAL_SOURCE_MATCHERS.clear();
+        GLOBAL_TARGET_MATCHERS.clear();
+        for (Map.Entry<String, List<String>> mapEntry : blacklistMap.entrySet()) {
+            if (mapEntry.getValue() != null) {
+                FLAG_MATCHERS.put(mapEntry.getKey(), new GPBlacklistMatcher(mapEntry.getValue()));
+            }
+        }
+    }
+
+    @Nullable
+    public static GPBlacklistMatcher getFlagMatcher(String flag) {
+        final List<String> flagList = blacklistMap.get(flag);
+        if (flagList == null || flagList.isEmpty()) {
+            return null;
+        }
+        return getMatcher(FLAG_MATCHERS, flag, flagList);
+    }
+
+    public static GPBlacklistMatcher getGlobalSourceMatcher(UUID worldUniqueId, List<String> globalSourceBlacklist) {
+        return getMatcher(GLOBAL_SOURCE_MATCHERS, worldUniqueId, globalSourceBlacklist);
+    }
+
+    public static GPBlacklistMatcher getGlobalTargetMatcher(UUID worldUniqueId, List<String> globalTargetBlacklist) {
+        return getMatcher(GLOBAL_TARGET_MATCHERS, worldUniqueId, globalTargetBlacklist);
+    }
+
+    private static <K> GPBlacklistMatcher getMatcher(Map<K, GPBlacklistMatcher> matchers, K key, List<String> patterns) {
+        GPBlacklistMatcher matcher = matchers.get(key);
+        if (matcher == null || !matcher.isCompiledFrom(patterns)) {
+            matcher = new GPBlacklistMatcher(patterns);
+            matchers.put(key, matcher);
+        }
+        return matcher;
     }
 }
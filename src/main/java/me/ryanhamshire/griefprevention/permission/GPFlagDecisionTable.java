@@ -0,0 +1,431 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.permission;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.api.claim.ClaimContexts;
+import me.ryanhamshire.griefprevention.api.claim.ClaimType;
+import me.ryanhamshire.griefprevention.claim.GPClaim;
+import org.spongepowered.api.service.context.Context;
+import org.spongepowered.api.service.permission.Subject;
+import org.spongepowered.api.service.permission.SubjectData;
+import org.spongepowered.api.util.Tristate;
+import org.spongepowered.api.world.World;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Flag decisions for a single claim or for a claim type's defaults in a world.
+// Tables are built from the config flag defaults plus a snapshot of the global subject's
+// transient and persistent data, so the hot path only hits the permission service for users.
+// The snapshot is kept per context set and tables reference its layers instead of copying them.
+// A change to one context set only drops the tables that read it.
+public final class GPFlagDecisionTable {
+
+    private static final Map<UUID, Map<ClaimType, Map<String, Boolean>>> CONFIG_DEFAULTS = new ConcurrentHashMap<>();
+    // Claim context -> table
+    private static final Map<Context, GPFlagDecisionTable> CLAIM_TABLES = new ConcurrentHashMap<>();
+    // World -> claim type -> default table
+    private static final Map<UUID, Map<ClaimType, GPFlagDecisionTable>> DEFAULT_TABLES = new ConcurrentHashMap<>();
+    // Guards snapshot changes and table builds, lookups don't lock
+    private static final Object LOCK = new Object();
+    private static volatile Snapshot snapshot;
+
+    private final Set<Context> contexts;
+    // Highest priority first, a node is taken from the first layer that has it
+    private final List<Map<String, Boolean>> layers;
+
+    private GPFlagDecisionTable(Set<Context> contexts, List<Map<String, Boolean>> layers) {
+        this.contexts = contexts;
+        this.layers = layers;
+    }
+
+    public Tristate getValue(String permission) {
+        if (permission == null || this.layers.isEmpty()) {
+            return Tristate.UNDEFINED;
+        }
+
+        Boolean value = this.lookup(permission);
+        if (value != null) {
+            return Tristate.fromBoolean(value);
+        }
+        // Walk up the node tree the same way the permission service inherits parent nodes
+        String node = permission;
+        int index = node.lastIndexOf('.');
+        while (index > 0) {
+            node = node.substring(0, index);
+            value = this.lookup(node);
+            if (value == null) {
+                value = this.lookup(node + ".*");
+            }
+            if (value != null) {
+                return Tristate.fromBoolean(value);
+            }
+            index = node.lastIndexOf('.');
+        }
+        value = this.lookup("*");
+        return value == null ? Tristate.UNDEFINED : Tristate.fromBoolean(value);
+    }
+
+    private Boolean lookup(String node) {
+        for (Map<String, Boolean> layer : this.layers) {
+            final Boolean value = layer.get(node);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return this.layers.isEmpty();
+    }
+
+    // Called whenever a world's configured flag defaults are applied to the permission service
+    public static void setConfigDefaults(World world, ClaimType type, Map<String, Boolean> defaults) {
+        final Map<String, Boolean> nodes = new HashMap<>();
+        for (Map.Entry<String, Boolean> mapEntry : defaults.entrySet()) {
+            nodes.put(GPPermissions.FLAG_BASE + "." + mapEntry.getKey(), mapEntry.getValue());
+        }
+        synchronized (LOCK) {
+            CONFIG_DEFAULTS.computeIfAbsent(world.getUniqueId(), k -> new ConcurrentHashMap<>()).put(type, ImmutableMap.copyOf(nodes));
+            final Map<ClaimType, GPFlagDecisionTable> worldTables = DEFAULT_TABLES.get(world.getUniqueId());
+            if (worldTables != null) {
+                worldTables.remove(type);
+            }
+        }
+    }
+
+    /**
+     * Rereads the nodes a subject has in a context set, after GriefPrevention changed them.
+     *
+     * @param subject The subject changed, only the global subject is tracked
+     * @param contexts The context set changed
+     */
+    public static void invalidate(Subject subject, Set<Context> contexts) {
+        if (subject != GriefPreventionPlugin.GLOBAL_SUBJECT) {
+            return;
+        }
+        synchronized (LOCK) {
+            final Snapshot current = snapshot;
+            if (current == null) {
+                return;
+            }
+            final Snapshot updated = current.reread(contexts);
+            snapshot = updated;
+            dropTables(updated.getExtraContexts(contexts));
+        }
+    }
+
+    // Called when the permission service reports a change to the global subject, which doesn't say what changed
+    public static void refresh() {
+        synchronized (LOCK) {
+            final Snapshot current = snapshot;
+            if (current == null) {
+                return;
+            }
+            final Snapshot updated = new Snapshot();
+            snapshot = updated;
+            if (updated.usable != current.usable || !updated.activeContexts.equals(current.activeContexts)) {
+                clearTables();
+                return;
+            }
+            final Set<Set<Context>> changed = new HashSet<>();
+            addChangedLayers(current.persistentLayers, updated.persistentLayers, changed);
+            addChangedLayers(current.transientLayers, updated.transientLayers, changed);
+            for (Set<Context> extraContexts : changed) {
+                dropTables(extraContexts);
+            }
+        }
+    }
+
+    public static void invalidateAll() {
+        synchronized (LOCK) {
+            snapshot = null;
+            clearTables();
+        }
+    }
+
+    public static void removeClaim(GPClaim claim) {
+        CLAIM_TABLES.remove(claim.getContext());
+    }
+
+    private static void addChangedLayers(Map<Set<Context>, Map<String, Boolean>> oldLayers, Map<Set<Context>, Map<String, Boolean>> newLayers,
+            Set<Set<Context>> changed) {
+        for (Map.Entry<Set<Context>, Map<String, Boolean>> mapEntry : newLayers.entrySet()) {
+            if (!mapEntry.getValue().equals(oldLayers.get(mapEntry.getKey()))) {
+                changed.add(mapEntry.getKey());
+            }
+        }
+        for (Set<Context> extraContexts : oldLayers.keySet()) {
+            if (!newLayers.containsKey(extraContexts)) {
+                changed.add(extraContexts);
+            }
+        }
+    }
+
+    // Drops every table whose contexts include the changed layer
+    private static void dropTables(Set<Context> extraContexts) {
+        if (extraContexts.isEmpty()) {
+            clearTables();
+            return;
+        }
+        if (extraContexts.size() == 1) {
+            CLAIM_TABLES.remove(extraContexts.iterator().next());
+        }
+        for (Map<ClaimType, GPFlagDecisionTable> worldTables : DEFAULT_TABLES.values()) {
+            worldTables.values().removeIf(table -> table.contexts.containsAll(extraContexts));
+        }
+    }
+
+    private static void clearTables() {
+        CLAIM_TABLES.clear();
+        DEFAULT_TABLES.clear();
+    }
+
+    // Returns null if the permission service must be queried directly
+    public static GPFlagDecisionTable getClaimTable(GPClaim claim) {
+        final Context context = claim.getContext();
+        final GPFlagDecisionTable table = CLAIM_TABLES.get(context);
+        if (table != null) {
+            return table;
+        }
+        synchronized (LOCK) {
+            final Snapshot current = getSnapshot();
+            if (!current.usable) {
+                return null;
+            }
+            return CLAIM_TABLES.computeIfAbsent(context, k -> current.build(null, Collections.singleton(context)));
+        }
+    }
+
+    // Returns null if the permission service must be queried directly
+    public static GPFlagDecisionTable getDefaultTable(World world, ClaimType type) {
+        final Map<ClaimType, GPFlagDecisionTable> worldTables = DEFAULT_TABLES.get(world.getUniqueId());
+        final GPFlagDecisionTable table = worldTables == null ? null : worldTables.get(type);
+        if (table != null) {
+            return table;
+        }
+        synchronized (LOCK) {
+            final Snapshot current = getSnapshot();
+            if (!current.usable) {
+                return null;
+            }
+            return DEFAULT_TABLES.computeIfAbsent(world.getUniqueId(), k -> new ConcurrentHashMap<>()).computeIfAbsent(type, k -> {
+                final Map<ClaimType, Map<String, Boolean>> worldDefaults = CONFIG_DEFAULTS.get(world.getUniqueId());
+                final Map<String, Boolean> configDefaults = worldDefaults == null ? null : worldDefaults.get(type);
+                final Set<Context> contexts = new HashSet<>();
+                contexts.add(getDefaultContext(type));
+                contexts.add(world.getContext());
+                return current.build(configDefaults, contexts);
+            });
+        }
+    }
+
+    public static ClaimType getDefaultType(GPClaim claim) {
+        if (claim.isAdminClaim()) {
+            return ClaimType.ADMIN;
+        } else if (claim.isBasicClaim() || claim.isSubdivision()) {
+            return ClaimType.BASIC;
+        } else if (claim.isTown()) {
+            return ClaimType.TOWN;
+        }
+        return ClaimType.WILDERNESS;
+    }
+
+    private static Context getDefaultContext(ClaimType type) {
+        switch (type) {
+            case ADMIN :
+                return ClaimContexts.ADMIN_DEFAULT_CONTEXT;
+            case BASIC :
+            case SUBDIVISION :
+                return ClaimContexts.BASIC_DEFAULT_CONTEXT;
+            case TOWN :
+                return ClaimContexts.TOWN_DEFAULT_CONTEXT;
+            default :
+                return ClaimContexts.WILDERNESS_DEFAULT_CONTEXT;
+        }
+    }
+
+    // Must hold LOCK
+    private static Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            current = new Snapshot();
+            snapshot = current;
+        }
+        return current;
+    }
+
+    private static final class Snapshot {
+
+        private final boolean usable;
+        private final Set<Context> activeContexts;
+        // Contexts beyond the active ones -> nodes merged from every stored context set with those contexts.
+        // Persistent layers are applied first so transient data wins, matching the permission service.
+        private final Map<Set<Context>, Map<String, Boolean>> persistentLayers;
+        private final Map<Set<Context>, Map<String, Boolean>> transientLayers;
+        // Contexts beyond the active ones -> the stored context sets merged into that layer
+        private final Map<Set<Context>, Set<Set<Context>>> storedContexts;
+
+        // Reads all of the global subject's data
+        private Snapshot() {
+            final SubjectData persistentData = GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData();
+            final SubjectData transientData = GriefPreventionPlugin.GLOBAL_SUBJECT.getTransientSubjectData();
+            // Inherited data can't be resolved locally
+            this.usable = !hasParents(persistentData) && !hasParents(transientData);
+            this.activeContexts = new HashSet<>(GriefPreventionPlugin.GLOBAL_SUBJECT.getActiveContexts());
+            this.persistentLayers = new HashMap<>();
+            this.transientLayers = new HashMap<>();
+            this.storedContexts = new HashMap<>();
+            if (this.usable) {
+                this.addLayers(persistentData.getAllPermissions(), this.persistentLayers);
+                this.addLayers(transientData.getAllPermissions(), this.transientLayers);
+            }
+        }
+
+        private Snapshot(Snapshot other) {
+            this.usable = other.usable;
+            this.activeContexts = other.activeContexts;
+            this.persistentLayers = new HashMap<>(other.persistentLayers);
+            this.transientLayers = new HashMap<>(other.transientLayers);
+            this.storedContexts = new HashMap<>(other.storedContexts);
+        }
+
+        private static boolean hasParents(SubjectData subjectData) {
+            for (List<?> parents : subjectData.getAllParents().values()) {
+                if (!parents.isEmpty()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Set<Context> getExtraContexts(Set<Context> contexts) {
+            final Set<Context> extraContexts = new HashSet<>(contexts);
+            extraContexts.removeAll(this.activeContexts);
+            return extraContexts;
+        }
+
+        private void addLayers(Map<Set<Context>, Map<String, Boolean>> permissions, Map<Set<Context>, Map<String, Boolean>> layers) {
+            final Map<Set<Context>, Map<String, Boolean>> merged = new HashMap<>();
+            for (Map.Entry<Set<Context>, Map<String, Boolean>> mapEntry : sortBySize(permissions)) {
+                if (mapEntry.getValue().isEmpty()) {
+                    continue;
+                }
+                final Set<Context> extraContexts = this.getExtraContexts(mapEntry.getKey());
+                this.storedContexts.computeIfAbsent(extraContexts, k -> new HashSet<>()).add(mapEntry.getKey());
+                merged.computeIfAbsent(extraContexts, k -> new HashMap<>()).putAll(mapEntry.getValue());
+            }
+            for (Map.Entry<Set<Context>, Map<String, Boolean>> mapEntry : merged.entrySet()) {
+                layers.put(mapEntry.getKey(), ImmutableMap.copyOf(mapEntry.getValue()));
+            }
+        }
+
+        // less specific context sets first so more specific ones override them
+        private static List<Map.Entry<Set<Context>, Map<String, Boolean>>> sortBySize(Map<Set<Context>, Map<String, Boolean>> permissions) {
+            final List<Map.Entry<Set<Context>, Map<String, Boolean>>> entries = new ArrayList<>(permissions.entrySet());
+            entries.sort((a, b) -> Integer.compare(a.getKey().size(), b.getKey().size()));
+            return entries;
+        }
+
+        // Returns a copy with the layer holding the given context set read again
+        private Snapshot reread(Set<Context> contexts) {
+            final Snapshot updated = new Snapshot(this);
+            if (!this.usable) {
+                return updated;
+            }
+            final Set<Context> extraContexts = this.getExtraContexts(contexts);
+            final Set<Set<Context>> stored = new HashSet<>(this.storedContexts.getOrDefault(extraContexts, Collections.emptySet()));
+            stored.add(new HashSet<>(contexts));
+            updated.storedContexts.put(extraContexts, stored);
+            updated.rereadLayer(GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData(), stored, extraContexts, updated.persistentLayers);
+            updated.rereadLayer(GriefPreventionPlugin.GLOBAL_SUBJECT.getTransientSubjectData(), stored, extraContexts, updated.transientLayers);
+            return updated;
+        }
+
+        private void rereadLayer(SubjectData subjectData, Set<Set<Context>> stored, Set<Context> extraContexts,
+                Map<Set<Context>, Map<String, Boolean>> layers) {
+            final Map<Set<Context>, Map<String, Boolean>> permissions = new HashMap<>();
+            for (Set<Context> contexts : stored) {
+                permissions.put(contexts, subjectData.getPermissions(contexts));
+            }
+            final Map<String, Boolean> nodes = new HashMap<>();
+            for (Map.Entry<Set<Context>, Map<String, Boolean>> mapEntry : sortBySize(permissions)) {
+                nodes.putAll(mapEntry.getValue());
+            }
+            if (nodes.isEmpty()) {
+                layers.remove(extraContexts);
+            } else {
+                layers.put(extraContexts, ImmutableMap.copyOf(nodes));
+            }
+        }
+
+        // Collects the layers that apply to the given contexts, most specific and transient first
+        private GPFlagDecisionTable build(Map<String, Boolean> baseNodes, Set<Context> contexts) {
+            final List<Set<Context>> subsets = getSubsets(contexts);
+            final List<Map<String, Boolean>> layers = new ArrayList<>();
+            for (int i = subsets.size() - 1; i >= 0; i--) {
+                addLayer(this.transientLayers.get(subsets.get(i)), layers);
+            }
+            for (int i = subsets.size() - 1; i >= 0; i--) {
+                addLayer(this.persistentLayers.get(subsets.get(i)), layers);
+            }
+            addLayer(baseNodes, layers);
+            return new GPFlagDecisionTable(Collections.unmodifiableSet(new HashSet<>(contexts)), ImmutableList.copyOf(layers));
+        }
+
+        private static void addLayer(Map<String, Boolean> layer, List<Map<String, Boolean>> layers) {
+            if (layer != null && !layer.isEmpty()) {
+                layers.add(layer);
+            }
+        }
+
+        // ordered from least to most specific
+        private static List<Set<Context>> getSubsets(Set<Context> contexts) {
+            final List<Set<Context>> subsets = new ArrayList<>();
+            subsets.add(Collections.emptySet());
+            for (Context context : contexts) {
+                final int size = subsets.size();
+                for (int i = 0; i < size; i++) {
+                    final Set<Context> subset = new HashSet<>(subsets.get(i));
+                    subset.add(context);
+                    subsets.add(subset);
+                }
+            }
+            subsets.sort((a, b) -> Integer.compare(a.size(), b.size()));
+            return subsets;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.permission;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import me.ryanhamshire.griefprevention.GPFlags;
+import me.ryanhamshire.griefprevention.util.BlockUtils;
+import net.minecraft.entity.EnumCreatureType;
+import net.minecraft.entity.item.EntityItem;
+import net.minecraft.item.ItemBlock;
+import org.spongepowered.api.CatalogType;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.tileentity.TileEntityType;
+import org.spongepowered.api.entity.Entity;
+import org.spongepowered.api.entity.Item;
+import org.spongepowered.api.entity.living.Living;
+import org.spongepowered.api.item.ItemType;
+import org.spongepowered.common.SpongeImplHooks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+// Permission identifiers of catalog backed objects never change while the server is running,
+// so they are resolved once per entity class, block state, item type and damage, tile entity type
+// and catalog type.
+final class GPIdentifierCache {
+
+    // limits the ids cached per item type, as damage is also used for durability
+    private static final int MAX_ITEM_DAMAGE_IDS = 64;
+    private static final EntityIdentifier UNCACHEABLE = new EntityIdentifier(null, null);
+
+    private static final Map<Class<?>, EntityIdentifier> ENTITY_IDS = new ConcurrentHashMap<>();
+    private static final Map<BlockState, String> BLOCK_STATE_IDS = new ConcurrentHashMap<>();
+    private static final Map<ItemType, Int2ObjectMap<String>> ITEM_IDS = new ConcurrentHashMap<>();
+    private static final Map<TileEntityType, String> TILE_ENTITY_IDS = new ConcurrentHashMap<>();
+    private static final Map<CatalogType, String> CATALOG_IDS = new ConcurrentHashMap<>();
+
+    // Returns null if the identifier depends on more than the entity class
+    @Nullable
+    static String getEntityId(Entity entity, boolean isSource) {
+        if (!(entity instanceof net.minecraft.entity.Entity) || entity instanceof EntityItem || entity instanceof Item) {
+            return null;
+        }
+
+        EntityIdentifier identifier = ENTITY_IDS.get(entity.getClass());
+        if (identifier == null) {
+            identifier = createEntityIdentifier(entity);
+            ENTITY_IDS.put(entity.getClass(), identifier);
+        }
+        return isSource ? identifier.sourceId : identifier.targetId;
+    }
+
+    static String getBlockStateId(BlockState blockState) {
+        String id = BLOCK_STATE_IDS.get(blockState);
+        if (id == null) {
+            id = GPPermissionHandler.normalizeIdentifier(blockState.getType().getId() + "." + BlockUtils.getBlockStateMeta(blockState));
+            BLOCK_STATE_IDS.put(blockState, id);
+        }
+        return id;
+    }
+
+    @SuppressWarnings("deprecation")
+    static String getItemId(ItemType itemType, int damage) {
+        Int2ObjectMap<String> damageIds = ITEM_IDS.get(itemType);
+        if (damageIds == null) {
+            damageIds = Int2ObjectMaps.synchronize(new Int2ObjectOpenHashMap<>());
+            ITEM_IDS.put(itemType, damageIds);
+        }
+        String id = damageIds.get(damage);
+        if (id == null) {
+            if (itemType instanceof ItemBlock) {
+                final BlockState blockState = (BlockState) ((ItemBlock) itemType).getBlock().getStateFromMeta(damage);
+                id = blockState.getType().getId() + "." + damage;
+            } else {
+                id = itemType.getId() + "." + damage;
+            }
+            id = GPPermissionHandler.normalizeIdentifier(id);
+            if (damageIds.size() < MAX_ITEM_DAMAGE_IDS) {
+                damageIds.put(damage, id);
+            }
+        }
+        return id;
+    }
+
+    static String getTileEntityId(TileEntityType type) {
+        String id = TILE_ENTITY_IDS.get(type);
+        if (id == null) {
+            id = GPPermissionHandler.normalizeIdentifier(type.getId().toLowerCase());
+            TILE_ENTITY_IDS.put(type, id);
+        }
+        return id;
+    }
+
+    static String getCatalogId(CatalogType type) {
+        String id = CATALOG_IDS.get(type);
+        if (id == null) {
+            id = GPPermissionHandler.normalizeIdentifier(type.getId());
+            CATALOG_IDS.put(type, id);
+        }
+        return id;
+    }
+
+    private static EntityIdentifier createEntityIdentifier(Entity entity) {
+        if (entity.getType() == null) {
+            return UNCACHEABLE;
+        }
+        final String id = entity.getType().getId();
+        // fake players and unregistered entities are resolved per entity
+        if (id.contains("unknown")) {
+            return UNCACHEABLE;
+        }
+
+        final String sourceId = GPPermissionHandler.normalizeIdentifier(id);
+        String targetId = sourceId;
+        if (entity instanceof Living) {
+            final String[] parts = id.split(":");
+            if (parts.length > 1) {
+                final String modId = parts[0];
+                final String name = parts[1];
+                // pixelmon names depend on the entity instance
+                if (modId.equalsIgnoreCase("pixelmon") && modId.equalsIgnoreCase(name)) {
+                    return UNCACHEABLE;
+                }
+                final EnumCreatureType creatureType = getCreatureType((net.minecraft.entity.Entity) entity);
+                if (creatureType != null) {
+                    targetId = GPPermissionHandler.normalizeIdentifier(modId + ":" + GPFlags.SPAWN_TYPES.inverse().get(creatureType) + ":" + name);
+                }
+            }
+        }
+        return new EntityIdentifier(sourceId, targetId);
+    }
+
+    @Nullable
+    private static EnumCreatureType getCreatureType(net.minecraft.entity.Entity entity) {
+        for (EnumCreatureType type : EnumCreatureType.values()) {
+            if (SpongeImplHooks.isCreatureOfType(entity, type)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static class EntityIdentifier {
+
+        @Nullable final String sourceId;
+        @Nullable final String targetId;
+
+        EntityIdentifier(@Nullable String sourceId, @Nullable String targetId) {
+            this.sourceId = sourceId;
+            this.targetId = targetId;
+        }
+    }
+}
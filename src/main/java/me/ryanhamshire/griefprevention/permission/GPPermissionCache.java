@@ -0,0 +1,138 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.permission;
+
+import me.ryanhamshire.griefprevention.api.claim.TrustType;
+import org.spongepowered.api.util.Tristate;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Caches resolved claim permission results. Any change that can affect a result
+// (flags, trust, options, claim hierarchy or subject data) must call invalidate
+// which bumps the generation and causes all older entries to be ignored.
+public class GPPermissionCache {
+
+    private static final int MAX_ENTRIES = 16384;
+    private static final AtomicLong GENERATION = new AtomicLong();
+    private static final Map<Key, Entry> CACHE = new ConcurrentHashMap<>();
+
+    public static long getGeneration() {
+        return GENERATION.get();
+    }
+
+    public static void invalidate() {
+        GENERATION.incrementAndGet();
+        CACHE.clear();
+    }
+
+    public static Tristate get(Key key) {
+        final Entry entry = CACHE.get(key);
+        if (entry == null || entry.generation != GENERATION.get()) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    // generation must be captured before the result was resolved
+    public static void put(Key key, Tristate value, long generation) {
+        if (generation != GENERATION.get()) {
+            return;
+        }
+        if (CACHE.size() >= MAX_ENTRIES) {
+            CACHE.clear();
+        }
+        CACHE.put(key, new Entry(value, generation));
+    }
+
+    private static final class Entry {
+
+        private final Tristate value;
+        private final long generation;
+
+        private Entry(Tristate value, long generation) {
+            this.value = value;
+            this.generation = generation;
+        }
+    }
+
+    public static final class Key {
+
+        private final UUID claimUniqueId;
+        private final String flagPermission;
+        private final String sourceId;
+        private final String targetId;
+        private final UUID subjectUniqueId;
+        private final TrustType trustType;
+        private final boolean checkOverride;
+        private final int hashCode;
+
+        public Key(UUID claimUniqueId, String flagPermission, String sourceId, String targetId, UUID subjectUniqueId, TrustType trustType,
+                boolean checkOverride) {
+            this.claimUniqueId = claimUniqueId;
+            this.flagPermission = flagPermission;
+            this.sourceId = sourceId;
+            this.targetId = targetId;
+            this.subjectUniqueId = subjectUniqueId;
+            this.trustType = trustType;
+            this.checkOverride = checkOverride;
+            int hash = claimUniqueId.hashCode();
+            hash = 31 * hash + flagPermission.hashCode();
+            hash = 31 * hash + sourceId.hashCode();
+            hash = 31 * hash + targetId.hashCode();
+            hash = 31 * hash + (subjectUniqueId == null ? 0 : subjectUniqueId.hashCode());
+            hash = 31 * hash + (trustType == null ? 0 : trustType.hashCode());
+            hash = 31 * hash + (checkOverride ? 1 : 0);
+            this.hashCode = hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return this.hashCode == other.hashCode
+                    && this.checkOverride == other.checkOverride
+                    && this.trustType == other.trustType
+                    && this.claimUniqueId.equals(other.claimUniqueId)
+                    && this.flagPermission.equals(other.flagPermission)
+                    && this.sourceId.equals(other.sourceId)
+                    && this.targetId.equals(other.targetId)
+                    && Objects.equals(this.subjectUniqueId, other.subjectUniqueId);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+}
@@ -32,14 +32,13 @@
 import me.ryanhamshire.griefprevention.api.claim.ClaimContexts;
 import me.ryanhamshire.griefprevention.api.claim.ClaimFlag;
 import me.ryanhamshire.griefprevention.api.claim.TrustType;
+import me.ryanhamshire.griefprevention.claim.ClaimTrustIndex;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
-import me.ryanhamshire.griefprevention.util.BlockUtils;
 import me.ryanhamshire.griefprevention.util.EntityUtils;
 import me.ryanhamshire.griefprevention.util.PermissionUtils;
 import net.minecraft.entity.EnumCreatureType;
 import net.minecraft.entity.item.EntityItem;
 import net.minecraft.entity.player.EntityPlayer;
-import net.minecraft.item.ItemBlock;
 import org.apache.commons.lang3.StringUtils;
 import org.spongepowered.api.CatalogType;
 import org.spongepowered.api.block.BlockSnapshot;
@@ -71,20 +70,22 @@
 import org.spongepowered.api.world.World;
 import org.spongepowered.common.SpongeImplHooks;
 
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.annotation.Nullable;
+
 public class GPPermissionHandler {
 
-    private static final Pattern PATTERN_META = Pattern.compile("\\.[\\d+]*$");
-    private static Event currentEvent;
-    private static Location<World> eventLocation;
-    private static Subject eventSubject;
-    private static String eventSourceId = "none";
-    private static String eventTargetId = "none";
+    static final Pattern PATTERN_META = Pattern.compile("\\.[\\d+]*$");
 
     public static Tristate getClaimPermission(Event event, Location<World> location, GPClaim claim, String flagPermission, Object source, Object target, User user) {
         return getClaimPermission(event, location, claim, flagPermission, source, target, user, null, false);
@@ -100,71 +101,154 @@ public static Tristate getClaimPermission(Event event, Location<World> location,
         }
 
         GPPlayerData playerData = null;
-        eventSubject = null;
-        if (user != null) {
-            eventSubject = user;
-            if (user instanceof Player) {
-                playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(claim.world, user.getUniqueId());
+        if (user instanceof Player) {
+            playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(claim.world, user.getUniqueId());
+        }
+
+        final PermissionQuery query = PermissionQuery.obtain(event, location, user);
+        try {
+            return evaluate(query, claim, flagPermission, source, target, user, playerData, type, checkOverride);
+        } finally {
+            query.release();
+        }
+    }
+
+    // Evaluates a claim permission on the plugin executor. Sources and targets should be catalog
+    // types, block states or strings as live entities must not be read off the main thread.
+    // Player data is never created and no debug output is recorded. Trust lists are read only
+    // through the claim's trust index, which is built here before the query is submitted.
+    // The executor still reads claim type, owner, parent links and inherit flags, which are
+    // only replaced on the main thread, and queries the permission service.
+    public static CompletableFuture<Tristate> evaluateAsync(GPClaim claim, String flagPermission, Object source, Object target, @Nullable User user,
+            @Nullable TrustType type, boolean checkOverride) {
+        if (claim == null) {
+            return CompletableFuture.completedFuture(Tristate.TRUE);
+        }
+
+        final GPPlayerData playerData = user instanceof Player ? GriefPreventionPlugin.instance.dataStore.getPlayerData(claim.world, user.getUniqueId()) : null;
+        final ClaimTrustIndex trustIndex = claim.getTrustIndex();
+        return CompletableFuture.supplyAsync(() -> {
+            final PermissionQuery query = PermissionQuery.obtain(null, null, user);
+            query.trustIndex = trustIndex;
+            try {
+                return evaluate(query, claim, flagPermission, source, target, user, playerData, type, checkOverride);
+            } finally {
+                query.release();
             }
+        }, GriefPreventionPlugin.instance.executor);
+    }
+
+    private static Tristate evaluate(PermissionQuery query, GPClaim claim, String flagPermission, Object source, Object target, User user,
+            GPPlayerData playerData, TrustType type, boolean checkOverride) {
+        final String sourceId = getPermissionIdentifier(query, source, true);
+        final String targetId = getPermissionIdentifier(query, target, false);
+        // debug output requires every check to be processed
+        if (GriefPreventionPlugin.debugActive || (playerData != null && playerData.debugClaimPermissions)) {
+            return resolveClaimPermission(query, claim, flagPermission, sourceId, targetId, user, playerData, type, checkOverride);
+        }
+        if (playerData != null && playerData.canIgnoreClaim(claim)) {
+            return Tristate.TRUE;
         }
-        currentEvent = event;
-        eventLocation = location;
 
-        String sourceId = getPermissionIdentifier(source, true);
-        String targetPermission = flagPermission;
-        String targetId = getPermissionIdentifier(target);
-        String targetModPermission = null;
-        String targetMetaPermission = null;
-        if (!targetId.isEmpty()) {
-            String[] parts = targetId.split(":");
-            String targetMod = parts[0];
-            // move target meta to end of permission
-            Matcher m = PATTERN_META.matcher(targetId);
-            String targetMeta = "";
-            if (!flagPermission.contains("command-execute")) {
-                if (m.find()) {
-                    targetMeta = m.group(0);
-                    targetId = StringUtils.replace(targetId, targetMeta, "");
-                }
-                if (!targetMeta.isEmpty()) {
-                    targetMetaPermission = flagPermission + "." + StringUtils.replace(targetId, ":", ".") + targetMeta;
+        final GPPermissionCache.Key cacheKey = new GPPermissionCache.Key(claim.getUniqueId(), flagPermission, sourceId, targetId,
+                user == null ? null : user.getUniqueId(), type, checkOverride);
+        Tristate result = GPPermissionCache.get(cacheKey);
+        if (result != null) {
+            return result;
+        }
+
+        final long generation = GPPermissionCache.getGeneration();
+        result = resolveClaimPermission(query, claim, flagPermission, sourceId, targetId, user, playerData, type, checkOverride);
+        if (query.cacheable) {
+            GPPermissionCache.put(cacheKey, result, generation);
+        }
+        return result;
+    }
+
+    public static BitSet getDeniedLocations(Event event, List<Location<World>> locations, String flagPermission, Object source, User user, TrustType type, boolean checkOverride, boolean denyUndefined) {
+        return getDeniedLocations(event, locations, location -> flagPermission, source, user, type, checkOverride, denyUndefined);
+    }
+
+    // Evaluates permissions for events affecting many locations such as explosions.
+    // Each distinct claim, flag and block state is only resolved once.
+    // Returns the indices of all denied locations.
+    public static BitSet getDeniedLocations(Event event, List<Location<World>> locations, Function<Location<World>, String> flagPermissionFunction, Object source, User user,
+            TrustType type, boolean checkOverride, boolean denyUndefined) {
+        final BitSet deniedLocations = new BitSet(locations.size());
+        // debug output requires every location to be processed
+        final boolean evaluateAll = GriefPreventionPlugin.debugActive;
+        final Map<BatchKey, Tristate> results = new HashMap<>();
+        GPClaim claim = null;
+        for (int i = 0; i < locations.size(); i++) {
+            final Location<World> location = locations.get(i);
+            claim = GriefPreventionPlugin.instance.dataStore.getClaimAt(location, claim);
+            final String flagPermission = flagPermissionFunction.apply(location);
+            final BlockState blockState = location.getBlock();
+            Tristate result = null;
+            BatchKey key = null;
+            if (!evaluateAll) {
+                key = new BatchKey(claim, flagPermission, blockState);
+                result = results.get(key);
+            }
+            if (result == null) {
+                result = getClaimPermission(event, location, claim, flagPermission, source, blockState, user, type, checkOverride);
+                if (key != null) {
+                    results.put(key, result);
                 }
             }
-            if (!sourceId.isEmpty()) {
-                targetModPermission = flagPermission + "." + targetMod + ".source." + sourceId + targetMeta;
-                targetModPermission = StringUtils.replace(targetModPermission, ":", ".");
-                targetPermission += "." + targetId + ".source." + sourceId + targetMeta;
-            } else {
-                targetModPermission = flagPermission + "." + targetMod + targetMeta;
-                targetModPermission = StringUtils.replace(targetModPermission, ":", ".");
-                targetPermission += "." + targetId + targetMeta;
+            if (result == Tristate.FALSE || (denyUndefined && result == Tristate.UNDEFINED)) {
+                deniedLocations.set(i);
             }
-        } else if (!sourceId.isEmpty()) {
-            String targetMod = "";
-            if (sourceId.contains(":")) {
-                String[] parts = sourceId.split(":");
-                targetMod = parts[0];
-                targetModPermission = flagPermission + "." + targetMod + ".source." + sourceId;
-                targetModPermission = StringUtils.replace(targetModPermission, ":", ".");
+        }
+        return deniedLocations;
+    }
+
+    private static final class BatchKey {
+
+        private final GPClaim claim;
+        private final String flagPermission;
+        private final BlockState blockState;
+
+        private BatchKey(GPClaim claim, String flagPermission, BlockState blockState) {
+            this.claim = claim;
+            this.flagPermission = flagPermission;
+            this.blockState = blockState;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BatchKey)) {
+                return false;
             }
-            targetPermission += ".source." + sourceId;
+            final BatchKey other = (BatchKey) obj;
+            return this.claim == other.claim && this.blockState == other.blockState && this.flagPermission.equals(other.flagPermission);
         }
 
-        targetPermission = StringUtils.replace(targetPermission, ":", ".");
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(this.claim) + this.flagPermission.hashCode()) + System.identityHashCode(this.blockState);
+        }
+    }
+
+    private static Tristate resolveClaimPermission(PermissionQuery query, GPClaim claim, String flagPermission, String sourceId, String targetId, User user, GPPlayerData playerData, TrustType type, boolean checkOverride) {
+        final PermissionNode node = PermissionNode.getClaimNode(flagPermission, sourceId, targetId);
+        final String targetPermission = node.permission;
+        final String targetModPermission = node.modPermission;
+        final String targetMetaPermission = node.metaPermission;
         if (user != null && playerData != null && !playerData.debugClaimPermissions && playerData.canIgnoreClaim(claim)) {
-            return processResult(claim, targetPermission, "ignore", Tristate.TRUE, user);
+            return processResult(query, claim, targetPermission, "ignore", Tristate.TRUE, user);
         }
         if (checkOverride) {
             Tristate override = Tristate.UNDEFINED;
             if (user != null) {
                 // check global bans in wilderness
-                override = getFlagOverride((GPClaim) claim.getWilderness(), user, user, playerData, targetPermission, targetModPermission, targetMetaPermission);
+                override = getFlagOverride(query, (GPClaim) claim.getWilderness(), user, user, playerData, targetPermission, targetModPermission, targetMetaPermission);
                 if (override != Tristate.UNDEFINED) {
                     return override;
                 }
             }
             // First check for claim flag overrides
-            override = getFlagOverride(claim, user == null ? GriefPreventionPlugin.GLOBAL_SUBJECT : user, user, playerData, targetPermission, targetModPermission, targetMetaPermission);
+            override = getFlagOverride(query, claim, user == null ? GriefPreventionPlugin.GLOBAL_SUBJECT : user, user, playerData, targetPermission, targetModPermission, targetMetaPermission);
             if (override != Tristate.UNDEFINED) {
                 return override;
             }
@@ -172,25 +256,33 @@ public static Tristate getClaimPermission(Event event, Location<World> location,
 
         if (playerData != null) {
             if (playerData.debugClaimPermissions) {
-                if (user != null && type != null && claim.isUserTrusted(user, type)) {
-                    return processResult(claim, targetPermission, type.toString().toLowerCase(), Tristate.TRUE, user);
+                if (user != null && type != null && isUserTrusted(query, claim, user, type, playerData)) {
+                    return processResult(query, claim, targetPermission, type.toString().toLowerCase(), Tristate.TRUE, user);
                 }
-                return getClaimFlagPermission(claim, targetPermission, targetModPermission, targetMetaPermission);
+                return getClaimFlagPermission(query, claim, targetPermission, targetModPermission, targetMetaPermission);
             }
         }
         if (user != null) {
             if (type != null) {
-                if (claim.isUserTrusted(user, type)) {
-                    return processResult(claim, targetPermission, type.toString().toLowerCase(), Tristate.TRUE, user);
+                if (isUserTrusted(query, claim, user, type, playerData)) {
+                    return processResult(query, claim, targetPermission, type.toString().toLowerCase(), Tristate.TRUE, user);
                 }
             }
-            return getUserPermission(user, claim, targetPermission, targetModPermission, targetMetaPermission, playerData);
+            return getUserPermission(query, user, claim, targetPermission, targetModPermission, targetMetaPermission, playerData);
         }
 
-        return getClaimFlagPermission(claim, targetPermission, targetModPermission, targetMetaPermission);
+        return getClaimFlagPermission(query, claim, targetPermission, targetModPermission, targetMetaPermission);
+    }
+
+    private static boolean isUserTrusted(PermissionQuery query, GPClaim claim, User user, TrustType type, GPPlayerData playerData) {
+        if (query.trustIndex != null) {
+            // asynchronous queries must not create player data or read live trust lists
+            return claim.isUserTrusted(user, type, null, playerData, query.trustIndex);
+        }
+        return claim.isUserTrusted(user, type);
     }
 
-    private static Tristate getUserPermission(User user, GPClaim claim, String permission, String targetModPermission, String targetMetaPermission, GPPlayerData playerData) {
+    private static Tristate getUserPermission(PermissionQuery query, User user, GPClaim claim, String permission, String targetModPermission, String targetMetaPermission, GPPlayerData playerData) {
         final List<Claim> inheritParents = claim.getInheritedParents();
         final Set<Context> contexts = PermissionUtils.getActiveContexts(user, playerData, permission);
 
@@ -201,12 +293,12 @@ private static Tristate getUserPermission(User user, GPClaim claim, String permi
 
             Tristate value = user.getPermissionValue(contexts, permission);
             if (value != Tristate.UNDEFINED) {
-                return processResult(claim, permission, value, user);
+                return processResult(query, claim, permission, value, user);
             }
             if (targetModPermission != null) {
                 value = user.getPermissionValue(contexts, targetModPermission);
                 if (value != Tristate.UNDEFINED) {
-                    return processResult(claim, targetModPermission, value, user);
+                    return processResult(query, claim, targetModPermission, value, user);
                 }
             }
 
@@ -216,52 +308,70 @@ private static Tristate getUserPermission(User user, GPClaim claim, String permi
         contexts.add(claim.getContext());
         Tristate value = user.getPermissionValue(contexts, permission);
         if (value != Tristate.UNDEFINED) {
-            return processResult(claim, permission, value, user);
+            return processResult(query, claim, permission, value, user);
         }
         if (targetMetaPermission != null) {
             value = user.getPermissionValue(contexts, targetMetaPermission);
             if (value != Tristate.UNDEFINED) {
-                return processResult(claim, targetMetaPermission, value, user);
+                return processResult(query, claim, targetMetaPermission, value, user);
             }
         }
         if (targetModPermission != null) {
             value = user.getPermissionValue(contexts, targetModPermission);
             if (value != Tristate.UNDEFINED) {
-                return processResult(claim, targetModPermission, value, user);
+                return processResult(query, claim, targetModPermission, value, user);
             }
         }
 
-        return getClaimFlagPermission(claim, permission, targetModPermission, targetMetaPermission);
+        return getClaimFlagPermission(query, claim, permission, targetModPermission, targetMetaPermission);
     }
 
-    private static Tristate getClaimFlagPermission(GPClaim claim, String permission, String targetModPermission, String targetMetaPermission) {
+    private static Tristate getClaimFlagPermission(PermissionQuery query, GPClaim claim, String permission, String targetModPermission, String targetMetaPermission) {
+        final GPFlagDecisionTable table = GPFlagDecisionTable.getClaimTable(claim);
+        if (table != null) {
+            if (!table.isEmpty()) {
+                Tristate value = table.getValue(permission);
+                if (value != Tristate.UNDEFINED) {
+                    return processResult(query, claim, permission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
+                }
+                value = table.getValue(targetMetaPermission);
+                if (value != Tristate.UNDEFINED) {
+                    return processResult(query, claim, targetMetaPermission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
+                }
+                value = table.getValue(targetModPermission);
+                if (value != Tristate.UNDEFINED) {
+                    return processResult(query, claim, targetModPermission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
+                }
+            }
+            return getFlagDefaultPermission(query, claim, permission);
+        }
+
         Set<Context> contexts = new HashSet<>(GriefPreventionPlugin.GLOBAL_SUBJECT.getActiveContexts());
         contexts.add(claim.getContext());
 
         Tristate value = GriefPreventionPlugin.GLOBAL_SUBJECT.getPermissionValue(contexts, permission);
         if (value != Tristate.UNDEFINED) {
-            return processResult(claim, permission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
+            return processResult(query, claim, permission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
         }
         if (targetMetaPermission != null) {
             value = GriefPreventionPlugin.GLOBAL_SUBJECT.getPermissionValue(contexts, targetMetaPermission);
             if (value != Tristate.UNDEFINED) {
-                return processResult(claim, targetMetaPermission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
+                return processResult(query, claim, targetMetaPermission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
             }
         }
         if (targetModPermission != null) {
             value = GriefPreventionPlugin.GLOBAL_SUBJECT.getPermissionValue(contexts, targetModPermission);
             if (value != Tristate.UNDEFINED) {
-                return processResult(claim, targetModPermission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
+                return processResult(query, claim, targetModPermission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
             }
         }
 
-        return getFlagDefaultPermission(claim, permission);
+        return getFlagDefaultPermission(query, claim, permission);
     }
 
     // Only uses world and claim type contexts
-    private static Tristate getFlagDefaultPermission(GPClaim claim, String permission) {
+    private static Tristate getFlagDefaultPermission(PermissionQuery query, GPClaim claim, String permission) {
         // Fallback to defaults
-        Set<Context> contexts = new HashSet<>(GriefPreventionPlugin.GLOBAL_SUBJECT.getActiveContexts());
         if (claim.parent != null && claim.getData().doesInheritParent()) {
             if (claim.parent.parent != null && claim.parent.getData().doesInheritParent()) {
                 claim = claim.parent.parent;
@@ -270,6 +380,13 @@ private static Tristate getFlagDefaultPermission(GPClaim claim, String permissio
             }
         }
 
+        final GPFlagDecisionTable table = GPFlagDecisionTable.getDefaultTable(claim.world, GPFlagDecisionTable.getDefaultType(claim));
+        if (table != null) {
+            return processResult(query, claim, permission, table.getValue(permission), GriefPreventionPlugin.GLOBAL_SUBJECT);
+        }
+
+        Set<Context> contexts = new HashSet<>(GriefPreventionPlugin.GLOBAL_SUBJECT.getActiveContexts());
+
         if (claim.isAdminClaim()) {
             contexts.add(ClaimContexts.ADMIN_DEFAULT_CONTEXT);
         } else if (claim.isBasicClaim() || claim.isSubdivision()) {
@@ -284,13 +401,13 @@ private static Tristate getFlagDefaultPermission(GPClaim claim, String permissio
         // check persisted/transient default data
         Tristate value = GriefPreventionPlugin.GLOBAL_SUBJECT.getPermissionValue(contexts, permission);
         if (value != Tristate.UNDEFINED) {
-            return processResult(claim, permission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
+            return processResult(query, claim, permission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
         }
 
-        return processResult(claim, permission, Tristate.UNDEFINED, GriefPreventionPlugin.GLOBAL_SUBJECT);
+        return processResult(query, claim, permission, Tristate.UNDEFINED, GriefPreventionPlugin.GLOBAL_SUBJECT);
     }
 
-    private static Tristate getFlagOverride(GPClaim claim, Subject subject, User user, GPPlayerData playerData, String flagPermission, String targetModPermission, String targetMetaPermission) {
+    private static Tristate getFlagOverride(PermissionQuery query, GPClaim claim, Subject subject, User user, GPPlayerData playerData, String flagPermission, String targetModPermission, String targetMetaPermission) {
         if (!claim.getInternalClaimData().allowFlagOverrides()) {
             return Tristate.UNDEFINED;
         }
@@ -320,9 +437,10 @@ private static Tristate getFlagOverride(GPClaim claim, Subject subject, User use
                 Text reason = GriefPreventionPlugin.getGlobalConfig().getConfig().bans.getReason(flagPermission);
                 if (reason != null && !reason.isEmpty()) {
                     player.sendMessage(reason);
+                    query.cacheable = false;
                 }
             }
-            return processResult(claim, flagPermission, value, user);
+            return processResult(query, claim, flagPermission, value, user);
         }
         if (targetMetaPermission != null) {
             value = subject.getPermissionValue(contexts, targetMetaPermission);
@@ -331,9 +449,10 @@ private static Tristate getFlagOverride(GPClaim claim, Subject subject, User use
                     Text reason = GriefPreventionPlugin.getGlobalConfig().getConfig().bans.getReason(targetMetaPermission);
                     if (reason != null && !reason.isEmpty()) {
                         player.sendMessage(reason);
+                        query.cacheable = false;
                     }
                 }
-                return processResult(claim, targetMetaPermission, value, user);
+                return processResult(query, claim, targetMetaPermission, value, user);
             }
         }
         if (targetModPermission != null) {
@@ -343,9 +462,10 @@ private static Tristate getFlagOverride(GPClaim claim, Subject subject, User use
                     Text reason = GriefPreventionPlugin.getGlobalConfig().getConfig().bans.getReason(targetModPermission);
                     if (reason != null && !reason.isEmpty()) {
                         player.sendMessage(reason);
+                        query.cacheable = false;
                     }
                 }
-                return processResult(claim, targetModPermission, value, user);
+                return processResult(query, claim, targetModPermission, value, user);
             }
         }
 
@@ -367,43 +487,30 @@ public static Tristate getFlagOverride(Event event, Location<World> location, GP
             }
         }
 
-        currentEvent = event;
-        eventLocation = location;
-        eventSubject = user;
+        final PermissionQuery query = PermissionQuery.obtain(event, location, user);
+        try {
+            return resolveFlagOverride(query, claim, flagPermission, source, target, user, playerData);
+        } finally {
+            query.release();
+        }
+    }
+
+    private static Tristate resolveFlagOverride(PermissionQuery query, GPClaim claim, String flagPermission, Object source, Object target, User user,
+            GPPlayerData playerData) {
         Player player = null;
         final Subject subject = user != null ? user : GriefPreventionPlugin.GLOBAL_SUBJECT;
         String targetModPermission = null;
         String targetMetaPermission = null;
-        if (target != null && source == null) {
-            String targetId = getPermissionIdentifier(target);
-            flagPermission += "." + targetId;
-        } else if (target != null && source != null) {
-            String sourceId = getPermissionIdentifier(source, true);
-            String targetId = getPermissionIdentifier(target);
-            if (!targetId.isEmpty()) {
-                String[] parts = targetId.split(":");
-                String targetMod = parts[0];
-                if (!sourceId.isEmpty()) {
-                    // move target meta to end of permission
-                    Matcher m = PATTERN_META.matcher(targetId);
-                    String targetMeta = "";
-                    if (m.find()) {
-                        targetMeta = m.group(0);
-                        targetId = StringUtils.replace(targetId, targetMeta, "");
-                    }
-                    if (!targetMeta.isEmpty()) {
-                        targetMetaPermission = flagPermission + "." + StringUtils.replace(targetId, ":", ".") + targetMeta;
-                    }
-                    targetModPermission = flagPermission + "." + targetMod + ".source." + sourceId + targetMeta;
-                    targetModPermission = StringUtils.replace(targetModPermission, ":", ".");
-                    flagPermission += "." + targetId + ".source." + sourceId + targetMeta;
-                } else {
-                    flagPermission += "." + targetId;
-                }
-            }
+        if (target != null) {
+            final String sourceId = source != null ? getPermissionIdentifier(query, source, true) : "";
+            final PermissionNode node = PermissionNode.getOverrideNode(flagPermission, sourceId, getPermissionIdentifier(query, target, false));
+            flagPermission = node.permission;
+            targetModPermission = node.modPermission;
+            targetMetaPermission = node.metaPermission;
+        } else {
+            flagPermission = StringUtils.replace(flagPermission, ":", ".");
         }
 
-        flagPermission = StringUtils.replace(flagPermission, ":", ".");
         Set<Context> contexts = PermissionUtils.getActiveContexts(subject, playerData, null);
         if (claim.isWilderness()) {
             contexts.add(ClaimContexts.WILDERNESS_OVERRIDE_CONTEXT);
@@ -427,7 +534,7 @@ public static Tristate getFlagOverride(Event event, Location<World> location, GP
                     player.sendMessage(reason);
                 }
             }
-            return processResult(claim, flagPermission, value, user);
+            return processResult(query, claim, flagPermission, value, user);
         }
         if (targetMetaPermission != null) {
             value = subject.getPermissionValue(contexts, targetMetaPermission);
@@ -438,7 +545,7 @@ public static Tristate getFlagOverride(Event event, Location<World> location, GP
                         player.sendMessage(reason);
                     }
                 }
-                return processResult(claim, targetMetaPermission, value, user);
+                return processResult(query, claim, targetMetaPermission, value, user);
             }
         }
         // check target modid
@@ -451,7 +558,7 @@ public static Tristate getFlagOverride(Event event, Location<World> location, GP
                         player.sendMessage(reason);
                     }
                 }
-                return processResult(claim, targetModPermission, value, user);
+                return processResult(query, claim, targetModPermission, value, user);
             }
         }
 
@@ -460,59 +567,39 @@ public static Tristate getFlagOverride(Event event, Location<World> location, GP
 
     // used by Flag API
     public static Tristate getClaimPermission(GPClaim claim, ClaimFlag flag, Subject subject, String source, String target, Context context) {
-        final String flagBasePermission = GPPermissions.FLAG_BASE + "." + flag.toString();
-        String sourceId = getPermissionIdentifier(source, true);
-        String targetPermission = flagBasePermission;
-        String targetId = getPermissionIdentifier(target);
-        String targetModPermission = null;
-        if (!targetId.isEmpty()) {
-            if (!sourceId.isEmpty()) {
-                String[] parts = targetId.split(":");
-                String targetMod = parts[0];
-                // move target meta to end of permission
-                Pattern p = Pattern.compile("\\.[\\d+]*$");
-                Matcher m = p.matcher(targetId);
-                String targetMeta = "";
-                if (m.find()) {
-                    targetMeta = m.group(0);
-                    targetId = StringUtils.replace(targetId, targetMeta, "");
-                }
-                targetModPermission = flagBasePermission + "." + targetMod + ".source." + sourceId + targetMeta;
-                targetModPermission = StringUtils.replace(targetModPermission, ":", ".");
-                targetPermission += "." + targetId + ".source." + sourceId + targetMeta;
-            } else {
-                targetPermission += "." + targetId;
-            }
-        }
-        targetPermission = StringUtils.replace(targetPermission, ":", ".");
+        final String sourceId = getPermissionIdentifier(source, true);
+        final String targetId = getPermissionIdentifier(target);
+        final String targetPermission = PermissionNode.getOverrideNode(PermissionNode.getFlagPermission(flag), sourceId, targetId).permission;
         Set<Context> contexts = new HashSet<>();
         contexts.add(context);
         return subject.getPermissionValue(contexts, targetPermission);
     }
 
-    public static Tristate processResult(GPClaim claim, String permission, Tristate permissionValue, Subject permissionSubject) {
-        return processResult(claim, permission, null, permissionValue, permissionSubject);
+    private static Tristate processResult(PermissionQuery query, GPClaim claim, String permission, Tristate permissionValue, Subject permissionSubject) {
+        return processResult(query, claim, permission, null, permissionValue, permissionSubject);
     }
 
-    public static Tristate processResult(GPClaim claim, String permission, String trust, Tristate permissionValue, Subject permissionSubject) {
-        if (GriefPreventionPlugin.debugActive) {
+    private static Tristate processResult(PermissionQuery query, GPClaim claim, String permission, String trust, Tristate permissionValue, Subject permissionSubject) {
+        // async queries have no event to log
+        if (GriefPreventionPlugin.debugActive && query.event != null) {
+            final Event event = query.event;
             // Use the event subject always if available
             // This prevents debug showing 'default' for users
-            if (eventSubject != null) {
-                permissionSubject = eventSubject;
+            if (query.subject != null) {
+                permissionSubject = query.subject;
             } else if (permissionSubject == null) {
-                if (currentEvent.getCause().root() instanceof User) {
-                    permissionSubject = (Subject) currentEvent.getCause().root();
+                if (event.getCause().root() instanceof User) {
+                    permissionSubject = (Subject) event.getCause().root();
                 } else {
                     permissionSubject = GriefPreventionPlugin.GLOBAL_SUBJECT;
                 }
             }
-            if (currentEvent instanceof NotifyNeighborBlockEvent) {
+            if (event instanceof NotifyNeighborBlockEvent) {
                 if (claim.getWorld().getProperties().getTotalTime() % 100 == 0L) {
-                    GriefPreventionPlugin.addEventLogEntry(currentEvent, eventLocation, eventSourceId, eventTargetId, permissionSubject, permission, trust, permissionValue);
+                    GriefPreventionPlugin.addEventLogEntry(event, claim, query.location, query.sourceId, query.targetId, permissionSubject, permission, trust, permissionValue);
                 }
             } else {
-                GriefPreventionPlugin.addEventLogEntry(currentEvent, eventLocation, eventSourceId, eventTargetId, permissionSubject, permission, trust, permissionValue);
+                GriefPreventionPlugin.addEventLogEntry(event, claim, query.location, query.sourceId, query.targetId, permissionSubject, permission, trust, permissionValue);
             }
         }
 
@@ -522,25 +609,17 @@ public static Tristate processResult(GPClaim claim, String permission, String tr
     // Used for situations where events are skipped for perf reasons
     public static void addEventLogEntry(Event event, Location<World> location, Object source, Object target, Subject permissionSubject, String permission, String trust, Tristate result) {
         if (GriefPreventionPlugin.debugActive) {
-            String sourceId = getPermissionIdentifier(source, true);
-            String targetPermission = permission;
-            String targetId = getPermissionIdentifier(target);
-            if (!targetId.isEmpty()) {
-                // move target meta to end of permission
-                Matcher m = PATTERN_META.matcher(targetId);
-                String targetMeta = "";
-                if (!permission.contains("command-execute")) {
-                    if (m.find()) {
-                        targetMeta = m.group(0);
-                        targetId = StringUtils.replace(targetId, targetMeta, "");
-                    }
+            final PermissionQuery query = PermissionQuery.obtain(event, location, permissionSubject);
+            try {
+                final String sourceId = getPermissionIdentifier(query, source, true);
+                final PermissionNode node = PermissionNode.getClaimNode(permission, sourceId, getPermissionIdentifier(query, target, false));
+                if (permissionSubject == null) {
+                    permissionSubject = GriefPreventionPlugin.GLOBAL_SUBJECT;
                 }
-                targetPermission += "." + targetId + targetMeta;
-            }
-            if (permissionSubject == null) {
-                permissionSubject = GriefPreventionPlugin.GLOBAL_SUBJECT;
+                GriefPreventionPlugin.addEventLogEntry(event, location, sourceId, node.targetId, permissionSubject, node.permission, trust, result);
+            } finally {
+                query.release();
             }
-            GriefPreventionPlugin.addEventLogEntry(event, location, sourceId, targetId, permissionSubject, targetPermission, trust, result);
         }
     }
 
@@ -548,11 +627,19 @@ public static String getPermissionIdentifier(Object obj) {
         return getPermissionIdentifier(obj, false);
     }
 
-    @SuppressWarnings("deprecation")
     public static String getPermissionIdentifier(Object obj, boolean isSource) {
+        return getPermissionIdentifier(null, obj, isSource);
+    }
+
+    @SuppressWarnings("deprecation")
+    static String getPermissionIdentifier(@Nullable PermissionQuery query, Object obj, boolean isSource) {
         if (obj != null) {
             if (obj instanceof Entity) {
                 Entity targetEntity = (Entity) obj;
+                final String cachedId = GPIdentifierCache.getEntityId(targetEntity, isSource);
+                if (cachedId != null) {
+                    return setEventSourceTarget(query, cachedId, isSource);
+                }
                 net.minecraft.entity.Entity mcEntity = null;
                 if (targetEntity instanceof net.minecraft.entity.Entity) {
                     mcEntity = (net.minecraft.entity.Entity) targetEntity;
@@ -585,7 +672,7 @@ public static String getPermissionIdentifier(Object obj, boolean isSource) {
                         String name = parts[1];
                         if (modId.equalsIgnoreCase("pixelmon") && modId.equalsIgnoreCase(name)) {
                             name = EntityUtils.getFriendlyName(mcEntity).toLowerCase();
-                            populateEventSourceTarget(modId + ":" + name, isSource);
+                            populateEventSourceTarget(query, modId + ":" + name, isSource);
                         }
                         if (!isSource) {
                             for (EnumCreatureType type : EnumCreatureType.values()) {
@@ -602,62 +689,43 @@ public static String getPermissionIdentifier(Object obj, boolean isSource) {
                     id = ((Item) targetEntity).getItemType().getId();
                 }
 
-                return populateEventSourceTarget(id, isSource);
+                return populateEventSourceTarget(query, id, isSource);
             } else if (obj instanceof EntityType) {
-                final String id = ((EntityType) obj).getId();
-                return populateEventSourceTarget(id, isSource);
+                return setEventSourceTarget(query, GPIdentifierCache.getCatalogId((EntityType) obj), isSource);
             } else if (obj instanceof BlockType) {
-                final String id = ((BlockType) obj).getId();
-                return populateEventSourceTarget(id, isSource);
+                return setEventSourceTarget(query, GPIdentifierCache.getCatalogId((BlockType) obj), isSource);
             } else if (obj instanceof BlockSnapshot) {
                 final BlockSnapshot blockSnapshot = (BlockSnapshot) obj;
                 final BlockState blockstate = blockSnapshot.getState();
-                String id = "";
-                if (currentEvent != null && !(currentEvent instanceof ChangeBlockEvent.Pre)) {
-                    id = blockstate.getType().getId() + "." + BlockUtils.getBlockStateMeta(blockstate);
-                } else {
-                    id = blockstate.getType().getId();
+                if (query == null || !(query.event instanceof ChangeBlockEvent.Pre)) {
+                    return setEventSourceTarget(query, GPIdentifierCache.getBlockStateId(blockstate), isSource);
                 }
-                return populateEventSourceTarget(id, isSource);
+                return setEventSourceTarget(query, GPIdentifierCache.getCatalogId(blockstate.getType()), isSource);
             } else if (obj instanceof BlockState) {
-                final BlockState blockstate = (BlockState) obj;
-                final String id = blockstate.getType().getId() + "." + BlockUtils.getBlockStateMeta(blockstate);
-                return populateEventSourceTarget(id, isSource);
+                return setEventSourceTarget(query, GPIdentifierCache.getBlockStateId((BlockState) obj), isSource);
             } else if (obj instanceof LocatableBlock) {
                 final LocatableBlock locatableBlock = (LocatableBlock) obj;
-                final BlockState blockstate = locatableBlock.getBlockState();
-                final String id = blockstate.getType().getId() + "." + BlockUtils.getBlockStateMeta(blockstate);
-                return populateEventSourceTarget(id, isSource);
+                return setEventSourceTarget(query, GPIdentifierCache.getBlockStateId(locatableBlock.getBlockState()), isSource);
             } else if (obj instanceof TileEntity) {
                 TileEntity tileEntity = (TileEntity) obj;
-                final String id = tileEntity.getType().getId().toLowerCase();
-                return populateEventSourceTarget(id, isSource);
+                return setEventSourceTarget(query, GPIdentifierCache.getTileEntityId(tileEntity.getType()), isSource);
             } else if (obj instanceof ItemStack) {
                 final ItemStack itemstack = (ItemStack) obj;
-                String id = "";
-                if (itemstack.getType() instanceof ItemBlock) {
-                    ItemBlock itemBlock = (ItemBlock) itemstack.getType();
-                    net.minecraft.item.ItemStack nmsStack = (net.minecraft.item.ItemStack) (Object) itemstack;
-                    BlockState blockState = ((BlockState) itemBlock.getBlock().getStateFromMeta(nmsStack.getItemDamage()));
-                    id = blockState.getType().getId() + "." + nmsStack.getItemDamage();
-                } else {
-                    id = itemstack.getType().getId() + "." + ((net.minecraft.item.ItemStack) (Object) itemstack).getItemDamage();
-                }
-
-                return populateEventSourceTarget(id, isSource);
+                final int damage = ((net.minecraft.item.ItemStack) (Object) itemstack).getItemDamage();
+                return setEventSourceTarget(query, GPIdentifierCache.getItemId(itemstack.getType(), damage), isSource);
             } else if (obj instanceof ItemType) {
                 final String id = ((ItemType) obj).getId().toLowerCase();
-                populateEventSourceTarget(id, isSource);
+                populateEventSourceTarget(query, id, isSource);
                 return id;
             } else if (obj instanceof EntityDamageSource) {
                 final EntityDamageSource damageSource = (EntityDamageSource) obj;
                 Entity sourceEntity = damageSource.getSource();
 
-                if (eventSubject == null && sourceEntity instanceof User) {
-                    eventSubject = (User) sourceEntity;
+                if (query != null && query.subject == null && sourceEntity instanceof User) {
+                    query.subject = (User) sourceEntity;
                 }
 
-                return getPermissionIdentifier(sourceEntity, isSource);
+                return getPermissionIdentifier(query, sourceEntity, isSource);
             } else if (obj instanceof DamageSource) {
                 final DamageSource damageSource = (DamageSource) obj;
                 String id = damageSource.getType().getId();
@@ -665,25 +733,23 @@ public static String getPermissionIdentifier(Object obj, boolean isSource) {
                     id = "minecraft:" + id;
                 }
 
-                return populateEventSourceTarget(id, isSource);
+                return populateEventSourceTarget(query, id, isSource);
             } else if (obj instanceof ItemStackSnapshot) {
-                final String id = ((ItemStackSnapshot) obj).getType().getId();
-                return populateEventSourceTarget(id, isSource);
+                return setEventSourceTarget(query, GPIdentifierCache.getCatalogId(((ItemStackSnapshot) obj).getType()), isSource);
             } else if (obj instanceof CatalogType) {
-                final String id = ((CatalogType) obj).getId();
-                return populateEventSourceTarget(id, isSource);
+                return setEventSourceTarget(query, GPIdentifierCache.getCatalogId((CatalogType) obj), isSource);
             } else if (obj instanceof String) {
                 final String id = obj.toString().toLowerCase();
-                return populateEventSourceTarget(id, isSource);
+                return populateEventSourceTarget(query, id, isSource);
             } else if (obj instanceof PluginContainer) {
                 final String id = ((PluginContainer) obj).getId();
-                return populateEventSourceTarget(id, isSource);
+                return populateEventSourceTarget(query, id, isSource);
             } else if (obj instanceof Inventory) {
                 return ((Inventory) obj).getArchetype().getId();
             }
         }
 
-        populateEventSourceTarget("none", isSource);
+        populateEventSourceTarget(query, "none", isSource);
         return "";
     }
 
@@ -726,25 +792,9 @@ public static String getTargetPermission(String flagPermission) {
 
     // Used for debugging
     public static String getPermission(Object source, Object target, String flagPermission) {
-        String sourceId = getPermissionIdentifier(source, true);
-        String targetPermission = flagPermission;
-        String targetId = getPermissionIdentifier(target);
-        if (!targetId.isEmpty()) {
-            if (!sourceId.isEmpty()) {
-                // move target meta to end of permission
-                Matcher m = PATTERN_META.matcher(targetId);
-                String targetMeta = "";
-                if (m.find()) {
-                    targetMeta = m.group(0);
-                    targetId = StringUtils.replace(targetId, targetMeta, "");
-                }
-                targetPermission += "." + targetId + ".source." + sourceId + targetMeta;
-            } else {
-                targetPermission += "." + targetId;
-            }
-        }
-        targetPermission = StringUtils.replace(targetPermission, ":", ".");
-        return targetPermission;
+        final String sourceId = getPermissionIdentifier(source, true);
+        final String targetId = getPermissionIdentifier(target);
+        return PermissionNode.getOverrideNode(flagPermission, sourceId, targetId).permission;
     }
 
     public static String getIdentifierWithoutMeta(String targetId) {
@@ -757,7 +807,11 @@ public static String getIdentifierWithoutMeta(String targetId) {
         return targetId;
     }
 
-    private static String populateEventSourceTarget(String id, boolean isSource) {
+    private static String populateEventSourceTarget(@Nullable PermissionQuery query, String id, boolean isSource) {
+        return setEventSourceTarget(query, normalizeIdentifier(id), isSource);
+    }
+
+    static String normalizeIdentifier(String id) {
         // Handle mod's that pass modid:modid:name
         String[] parts = id.split(":");
         if (parts != null && parts.length == 3) {
@@ -765,11 +819,17 @@ private static String populateEventSourceTarget(String id, boolean isSource) {
                 id = parts[1] + ":" + parts[2];
             }
         }
-        id = id.toLowerCase();
+        return id.toLowerCase();
+    }
+
+    private static String setEventSourceTarget(@Nullable PermissionQuery query, String id, boolean isSource) {
+        if (query == null) {
+            return id;
+        }
         if (isSource) {
-            eventSourceId = id;
+            query.sourceId = id;
         } else {
-            eventTargetId = id;
+            query.targetId = id;
         }
         return id;
     }
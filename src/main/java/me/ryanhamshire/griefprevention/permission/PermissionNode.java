@@ -0,0 +1,186 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.permission;
+
+import me.ryanhamshire.griefprevention.api.claim.ClaimFlag;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+
+// Precomputed flag permissions for a (flag, source, target) tuple.
+// Nodes are interned so permission strings are only assembled once per tuple.
+public final class PermissionNode {
+
+    private static final int MAX_NODES = 8192;
+    // Flag -> Source ID -> Target ID -> Node
+    private static final Map<String, Map<String, Map<String, PermissionNode>>> CLAIM_NODES = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, Map<String, PermissionNode>>> OVERRIDE_NODES = new ConcurrentHashMap<>();
+    private static final AtomicInteger CLAIM_NODE_COUNT = new AtomicInteger();
+    private static final AtomicInteger OVERRIDE_NODE_COUNT = new AtomicInteger();
+    private static final Map<ClaimFlag, String> FLAG_PERMISSIONS = new EnumMap<>(ClaimFlag.class);
+
+    static {
+        for (ClaimFlag flag : ClaimFlag.values()) {
+            FLAG_PERMISSIONS.put(flag, GPPermissions.FLAG_BASE + "." + flag.toString());
+        }
+    }
+
+    public final String permission;
+    public final String modPermission;
+    public final String metaPermission;
+    // target id with meta removed
+    public final String targetId;
+
+    private PermissionNode(String permission, String modPermission, String metaPermission, String targetId) {
+        this.permission = permission;
+        this.modPermission = modPermission;
+        this.metaPermission = metaPermission;
+        this.targetId = targetId;
+    }
+
+    public static String getFlagPermission(ClaimFlag flag) {
+        return FLAG_PERMISSIONS.get(flag);
+    }
+
+    // Used by claim permission checks
+    public static PermissionNode getClaimNode(String flagPermission, String sourceId, String targetId) {
+        PermissionNode node = lookup(CLAIM_NODES, flagPermission, sourceId, targetId);
+        if (node == null) {
+            node = createClaimNode(flagPermission, sourceId, targetId);
+            intern(CLAIM_NODES, CLAIM_NODE_COUNT, flagPermission, sourceId, targetId, node);
+        }
+        return node;
+    }
+
+    // Used by flag override checks and the flag API
+    public static PermissionNode getOverrideNode(String flagPermission, String sourceId, String targetId) {
+        PermissionNode node = lookup(OVERRIDE_NODES, flagPermission, sourceId, targetId);
+        if (node == null) {
+            node = createOverrideNode(flagPermission, sourceId, targetId);
+            intern(OVERRIDE_NODES, OVERRIDE_NODE_COUNT, flagPermission, sourceId, targetId, node);
+        }
+        return node;
+    }
+
+    private static PermissionNode lookup(Map<String, Map<String, Map<String, PermissionNode>>> nodes, String flagPermission, String sourceId, String targetId) {
+        final Map<String, Map<String, PermissionNode>> sourceNodes = nodes.get(flagPermission);
+        if (sourceNodes == null) {
+            return null;
+        }
+        final Map<String, PermissionNode> targetNodes = sourceNodes.get(sourceId);
+        if (targetNodes == null) {
+            return null;
+        }
+        return targetNodes.get(targetId);
+    }
+
+    private static void intern(Map<String, Map<String, Map<String, PermissionNode>>> nodes, AtomicInteger count, String flagPermission, String sourceId,
+            String targetId, PermissionNode node) {
+        if (count.incrementAndGet() > MAX_NODES) {
+            nodes.clear();
+            count.set(1);
+        }
+        nodes.computeIfAbsent(flagPermission, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(sourceId, k -> new ConcurrentHashMap<>())
+                .put(targetId, node);
+    }
+
+    private static String getModId(String id) {
+        final int index = id.indexOf(':');
+        return index == -1 ? id : id.substring(0, index);
+    }
+
+    private static PermissionNode createClaimNode(String flagPermission, String sourceId, String targetId) {
+        String targetPermission = flagPermission;
+        String targetModPermission = null;
+        String targetMetaPermission = null;
+        if (!targetId.isEmpty()) {
+            final String targetMod = getModId(targetId);
+            // move target meta to end of permission
+            String targetMeta = "";
+            if (!flagPermission.contains("command-execute")) {
+                final Matcher m = GPPermissionHandler.PATTERN_META.matcher(targetId);
+                if (m.find()) {
+                    targetMeta = m.group(0);
+                    targetId = StringUtils.replace(targetId, targetMeta, "");
+                }
+                if (!targetMeta.isEmpty()) {
+                    targetMetaPermission = flagPermission + "." + StringUtils.replace(targetId, ":", ".") + targetMeta;
+                }
+            }
+            if (!sourceId.isEmpty()) {
+                targetModPermission = flagPermission + "." + targetMod + ".source." + sourceId + targetMeta;
+                targetModPermission = StringUtils.replace(targetModPermission, ":", ".");
+                targetPermission += "." + targetId + ".source." + sourceId + targetMeta;
+            } else {
+                targetModPermission = flagPermission + "." + targetMod + targetMeta;
+                targetModPermission = StringUtils.replace(targetModPermission, ":", ".");
+                targetPermission += "." + targetId + targetMeta;
+            }
+        } else if (!sourceId.isEmpty()) {
+            if (sourceId.contains(":")) {
+                targetModPermission = flagPermission + "." + getModId(sourceId) + ".source." + sourceId;
+                targetModPermission = StringUtils.replace(targetModPermission, ":", ".");
+            }
+            targetPermission += ".source." + sourceId;
+        }
+
+        targetPermission = StringUtils.replace(targetPermission, ":", ".");
+        return new PermissionNode(targetPermission, targetModPermission, targetMetaPermission, targetId);
+    }
+
+    private static PermissionNode createOverrideNode(String flagPermission, String sourceId, String targetId) {
+        String targetPermission = flagPermission;
+        String targetModPermission = null;
+        String targetMetaPermission = null;
+        if (!targetId.isEmpty()) {
+            if (!sourceId.isEmpty()) {
+                final String targetMod = getModId(targetId);
+                // move target meta to end of permission
+                final Matcher m = GPPermissionHandler.PATTERN_META.matcher(targetId);
+                String targetMeta = "";
+                if (m.find()) {
+                    targetMeta = m.group(0);
+                    targetId = StringUtils.replace(targetId, targetMeta, "");
+                }
+                if (!targetMeta.isEmpty()) {
+                    targetMetaPermission = flagPermission + "." + StringUtils.replace(targetId, ":", ".") + targetMeta;
+                }
+                targetModPermission = flagPermission + "." + targetMod + ".source." + sourceId + targetMeta;
+                targetModPermission = StringUtils.replace(targetModPermission, ":", ".");
+                targetPermission += "." + targetId + ".source." + sourceId + targetMeta;
+            } else {
+                targetPermission += "." + targetId;
+            }
+        }
+
+        targetPermission = StringUtils.replace(targetPermission, ":", ".");
+        return new PermissionNode(targetPermission, targetModPermission, targetMetaPermission, targetId);
+    }
+}
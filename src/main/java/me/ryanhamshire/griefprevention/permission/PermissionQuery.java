@@ -0,0 +1,106 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.permission;
+
+import me.ryanhamshire.griefprevention.claim.ClaimTrustIndex;
+import org.spongepowered.api.event.Event;
+import org.spongepowered.api.service.permission.Subject;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import java.util.ArrayDeque;
+
+import javax.annotation.Nullable;
+
+// State of a single permission evaluation, threaded through the resolution chain
+// instead of static fields so checks can run on any thread. Instances are pooled
+// per thread and must be released once the evaluation is done.
+public final class PermissionQuery {
+
+    private static final int MAX_POOLED = 8;
+    private static final ThreadLocal<ArrayDeque<PermissionQuery>> POOL = ThreadLocal.withInitial(ArrayDeque::new);
+
+    @Nullable Event event;
+    @Nullable Location<World> location;
+    @Nullable Subject subject;
+    String sourceId = "none";
+    String targetId = "none";
+    // false when resolving the permission had side effects such as a ban message
+    boolean cacheable = true;
+    // Trust state captured on the main thread, only set for asynchronous queries
+    @Nullable ClaimTrustIndex trustIndex;
+
+    private PermissionQuery() {
+    }
+
+    public static PermissionQuery obtain(@Nullable Event event, @Nullable Location<World> location, @Nullable Subject subject) {
+        PermissionQuery query = POOL.get().poll();
+        if (query == null) {
+            query = new PermissionQuery();
+        }
+        query.event = event;
+        query.location = location;
+        query.subject = subject;
+        query.sourceId = "none";
+        query.targetId = "none";
+        query.cacheable = true;
+        query.trustIndex = null;
+        return query;
+    }
+
+    public void release() {
+        this.event = null;
+        this.location = null;
+        this.subject = null;
+        this.trustIndex = null;
+        final ArrayDeque<PermissionQuery> pool = POOL.get();
+        if (pool.size() < MAX_POOLED) {
+            pool.push(this);
+        }
+    }
+
+    @Nullable
+    public Event getEvent() {
+        return this.event;
+    }
+
+    @Nullable
+    public Location<World> getLocation() {
+        return this.location;
+    }
+
+    @Nullable
+    public Subject getSubject() {
+        return this.subject;
+    }
+
+    public String getSourceId() {
+        return this.sourceId;
+    }
+
+    public String getTargetId() {
+        return this.targetId;
+    }
+}
@@ -33,6 +33,7 @@
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.claim.GPClaimManager;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
+import me.ryanhamshire.griefprevention.configuration.category.ClaimCategory;
 import me.ryanhamshire.griefprevention.logging.CustomLogEntryTypes;
 import me.ryanhamshire.griefprevention.permission.GPOptionHandler;
 import me.ryanhamshire.griefprevention.permission.GPOptions;
@@ -43,106 +44,223 @@
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 //FEATURE: automatically remove inactive claims
-//runs every 5 minutes on the main thread
+//runs every tick on the main thread. claims are kept in a queue ordered by the time they
+//are due to expire so each run only evaluates claims which may actually have expired.
+//new claims are discovered by a cursor which walks all world claim lists once per cleanup interval.
 public class CleanupUnusedClaimsTask implements Runnable {
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static long claimsScanned;
+    private static long claimsExpired;
+    private static long claimsRestored;
+
+    private final PriorityQueue<ExpiryEntry> expiryQueue = new PriorityQueue<>(Comparator.comparingLong(entry -> entry.dueTime));
+    private final Set<GPClaim> queuedClaims = Collections.newSetFromMap(new IdentityHashMap<>());
+    // cursor state for claim discovery
+    private final Deque<WorldProperties> pendingWorlds = new ArrayDeque<>();
+    private List<Claim> worldClaims;
+    private int worldClaimIndex;
+    private long nextDiscoveryTime;
+
+    public static long getClaimsScanned() {
+        return claimsScanned;
+    }
+
+    public static long getClaimsExpired() {
+        return claimsExpired;
+    }
+
+    public static long getClaimsRestored() {
+        return claimsRestored;
+    }
+
     @Override
     public void run() {
-        for (WorldProperties worldProperties : Sponge.getServer().getAllWorldProperties()) {
-            // don't do anything when there are no claims
-            GPClaimManager claimManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(worldProperties);
-            ArrayList<Claim> claimList = (ArrayList<Claim>) claimManager.getWorldClaims();
-            if (claimList.size() == 0) {
+        final ClaimCategory claimConfig = GriefPreventionPlugin.getGlobalConfig().getConfig().claim;
+        final long now = System.currentTimeMillis();
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(claimConfig.expirationMaxTickTime);
+        final long recheckInterval = TimeUnit.MINUTES.toMillis(Math.max(1, claimConfig.expirationCleanupInterval));
+        int remaining = claimConfig.expirationClaimsPerTick;
+
+        // queue claims which have not been seen yet, this is cheap as no options are resolved
+        remaining -= this.discoverClaims(now, recheckInterval, remaining);
+
+        while (remaining > 0 && System.nanoTime() < deadline) {
+            final ExpiryEntry entry = this.expiryQueue.peek();
+            if (entry == null || entry.dueTime > now) {
+                break;
+            }
+            this.expiryQueue.poll();
+            remaining--;
+
+            final GPClaim claim = entry.claim;
+            final GPClaimManager claimManager = (GPClaimManager) claim.getClaimManager();
+            if (claimManager.getClaimByUUID(claim.getUniqueId()).orElse(null) != claim) {
+                // claim was deleted or its world unloaded
+                this.queuedClaims.remove(claim);
                 continue;
             }
 
-            Iterator<GPClaim> iterator = ((ArrayList) claimList.clone()).iterator();
-            while (iterator.hasNext()) {
-                GPClaim claim = iterator.next();
-                final GPPlayerData playerData = claim.getOwnerPlayerData();
-                // skip administrative claims
-                if (claim.isAdminClaim() || !claim.getInternalClaimData().allowExpiration() || playerData == null) {
-                    continue;
-                }
+            claimsScanned++;
+            final long nextDueTime = this.checkExpiration(claim, claimManager, now);
+            if (nextDueTime < 0) {
+                this.queuedClaims.remove(claim);
+                continue;
+            }
+            // option changes are picked up at the next cleanup interval at the latest
+            entry.dueTime = Math.min(nextDueTime, now + recheckInterval);
+            this.expiryQueue.add(entry);
+        }
+    }
 
-                if (!playerData.dataInitialized) {
-                    continue;
-                }
+    // returns the number of claims visited, which counts against the per tick budget whether or not
+    // they were already queued. the cursor resumes from the same position on the next tick.
+    private int discoverClaims(long now, long recheckInterval, int limit) {
+        if (this.worldClaims == null && this.pendingWorlds.isEmpty()) {
+            if (now < this.nextDiscoveryTime) {
+                return 0;
+            }
+            if (this.nextDiscoveryTime != 0) {
+                GriefPreventionPlugin.addLogEntry("Claim expiration: scanned " + claimsScanned + ", expired " + claimsExpired
+                        + ", restored " + claimsRestored + ", queued " + this.expiryQueue.size() + ".", CustomLogEntryTypes.Debug);
+            }
+            this.nextDiscoveryTime = now + recheckInterval;
+            this.pendingWorlds.addAll(Sponge.getServer().getAllWorldProperties());
+        }
 
-                GriefPreventionConfig<?> activeConfig = GriefPreventionPlugin.getActiveConfig(worldProperties);
-                // determine area of the default chest claim
-                int areaOfDefaultClaim = 0;
-                if (activeConfig.getConfig().claim.autoChestClaimBlockRadius >= 0) {
-                    areaOfDefaultClaim = (int) Math.pow(activeConfig.getConfig().claim.autoChestClaimBlockRadius * 2 + 1, 2);
+        int visited = 0;
+        while (visited < limit) {
+            if (this.worldClaims == null || this.worldClaimIndex >= this.worldClaims.size()) {
+                final WorldProperties worldProperties = this.pendingWorlds.poll();
+                if (worldProperties == null) {
+                    this.worldClaims = null;
+                    break;
                 }
+                this.worldClaims = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(worldProperties).getWorldClaims();
+                this.worldClaimIndex = 0;
+                continue;
+            }
 
-                final Subject subject = playerData.getPlayerSubject();
-                Instant claimLastActive = claim.getInternalClaimData().getDateLastActive();
+            final GPClaim claim = (GPClaim) this.worldClaims.get(this.worldClaimIndex++);
+            visited++;
+            if (this.queuedClaims.add(claim)) {
+                this.expiryQueue.add(new ExpiryEntry(claim, now));
+            }
+        }
+        return visited;
+    }
 
-                try (final CauseStackManager.StackFrame frame = Sponge.getCauseStackManager().pushCauseFrame()) {
+    // expires the claim if needed, otherwise returns the time it should be checked again. returns -1 if the claim was removed
+    private long checkExpiration(GPClaim claim, GPClaimManager claimManager, long now) {
+        final GPPlayerData playerData = claim.getOwnerPlayerData();
+        // skip administrative claims
+        if (claim.isAdminClaim() || !claim.getInternalClaimData().allowExpiration() || playerData == null) {
+            return Long.MAX_VALUE;
+        }
+
+        if (!playerData.dataInitialized) {
+            return Long.MAX_VALUE;
+        }
+
+        final WorldProperties worldProperties = claim.getWorld().getProperties();
+        GriefPreventionConfig<?> activeConfig = GriefPreventionPlugin.getActiveConfig(worldProperties);
+        // determine area of the default chest claim
+        int areaOfDefaultClaim = 0;
+        if (activeConfig.getConfig().claim.autoChestClaimBlockRadius >= 0) {
+            areaOfDefaultClaim = (int) Math.pow(activeConfig.getConfig().claim.autoChestClaimBlockRadius * 2 + 1, 2);
+        }
+
+        final Instant localNow = Instant.ofEpochMilli(now);
+        final Instant claimLastActive = claim.getInternalClaimData().getDateLastActive();
+        long nextDueTime = Long.MAX_VALUE;
+
+        try (final CauseStackManager.StackFrame frame = Sponge.getCauseStackManager().pushCauseFrame()) {
+            // if this claim is a chest claim and those are set to expire
+            final int claimExpirationChest = playerData.getChestClaimExpiration();
+            if (claim.getArea() <= areaOfDefaultClaim && claimExpirationChest > 0) {
+                final Instant chestExpiration = claimLastActive.plus(Duration.ofDays(claimExpirationChest));
+                if (chestExpiration.isBefore(localNow)) {
                     Sponge.getCauseStackManager().addContext(GPContextKeys.CHEST_CLAIM_EXPIRED, GriefPreventionPlugin.instance.pluginContainer);
-                    // if this claim is a chest claim and those are set to expire
-                    final int claimExpirationChest = playerData.getChestClaimExpiration();
-                    if (claim.getArea() <= areaOfDefaultClaim && claimExpirationChest > 0) {
-                        if (claimLastActive.plus(Duration.ofDays(claimExpirationChest))
-                                .isBefore(Instant.now())) {
-                            Sponge.getCauseStackManager().addContext(GPContextKeys.CHEST_CLAIM_EXPIRED, GriefPreventionPlugin.instance.pluginContainer);
-
-                            claim.removeSurfaceFluids(null);
-                            claimManager.deleteClaim(claim);
-
-                            // if configured to do so, restore the land to natural
-                            if (GriefPreventionPlugin.instance.claimModeIsActive(worldProperties, ClaimsMode.Creative) || activeConfig
-                                    .getConfig().claim.claimAutoNatureRestore) {
-                                GriefPreventionPlugin.instance.restoreClaim(claim, 0);
-                            }
-
-                            GriefPreventionPlugin.addLogEntry(" " + claim.getOwnerName().toPlain() + "'s new player claim " + "'" + claim.id + "' expired.",
-                                    CustomLogEntryTypes.AdminActivity);
-                        }
+
+                    claim.removeSurfaceFluids(null);
+                    claimManager.deleteClaim(claim);
+                    claimsExpired++;
+
+                    // if configured to do so, restore the land to natural
+                    this.restoreClaim(claim, worldProperties, activeConfig);
+
+                    GriefPreventionPlugin.addLogEntry(" " + claim.getOwnerName().toPlain() + "'s new player claim " + "'" + claim.id + "' expired.",
+                            CustomLogEntryTypes.AdminActivity);
+                    return -1;
+                }
+                nextDueTime = chestExpiration.toEpochMilli();
+            }
+
+            if (playerData.optionClaimExpirationBasic > 0) {
+                final Instant basicExpiration = claimLastActive.plus(Duration.ofDays(playerData.optionClaimExpirationBasic));
+                final boolean claimActive = !basicExpiration.isBefore(localNow);
+                if (claimActive) {
+                    nextDueTime = Math.min(nextDueTime, basicExpiration.toEpochMilli());
+                    final boolean taxEnabled = activeConfig.getConfig().claim.bankTaxSystem;
+                    if (!taxEnabled || !claim.getData().isExpired()) {
+                        return nextDueTime;
+                    }
+                    final Instant taxPastDueDate = claim.getEconomyData().getTaxPastDueDate().orElse(null);
+                    if (taxPastDueDate == null) {
+                        return nextDueTime;
                     }
 
-                    if (playerData.optionClaimExpirationBasic > 0) {
-                        final Instant localNow = Instant.now();
-                        final boolean claimActive = !claimLastActive.plus(Duration.ofDays(playerData.optionClaimExpirationBasic)).isBefore(localNow);
-                        if (claimActive) {
-                            final boolean taxEnabled = activeConfig.getConfig().claim.bankTaxSystem;
-                            if (!taxEnabled || !claim.getData().isExpired()) {
-                                continue;
-                            }
-                            final Instant taxPastDueDate = claim.getEconomyData().getTaxPastDueDate().orElse(null);
-                            if (taxPastDueDate == null) {
-                                continue;
-                            }
-
-                            final int taxExpirationDays = GPOptionHandler.getClaimOptionDouble(subject, claim, GPOptions.Type.TAX_EXPIRATION, playerData).intValue();
-                            final int expireDaysToKeep = GPOptionHandler.getClaimOptionDouble(subject, claim, GPOptions.Type.EXPIRATION_DAYS_KEEP, playerData).intValue();
-                            if (!taxPastDueDate.plus(Duration.ofDays(taxExpirationDays + expireDaysToKeep)).isBefore(localNow)) {
-                                continue;
-                            }
-                        }
-
-                        Sponge.getCauseStackManager().addContext(GPContextKeys.PLAYER_CLAIM_EXPIRED, GriefPreventionPlugin.instance.pluginContainer);
-
-                        claimManager.deleteClaim(claim);
-                        GriefPreventionPlugin.addLogEntry("Removed " + claim.getOwnerName().toPlain() + "'s unused claim @ "
-                                        + GriefPreventionPlugin.getfriendlyLocationString(claim.getLesserBoundaryCorner()),
-                                CustomLogEntryTypes.AdminActivity);
-
-                        // if configured to do so, restore the land to natural
-                        if (GriefPreventionPlugin.instance.claimModeIsActive(worldProperties, ClaimsMode.Creative)
-                                || activeConfig.getConfig().claim.claimAutoNatureRestore) {
-                            // restore the claim area to natural state
-                            GriefPreventionPlugin.instance.restoreClaim(claim, 0);
-                        }
+                    final Subject subject = playerData.getPlayerSubject();
+                    final int taxExpirationDays = GPOptionHandler.getClaimOptionDouble(subject, claim, GPOptions.Type.TAX_EXPIRATION, playerData).intValue();
+                    final int expireDaysToKeep = GPOptionHandler.getClaimOptionDouble(subject, claim, GPOptions.Type.EXPIRATION_DAYS_KEEP, playerData).intValue();
+                    final Instant taxExpiration = taxPastDueDate.plus(Duration.ofDays(taxExpirationDays + expireDaysToKeep));
+                    if (!taxExpiration.isBefore(localNow)) {
+                        return Math.min(nextDueTime, taxExpiration.toEpochMilli());
                     }
                 }
+
+                Sponge.getCauseStackManager().addContext(GPContextKeys.PLAYER_CLAIM_EXPIRED, GriefPreventionPlugin.instance.pluginContainer);
+
+                claimManager.deleteClaim(claim);
+                claimsExpired++;
+                GriefPreventionPlugin.addLogEntry("Removed " + claim.getOwnerName().toPlain() + "'s unused claim @ "
+                                + GriefPreventionPlugin.getfriendlyLocationString(claim.getLesserBoundaryCorner()),
+                        CustomLogEntryTypes.AdminActivity);
+
+                // if configured to do so, restore the claim area to natural state
+                this.restoreClaim(claim, worldProperties, activeConfig);
+                return -1;
             }
         }
+        return nextDueTime;
+    }
+
+    private void restoreClaim(GPClaim claim, WorldProperties worldProperties, GriefPreventionConfig<?> activeConfig) {
+        if (GriefPreventionPlugin.instance.claimModeIsActive(worldProperties, ClaimsMode.Creative)
+                || activeConfig.getConfig().claim.claimAutoNatureRestore) {
+            GriefPreventionPlugin.instance.restoreClaim(claim, 0);
+            claimsRestored++;
+        }
+    }
+
+    private static final class ExpiryEntry {
+
+        private final GPClaim claim;
+        private long dueTime;
+
+        private ExpiryEntry(GPClaim claim, long dueTime) {
+            this.claim = claim;
+            this.dueTime = dueTime;
+        }
     }
 }
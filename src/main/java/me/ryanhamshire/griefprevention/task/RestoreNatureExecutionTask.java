@@ -29,9 +29,8 @@
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
 import me.ryanhamshire.griefprevention.api.claim.ClaimType;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
-import me.ryanhamshire.griefprevention.util.BlockUtils;
+import me.ryanhamshire.griefprevention.util.BlockStateVolume;
 import org.spongepowered.api.Sponge;
-import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.block.BlockTypes;
 import org.spongepowered.api.entity.Entity;
@@ -39,24 +38,36 @@
 import org.spongepowered.api.entity.living.animal.Animal;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.event.CauseStackManager;
+import org.spongepowered.api.scheduler.Task;
 import org.spongepowered.api.util.Direction;
 import org.spongepowered.api.world.BlockChangeFlags;
 import org.spongepowered.api.world.Chunk;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
-//this main thread task takes the output from the RestoreNatureProcessingTask\
-//and updates the world accordingly
-class RestoreNatureExecutionTask implements Runnable {
+//this main thread task takes the output from the RestoreNatureProcessingTask
+//and updates the world accordingly. changes are applied in small batches per tick
+//so restoring large areas does not stall the server
+class RestoreNatureExecutionTask {
+
+    // max main thread time spent applying restored blocks per tick, shared by all pending restorations
+    private static final long APPLY_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final Deque<RestoreNatureExecutionTask> PENDING = new ArrayDeque<>();
+    private static Task task;
 
     // results from processing thread
     // will be applied to the world
-    private final BlockSnapshot[][][] snapshots;
+    private final BlockStateVolume volume;
+    private final int[] changes;
+    private int cursor;
+    private GPClaim cachedClaim;
 
     // boundaries for changes
-    private final int miny;
     private final Location<World> lesserCorner;
     private final Location<World> greaterCorner;
 
@@ -64,35 +75,96 @@ class RestoreNatureExecutionTask implements Runnable {
     // when the restoration is complete)
     private final Player player;
 
-    public RestoreNatureExecutionTask(BlockSnapshot[][][] snapshots, int miny, Location<World> lesserCorner, Location<World> greaterCorner,
-                                      Player player) {
-        this.snapshots = snapshots;
-        this.miny = miny;
+    RestoreNatureExecutionTask(BlockStateVolume volume, int[] changes, Location<World> lesserCorner, Location<World> greaterCorner,
+                               Player player) {
+        this.volume = volume;
+        this.changes = changes;
         this.lesserCorner = lesserCorner;
         this.greaterCorner = greaterCorner;
         this.player = player;
     }
 
-    @Override
-    public void run() {
-        // apply changes to the world, but ONLY to unclaimed blocks
-        // note that the edge of the results is not applied (the 1-block-wide
-        // band around the outside of the chunk)
-        // those data were sent to the processing thread for reference
-        // purposes, but aren't part of the area selected for restoration
-        for (int x = 1; x < this.snapshots.length - 1; x++) {
-            for (int z = 1; z < this.snapshots[0][0].length - 1; z++) {
-                for (int y = this.miny; y < this.snapshots[0].length; y++) {
-                    BlockSnapshot blockUpdate = this.snapshots[x][y][z];
-                    BlockState currentBlock = blockUpdate.getLocation().get().getBlock();
-                    int originalMeta = BlockUtils.getBlockStateMeta(blockUpdate.getState());
-                    int newMeta = BlockUtils.getBlockStateMeta(currentBlock);
-                    if (!blockUpdate.getState().getType().equals(currentBlock.getType()) || originalMeta != newMeta) {
-                        blockUpdate.restore(true, BlockChangeFlags.PHYSICS);
-                    }
+    static synchronized void enqueue(RestoreNatureExecutionTask restoreTask) {
+        PENDING.add(restoreTask);
+        if (task == null) {
+            task = Sponge.getScheduler().createTaskBuilder()
+                    .intervalTicks(1)
+                    .execute(RestoreNatureExecutionTask::processPending)
+                    .submit(GriefPreventionPlugin.instance);
+        }
+    }
+
+    private static void processPending() {
+        final long deadline = System.nanoTime() + APPLY_BUDGET_NANOS;
+        while (System.nanoTime() < deadline) {
+            final RestoreNatureExecutionTask restoreTask = peek();
+            if (restoreTask == null) {
+                return;
+            }
+            if (restoreTask.apply(deadline)) {
+                restoreTask.complete();
+                remove(restoreTask);
+            }
+        }
+    }
+
+    private static synchronized RestoreNatureExecutionTask peek() {
+        final RestoreNatureExecutionTask restoreTask = PENDING.peek();
+        if (restoreTask == null && task != null) {
+            task.cancel();
+            task = null;
+        }
+        return restoreTask;
+    }
+
+    private static synchronized void remove(RestoreNatureExecutionTask restoreTask) {
+        PENDING.remove(restoreTask);
+    }
+
+    // applies changes until the deadline passes, returns true once all changes are applied
+    private boolean apply(long deadline) {
+        final World world = this.lesserCorner.getExtent();
+        if (!world.isLoaded()) {
+            return true;
+        }
+
+        try (final CauseStackManager.StackFrame frame = Sponge.getCauseStackManager().pushCauseFrame()) {
+            Sponge.getCauseStackManager().pushCause(GriefPreventionPlugin.instance);
+            while (this.cursor < this.changes.length) {
+                // only check the clock every 16 blocks
+                if ((this.cursor & 15) == 0 && System.nanoTime() >= deadline) {
+                    return false;
+                }
+
+                final int index = this.changes[this.cursor++];
+                final int x = this.volume.getOriginX() + this.volume.getX(index);
+                final int y = this.volume.getY(index);
+                final int z = this.volume.getOriginZ() + this.volume.getZ(index);
+
+                // skip blocks changed since the volume was captured
+                final BlockState currentState = world.getBlock(x, y, z);
+                if (currentState != this.volume.getOriginalState(index)) {
+                    continue;
                 }
+
+                // apply changes to the world, but ONLY to unclaimed blocks
+                final Location<World> location = new Location<>(world, x, y, z);
+                final GPClaim claim = GriefPreventionPlugin.instance.dataStore.getClaimAt(location, this.cachedClaim);
+                this.cachedClaim = claim;
+                if (claim != null && !claim.isWilderness()) {
+                    continue;
+                }
+
+                location.setBlock(this.volume.getState(index), BlockChangeFlags.PHYSICS);
             }
         }
+        return true;
+    }
+
+    private void complete() {
+        if (!this.lesserCorner.getExtent().isLoaded()) {
+            return;
+        }
 
         // clean up any entities in the chunk, ensure no players are suffocated
         Optional<Chunk> chunk = this.lesserCorner.getExtent().getChunk(this.lesserCorner.getBlockX() >> 4, 0, this.lesserCorner.getBlockZ() >> 4);
@@ -119,7 +191,7 @@ public void run() {
         }
 
         // show visualization to player who started the restoration
-        if (player != null) {
+        if (this.player != null && this.player.isOnline()) {
             GPPlayerData playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(player.getWorld(), player.getUniqueId());
             GPClaim claim = new GPClaim(this.lesserCorner, this.greaterCorner, ClaimType.BASIC, false);
             // TODO
@@ -25,11 +25,8 @@
  */
 package me.ryanhamshire.griefprevention.task;
 
-import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
-import me.ryanhamshire.griefprevention.util.BlockUtils;
-import net.minecraft.block.state.IBlockState;
-import org.spongepowered.api.Sponge;
-import org.spongepowered.api.block.BlockSnapshot;
+import me.ryanhamshire.griefprevention.util.BlockStateVolume;
+import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.block.BlockTypes;
 import org.spongepowered.api.block.trait.EnumTraits;
@@ -42,8 +39,9 @@
 import org.spongepowered.api.world.biome.BiomeTypes;
 
 import java.util.ArrayList;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 
 //non-main-thread task which processes world data to repair the unnatural
 //after processing is complete, creates a main thread task to make the necessary changes to the world
@@ -51,7 +49,10 @@ public class RestoreNatureProcessingTask implements Runnable {
 
     // world information captured from the main thread
     // will be updated and sent back to main thread to be applied to the world
-    private final BlockSnapshot[][][] snapshots;
+    private final BlockStateVolume volume;
+    private final int sizeX;
+    private final int height;
+    private final int sizeZ;
 
     // other information collected from the main thread.
     // not to be updated, only to be passed back to main thread to provide some
@@ -69,15 +70,18 @@ public class RestoreNatureProcessingTask implements Runnable {
 
     // two lists of materials
     // natural blocks which don't naturally hang in their air
-    private final ArrayList<BlockType> notAllowedToHang;
+    private final Set<BlockType> notAllowedToHang;
 
     // a "complete" list of player-placed blocks. MUST BE MAINTAINED as patches introduce more
-    private final ArrayList<BlockType> playerBlocks;
+    private final Set<BlockType> playerBlocks;
 
-    public RestoreNatureProcessingTask(BlockSnapshot[][][] snapshots, int miny, DimensionType environment, BiomeType biome,
+    public RestoreNatureProcessingTask(BlockStateVolume volume, int miny, DimensionType environment, BiomeType biome,
                                        Location<World> lesserBoundaryCorner, Location<World> greaterBoundaryCorner, int seaLevel, boolean aggressiveMode, boolean creativeMode,
                                        Player player) {
-        this.snapshots = snapshots;
+        this.volume = volume;
+        this.sizeX = volume.getSizeX();
+        this.height = volume.getHeight();
+        this.sizeZ = volume.getSizeZ();
         this.miny = miny;
         if (this.miny < 0) {
             this.miny = 0;
@@ -91,7 +95,7 @@ public RestoreNatureProcessingTask(BlockSnapshot[][][] snapshots, int miny, Dime
         this.player = player;
         this.creativeMode = creativeMode;
 
-        this.notAllowedToHang = new ArrayList<BlockType>();
+        this.notAllowedToHang = new HashSet<>();
         this.notAllowedToHang.add(BlockTypes.DIRT);
         this.notAllowedToHang.add(BlockTypes.TALLGRASS);
         this.notAllowedToHang.add(BlockTypes.SNOW);
@@ -102,8 +106,7 @@ public RestoreNatureProcessingTask(BlockSnapshot[][][] snapshots, int miny, Dime
             this.notAllowedToHang.add(BlockTypes.STONE);
         }
 
-        this.playerBlocks = new ArrayList<BlockType>();
-        this.playerBlocks.addAll(RestoreNatureProcessingTask.getPlayerBlocks(this.environment, this.biome));
+        this.playerBlocks = new HashSet<>(RestoreNatureProcessingTask.getPlayerBlocks(this.environment, this.biome));
 
         // in aggressive or creative world mode, also treat these blocks as user placed, to be removed
         // this is helpful in the few cases where griefers intentionally use natural blocks to grief,
@@ -293,10 +296,20 @@ public void run() {
         // remove any player-placed leaves
         this.removePlayerLeaves();
 
-        // schedule main thread task to apply the result to the world
-        RestoreNatureExecutionTask task =
-                new RestoreNatureExecutionTask(this.snapshots, this.miny, this.lesserBoundaryCorner, this.greaterBoundaryCorner, this.player);
-        Sponge.getGame().getScheduler().createTaskBuilder().execute(task).submit(GriefPreventionPlugin.instance);
+        // queue the changes to be applied to the world on the main thread
+        // note that the edge of the volume (the 1-block-wide band around the outside of the chunk)
+        // is only used for reference and is never applied
+        final int[] changes = this.volume.getChanges(1, this.miny);
+        RestoreNatureExecutionTask.enqueue(new RestoreNatureExecutionTask(this.volume, changes, this.lesserBoundaryCorner,
+                this.greaterBoundaryCorner, this.player));
+    }
+
+    private void setAir(int x, int y, int z) {
+        this.volume.setState(x, y, z, BlockTypes.AIR.getDefaultState());
+    }
+
+    private boolean isSourceWater(int x, int y, int z) {
+        return this.volume.getType(x, y, z) == BlockTypes.WATER && this.volume.getMeta(x, y, z) == 0;
     }
 
     private void removePlayerLeaves() {
@@ -304,13 +317,12 @@ private void removePlayerLeaves() {
             return;
         }
 
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                for (int y = this.seaLevel - 1; y < snapshots[0].length; y++) {
+        for (int x = 1; x < this.sizeX - 1; x++) {
+            for (int z = 1; z < this.sizeZ - 1; z++) {
+                for (int y = this.seaLevel - 1; y < this.height; y++) {
                     // note: see minecraft wiki data values for leaves
-                    BlockSnapshot block = snapshots[x][y][z];
-                    if (block.getState().getType() == BlockTypes.LEAVES && (BlockUtils.getBlockStateMeta(block.getState()) & 0x4) != 0) {
-                        snapshots[x][y][z] = block.withState(BlockTypes.AIR.getDefaultState());
+                    if (this.volume.getType(x, y, z) == BlockTypes.LEAVES && (this.volume.getMeta(x, y, z) & 0x4) != 0) {
+                        this.setAir(x, y, z);
                     }
                 }
             }
@@ -320,35 +332,35 @@ private void removePlayerLeaves() {
     // converts sandstone adjacent to sand to sand, and any other sandstone to
     // air
     private void removeSandstone() {
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                for (int y = snapshots[0].length - 2; y > miny; y--) {
-                    if (snapshots[x][y][z].getState().getType() != BlockTypes.SANDSTONE) {
+        for (int x = 1; x < this.sizeX - 1; x++) {
+            for (int z = 1; z < this.sizeZ - 1; z++) {
+                for (int y = this.height - 2; y > this.miny; y--) {
+                    if (this.volume.getType(x, y, z) != BlockTypes.SANDSTONE) {
                         continue;
                     }
 
-                    BlockSnapshot leftBlock = this.snapshots[x + 1][y][z];
-                    BlockSnapshot rightBlock = this.snapshots[x - 1][y][z];
-                    BlockSnapshot upBlock = this.snapshots[x][y][z + 1];
-                    BlockSnapshot downBlock = this.snapshots[x][y][z - 1];
-                    BlockSnapshot underBlock = this.snapshots[x][y - 1][z];
-                    BlockSnapshot aboveBlock = this.snapshots[x][y + 1][z];
+                    final BlockType leftBlock = this.volume.getType(x + 1, y, z);
+                    final BlockType rightBlock = this.volume.getType(x - 1, y, z);
+                    final BlockType upBlock = this.volume.getType(x, y, z + 1);
+                    final BlockType downBlock = this.volume.getType(x, y, z - 1);
+                    final BlockType underBlock = this.volume.getType(x, y - 1, z);
+                    final BlockType aboveBlock = this.volume.getType(x, y + 1, z);
 
                     // skip blocks which may cause a cave-in
-                    if (aboveBlock.getState().getType() == BlockTypes.SAND && underBlock.getState().getType() == BlockTypes.AIR) {
+                    if (aboveBlock == BlockTypes.SAND && underBlock == BlockTypes.AIR) {
                         continue;
                     }
 
                     // count adjacent non-air/non-leaf blocks
-                    if (leftBlock.getState().getType() == BlockTypes.SAND ||
-                            rightBlock.getState().getType() == BlockTypes.SAND ||
-                            upBlock.getState().getType() == BlockTypes.SAND ||
-                            downBlock.getState().getType() == BlockTypes.SAND ||
-                            aboveBlock.getState().getType() == BlockTypes.SAND ||
-                            underBlock.getState().getType() == BlockTypes.SAND) {
-                        snapshots[x][y][z] = snapshots[x][y][z].withState(BlockTypes.SAND.getDefaultState());
+                    if (leftBlock == BlockTypes.SAND ||
+                            rightBlock == BlockTypes.SAND ||
+                            upBlock == BlockTypes.SAND ||
+                            downBlock == BlockTypes.SAND ||
+                            aboveBlock == BlockTypes.SAND ||
+                            underBlock == BlockTypes.SAND) {
+                        this.volume.setState(x, y, z, BlockTypes.SAND.getDefaultState());
                     } else {
-                        snapshots[x][y][z] = snapshots[x][y][z].withState(BlockTypes.AIR.getDefaultState());
+                        this.setAir(x, y, z);
                     }
                 }
             }
@@ -360,38 +372,29 @@ private void reduceStone() {
             return;
         }
 
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
+        for (int x = 1; x < this.sizeX - 1; x++) {
+            for (int z = 1; z < this.sizeZ - 1; z++) {
                 int thisy = this.highestY(x, z, true);
 
-                while (thisy > this.seaLevel - 1 && (this.snapshots[x][thisy][z].getState().getType() == BlockTypes.STONE
-                        || this.snapshots[x][thisy][z].getState().getType() == BlockTypes.SANDSTONE)) {
-                    BlockSnapshot leftBlock = this.snapshots[x + 1][thisy][z];
-                    BlockSnapshot rightBlock = this.snapshots[x - 1][thisy][z];
-                    BlockSnapshot upBlock = this.snapshots[x][thisy][z + 1];
-                    BlockSnapshot downBlock = this.snapshots[x][thisy][z - 1];
-
+                while (thisy > this.seaLevel - 1 && (this.volume.getType(x, thisy, z) == BlockTypes.STONE
+                        || this.volume.getType(x, thisy, z) == BlockTypes.SANDSTONE)) {
                     // count adjacent non-air/non-leaf blocks
                     byte adjacentBlockCount = 0;
-                    if (leftBlock.getState().getType() != BlockTypes.AIR && leftBlock.getState().getType() != BlockTypes.LEAVES
-                            && leftBlock.getState().getType() != BlockTypes.VINE) {
+                    if (this.isSolid(this.volume.getType(x + 1, thisy, z))) {
                         adjacentBlockCount++;
                     }
-                    if (rightBlock.getState().getType() != BlockTypes.AIR && rightBlock.getState().getType() != BlockTypes.LEAVES
-                            && rightBlock.getState().getType() != BlockTypes.VINE) {
+                    if (this.isSolid(this.volume.getType(x - 1, thisy, z))) {
                         adjacentBlockCount++;
                     }
-                    if (downBlock.getState().getType() != BlockTypes.AIR && downBlock.getState().getType() != BlockTypes.LEAVES
-                            && downBlock.getState().getType() != BlockTypes.VINE) {
+                    if (this.isSolid(this.volume.getType(x, thisy, z - 1))) {
                         adjacentBlockCount++;
                     }
-                    if (upBlock.getState().getType() != BlockTypes.AIR && upBlock.getState().getType() != BlockTypes.LEAVES
-                            && upBlock.getState().getType() != BlockTypes.VINE) {
+                    if (this.isSolid(this.volume.getType(x, thisy, z + 1))) {
                         adjacentBlockCount++;
                     }
 
                     if (adjacentBlockCount < 3) {
-                        this.snapshots[x][thisy][z] = this.snapshots[x][thisy][z].withState(BlockTypes.AIR.getDefaultState());
+                        this.setAir(x, thisy, z);
                     }
 
                     thisy--;
@@ -400,6 +403,10 @@ private void reduceStone() {
         }
     }
 
+    private boolean isSolid(BlockType type) {
+        return type != BlockTypes.AIR && type != BlockTypes.LEAVES && type != BlockTypes.VINE;
+    }
+
     private void reduceLogs() {
         if (this.seaLevel < 1) {
             return;
@@ -408,35 +415,30 @@ private void reduceLogs() {
         boolean jungleBiome = this.biome == BiomeTypes.JUNGLE || this.biome == BiomeTypes.JUNGLE_HILLS;
 
         // scan all blocks above sea level
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                for (int y = this.seaLevel - 1; y < snapshots[0].length; y++) {
-                    BlockSnapshot block = snapshots[x][y][z];
+        for (int x = 1; x < this.sizeX - 1; x++) {
+            for (int z = 1; z < this.sizeZ - 1; z++) {
+                for (int y = this.seaLevel - 1; y < this.height; y++) {
+                    final BlockType type = this.volume.getType(x, y, z);
 
                     // skip non-logs
-                    if (block.getState().getType() != BlockTypes.LOG) {
+                    if (type != BlockTypes.LOG) {
                         continue;
                     }
-                    if (block.getState().getType() != BlockTypes.LOG2) {
+                    if (type != BlockTypes.LOG2) {
                         continue;
                     }
 
                     // if in jungle biome, skip jungle logs
-                    Optional<? extends Enum<?>> enumProperty = block.getState().getTraitValue(EnumTraits.LOG_VARIANT);
+                    Optional<? extends Enum<?>> enumProperty = this.volume.getState(x, y, z).getTraitValue(EnumTraits.LOG_VARIANT);
                     if (jungleBiome && enumProperty.isPresent() && enumProperty.get().name().equalsIgnoreCase("jungle")) {
                         continue;
                     }
 
                     // examine adjacent blocks for logs
-                    BlockSnapshot leftBlock = this.snapshots[x + 1][y][z];
-                    BlockSnapshot rightBlock = this.snapshots[x - 1][y][z];
-                    BlockSnapshot upBlock = this.snapshots[x][y][z + 1];
-                    BlockSnapshot downBlock = this.snapshots[x][y][z - 1];
-
                     // if any, remove the log
-                    if (leftBlock.getState().getType() == BlockTypes.LOG || rightBlock.getState().getType() == BlockTypes.LOG
-                            || upBlock.getState().getType() == BlockTypes.LOG || downBlock.getState().getType() == BlockTypes.LOG) {
-                        this.snapshots[x][y][z] = this.snapshots[x][y][z].withState(BlockTypes.AIR.getDefaultState());
+                    if (this.volume.getType(x + 1, y, z) == BlockTypes.LOG || this.volume.getType(x - 1, y, z) == BlockTypes.LOG
+                            || this.volume.getType(x, y, z + 1) == BlockTypes.LOG || this.volume.getType(x, y, z - 1) == BlockTypes.LOG) {
+                        this.setAir(x, y, z);
                     }
                 }
             }
@@ -450,12 +452,11 @@ private void removePlayerBlocks() {
         }
 
         // remove all player blocks
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                for (int y = miny; y < snapshots[0].length - 1; y++) {
-                    BlockSnapshot block = snapshots[x][y][z];
-                    if (this.playerBlocks.contains(block.getState().getType())) {
-                        snapshots[x][y][z] = block.withState(BlockTypes.AIR.getDefaultState());
+        for (int x = 1; x < this.sizeX - 1; x++) {
+            for (int z = 1; z < this.sizeZ - 1; z++) {
+                for (int y = miny; y < this.height - 1; y++) {
+                    if (this.playerBlocks.contains(this.volume.getType(x, y, z))) {
+                        this.setAir(x, y, z);
                     }
                 }
             }
@@ -468,16 +469,14 @@ private void removeHanging() {
             miny = 1;
         }
 
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                for (int y = miny; y < snapshots[0].length - 1; y++) {
-                    BlockSnapshot block = snapshots[x][y][z];
-                    BlockSnapshot underBlock = snapshots[x][y - 1][z];
-
-                    if (underBlock.getState().getType() == BlockTypes.AIR || underBlock.getState().getType() == BlockTypes.WATER
-                            || underBlock.getState().getType() == BlockTypes.LAVA || underBlock.getState().getType() == BlockTypes.LEAVES) {
-                        if (this.notAllowedToHang.contains(block.getState().getType())) {
-                            snapshots[x][y][z] = block.withState(BlockTypes.AIR.getDefaultState());
+        for (int x = 1; x < this.sizeX - 1; x++) {
+            for (int z = 1; z < this.sizeZ - 1; z++) {
+                for (int y = miny; y < this.height - 1; y++) {
+                    final BlockType underBlock = this.volume.getType(x, y - 1, z);
+                    if (underBlock == BlockTypes.AIR || underBlock == BlockTypes.WATER
+                            || underBlock == BlockTypes.LAVA || underBlock == BlockTypes.LEAVES) {
+                        if (this.notAllowedToHang.contains(this.volume.getType(x, y, z))) {
+                            this.setAir(x, y, z);
                         }
                     }
                 }
@@ -486,42 +485,42 @@ private void removeHanging() {
     }
 
     private void removeWallsAndTowers() {
-        List<BlockType> excludedBlocksArray = new ArrayList<BlockType>();
-        excludedBlocksArray.add(BlockTypes.CACTUS);
-        excludedBlocksArray.add(BlockTypes.TALLGRASS);
-        excludedBlocksArray.add(BlockTypes.RED_MUSHROOM);
-        excludedBlocksArray.add(BlockTypes.BROWN_MUSHROOM);
-        excludedBlocksArray.add(BlockTypes.DEADBUSH);
-        excludedBlocksArray.add(BlockTypes.SAPLING);
-        excludedBlocksArray.add(BlockTypes.YELLOW_FLOWER);
-        excludedBlocksArray.add(BlockTypes.RED_FLOWER);
-        excludedBlocksArray.add(BlockTypes.REEDS);
-        excludedBlocksArray.add(BlockTypes.VINE);
-        excludedBlocksArray.add(BlockTypes.PUMPKIN);
-        excludedBlocksArray.add(BlockTypes.WATERLILY);
-        excludedBlocksArray.add(BlockTypes.LEAVES);
+        Set<BlockType> excludedBlocks = new HashSet<>();
+        excludedBlocks.add(BlockTypes.CACTUS);
+        excludedBlocks.add(BlockTypes.TALLGRASS);
+        excludedBlocks.add(BlockTypes.RED_MUSHROOM);
+        excludedBlocks.add(BlockTypes.BROWN_MUSHROOM);
+        excludedBlocks.add(BlockTypes.DEADBUSH);
+        excludedBlocks.add(BlockTypes.SAPLING);
+        excludedBlocks.add(BlockTypes.YELLOW_FLOWER);
+        excludedBlocks.add(BlockTypes.RED_FLOWER);
+        excludedBlocks.add(BlockTypes.REEDS);
+        excludedBlocks.add(BlockTypes.VINE);
+        excludedBlocks.add(BlockTypes.PUMPKIN);
+        excludedBlocks.add(BlockTypes.WATERLILY);
+        excludedBlocks.add(BlockTypes.LEAVES);
 
         boolean changed;
         do {
             changed = false;
-            for (int x = 1; x < snapshots.length - 1; x++) {
-                for (int z = 1; z < snapshots[0][0].length - 1; z++) {
+            for (int x = 1; x < this.sizeX - 1; x++) {
+                for (int z = 1; z < this.sizeZ - 1; z++) {
                     int thisy = this.highestY(x, z, false);
-                    if (excludedBlocksArray.contains(this.snapshots[x][thisy][z].getState().getType())) {
+                    if (excludedBlocks.contains(this.volume.getType(x, thisy, z))) {
                         continue;
                     }
 
                     int righty = this.highestY(x + 1, z, false);
                     int lefty = this.highestY(x - 1, z, false);
                     while (lefty < thisy && righty < thisy) {
-                        this.snapshots[x][thisy--][z] = this.snapshots[x][thisy--][z].withState(BlockTypes.AIR.getDefaultState());
+                        this.setAir(x, thisy--, z);
                         changed = true;
                     }
 
                     int upy = this.highestY(x, z + 1, false);
                     int downy = this.highestY(x, z - 1, false);
                     while (upy < thisy && downy < thisy) {
-                        this.snapshots[x][thisy--][z] = this.snapshots[x][thisy--][z].withState(BlockTypes.AIR.getDefaultState());
+                        this.setAir(x, thisy--, z);
                         changed = true;
                     }
                 }
@@ -530,18 +529,17 @@ private void removeWallsAndTowers() {
     }
 
     private void coverSurfaceStone() {
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
+        for (int x = 1; x < this.sizeX - 1; x++) {
+            for (int z = 1; z < this.sizeZ - 1; z++) {
                 int y = this.highestY(x, z, true);
-                BlockSnapshot block = snapshots[x][y][z];
+                final BlockType type = this.volume.getType(x, y, z);
 
-                if (block.getState().getType() == BlockTypes.STONE || block.getState().getType() == BlockTypes.GRAVEL
-                        || block.getState().getType() == BlockTypes.FARMLAND
-                        || block.getState().getType() == BlockTypes.DIRT || block.getState().getType() == BlockTypes.SANDSTONE) {
+                if (type == BlockTypes.STONE || type == BlockTypes.GRAVEL || type == BlockTypes.FARMLAND
+                        || type == BlockTypes.DIRT || type == BlockTypes.SANDSTONE) {
                     if (this.biome == BiomeTypes.DESERT || this.biome == BiomeTypes.DESERT_HILLS || this.biome == BiomeTypes.BEACH) {
-                        this.snapshots[x][y][z] = this.snapshots[x][y][z].withState(BlockTypes.SAND.getDefaultState());
+                        this.volume.setState(x, y, z, BlockTypes.SAND.getDefaultState());
                     } else {
-                        this.snapshots[x][y][z] = this.snapshots[x][y][z].withState(BlockTypes.GRASS.getDefaultState());
+                        this.volume.setState(x, y, z, BlockTypes.GRASS.getDefaultState());
                     }
                 }
             }
@@ -549,13 +547,13 @@ private void coverSurfaceStone() {
     }
 
     private void fillHolesAndTrenches() {
-        ArrayList<BlockType> fillableBlocks = new ArrayList<BlockType>();
+        Set<BlockType> fillableBlocks = new HashSet<>();
         fillableBlocks.add(BlockTypes.AIR);
         fillableBlocks.add(BlockTypes.WATER);
         fillableBlocks.add(BlockTypes.LAVA);
         fillableBlocks.add(BlockTypes.TALLGRASS);
 
-        ArrayList<BlockType> notSuitableForFillBlocks = new ArrayList<BlockType>();
+        Set<BlockType> notSuitableForFillBlocks = new HashSet<>();
         notSuitableForFillBlocks.add(BlockTypes.TALLGRASS);
         notSuitableForFillBlocks.add(BlockTypes.CACTUS);
         notSuitableForFillBlocks.add(BlockTypes.WATER);
@@ -566,30 +564,29 @@ private void fillHolesAndTrenches() {
         boolean changed;
         do {
             changed = false;
-            for (int x = 1; x < snapshots.length - 1; x++) {
-                for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                    for (int y = 0; y < snapshots[0].length - 1; y++) {
-                        BlockSnapshot block = this.snapshots[x][y][z];
-                        if (!fillableBlocks.contains(block.getState().getType())) {
+            for (int x = 1; x < this.sizeX - 1; x++) {
+                for (int z = 1; z < this.sizeZ - 1; z++) {
+                    for (int y = 0; y < this.height - 1; y++) {
+                        if (!fillableBlocks.contains(this.volume.getType(x, y, z))) {
                             continue;
                         }
 
-                        BlockSnapshot leftBlock = this.snapshots[x + 1][y][z];
-                        BlockSnapshot rightBlock = this.snapshots[x - 1][y][z];
+                        final BlockType leftBlock = this.volume.getType(x + 1, y, z);
+                        final BlockType rightBlock = this.volume.getType(x - 1, y, z);
 
-                        if (!fillableBlocks.contains(leftBlock.getState().getType()) && !fillableBlocks.contains(rightBlock.getState().getType())) {
-                            if (!notSuitableForFillBlocks.contains(rightBlock.getState().getType())) {
-                                this.snapshots[x][y][z] = block.withState(rightBlock.getState().getType().getDefaultState());
+                        if (!fillableBlocks.contains(leftBlock) && !fillableBlocks.contains(rightBlock)) {
+                            if (!notSuitableForFillBlocks.contains(rightBlock)) {
+                                this.volume.setState(x, y, z, rightBlock.getDefaultState());
                                 changed = true;
                             }
                         }
 
-                        BlockSnapshot upBlock = this.snapshots[x][y][z + 1];
-                        BlockSnapshot downBlock = this.snapshots[x][y][z - 1];
+                        final BlockType upBlock = this.volume.getType(x, y, z + 1);
+                        final BlockType downBlock = this.volume.getType(x, y, z - 1);
 
-                        if (!fillableBlocks.contains(upBlock.getState().getType()) && !fillableBlocks.contains(downBlock.getState().getType())) {
-                            if (!notSuitableForFillBlocks.contains(downBlock.getState().getType())) {
-                                this.snapshots[x][y][z] = block.withState(downBlock.getState().getType().getDefaultState());
+                        if (!fillableBlocks.contains(upBlock) && !fillableBlocks.contains(downBlock)) {
+                            if (!notSuitableForFillBlocks.contains(downBlock)) {
+                                this.volume.setState(x, y, z, downBlock.getDefaultState());
                                 changed = true;
                             }
                         }
@@ -608,14 +605,13 @@ private void fixWater() {
         boolean changed;
 
         // remove hanging water or lava
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                for (int y = miny; y < snapshots[0].length - 1; y++) {
-                    BlockSnapshot block = this.snapshots[x][y][z];
-                    BlockSnapshot underBlock = this.snapshots[x][y - 1][z];
-                    if (block.getState().getType() == BlockTypes.WATER || block.getState().getType() == BlockTypes.LAVA) {
-                        if (underBlock.getState().getType() == BlockTypes.AIR || (((IBlockState) underBlock.getState()).getBlock().getMetaFromState((IBlockState) underBlock.getState()) != 0)) {
-                            this.snapshots[x][y][z] = block.withState(BlockTypes.AIR.getDefaultState());
+        for (int x = 1; x < this.sizeX - 1; x++) {
+            for (int z = 1; z < this.sizeZ - 1; z++) {
+                for (int y = miny; y < this.height - 1; y++) {
+                    final BlockType type = this.volume.getType(x, y, z);
+                    if (type == BlockTypes.WATER || type == BlockTypes.LAVA) {
+                        if (this.volume.getType(x, y - 1, z) == BlockTypes.AIR || this.volume.getMeta(x, y - 1, z) != 0) {
+                            this.setAir(x, y, z);
                         }
                     }
                 }
@@ -623,49 +619,38 @@ private void fixWater() {
         }
 
         // fill water depressions
+        final BlockState water = BlockTypes.WATER.getDefaultState();
         do {
             changed = false;
-            for (int y = Math.max(this.seaLevel - 10, 0); y <= this.seaLevel; y++) {
-                for (int x = 1; x < snapshots.length - 1; x++) {
-                    for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                        BlockSnapshot block = snapshots[x][y][z];
-
+            for (int y = Math.max(this.seaLevel - 10, 1); y <= this.seaLevel && y < this.height; y++) {
+                for (int x = 1; x < this.sizeX - 1; x++) {
+                    for (int z = 1; z < this.sizeZ - 1; z++) {
                         // only consider air blocks and flowing water blocks for upgrade to water source blocks
-                        if (block.getState().getType() == BlockTypes.AIR || (block.getState().getType() == BlockTypes.WATER
-                                && (((IBlockState) block.getState()).getBlock().getMetaFromState((IBlockState) block.getState())) != 0)) {
-                            BlockSnapshot leftBlock = this.snapshots[x + 1][y][z];
-                            BlockSnapshot rightBlock = this.snapshots[x - 1][y][z];
-                            BlockSnapshot upBlock = this.snapshots[x][y][z + 1];
-                            BlockSnapshot downBlock = this.snapshots[x][y][z - 1];
-                            BlockSnapshot underBlock = this.snapshots[x][y - 1][z];
-
+                        final BlockType type = this.volume.getType(x, y, z);
+                        if (type == BlockTypes.AIR || (type == BlockTypes.WATER && this.volume.getMeta(x, y, z) != 0)) {
                             // block underneath MUST be source water
-                            if (underBlock.getState().getType() != BlockTypes.WATER
-                                    || (((IBlockState) underBlock.getState()).getBlock().getMetaFromState((IBlockState) underBlock.getState())) != 0) {
+                            if (!this.isSourceWater(x, y - 1, z)) {
                                 continue;
                             }
 
                             // count adjacent source water blocks
                             byte adjacentSourceWaterCount = 0;
-                            if (leftBlock.getState().getType() == BlockTypes.WATER
-                                    && (((IBlockState) leftBlock.getState()).getBlock().getMetaFromState((IBlockState) leftBlock.getState())) == 0) {
+                            if (this.isSourceWater(x + 1, y, z)) {
                                 adjacentSourceWaterCount++;
                             }
-                            if (rightBlock.getState().getType() == BlockTypes.WATER
-                                    && (((IBlockState) rightBlock.getState()).getBlock().getMetaFromState((IBlockState) rightBlock.getState())) == 0) {
+                            if (this.isSourceWater(x - 1, y, z)) {
                                 adjacentSourceWaterCount++;
                             }
-                            if (upBlock.getState().getType() == BlockTypes.WATER && (((IBlockState) upBlock.getState()).getBlock().getMetaFromState((IBlockState) upBlock.getState())) == 0) {
+                            if (this.isSourceWater(x, y, z + 1)) {
                                 adjacentSourceWaterCount++;
                             }
-                            if (downBlock.getState().getType() == BlockTypes.WATER
-                                    && (((IBlockState) downBlock.getState()).getBlock().getMetaFromState((IBlockState) downBlock.getState())) == 0) {
+                            if (this.isSourceWater(x, y, z - 1)) {
                                 adjacentSourceWaterCount++;
                             }
 
                             // at least two adjacent blocks must be source water
                             if (adjacentSourceWaterCount >= 2) {
-                                snapshots[x][y][z] = block.withState(BlockTypes.WATER.getDefaultState());
+                                this.volume.setState(x, y, z, water);
                                 changed = true;
                             }
                         }
@@ -687,13 +672,12 @@ private void removeDumpedFluids() {
         if (this.environment.equals(DimensionTypes.NETHER)) {
             return;
         }
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                for (int y = this.seaLevel - 1; y < snapshots[0].length - 1; y++) {
-                    BlockSnapshot block = snapshots[x][y][z];
-                    if (block.getState().getType() == BlockTypes.WATER || block.getState().getType() == BlockTypes.LAVA ||
-                            block.getState().getType() == BlockTypes.WATER || block.getState().getType() == BlockTypes.LAVA) {
-                        snapshots[x][y][z] = block.withState(BlockTypes.AIR.getDefaultState());
+        for (int x = 1; x < this.sizeX - 1; x++) {
+            for (int z = 1; z < this.sizeZ - 1; z++) {
+                for (int y = this.seaLevel - 1; y < this.height - 1; y++) {
+                    final BlockType type = this.volume.getType(x, y, z);
+                    if (type == BlockTypes.WATER || type == BlockTypes.LAVA) {
+                        this.setAir(x, y, z);
                     }
                 }
             }
@@ -702,15 +686,15 @@ private void removeDumpedFluids() {
 
     private int highestY(int x, int z, boolean ignoreLeaves) {
         int y;
-        for (y = snapshots[0].length - 1; y > 0; y--) {
-            BlockSnapshot block = this.snapshots[x][y][z];
-            if (block.getState().getType() != BlockTypes.AIR &&
-                    !(ignoreLeaves && block.getState().getType() == BlockTypes.SNOW) &&
-                    !(ignoreLeaves && block.getState().getType() == BlockTypes.LEAVES) &&
-                    !(block.getState().getType() == BlockTypes.WATER) &&
-                    !(block.getState().getType() == BlockTypes.FLOWING_WATER) &&
-                    !(block.getState().getType() == BlockTypes.LAVA) &&
-                    !(block.getState().getType() == BlockTypes.FLOWING_LAVA)) {
+        for (y = this.height - 1; y > 0; y--) {
+            final BlockType type = this.volume.getType(x, y, z);
+            if (type != BlockTypes.AIR &&
+                    !(ignoreLeaves && type == BlockTypes.SNOW) &&
+                    !(ignoreLeaves && type == BlockTypes.LEAVES) &&
+                    !(type == BlockTypes.WATER) &&
+                    !(type == BlockTypes.FLOWING_WATER) &&
+                    !(type == BlockTypes.LAVA) &&
+                    !(type == BlockTypes.FLOWING_LAVA)) {
                 return y;
             }
         }
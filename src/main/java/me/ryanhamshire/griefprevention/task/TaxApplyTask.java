@@ -33,10 +33,12 @@
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.economy.GPBankTransaction;
 import me.ryanhamshire.griefprevention.event.GPTaxClaimEvent;
+import me.ryanhamshire.griefprevention.logging.CustomLogEntryTypes;
 import me.ryanhamshire.griefprevention.permission.GPOptionHandler;
 import me.ryanhamshire.griefprevention.permission.GPOptions;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.event.CauseStackManager;
+import org.spongepowered.api.scheduler.Task;
 import org.spongepowered.api.service.economy.EconomyService;
 import org.spongepowered.api.service.economy.account.Account;
 import org.spongepowered.api.service.economy.transaction.ResultType;
@@ -47,16 +49,29 @@
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+// Applies the daily claim tax for a world. Taxable claims are collected in a single pass when the
+// task runs, then settled with the economy in batches spread over ticks. Claim data is written
+// through the claim save queue so repeated changes to a claim result in a single write.
 public class TaxApplyTask implements Runnable {
 
+    // max main thread time spent settling claim taxes per tick
+    private static final long SETTLE_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
     final WorldProperties worldProperties;
     final EconomyService economyService;
     final GriefPreventionConfig<?> activeConfig;
     private int bankTransactionLogLimit = 60;
+    private final Deque<PendingTax> pendingTaxes = new ArrayDeque<>();
+    private Task settleTask;
+    private long runStartTime;
+    private int claimsProcessed;
+    private int claimsFailed;
+    private int claimErrors;
 
     public TaxApplyTask(WorldProperties worldProperties) {
         this.worldProperties = worldProperties;
@@ -64,20 +79,28 @@ public TaxApplyTask(WorldProperties worldProperties) {
         this.activeConfig = GriefPreventionPlugin.getActiveConfig(this.worldProperties);
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
     public void run() {
+        if (this.settleTask != null) {
+            GriefPreventionPlugin.addLogEntry("Skipping tax run for world " + this.worldProperties.getWorldName()
+                    + " as the previous run is still in progress.", CustomLogEntryTypes.AdminActivity);
+            return;
+        }
+
         // don't do anything when there are no claims
         GPClaimManager claimManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.worldProperties);
-        ArrayList<Claim> claimList = (ArrayList<Claim>) claimManager.getWorldClaims();
+        List<Claim> claimList = claimManager.getWorldClaims();
         if (claimList.size() == 0) {
             return;
         }
 
         this.bankTransactionLogLimit = this.activeConfig.getConfig().claim.bankTransactionLogLimit;
-        Iterator<GPClaim> iterator = ((ArrayList) claimList.clone()).iterator();
-        while (iterator.hasNext()) {
-            GPClaim claim = iterator.next();
+        this.runStartTime = System.currentTimeMillis();
+        this.claimsProcessed = 0;
+        this.claimsFailed = 0;
+        this.claimErrors = 0;
+        for (Claim worldClaim : claimList) {
+            GPClaim claim = (GPClaim) worldClaim;
             final GPPlayerData playerData = claim.getOwnerPlayerData();
             if (claim.isWilderness()) {
                 continue;
@@ -95,24 +118,85 @@ public void run() {
                 final List<Claim> children = claim.getChildren(false);
                 for (Claim child : children) {
                     if (child.isTown()) {
-                        handleTownTax((GPClaim) child, playerData);
+                        planTownTax((GPClaim) child, playerData);
                     } else if (child.isBasicClaim()) {
-                        handleClaimTax((GPClaim) child, playerData, false);
+                        this.pendingTaxes.add(new PendingTax((GPClaim) child, playerData, false));
                     }
                 }
             } else {
                 if (claim.isTown()) {
-                    handleTownTax(claim, playerData);
+                    planTownTax(claim, playerData);
                 } else if (claim.isBasicClaim()) {
-                    handleClaimTax(claim, playerData, false);
+                    this.pendingTaxes.add(new PendingTax(claim, playerData, false));
                 }
             }
         }
+
+        if (this.pendingTaxes.isEmpty()) {
+            return;
+        }
+        this.settleTask = Sponge.getScheduler().createTaskBuilder()
+                .intervalTicks(1)
+                .execute(this::settleTaxes)
+                .submit(GriefPreventionPlugin.instance);
+    }
+
+    private void planTownTax(GPClaim town, GPPlayerData playerData) {
+        Account townAccount = town.getEconomyAccount().orElse(null);
+        if (townAccount == null) {
+            // Virtual Accounts not supported by Economy Plugin so ignore
+            return;
+        }
+        List<Claim> children = town.getChildren(true);
+        for (Claim child : children) {
+            // resident tax
+            if (child.isBasicClaim()) {
+                this.pendingTaxes.add(new PendingTax((GPClaim) child, playerData, true));
+            }
+        }
+        if (town.getOwnerUniqueId().equals(playerData.playerID)) {
+            this.pendingTaxes.add(new PendingTax(town, playerData, false));
+        }
+    }
+
+    private void settleTaxes() {
+        final boolean worldLoaded = Sponge.getServer().getWorld(this.worldProperties.getUniqueId()).isPresent();
+        final long deadline = System.nanoTime() + SETTLE_BUDGET_NANOS;
+        while (worldLoaded && System.nanoTime() < deadline) {
+            final PendingTax pendingTax = this.pendingTaxes.poll();
+            if (pendingTax == null) {
+                break;
+            }
+            try {
+                handleClaimTax(pendingTax.claim, pendingTax.playerData, pendingTax.inTown);
+            } catch (Throwable t) {
+                this.claimErrors++;
+                GriefPreventionPlugin.instance.getLogger().error("Failed to apply tax to claim " + pendingTax.claim.getUniqueId(), t);
+            }
+        }
+
+        if (worldLoaded && !this.pendingTaxes.isEmpty()) {
+            return;
+        }
+        this.pendingTaxes.clear();
+        this.settleTask.cancel();
+        this.settleTask = null;
+        GriefPreventionPlugin.addLogEntry("Tax run for world " + this.worldProperties.getWorldName() + " finished in "
+                + (System.currentTimeMillis() - this.runStartTime) + "ms. Processed " + this.claimsProcessed + " claims, "
+                + this.claimsFailed + " failed to pay, " + this.claimErrors + " errors.", CustomLogEntryTypes.AdminActivity);
     }
 
     private void handleClaimTax(GPClaim claim, GPPlayerData playerData, boolean inTown) {
+        // claim may have been deleted since the run started
+        final GPClaimManager claimManager = (GPClaimManager) claim.getClaimManager();
+        if (claimManager.getClaimByUUID(claim.getUniqueId()).orElse(null) != claim) {
+            return;
+        }
         final Subject subject = playerData.getPlayerSubject();
         final Account claimAccount = claim.getEconomyAccount().orElse(null);
+        if (claimAccount == null) {
+            return;
+        }
         double taxRate = GPOptionHandler.getClaimOptionDouble(subject, claim, GPOptions.Type.TAX_RATE, playerData);
         double taxOwed = claim.getEconomyData().getTaxBalance() + (claim.getClaimBlocks() * taxRate);
         try (final CauseStackManager.StackFrame frame = Sponge.getCauseStackManager().pushCauseFrame()) {
@@ -126,8 +210,10 @@ private void handleClaimTax(GPClaim claim, GPPlayerData playerData, boolean inTo
             taxRate = event.getTaxRate();
             taxOwed = taxBalance + (claim.getClaimBlocks() * taxRate);
 
+            this.claimsProcessed++;
             TransactionResult result = claimAccount.withdraw(this.economyService.getDefaultCurrency(), BigDecimal.valueOf(taxOwed), Sponge.getCauseStackManager().getCurrentCause());
             if (result.getResult() != ResultType.SUCCESS) {
+                this.claimsFailed++;
                 final Instant localNow = Instant.now();
                 Instant taxPastDueDate = claim.getEconomyData().getTaxPastDueDate().orElse(null);
                 if (taxPastDueDate == null) {
@@ -136,10 +222,8 @@ private void handleClaimTax(GPClaim claim, GPPlayerData playerData, boolean inTo
                     final int taxExpirationDays = GPOptionHandler.getClaimOptionDouble(subject, claim, GPOptions.Type.TAX_EXPIRATION, playerData).intValue();
                     if (taxExpirationDays <= 0) {
                         claim.getInternalClaimData().setExpired(true);
-                        claim.getData().save();
                     } else if (taxPastDueDate.plus(Duration.ofDays(taxExpirationDays)).isBefore(localNow)) {
                         claim.getInternalClaimData().setExpired(true);
-                        claim.getData().save();
                     }
                 }
                 final double totalTaxOwed = taxBalance + taxOwed;
@@ -158,27 +242,24 @@ private void handleClaimTax(GPClaim claim, GPPlayerData playerData, boolean inTo
                     town.getEconomyAccount()
                             .get()
                             .deposit(this.economyService.getDefaultCurrency(), BigDecimal.valueOf(taxOwed), Sponge.getCauseStackManager().getCurrentCause());
+                    town.getData().save();
                 }
-                claim.getData().save();
             }
+            // queued, multiple changes to the same claim are written once
+            claim.getData().save();
         }
     }
 
-    private void handleTownTax(GPClaim town, GPPlayerData playerData) {
-        Account townAccount = town.getEconomyAccount().orElse(null);
-        if (townAccount == null) {
-            // Virtual Accounts not supported by Economy Plugin so ignore
-            return;
-        }
-        List<Claim> children = town.getChildren(true);
-        for (Claim child : children) {
-            // resident tax
-            if (child.isBasicClaim()) {
-                handleClaimTax((GPClaim) child, playerData, true);
-            }
-        }
-        if (town.getOwnerUniqueId().equals(playerData.playerID)) {
-            handleClaimTax(town, playerData, false);
+    private static final class PendingTax {
+
+        private final GPClaim claim;
+        private final GPPlayerData playerData;
+        private final boolean inTown;
+
+        private PendingTax(GPClaim claim, GPPlayerData playerData, boolean inTown) {
+            this.claim = claim;
+            this.playerData = playerData;
+            this.inTown = inTown;
         }
     }
 }
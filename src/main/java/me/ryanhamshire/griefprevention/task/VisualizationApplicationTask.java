@@ -27,12 +27,11 @@
 
 import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.visual.VisualBlocks;
 import me.ryanhamshire.griefprevention.visual.Visualization;
 import org.spongepowered.api.Sponge;
-import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.entity.living.player.Player;
 
-import java.util.ArrayList;
 import java.util.concurrent.TimeUnit;
 
 //applies a visualization for a player by sending him block change packets
@@ -62,10 +61,7 @@ public void run() {
             }
         }
 
-        for (int i = 0; i < this.visualization.elements.size(); i++) {
-            BlockSnapshot snapshot = this.visualization.elements.get(i).getFinal();
-            this.player.sendBlockChange(snapshot.getPosition(), snapshot.getState());
-        }
+        this.visualization.elements.apply(this.player);
 
         // remember the visualization applied to this player for later (so it can be inexpensively reverted)
         if (this.visualization.getClaim() != null) {
@@ -73,20 +69,20 @@ public void run() {
             this.visualization.getClaim().playersWatching.add(this.player.getUniqueId());
         }
         if (this.playerData.visualBlocks == null) {
-            this.playerData.visualBlocks = new ArrayList<>(this.visualization.elements);
+            this.playerData.visualBlocks = new VisualBlocks(this.visualization.elements);
         } else {
             this.playerData.visualBlocks.addAll(this.visualization.elements);
         }
 
         if (this.playerData.visualRevertTask != null) {
             this.playerData.visualRevertTask.cancel();
-            this.playerData.visualRevertTask = Sponge.getGame().getScheduler().createTaskBuilder().async().delay(1, TimeUnit.MINUTES)
+            this.playerData.visualRevertTask = Sponge.getGame().getScheduler().createTaskBuilder().delay(1, TimeUnit.MINUTES)
                     .execute(new VisualizationReversionTask(this.player, this.playerData)).submit(GriefPreventionPlugin.instance);
         } else {
             // schedule automatic visualization reversion in 60 seconds.
             // only create revert task if not resizing/starting a claim
             if (playerData.lastShovelLocation == null) {
-                this.playerData.visualRevertTask = Sponge.getGame().getScheduler().createTaskBuilder().async().delay(1, TimeUnit.MINUTES)
+                this.playerData.visualRevertTask = Sponge.getGame().getScheduler().createTaskBuilder().delay(1, TimeUnit.MINUTES)
                         .execute(new VisualizationReversionTask(this.player, this.playerData)).submit(GriefPreventionPlugin.instance);
             }
         }
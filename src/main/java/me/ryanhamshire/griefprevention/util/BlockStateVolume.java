@@ -0,0 +1,209 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.util;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockType;
+import org.spongepowered.api.world.World;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Compact copy of a block region used by restore nature. Each position stores a short index
+// into a palette of block states so a full chunk column costs ~160KB instead of tens of
+// thousands of snapshots. The volume is captured on the main thread, may then be modified by
+// a single worker thread and is compared against the captured states to find changes.
+public class BlockStateVolume {
+
+    private final int originX;
+    private final int originZ;
+    private final int sizeX;
+    private final int height;
+    private final int sizeZ;
+    private final List<BlockState> palette = new ArrayList<>();
+    private final List<BlockType> paletteTypes = new ArrayList<>();
+    private final IntArrayList paletteMeta = new IntArrayList();
+    private final Reference2IntOpenHashMap<BlockState> paletteIndex = new Reference2IntOpenHashMap<>();
+    private final short[] states;
+    private short[] original;
+
+    private BlockStateVolume(int originX, int originZ, int sizeX, int height, int sizeZ) {
+        this.originX = originX;
+        this.originZ = originZ;
+        this.sizeX = sizeX;
+        this.height = height;
+        this.sizeZ = sizeZ;
+        this.states = new short[sizeX * height * sizeZ];
+        this.paletteIndex.defaultReturnValue(-1);
+        // index 0 is always air so empty sections need no palette lookups
+        this.getPaletteId((BlockState) Blocks.AIR.getDefaultState());
+    }
+
+    // Captures a region of the world, loading chunks as needed. Must be called on the main thread.
+    public static BlockStateVolume capture(World world, int minX, int minZ, int sizeX, int height, int sizeZ) {
+        final BlockStateVolume volume = new BlockStateVolume(minX, minZ, sizeX, height, sizeZ);
+        Chunk chunk = null;
+        for (int x = 0; x < sizeX; x++) {
+            for (int z = 0; z < sizeZ; z++) {
+                final int chunkX = (minX + x) >> 4;
+                final int chunkZ = (minZ + z) >> 4;
+                if (chunk == null || chunk.x != chunkX || chunk.z != chunkZ) {
+                    chunk = (Chunk) world.loadChunk(chunkX, 0, chunkZ, true).orElse(null);
+                }
+                if (chunk != null) {
+                    volume.captureColumn(chunk, (minX + x) & 15, (minZ + z) & 15, x, z);
+                }
+            }
+        }
+        volume.original = volume.states.clone();
+        return volume;
+    }
+
+    // Captures a single chunk which does not need to be part of a world, such as a freshly generated filler chunk.
+    public static BlockStateVolume capture(Chunk chunk, int height) {
+        final BlockStateVolume volume = new BlockStateVolume(chunk.x << 4, chunk.z << 4, 16, height, 16);
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                volume.captureColumn(chunk, x, z, x, z);
+            }
+        }
+        volume.original = volume.states.clone();
+        return volume;
+    }
+
+    private void captureColumn(Chunk chunk, int chunkX, int chunkZ, int x, int z) {
+        final ExtendedBlockStorage[] sections = chunk.getBlockStorageArray();
+        for (int y = 0; y < this.height; y++) {
+            final int sectionIndex = y >> 4;
+            if (sectionIndex >= sections.length) {
+                break;
+            }
+            final ExtendedBlockStorage section = sections[sectionIndex];
+            if (section == null || section.isEmpty()) {
+                // palette id 0 is air and the array is already zeroed
+                y |= 15;
+                continue;
+            }
+            final IBlockState state = section.get(chunkX, y & 15, chunkZ);
+            this.states[this.index(x, y, z)] = (short) this.getPaletteId((BlockState) state);
+        }
+    }
+
+    private int getPaletteId(BlockState state) {
+        int id = this.paletteIndex.getInt(state);
+        if (id == -1) {
+            id = this.palette.size();
+            this.palette.add(state);
+            this.paletteTypes.add(state.getType());
+            this.paletteMeta.add(((Block) state.getType()).getMetaFromState((IBlockState) state));
+            this.paletteIndex.put(state, id);
+        }
+        return id;
+    }
+
+    public int index(int x, int y, int z) {
+        return (y * this.sizeZ + z) * this.sizeX + x;
+    }
+
+    public int getX(int index) {
+        return index % this.sizeX;
+    }
+
+    public int getY(int index) {
+        return index / (this.sizeX * this.sizeZ);
+    }
+
+    public int getZ(int index) {
+        return (index / this.sizeX) % this.sizeZ;
+    }
+
+    public BlockState getState(int x, int y, int z) {
+        return this.palette.get(this.states[this.index(x, y, z)] & 0xFFFF);
+    }
+
+    public BlockState getState(int index) {
+        return this.palette.get(this.states[index] & 0xFFFF);
+    }
+
+    public BlockState getOriginalState(int index) {
+        return this.palette.get(this.original[index] & 0xFFFF);
+    }
+
+    public BlockType getType(int x, int y, int z) {
+        return this.paletteTypes.get(this.states[this.index(x, y, z)] & 0xFFFF);
+    }
+
+    public int getMeta(int x, int y, int z) {
+        return this.paletteMeta.getInt(this.states[this.index(x, y, z)] & 0xFFFF);
+    }
+
+    public void setState(int x, int y, int z, BlockState state) {
+        this.states[this.index(x, y, z)] = (short) this.getPaletteId(state);
+    }
+
+    // Returns the indices of all changed positions, ignoring a border of the given width around the x/z edges
+    // and everything below minY.
+    public int[] getChanges(int border, int minY) {
+        final IntArrayList changes = new IntArrayList();
+        for (int y = Math.max(minY, 0); y < this.height; y++) {
+            for (int z = border; z < this.sizeZ - border; z++) {
+                for (int x = border; x < this.sizeX - border; x++) {
+                    final int index = this.index(x, y, z);
+                    if (this.states[index] != this.original[index]) {
+                        changes.add(index);
+                    }
+                }
+            }
+        }
+        return changes.toIntArray();
+    }
+
+    public int getOriginX() {
+        return this.originX;
+    }
+
+    public int getOriginZ() {
+        return this.originZ;
+    }
+
+    public int getSizeX() {
+        return this.sizeX;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public int getSizeZ() {
+        return this.sizeZ;
+    }
+}
@@ -27,7 +27,6 @@
 
 import com.flowpowered.math.vector.Vector3i;
 import com.google.common.collect.Maps;
-import it.unimi.dsi.fastutil.ints.Int2ObjectArrayMap;
 import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
 import me.ryanhamshire.griefprevention.api.claim.Claim;
@@ -75,7 +74,6 @@ public class BlockUtils {
             Direction.NORTH, Direction.NORTHEAST, Direction.EAST, Direction.SOUTHEAST,
             Direction.SOUTH, Direction.SOUTHWEST, Direction.WEST, Direction.NORTHWEST,
     };
-    public static final Map<Integer, BlockPosCache> ENTITY_BLOCK_CACHE = new Int2ObjectArrayMap<>();
     private static final int NUM_XZ_BITS = 4;
     private static final int NUM_SHORT_Y_BITS = 8;
     private static final short XZ_MASK = 0xF;
@@ -270,22 +268,9 @@ public static boolean createFillerChunk(GPPlayerData playerData, WorldServer wor
         }
 
         unloadChunk(chunk);
-        org.spongepowered.api.world.Chunk fillerChunk = (org.spongepowered.api.world.Chunk) chunkProviderServer.chunkGenerator.generateChunk(chunk.x, chunk.z);
-        int maxBuildHeight = fillerChunk.getWorld().getDimension().getBuildHeight() - 1;
-        BlockSnapshot[][][] snapshots = new BlockSnapshot[18][maxBuildHeight][18];
-        BlockSnapshot startBlock = fillerChunk.createSnapshot(0, 0, 0);
-        Location<World> startLocation =
-                new Location<World>(fillerChunk.getWorld(), startBlock.getPosition().getX() - 1, 0, startBlock.getPosition().getZ() - 1);
-        for (int x = 0; x < snapshots.length; x++) {
-            for (int z = 0; z < snapshots[0][0].length; z++) {
-                for (int y = 0; y < snapshots[0].length; y++) {
-                    snapshots[x][y][z] = fillerChunk.getWorld()
-                            .createSnapshot(startLocation.getBlockX() + x, startLocation.getBlockY() + y, startLocation.getBlockZ() + z);
-                }
-            }
-        }
-        fillerChunk = null;
-        playerData.fillerBlocks = snapshots;
+        // read the generated chunk directly, it is never added to the world
+        Chunk fillerChunk = chunkProviderServer.chunkGenerator.generateChunk(chunk.x, chunk.z);
+        playerData.fillerBlocks = BlockStateVolume.capture(fillerChunk, world.getHeight());
         if (chunk != null) {
             world.getChunkProvider().id2ChunkMap.put(ChunkPos.asLong(chunk.x, chunk.z), chunk);
 
@@ -0,0 +1,127 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.util;
+
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.scheduler.Task;
+import org.spongepowered.api.util.Tristate;
+import org.spongepowered.common.SpongeImpl;
+
+// Caches the last collide result per entity id. Each entry packs the last tick (high 32 bits),
+// the last short block position (bits 16-31) and the last result (low bits) into a single long
+// so no object is allocated per entity.
+public class EntityBlockCache {
+
+    private static final long NO_ENTRY = -1L;
+    private static final int RESULT_UNDEFINED = 0;
+    private static final int RESULT_TRUE = 1;
+    private static final int RESULT_FALSE = 2;
+    // entries untouched for this many ticks are dropped by the sweep
+    private static final int EXPIRE_TICKS = 1200;
+    private static final Int2LongOpenHashMap CACHE = new Int2LongOpenHashMap(1024);
+    private static Task sweepTask;
+
+    static {
+        CACHE.defaultReturnValue(NO_ENTRY);
+    }
+
+    public static Tristate getCacheResult(int entityId, short pos) {
+        final int currentTick = SpongeImpl.getServer().getTickCounter();
+        final long entry = CACHE.get(entityId);
+        if (entry == NO_ENTRY) {
+            CACHE.put(entityId, pack(currentTick, pos, RESULT_UNDEFINED));
+            if (sweepTask == null) {
+                sweepTask = Sponge.getScheduler().createTaskBuilder()
+                        .intervalTicks(EXPIRE_TICKS)
+                        .execute(EntityBlockCache::sweep)
+                        .submit(GriefPreventionPlugin.instance);
+            }
+            return Tristate.UNDEFINED;
+        }
+
+        if (getPos(entry) != pos || (currentTick - getTick(entry)) > 2) {
+            CACHE.put(entityId, pack(currentTick, pos, RESULT_UNDEFINED));
+            return Tristate.UNDEFINED;
+        }
+
+        CACHE.put(entityId, pack(currentTick, pos, getResult(entry)));
+        return toTristate(getResult(entry));
+    }
+
+    public static void setLastResult(int entityId, Tristate result) {
+        final long entry = CACHE.get(entityId);
+        if (entry == NO_ENTRY) {
+            return;
+        }
+
+        final int resultCode = result == Tristate.TRUE ? RESULT_TRUE : result == Tristate.FALSE ? RESULT_FALSE : RESULT_UNDEFINED;
+        CACHE.put(entityId, pack(getTick(entry), getPos(entry), resultCode));
+    }
+
+    public static void remove(int entityId) {
+        CACHE.remove(entityId);
+    }
+
+    // Drops entries of entities that were never reported as removed
+    private static void sweep() {
+        final int currentTick = SpongeImpl.getServer().getTickCounter();
+        final ObjectIterator<Int2LongMap.Entry> iterator = CACHE.int2LongEntrySet().fastIterator();
+        while (iterator.hasNext()) {
+            if ((currentTick - getTick(iterator.next().getLongValue())) > EXPIRE_TICKS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static long pack(int tick, short pos, int result) {
+        return ((long) tick << 32) | ((pos & 0xFFFFL) << 16) | result;
+    }
+
+    private static int getTick(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    private static short getPos(long entry) {
+        return (short) (entry >>> 16);
+    }
+
+    private static int getResult(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    private static Tristate toTristate(int result) {
+        if (result == RESULT_TRUE) {
+            return Tristate.TRUE;
+        }
+        if (result == RESULT_FALSE) {
+            return Tristate.FALSE;
+        }
+        return Tristate.UNDEFINED;
+    }
+}
@@ -74,6 +74,10 @@ public static void resetActivePage(UUID uuid) {
         activePageMap.put(uuid, 1);
     }
 
+    public static void setActivePage(UUID uuid, int page) {
+        activePageMap.put(uuid, page);
+    }
+
     public static Integer getActivePage(UUID uuid) {
         return activePageMap.get(uuid);
     }
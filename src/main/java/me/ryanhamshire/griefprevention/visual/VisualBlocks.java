@@ -0,0 +1,233 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.visual;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import it.unimi.dsi.fastutil.shorts.ShortArrayList;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.play.server.SPacketMultiBlockChange;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.gen.ChunkProviderServer;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.world.World;
+import org.spongepowered.common.bridge.world.chunk.ChunkProviderBridge;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Compact list of fake blocks shown to a player. Positions are packed into longs and block states
+// are stored as indices into a small palette. The real blocks are read from the world when the
+// visual is reverted so nothing but the fake state is kept per position.
+// Blocks are sent grouped by chunk using multi block change packets.
+public class VisualBlocks {
+
+    private UUID worldUniqueId;
+    private final LongArrayList positions = new LongArrayList();
+    private final ShortArrayList states = new ShortArrayList();
+    private final List<BlockState> palette = new ArrayList<>();
+    private final Reference2IntOpenHashMap<BlockState> paletteIndex = new Reference2IntOpenHashMap<>();
+
+    public VisualBlocks() {
+        this.paletteIndex.defaultReturnValue(-1);
+    }
+
+    public VisualBlocks(VisualBlocks other) {
+        this();
+        this.addAll(other);
+    }
+
+    public static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (y & 0xFFF) << 26) | (z & 0x3FFFFFF);
+    }
+
+    public static int unpackX(long pos) {
+        return (int) (pos >> 38);
+    }
+
+    public static int unpackY(long pos) {
+        return (int) (pos << 26 >> 52);
+    }
+
+    public static int unpackZ(long pos) {
+        return (int) (pos << 38 >> 38);
+    }
+
+    public void add(World world, int x, int y, int z, BlockState state) {
+        if (this.worldUniqueId == null) {
+            this.worldUniqueId = world.getUniqueId();
+        }
+        this.positions.add(pack(x, y, z));
+        this.states.add((short) this.getPaletteId(state));
+    }
+
+    public void addAll(VisualBlocks other) {
+        if (other.isEmpty()) {
+            return;
+        }
+        if (this.worldUniqueId == null) {
+            this.worldUniqueId = other.worldUniqueId;
+        }
+        for (int i = 0; i < other.size(); i++) {
+            this.positions.add(other.positions.getLong(i));
+            this.states.add((short) this.getPaletteId(other.getState(i)));
+        }
+    }
+
+    private int getPaletteId(BlockState state) {
+        int id = this.paletteIndex.getInt(state);
+        if (id == -1) {
+            id = this.palette.size();
+            this.palette.add(state);
+            this.paletteIndex.put(state, id);
+        }
+        return id;
+    }
+
+    public int size() {
+        return this.positions.size();
+    }
+
+    public boolean isEmpty() {
+        return this.positions.isEmpty();
+    }
+
+    public void clear() {
+        this.positions.clear();
+        this.states.clear();
+        this.palette.clear();
+        this.paletteIndex.clear();
+        this.worldUniqueId = null;
+    }
+
+    public UUID getWorldUniqueId() {
+        return this.worldUniqueId;
+    }
+
+    public boolean isInWorld(World world) {
+        return this.worldUniqueId != null && this.worldUniqueId.equals(world.getUniqueId());
+    }
+
+    public long getPosition(int index) {
+        return this.positions.getLong(index);
+    }
+
+    public BlockState getState(int index) {
+        return this.palette.get(this.states.getShort(index));
+    }
+
+    public void setPosition(int index, int x, int y, int z) {
+        this.positions.set(index, pack(x, y, z));
+    }
+
+    public void remove(int index) {
+        this.positions.removeLong(index);
+        this.states.removeShort(index);
+    }
+
+    // removes any elements outside of the given x/z range
+    public void removeOutOfRange(int minx, int minz, int maxx, int maxz) {
+        int size = 0;
+        for (int i = 0; i < this.positions.size(); i++) {
+            final long pos = this.positions.getLong(i);
+            final int x = unpackX(pos);
+            final int z = unpackZ(pos);
+            if (x < minx || x > maxx || z < minz || z > maxz) {
+                continue;
+            }
+            this.positions.set(size, pos);
+            this.states.set(size, this.states.getShort(i));
+            size++;
+        }
+        this.positions.size(size);
+        this.states.size(size);
+    }
+
+    // sends the fake blocks to the player
+    public void apply(Player player) {
+        this.send(player, false);
+    }
+
+    // sends the real world blocks to the player
+    public void revert(Player player) {
+        this.send(player, true);
+    }
+
+    private void send(Player player, boolean revert) {
+        if (this.isEmpty() || !this.isInWorld(player.getWorld())) {
+            return;
+        }
+
+        final EntityPlayerMP mcPlayer = (EntityPlayerMP) player;
+        final Long2ObjectMap<IntArrayList> chunkElements = new Long2ObjectOpenHashMap<>();
+        for (int i = 0; i < this.positions.size(); i++) {
+            final long pos = this.positions.getLong(i);
+            final long chunkKey = ((long) (unpackX(pos) >> 4) << 32) | ((unpackZ(pos) >> 4) & 0xFFFFFFFFL);
+            IntArrayList indices = chunkElements.get(chunkKey);
+            if (indices == null) {
+                indices = new IntArrayList();
+                chunkElements.put(chunkKey, indices);
+            }
+            indices.add(i);
+        }
+
+        final ChunkProviderServer chunkProvider = ((net.minecraft.world.WorldServer) mcPlayer.world).getChunkProvider();
+        for (Long2ObjectMap.Entry<IntArrayList> entry : chunkElements.long2ObjectEntrySet()) {
+            final int chunkX = (int) (entry.getLongKey() >> 32);
+            final int chunkZ = (int) entry.getLongKey();
+            final IntArrayList indices = entry.getValue();
+            Chunk chunk = null;
+            if (revert) {
+                chunk = ((ChunkProviderBridge) chunkProvider).bridge$getLoadedChunkWithoutMarkingActive(chunkX, chunkZ);
+                if (chunk == null) {
+                    // the client drops unloaded chunks
+                    continue;
+                }
+            }
+
+            // fields are filled directly instead of round tripping the data through a packet buffer
+            final SPacketMultiBlockChange packet = new SPacketMultiBlockChange();
+            packet.chunkPos = new ChunkPos(chunkX, chunkZ);
+            packet.changedBlocks = new SPacketMultiBlockChange.BlockUpdateData[indices.size()];
+            for (int i = 0; i < indices.size(); i++) {
+                final int index = indices.getInt(i);
+                final long pos = this.positions.getLong(index);
+                final int x = unpackX(pos);
+                final int y = unpackY(pos);
+                final int z = unpackZ(pos);
+                final IBlockState state = revert ? chunk.getBlockState(x, y, z) : (IBlockState) this.getState(index);
+                packet.changedBlocks[i] = packet.new BlockUpdateData((short) ((x & 15) << 12 | (z & 15) << 8 | (y & 255)), state);
+            }
+            mcPlayer.connection.sendPacket(packet);
+        }
+    }
+}
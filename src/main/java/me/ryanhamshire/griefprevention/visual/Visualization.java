@@ -34,11 +34,9 @@
 import me.ryanhamshire.griefprevention.task.VisualizationApplicationTask;
 import net.minecraft.block.state.IBlockState;
 import org.spongepowered.api.Sponge;
-import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.block.BlockTypes;
-import org.spongepowered.api.data.Transaction;
 import org.spongepowered.api.data.property.block.MatterProperty;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.util.Direction;
@@ -55,9 +53,9 @@
 //the result is that those players see new blocks, but the world hasn't been changed.  other players can't see the new blocks, either.
 public class Visualization {
 
-    public ArrayList<Transaction<BlockSnapshot>> elements;
+    public final VisualBlocks elements;
     public boolean displaySubdivisions = false;
-    private final ArrayList<Transaction<BlockSnapshot>> newElements;
+    private final VisualBlocks newElements;
     private final ArrayList<Vector3i> corners;
     private VisualizationType type;
     private GPClaim claim;
@@ -77,15 +75,13 @@ public class Visualization {
     private BlockType cornerMaterial;
     private BlockType accentMaterial;
     private BlockType fillerMaterial; // used for 3d cuboids
-    private final BlockSnapshot.Builder snapshotBuilder;
     private int STEP = 10;
 
     public Visualization(VisualizationType type) {
         initBlockVisualTypes(type);
         this.type = type;
-        this.snapshotBuilder = Sponge.getGame().getRegistry().createBuilder(BlockSnapshot.Builder.class);
-        this.elements = new ArrayList<Transaction<BlockSnapshot>>();
-        this.newElements = new ArrayList<>();
+        this.elements = new VisualBlocks();
+        this.newElements = new VisualBlocks();
         this.corners = new ArrayList<>();
     }
 
@@ -99,9 +95,8 @@ public Visualization(Location<World> lesserBoundaryCorner, Location<World> great
         this.lesserBoundaryCorner = lesserBoundaryCorner;
         this.greaterBoundaryCorner = greaterBoundaryCorner;
         this.type = type;
-        this.snapshotBuilder = Sponge.getGame().getRegistry().createBuilder(BlockSnapshot.Builder.class);
-        this.elements = new ArrayList<Transaction<BlockSnapshot>>();
-        this.newElements = new ArrayList<>();
+        this.elements = new VisualBlocks();
+        this.newElements = new VisualBlocks();
         this.corners = new ArrayList<>();
     }
 
@@ -122,9 +117,8 @@ public static VisualizationType getVisualizationType(GPClaim claim) {
 
     public static Visualization fromClick(Location<World> location, int height, VisualizationType visualizationType, Player player, GPPlayerData playerData) {
         Visualization visualization = new Visualization(visualizationType);
-        BlockSnapshot blockClicked =
-                visualization.snapshotBuilder.from(location).blockState(visualization.cornerMaterial.getDefaultState()).build();
-        visualization.elements.add(new Transaction<BlockSnapshot>(blockClicked.getLocation().get().createSnapshot(), blockClicked));
+        visualization.elements.add(location.getExtent(), location.getBlockX(), location.getBlockY(), location.getBlockZ(),
+                visualization.cornerMaterial.getDefaultState());
         if (GriefPreventionPlugin.instance.worldEditProvider != null) {
             GriefPreventionPlugin.instance.worldEditProvider.sendVisualDrag(player, playerData, location.getBlockPosition());
         }
@@ -231,8 +225,7 @@ public void apply(Player player, boolean resetActive) {
                 GriefPreventionPlugin.getActiveConfig(player.getWorld().getProperties()).getConfig().claim.hideBorders;
         if (!hideBorders) {
             // if he's online, create a task to send him the visualization
-            if (player.isOnline() && this.elements.size() > 0
-                    && this.elements.get(0).getOriginal().getLocation().get().getExtent().equals(player.getWorld())) {
+            if (player.isOnline() && this.elements.size() > 0 && this.elements.isInWorld(player.getWorld())) {
                 Sponge.getGame().getScheduler().createTaskBuilder().delayTicks(1L)
                         .execute(new VisualizationApplicationTask(player, playerData, this, resetActive)).submit(GriefPreventionPlugin.instance);
                 //GriefPreventionPlugin.instance.executor.execute(new VisualizationApplicationTask(player, playerData, this, resetActive));
@@ -256,23 +249,17 @@ public void revert(Player player) {
 
         // remove any elements which are too far away
         if (!this.cuboidVisual) {
-            this.removeElementsOutOfRange(this.elements, minx, minz, maxx, maxz);
+            this.elements.removeOutOfRange(minx, minz, maxx, maxz);
         }
 
-        // send real block information for any remaining elements
-        for (int i = 0; i < this.elements.size(); i++) {
-            BlockSnapshot snapshot = this.elements.get(i).getOriginal();
-
-            // check player still in world where visualization exists
-            if (i == 0) {
-                if (!player.getWorld().equals(snapshot.getLocation().get().getExtent())) {
-                    return;
-                }
-            }
-
-            player.sendBlockChange(snapshot.getPosition(), snapshot.getState());
+        // check player still in world where visualization exists
+        if (!this.elements.isInWorld(player.getWorld())) {
+            return;
         }
 
+        // send real block information for any remaining elements
+        this.elements.revert(player);
+
         playerData.visualBlocks = null;
         if (playerData.visualRevertTask != null) {
             playerData.visualRevertTask.cancel();
@@ -337,9 +324,7 @@ private void addClaimElements(int height, Location<World> locality, GPPlayerData
         // visualization range
 
         if (this.smallx == this.bigx && this.smally == this.bigy && this.smallz == this.bigz) {
-            BlockSnapshot blockClicked =
-                    snapshotBuilder.from(new Location<World>(world, this.smallx, this.smally, this.smallz)).blockState(this.cornerMaterial.getDefaultState()).build();
-            elements.add(new Transaction<BlockSnapshot>(blockClicked.getLocation().get().createSnapshot(), blockClicked));
+            this.elements.add(world, this.smallx, this.smally, this.smallz, this.cornerMaterial.getDefaultState());
             return;
         }
 
@@ -390,7 +375,8 @@ public void addVisuals3D(GPClaim claim, GPPlayerData playerData) {
                 this.addRightLine(world, y, fillerMaterial, fillerMaterial);
             }
         }
-        this.elements.addAll(newElements);
+        this.elements.addAll(this.newElements);
+        this.newElements.clear();
     }
 
     public void addVisuals2D(GPClaim claim, int height, boolean liquidTransparent) {
@@ -401,138 +387,97 @@ public void addVisuals2D(GPClaim claim, int height, boolean liquidTransparent) {
         this.addRightLine(world, 0, this.cornerMaterial, this.accentMaterial);
 
         // remove any out of range elements
-        this.removeElementsOutOfRange(this.newElements, this.minx, this.minz, this.maxx, this.maxz);
+        this.newElements.removeOutOfRange(this.minx, this.minz, this.maxx, this.maxz);
 
-        for (int i = 0; i < this.newElements.size(); i++) {
-            BlockSnapshot element = this.newElements.get(i).getFinal();
-            if (!claim.contains(element.getLocation().get())) {
+        for (int i = this.newElements.size() - 1; i >= 0; i--) {
+            final long pos = this.newElements.getPosition(i);
+            if (!claim.contains(new Location<World>(world, VisualBlocks.unpackX(pos), VisualBlocks.unpackY(pos), VisualBlocks.unpackZ(pos)))) {
                 this.newElements.remove(i);
             }
         }
 
-        // set Y values and real block information for any remaining visualization blocks
-        ArrayList<Transaction<BlockSnapshot>> actualElements = new ArrayList<Transaction<BlockSnapshot>>();
-        for (Transaction<BlockSnapshot> element : this.newElements) {
-            Location<World> tempLocation = element.getFinal().getLocation().get();
-            Location<World> visibleLocation =
-                    getVisibleLocation(tempLocation.getExtent(), tempLocation.getBlockX(), height, tempLocation.getBlockZ(), liquidTransparent);
-            element = new Transaction<BlockSnapshot>(element.getOriginal().withLocation(visibleLocation).withState(visibleLocation.getBlock()),
-                    element.getFinal().withLocation(visibleLocation));
-            height = element.getFinal().getPosition().getY();
-            actualElements.add(element);
+        // set Y values for any remaining visualization blocks
+        for (int i = 0; i < this.newElements.size(); i++) {
+            final long pos = this.newElements.getPosition(i);
+            final int x = VisualBlocks.unpackX(pos);
+            final int z = VisualBlocks.unpackZ(pos);
+            final Location<World> visibleLocation = getVisibleLocation(world, x, height, z, liquidTransparent);
+            height = visibleLocation.getBlockY();
+            this.newElements.setPosition(i, x, height, z);
         }
 
-        this.elements.addAll(actualElements);
+        this.elements.addAll(this.newElements);
+        this.newElements.clear();
     }
 
     public void addCorners(World world, int y, BlockType accentMaterial) {
-        BlockSnapshot corner1 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.bigz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(corner1.getLocation().get().createSnapshot(), corner1));
-        BlockSnapshot corner2 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.bigz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(corner2.getLocation().get().createSnapshot(), corner2));
-        BlockSnapshot corner3 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.smallz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(corner3.getLocation().get().createSnapshot(), corner3));
-        BlockSnapshot corner4 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.smallz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(corner4.getLocation().get().createSnapshot(), corner4));
+        this.newElements.add(world, this.smallx, y, this.bigz, accentMaterial.getDefaultState());
+        this.newElements.add(world, this.bigx, y, this.bigz, accentMaterial.getDefaultState());
+        this.newElements.add(world, this.bigx, y, this.smallz, accentMaterial.getDefaultState());
+        this.newElements.add(world, this.smallx, y, this.smallz, accentMaterial.getDefaultState());
     }
 
     public void addTopLine(World world, int y, BlockType cornerMaterial, BlockType accentMaterial) {
-        BlockSnapshot topVisualBlock1 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.bigz)).blockState(cornerMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(topVisualBlock1.getLocation().get().createSnapshot(), topVisualBlock1));
-        this.corners.add(topVisualBlock1.getPosition());
-        BlockSnapshot topVisualBlock2 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx + 1, y, this.bigz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(topVisualBlock2.getLocation().get().createSnapshot(), topVisualBlock2));
-        BlockSnapshot topVisualBlock3 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx - 1, y, this.bigz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(topVisualBlock3.getLocation().get().createSnapshot(), topVisualBlock3));
+        this.newElements.add(world, this.smallx, y, this.bigz, cornerMaterial.getDefaultState());
+        this.corners.add(new Vector3i(this.smallx, y, this.bigz));
+        this.newElements.add(world, this.smallx + 1, y, this.bigz, accentMaterial.getDefaultState());
+        this.newElements.add(world, this.bigx - 1, y, this.bigz, accentMaterial.getDefaultState());
 
         if (STEP != 0) {
             for (int x = this.smallx + STEP; x < this.bigx - STEP / 2; x += STEP) {
                 if ((y != 0 && x >= this.smallx && x <= this.bigx) || (x > this.minx && x < this.maxx)) {
-                    BlockSnapshot visualBlock =
-                            snapshotBuilder.from(new Location<World>(world, x, y, this.bigz)).blockState(accentMaterial.getDefaultState()).build();
-                    newElements.add(new Transaction<BlockSnapshot>(visualBlock.getLocation().get().createSnapshot(), visualBlock));
+                    this.newElements.add(world, x, y, this.bigz, accentMaterial.getDefaultState());
                 }
             }
         }
     }
 
     public void addBottomLine(World world, int y, BlockType cornerMaterial, BlockType accentMaterial) {
-        BlockSnapshot bottomVisualBlock1 =
-                this.snapshotBuilder.from(new Location<World>(world, this.smallx + 1, y, this.smallz)).blockState(accentMaterial.getDefaultState()).build();
-        this.newElements.add(new Transaction<BlockSnapshot>(bottomVisualBlock1.getLocation().get().createSnapshot(), bottomVisualBlock1));
-        this.corners.add(bottomVisualBlock1.getPosition());
-        BlockSnapshot bottomVisualBlock2 =
-                this.snapshotBuilder.from(new Location<World>(world, this.bigx - 1, y, this.smallz)).blockState(accentMaterial.getDefaultState()).build();
-        this.newElements.add(new Transaction<BlockSnapshot>(bottomVisualBlock2.getLocation().get().createSnapshot(), bottomVisualBlock2));
+        this.newElements.add(world, this.smallx + 1, y, this.smallz, accentMaterial.getDefaultState());
+        this.corners.add(new Vector3i(this.smallx + 1, y, this.smallz));
+        this.newElements.add(world, this.bigx - 1, y, this.smallz, accentMaterial.getDefaultState());
 
         if (STEP != 0) {
             for (int x = this.smallx + STEP; x < this.bigx - STEP / 2; x += STEP) {
                 if ((y != 0 && x >= this.smallx && x <= this.bigx) || (x > this.minx && x < this.maxx)) {
-                    BlockSnapshot visualBlock =
-                            this.snapshotBuilder.from(new Location<World>(world, x, y, this.smallz)).blockState(accentMaterial.getDefaultState()).build();
-                    newElements.add(new Transaction<BlockSnapshot>(visualBlock.getLocation().get().createSnapshot(), visualBlock));
+                    this.newElements.add(world, x, y, this.smallz, accentMaterial.getDefaultState());
                 }
             }
         }
     }
 
     public void addLeftLine(World world, int y, BlockType cornerMaterial, BlockType accentMaterial) {
-        BlockSnapshot leftVisualBlock1 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.smallz)).blockState(cornerMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(leftVisualBlock1.getLocation().get().createSnapshot(), leftVisualBlock1));
-        this.corners.add(leftVisualBlock1.getPosition());
-        BlockSnapshot leftVisualBlock2 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.smallz + 1)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(leftVisualBlock2.getLocation().get().createSnapshot(), leftVisualBlock2));
-        BlockSnapshot leftVisualBlock3 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.bigz - 1)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(leftVisualBlock3.getLocation().get().createSnapshot(), leftVisualBlock3));
+        this.newElements.add(world, this.smallx, y, this.smallz, cornerMaterial.getDefaultState());
+        this.corners.add(new Vector3i(this.smallx, y, this.smallz));
+        this.newElements.add(world, this.smallx, y, this.smallz + 1, accentMaterial.getDefaultState());
+        this.newElements.add(world, this.smallx, y, this.bigz - 1, accentMaterial.getDefaultState());
 
         if (STEP != 0) {
             for (int z = this.smallz + STEP; z < this.bigz - STEP / 2; z += STEP) {
                 if ((y != 0 && z >= this.smallz && z <= this.bigz) || (z > this.minz && z < this.maxz)) {
-                    BlockSnapshot visualBlock =
-                            snapshotBuilder.from(new Location<World>(world, this.smallx, y, z)).blockState(accentMaterial.getDefaultState()).build();
-                    newElements.add(new Transaction<BlockSnapshot>(visualBlock.getLocation().get().createSnapshot(), visualBlock));
+                    this.newElements.add(world, this.smallx, y, z, accentMaterial.getDefaultState());
                 }
             }
         }
     }
 
     public void addRightLine(World world, int y, BlockType cornerMaterial, BlockType accentMaterial) {
-        BlockSnapshot rightVisualBlock1 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.smallz)).blockState(cornerMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(rightVisualBlock1.getLocation().get().createSnapshot(), rightVisualBlock1));
-        this.corners.add(rightVisualBlock1.getPosition());
-        BlockSnapshot rightVisualBlock2 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.smallz + 1)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(rightVisualBlock2.getLocation().get().createSnapshot(), rightVisualBlock2));
+        this.newElements.add(world, this.bigx, y, this.smallz, cornerMaterial.getDefaultState());
+        this.corners.add(new Vector3i(this.bigx, y, this.smallz));
+        this.newElements.add(world, this.bigx, y, this.smallz + 1, accentMaterial.getDefaultState());
         if (STEP != 0) {
             for (int z = this.smallz + STEP; z < this.bigz - STEP / 2; z += STEP) {
                 if ((y != 0 && z >= this.smallz && z <= this.bigz) || (z > this.minz && z < this.maxz)) {
-                    BlockSnapshot visualBlock =
-                            snapshotBuilder.from(new Location<World>(world, this.bigx, y, z)).blockState(accentMaterial.getDefaultState()).build();
-                    newElements.add(new Transaction<BlockSnapshot>(visualBlock.getLocation().get().createSnapshot(), visualBlock));
+                    this.newElements.add(world, this.bigx, y, z, accentMaterial.getDefaultState());
                 }
             }
         }
-        BlockSnapshot rightVisualBlock3 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.bigz - 1)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(rightVisualBlock3.getLocation().get().createSnapshot(), rightVisualBlock3));
-        BlockSnapshot rightVisualBlock4 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.bigz)).blockState(cornerMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(rightVisualBlock4.getLocation().get().createSnapshot(), rightVisualBlock4));
-        this.corners.add(rightVisualBlock4.getPosition());
+        this.newElements.add(world, this.bigx, y, this.bigz - 1, accentMaterial.getDefaultState());
+        this.newElements.add(world, this.bigx, y, this.bigz, cornerMaterial.getDefaultState());
+        this.corners.add(new Vector3i(this.bigx, y, this.bigz));
     }
 
-    public List<Transaction<BlockSnapshot>> getVisualElements() {
+    public VisualBlocks getVisualElements() {
         return this.elements;
     }
 
@@ -540,16 +485,6 @@ public List<Vector3i> getVisualCorners() {
         return this.corners;
     }
 
-    // removes any elements which are out of visualization range
-    private void removeElementsOutOfRange(ArrayList<Transaction<BlockSnapshot>> elements, int minx, int minz, int maxx, int maxz) {
-        for (int i = 0; i < elements.size(); i++) {
-            Location<World> location = elements.get(i).getFinal().getLocation().get();
-            if (location.getX() < minx || location.getX() > maxx || location.getZ() < minz || location.getZ() > maxz) {
-                elements.remove(i);
-            }
-        }
-    }
-
     private boolean useCuboidVisual() {
         if (this.claim.cuboid) {
             return true;
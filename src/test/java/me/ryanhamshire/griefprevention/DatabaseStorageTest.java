@@ -0,0 +1,283 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageData;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.commented.SimpleCommentedConfigurationNode;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class DatabaseStorageTest {
+
+    private static final String WORLD_KEY = "data/minecraft/overworld";
+    private static final String SERVER_ID = UUID.randomUUID().toString();
+
+    private JdbcDataSource dataSource;
+    private DatabaseStorage storage;
+    private Map<String, Long> versions;
+
+    @Before
+    public void setUp() throws Exception {
+        this.dataSource = new JdbcDataSource();
+        // every test gets its own in-memory database, kept open until the JVM exits
+        this.dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        this.storage = new DatabaseStorage(this.dataSource, DatabaseStorage.Dialect.H2);
+        this.versions = new HashMap<>();
+    }
+
+    @Test
+    public void testMigrationRunsOnce() throws Exception {
+        final int migrations = DatabaseStorage.Dialect.H2.getMigrations().size();
+        assertEquals(migrations, this.storage.migrate());
+        assertEquals(Integer.valueOf(migrations), this.storage.readMetadata(DatabaseStorage.META_DB_SCHEMA));
+        assertEquals(0, this.storage.migrate());
+        assertEquals(Integer.valueOf(migrations), this.storage.readMetadata(DatabaseStorage.META_DB_SCHEMA));
+    }
+
+    @Test
+    public void testPartlyAppliedMigrationCompletes() throws Exception {
+        // MySQL keeps schema changes made before a failed migration
+        try (Connection connection = this.dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE gp_metadata (meta_key VARCHAR(64) NOT NULL PRIMARY KEY, meta_value VARCHAR(255) NOT NULL)");
+            for (DatabaseStorage.MigrationStep step : DatabaseStorage.Dialect.H2.getMigrations().get(0)) {
+                statement.execute(step.sql);
+            }
+            statement.execute(DatabaseStorage.Dialect.H2.getMigrations().get(1)[0].sql);
+        }
+        assertEquals(DatabaseStorage.Dialect.H2.getMigrations().size(), this.storage.migrate());
+        assertEquals(Integer.valueOf(DatabaseStorage.Dialect.H2.getMigrations().size()), this.storage.readMetadata(DatabaseStorage.META_DB_SCHEMA));
+    }
+
+    @Test(expected = java.sql.SQLException.class)
+    public void testNewerSchemaIsRejected() throws Exception {
+        this.storage.migrate();
+        this.storage.writeMetadata(DatabaseStorage.META_DB_SCHEMA, DatabaseStorage.Dialect.H2.getMigrations().size() + 1);
+        this.storage.migrate();
+    }
+
+    @Test
+    public void testClaimUpsertReplacesRow() throws Exception {
+        this.storage.migrate();
+        final String claimId = UUID.randomUUID().toString();
+        this.writeClaim(claimId, "BASIC", 10);
+        this.writeClaim(claimId, "SUBDIVISION", 20);
+
+        final List<DatabaseStorage.StoredClaim> claims = this.storage.loadClaims(WORLD_KEY);
+        assertEquals(1, claims.size());
+        assertEquals(claimId, claims.get(0).claimId);
+        assertEquals("SUBDIVISION", claims.get(0).type);
+        final CommentedConfigurationNode root = DatabaseStorage.parseNode(claims.get(0).data);
+        assertEquals(20, root.getNode(GriefPreventionPlugin.MOD_ID, "lesser-boundary-corner").getInt());
+        assertTrue(this.storage.loadClaims("data/minecraft/nether").isEmpty());
+        assertTrue(this.storage.hasClaims(WORLD_KEY));
+        assertFalse(this.storage.hasClaims("data/minecraft/nether"));
+    }
+
+    @Test
+    public void testTrustListIsRewritten() throws Exception {
+        this.storage.migrate();
+        final String claimId = UUID.randomUUID().toString();
+        final String first = UUID.randomUUID().toString();
+        final String second = UUID.randomUUID().toString();
+
+        CommentedConfigurationNode root = claimNode("BASIC", 0);
+        root.getNode(GriefPreventionPlugin.MOD_ID, ClaimStorageData.MAIN_BUILDERS).setValue(Arrays.asList(first, second, first));
+        root.getNode(GriefPreventionPlugin.MOD_ID, ClaimStorageData.MAIN_MANAGER_GROUPS).setValue(Collections.singletonList("admins"));
+        this.write(new DatabaseStorage.ClaimWrite(claimId, WORLD_KEY, root));
+        assertEquals(new HashSet<>(Arrays.asList(ClaimStorageData.MAIN_BUILDERS + ":" + first, ClaimStorageData.MAIN_BUILDERS + ":" + second,
+                ClaimStorageData.MAIN_MANAGER_GROUPS + ":admins")), this.storage.loadClaimTrusts(claimId));
+
+        root = claimNode("BASIC", 0);
+        root.getNode(GriefPreventionPlugin.MOD_ID, ClaimStorageData.MAIN_ACCESSORS).setValue(Collections.singletonList(second));
+        this.write(new DatabaseStorage.ClaimWrite(claimId, WORLD_KEY, root));
+        assertEquals(Collections.singleton(ClaimStorageData.MAIN_ACCESSORS + ":" + second), this.storage.loadClaimTrusts(claimId));
+    }
+
+    @Test
+    public void testClaimDeleteRemovesTrusts() throws Exception {
+        this.storage.migrate();
+        final String claimId = UUID.randomUUID().toString();
+        final CommentedConfigurationNode root = claimNode("BASIC", 0);
+        root.getNode(GriefPreventionPlugin.MOD_ID, ClaimStorageData.MAIN_ACCESSORS).setValue(Collections.singletonList("public"));
+        this.write(new DatabaseStorage.ClaimWrite(claimId, WORLD_KEY, root));
+
+        this.write(new DatabaseStorage.ClaimWrite(claimId, null, null));
+        assertTrue(this.storage.loadClaims(WORLD_KEY).isEmpty());
+        assertTrue(this.storage.loadClaimTrusts(claimId).isEmpty());
+    }
+
+    @Test
+    public void testPlayerDataUpsert() throws Exception {
+        this.storage.migrate();
+        final String playerId = UUID.randomUUID().toString();
+        assertNull(this.storage.readPlayerData("global", playerId));
+
+        this.writePlayer(new DatabaseStorage.PlayerWrite("global", playerId, playerNode(100)));
+        this.writePlayer(new DatabaseStorage.PlayerWrite("global", playerId, playerNode(250)));
+
+        assertEquals(Collections.singletonList(playerId), this.storage.loadPlayerIds("global"));
+        assertTrue(this.storage.loadPlayerIds(WORLD_KEY).isEmpty());
+        assertTrue(this.storage.hasPlayerData("global"));
+        assertFalse(this.storage.hasPlayerData(WORLD_KEY));
+        final DatabaseStorage.StoredPlayer row = this.storage.readPlayerData("global", playerId);
+        assertEquals(2, row.version);
+        final ConfigurationNode root = DatabaseStorage.parseNode(row.data);
+        assertEquals(250, root.getNode(GriefPreventionPlugin.MOD_ID, "accrued-claim-blocks").getInt());
+    }
+
+    @Test
+    public void testPlayerDataReadAcrossScopes() throws Exception {
+        this.storage.migrate();
+        final String playerId = UUID.randomUUID().toString();
+        assertTrue(this.storage.readPlayerData(playerId).isEmpty());
+
+        this.storage.writeBatch(Collections.emptyList(), Arrays.asList(new DatabaseStorage.PlayerWrite(WORLD_KEY, playerId, playerNode(10)),
+                new DatabaseStorage.PlayerWrite("data/minecraft/nether", playerId, playerNode(20)),
+                new DatabaseStorage.PlayerWrite(WORLD_KEY, UUID.randomUUID().toString(), playerNode(30))), this.versions, SERVER_ID);
+
+        final Map<String, DatabaseStorage.StoredPlayer> data = this.storage.readPlayerData(playerId);
+        assertEquals(new HashSet<>(Arrays.asList(WORLD_KEY, "data/minecraft/nether")), data.keySet());
+        assertEquals(20, DatabaseStorage.parseNode(data.get("data/minecraft/nether").data).getNode(GriefPreventionPlugin.MOD_ID, "accrued-claim-blocks")
+                .getInt());
+    }
+
+    @Test
+    public void testStaleClaimWriteConflicts() throws Exception {
+        this.storage.migrate();
+        final String claimId = UUID.randomUUID().toString();
+        this.writeClaim(claimId, "BASIC", 10);
+
+        // another server saw the same version and writes first
+        final Map<String, Long> otherVersions = new HashMap<>(this.versions);
+        assertTrue(this.storage.writeBatch(Collections.singletonList(new DatabaseStorage.ClaimWrite(claimId, WORLD_KEY, claimNode("BASIC", 20))),
+                Collections.emptyList(), otherVersions, UUID.randomUUID().toString()).isEmpty());
+
+        assertEquals(Collections.singleton(claimId), this.storage.writeBatch(
+                Collections.singletonList(new DatabaseStorage.ClaimWrite(claimId, WORLD_KEY, claimNode("BASIC", 30))), Collections.emptyList(),
+                this.versions, SERVER_ID));
+        assertEquals(Collections.singleton(claimId), this.storage.writeBatch(
+                Collections.singletonList(new DatabaseStorage.ClaimWrite(claimId, null, null)), Collections.emptyList(), this.versions, SERVER_ID));
+        final DatabaseStorage.StoredClaim row = this.storage.loadClaim(claimId);
+        assertEquals(2, row.version);
+        assertEquals(20, DatabaseStorage.parseNode(row.data).getNode(GriefPreventionPlugin.MOD_ID, "lesser-boundary-corner").getInt());
+        assertEquals(Long.valueOf(1), this.versions.get(claimId));
+    }
+
+    @Test
+    public void testNewClaimConflictsWithExistingRow() throws Exception {
+        this.storage.migrate();
+        final String claimId = UUID.randomUUID().toString();
+        this.writeClaim(claimId, "BASIC", 10);
+        this.versions.clear();
+        assertEquals(Collections.singleton(claimId), this.storage.writeBatch(
+                Collections.singletonList(new DatabaseStorage.ClaimWrite(claimId, WORLD_KEY, claimNode("BASIC", 20))), Collections.emptyList(),
+                this.versions, SERVER_ID));
+        assertEquals(1, this.storage.loadClaim(claimId).version);
+    }
+
+    @Test
+    public void testStalePlayerWriteConflicts() throws Exception {
+        this.storage.migrate();
+        final String playerId = UUID.randomUUID().toString();
+        this.writePlayer(new DatabaseStorage.PlayerWrite("global", playerId, playerNode(100)));
+        this.versions.put(DatabaseStorage.getPlayerKey("global", playerId), 0L);
+        assertEquals(Collections.singleton(DatabaseStorage.getPlayerKey("global", playerId)), this.storage.writeBatch(Collections.emptyList(),
+                Collections.singletonList(new DatabaseStorage.PlayerWrite("global", playerId, playerNode(200))), this.versions, SERVER_ID));
+        assertEquals(1, this.storage.readPlayerData("global", playerId).version);
+    }
+
+    @Test
+    public void testChangesAreLogged() throws Exception {
+        this.storage.migrate();
+        assertEquals(0, this.storage.readLatestChange());
+        final String claimId = UUID.randomUUID().toString();
+        final String playerId = UUID.randomUUID().toString();
+        this.writeClaim(claimId, "BASIC", 10);
+        this.writePlayer(new DatabaseStorage.PlayerWrite("global", playerId, playerNode(100)));
+        this.write(new DatabaseStorage.ClaimWrite(claimId, null, null));
+        assertNull(this.storage.loadClaim(claimId));
+
+        final List<DatabaseStorage.Change> changes = this.storage.readChanges(0);
+        assertEquals(3, changes.size());
+        assertEquals(DatabaseStorage.CLAIM_CHANGE, changes.get(0).kind);
+        assertEquals(claimId, changes.get(0).rowKey);
+        assertEquals(1, changes.get(0).version);
+        assertEquals(DatabaseStorage.PLAYER_CHANGE, changes.get(1).kind);
+        assertEquals(DatabaseStorage.getPlayerKey("global", playerId), changes.get(1).rowKey);
+        assertEquals(2, changes.get(2).version);
+        assertEquals(SERVER_ID, changes.get(2).serverId);
+        assertEquals(changes.get(2).changeId, this.storage.readLatestChange());
+        assertEquals(1, this.storage.readChanges(changes.get(1).changeId).size());
+        assertNull(this.versions.get(claimId));
+
+        assertEquals(3, this.storage.pruneChanges(System.currentTimeMillis() + 1));
+        assertTrue(this.storage.readChanges(0).isEmpty());
+    }
+
+    private void writeClaim(String claimId, String type, int corner) throws Exception {
+        this.write(new DatabaseStorage.ClaimWrite(claimId, WORLD_KEY, claimNode(type, corner)));
+    }
+
+    private void write(DatabaseStorage.ClaimWrite write) throws Exception {
+        assertTrue(this.storage.writeBatch(Collections.singletonList(write), Collections.emptyList(), this.versions, SERVER_ID).isEmpty());
+    }
+
+    private void writePlayer(DatabaseStorage.PlayerWrite write) throws Exception {
+        assertTrue(this.storage.writeBatch(Collections.emptyList(), Collections.singletonList(write), this.versions, SERVER_ID).isEmpty());
+    }
+
+    private static CommentedConfigurationNode claimNode(String type, int corner) {
+        final CommentedConfigurationNode root = SimpleCommentedConfigurationNode.root();
+        root.getNode(GriefPreventionPlugin.MOD_ID, ClaimStorageData.MAIN_CLAIM_TYPE).setValue(type);
+        root.getNode(GriefPreventionPlugin.MOD_ID, ClaimStorageData.MAIN_OWNER_UUID).setValue(UUID.randomUUID().toString());
+        root.getNode(GriefPreventionPlugin.MOD_ID, "lesser-boundary-corner").setValue(corner);
+        return root;
+    }
+
+    private static CommentedConfigurationNode playerNode(int accruedBlocks) {
+        final CommentedConfigurationNode root = SimpleCommentedConfigurationNode.root();
+        root.getNode(GriefPreventionPlugin.MOD_ID, "accrued-claim-blocks").setValue(accruedBlocks);
+        root.getNode(GriefPreventionPlugin.MOD_ID, "bonus-claim-blocks").setValue(0);
+        return root;
+    }
+}
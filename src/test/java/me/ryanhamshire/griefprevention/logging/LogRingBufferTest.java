@@ -0,0 +1,159 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class LogRingBufferTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int ENTRIES_PER_PRODUCER = 50000;
+    // small enough that producers overrun the consumer
+    private static final int CAPACITY = 64;
+
+    @Test
+    public void testDropOldest() throws Exception {
+        final Result result = run(LogRingBuffer.OverflowPolicy.DROP_OLDEST);
+        assertEquals(PRODUCERS * ENTRIES_PER_PRODUCER, result.received + result.dropped);
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        final Result result = run(LogRingBuffer.OverflowPolicy.BLOCK);
+        // the consumer keeps draining so no producer waits long enough to give up
+        assertEquals(0, result.dropped);
+        assertEquals(PRODUCERS * ENTRIES_PER_PRODUCER, result.received);
+    }
+
+    @Test
+    public void testCountAndDrop() throws Exception {
+        final Result result = run(LogRingBuffer.OverflowPolicy.COUNT_AND_DROP);
+        assertEquals(PRODUCERS * ENTRIES_PER_PRODUCER, result.received + result.dropped);
+    }
+
+    @Test
+    public void testFullBufferWithoutConsumer() {
+        final LogRingBuffer dropOldest = new LogRingBuffer(4, LogRingBuffer.OverflowPolicy.DROP_OLDEST, () -> { });
+        final LogRingBuffer countAndDrop = new LogRingBuffer(4, LogRingBuffer.OverflowPolicy.COUNT_AND_DROP, () -> { });
+        for (int i = 0; i < 6; i++) {
+            dropOldest.add(i, String.valueOf(i));
+            countAndDrop.add(i, String.valueOf(i));
+        }
+
+        final List<String> newest = new ArrayList<>();
+        dropOldest.drain((time, message) -> newest.add(message), Integer.MAX_VALUE);
+        assertEquals(2, dropOldest.getDropped());
+        assertEquals("[2, 3, 4, 5]", newest.toString());
+
+        final List<String> oldest = new ArrayList<>();
+        countAndDrop.drain((time, message) -> oldest.add(message), Integer.MAX_VALUE);
+        assertEquals(2, countAndDrop.takeDropped());
+        assertEquals(0, countAndDrop.getDropped());
+        assertEquals("[0, 1, 2, 3]", oldest.toString());
+    }
+
+    // Runs producers against a draining consumer and checks each producer's entries arrive in the order they were added
+    private static Result run(LogRingBuffer.OverflowPolicy policy) throws Exception {
+        final LogRingBuffer buffer = new LogRingBuffer(CAPACITY, policy, () -> { });
+        final AtomicBoolean producing = new AtomicBoolean(true);
+        final long[] lastSeen = new long[PRODUCERS];
+        final int[] received = new int[1];
+        final AssertionError[] failure = new AssertionError[1];
+        for (int i = 0; i < PRODUCERS; i++) {
+            lastSeen[i] = -1;
+        }
+
+        final Thread consumer = new Thread(() -> {
+            final LogRingBuffer.EntryConsumer check = (time, message) -> {
+                final int producer = Integer.parseInt(message);
+                if (time <= lastSeen[producer] && failure[0] == null) {
+                    failure[0] = new AssertionError("Producer " + producer + " entry " + time + " arrived after entry " + lastSeen[producer]);
+                }
+                lastSeen[producer] = time;
+                received[0]++;
+            };
+            while (producing.get() || buffer.size() > 0) {
+                if (buffer.drain(check, CAPACITY) == 0) {
+                    Thread.yield();
+                }
+            }
+            // entries published after the last size check
+            buffer.drain(check, Integer.MAX_VALUE);
+        });
+        consumer.start();
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < PRODUCERS; i++) {
+            final String producer = String.valueOf(i);
+            final Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                // the time field carries the producer's sequence number
+                for (int sequence = 0; sequence < ENTRIES_PER_PRODUCER; sequence++) {
+                    buffer.add(sequence, producer);
+                }
+            });
+            thread.start();
+            producers.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : producers) {
+            thread.join(TimeUnit.MINUTES.toMillis(1));
+            assertTrue("Producer did not finish", !thread.isAlive());
+        }
+        producing.set(false);
+        consumer.join(TimeUnit.MINUTES.toMillis(1));
+        assertTrue("Consumer did not finish", !consumer.isAlive());
+
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return new Result(received[0], buffer.getDropped());
+    }
+
+    private static final class Result {
+
+        final int received;
+        final long dropped;
+
+        Result(int received, long dropped) {
+            this.received = received;
+            this.dropped = dropped;
+        }
+    }
+}